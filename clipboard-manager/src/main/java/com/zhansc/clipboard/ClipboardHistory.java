@@ -1,8 +1,25 @@
 package com.zhansc.clipboard;
 
 import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.index.BkTree;
+import com.zhansc.clipboard.index.FrecencyIndex;
+import com.zhansc.clipboard.index.SearchIndex;
+import com.zhansc.clipboard.index.TimeTypeIndex;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.retention.RetentionPolicy;
+import com.zhansc.clipboard.retention.TimingWheel;
+import com.zhansc.clipboard.store.ImageBlobStore;
+import com.zhansc.clipboard.store.ImageHandle;
+import com.zhansc.clipboard.store.TextDelta;
+import com.zhansc.clipboard.store.TextDeltaCompressor;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * @author zhanshuchan
@@ -11,48 +28,702 @@ import java.util.*;
  * @date 12/4/25 20:07
  */
 public class ClipboardHistory {
+    private static final Logger LOG = LogManager.getLogger(ClipboardHistory.class);
+    // 过期检查的时间刻度
+    private static final long EXPIRY_TICK_MILLIS = 1000;
+    // 常用排序分数的半衰期：3天
+    private static final long FRECENCY_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(3);
+    // 按常用排序搜索时，每轮从排名中取出的项目数的初始值，不够时翻倍
+    private static final int RANKED_SEARCH_BATCH = 64;
+    // 过滤查询按时间范围扫描时，每轮取出的项目数的初始值和上限
+    private static final int QUERY_SCAN_BATCH = 64;
+    private static final int QUERY_SCAN_BATCH_MAX = 4096;
     // 最大历史记录数
     private final int maxSize;
     // 历史记录列表
     private final LinkedList<ClipboardItem> history;
+    // 历史记录变更监听器
+    private final List<HistoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // 图片存储，历史记录中的图片项目共享同一份图片数据
+    private final ImageBlobStore blobStore = new ImageBlobStore();
+    // 相似文本增量压缩器，从未启用过时为null；关闭后保留，已有增量的基准离开历史记录时仍需改写
+    private TextDeltaCompressor textDeltaCompressor;
+    // 是否对新加入的文本做增量压缩
+    private boolean textDeltaEnabled;
+    // 相似图片的最大感知哈希距离，小于0时不启用相似图片合并
+    private int nearDuplicateDistance = -1;
+    // 历史记录中图片的感知哈希索引
+    private final BkTree<ClipboardItem> imageIndex = new BkTree<>();
+    // 保留策略，为null时只按数量淘汰
+    private RetentionPolicy retentionPolicy;
+    // 按到期时间排列的项目，每个项目最多一个定时项
+    private TimingWheel<ClipboardItem> expiryWheel;
+    private final Map<ClipboardItem, TimingWheel.Entry<ClipboardItem>> expiryEntries = new IdentityHashMap<>();
+    private ScheduledExecutorService expiryScheduler;
+    // 常用排序索引，随项目进出历史记录增删
+    private final FrecencyIndex frecency = new FrecencyIndex(FRECENCY_HALF_LIFE_MILLIS);
+    // 按内容类型和复制时间的二级索引，随项目进出历史记录增删
+    private final TimeTypeIndex timeTypeIndex = new TimeTypeIndex();
+    // 全文索引，为null时搜索逐项比较
+    private volatile SearchIndex searchIndex;
+    // 无法使用索引的查询在快照上逐项扫描，历史记录较多时并行
+    private final HistoryScanner scanner = new HistoryScanner();
+    // 历史记录版本，每次变化时递增
+    private long modVersion;
+    // 当前版本的快照，历史记录变化后置空，下次读取时重建
+    private volatile HistorySnapshot snapshot;
+    // 最近分配的排序版本，基于毫秒时间戳并保证单调递增，便于与其他实例比较先后
+    private long lastVersion;
 
     public ClipboardHistory(int maxSize) {
         this.maxSize = maxSize;
         this.history = new LinkedList<>();
     }
 
+    /**
+     * 注册历史记录变更监听器
+     *
+     * @param listener 监听器
+     */
+    public void addChangeListener(HistoryChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 移除历史记录变更监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeChangeListener(HistoryChangeListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * 添加新的剪贴板项到历史记录
      *
      * @param item 剪贴板项
      */
-    public void addItem(ClipboardItem item) {
+    public synchronized void addItem(ClipboardItem item) {
+        // 先增加图片引用，再释放被替换的旧项目，避免相同图片被释放后重新载入
+        this.retainItem(item);
         // 先判断内容是否已经存在，存在则先删除再添加到历史记录开头
-        if (item.getContentType() == ContentTypeEnum.IMAGE) {
-            // 对于图片类型的项目，采用MD5值去重策略
-            history.removeIf(existingItem -> existingItem.getContentType() == ContentTypeEnum.IMAGE
-                    && existingItem.getContentMd5().equals(item.getContentMd5()));
-        } else {
-            // 对于文本和URL，使用原有的去重方法
-            history.removeIf(existingItem -> existingItem.equals(item));
+        boolean readded = false;
+        Iterator<ClipboardItem> iterator = history.iterator();
+        while (iterator.hasNext()) {
+            ClipboardItem existingItem = iterator.next();
+            boolean duplicate;
+            if (item.getContentType() == ContentTypeEnum.IMAGE) {
+                // 对于图片类型的项目，采用MD5值去重策略
+                duplicate = existingItem.getContentType() == ContentTypeEnum.IMAGE
+                        && existingItem.getContentMd5().equals(item.getContentMd5());
+            } else {
+                // 对于文本和URL，使用原有的去重方法（比较内容键）
+                duplicate = existingItem.equals(item);
+            }
+            if (duplicate) {
+                iterator.remove();
+                readded = true;
+                // 同一个项目重新加入时内容不变，依赖它的增量不需要改写
+                this.releaseItem(existingItem, existingItem != item);
+                this.fireItemRemoved(existingItem);
+            }
+        }
+
+        // 重复添加同一个项目时，去重会取消它原有的过期安排，这里重新安排
+        this.scheduleExpiry(item);
+        // 与已有图片高度相似（如只差一个光标）时合并，只保留新的
+        this.removeNearDuplicates(item);
+
+        // 与最近的长文本相似时改为保存增量；内容已在历史记录中的不再压缩
+        if (!readded) {
+            this.compressText(item);
         }
 
         // 添加到开头（最新）
+        item.setVersion(this.nextVersion());
         history.addFirst(item);
+        this.fireItemAdded(item);
 
         // 如果超出最大数量，移除最老的
         if (history.size() > maxSize) {
-            history.removeLast();
+            this.evict(history.removeLast());
+        }
+        this.markChanged();
+    }
+
+    /**
+     * 从历史记录中删除指定项目
+     *
+     * @param item 剪贴板项
+     * @return 项目是否在历史记录中
+     */
+    public synchronized boolean remove(ClipboardItem item) {
+        if (!history.removeIf(existing -> existing == item)) {
+            return false;
+        }
+        this.evict(item);
+        this.markChanged();
+        return true;
+    }
+
+    /**
+     * 淘汰已从列表中移除的项目，超出数量、过期和删除共用
+     */
+    private void evict(ClipboardItem evicted) {
+        this.releaseItem(evicted);
+        this.fireItemRemoved(evicted);
+    }
+
+    /**
+     * 批量添加剪贴板项，效果等同于按顺序逐个调用addItem，
+     * 但只遍历一次历史记录，并且只通知一次监听器
+     *
+     * @param items 剪贴板项，按从旧到新的顺序
+     */
+    public synchronized void addItems(List<ClipboardItem> items) {
+        // 批次内去重，后出现的内容覆盖先出现的
+        LinkedHashMap<String, ClipboardItem> batch = new LinkedHashMap<>();
+        for (ClipboardItem item : items) {
+            batch.remove(item.getContentKey());
+            batch.put(item.getContentKey(), item);
+        }
+        List<ClipboardItem> added = new ArrayList<>(batch.values());
+        // 超出容量的部分添加后也会被立即淘汰，直接跳过
+        if (added.size() > maxSize) {
+            added = new ArrayList<>(added.subList(added.size() - maxSize, added.size()));
+            batch.keySet().retainAll(keysOf(added));
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+
+        List<ClipboardItem> removed = new ArrayList<>();
+        Iterator<ClipboardItem> iterator = history.iterator();
+        while (iterator.hasNext()) {
+            ClipboardItem existingItem = iterator.next();
+            if (batch.containsKey(existingItem.getContentKey())) {
+                iterator.remove();
+                removed.add(existingItem);
+            }
+        }
+        for (ClipboardItem item : added) {
+            this.retainItem(item);
+            item.setVersion(this.nextVersion());
+            history.addFirst(item);
+        }
+        // 重新加入的同一个项目仍在历史记录中，依赖它的增量不需要改写
+        Set<ClipboardItem> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(added);
+        while (history.size() > maxSize) {
+            ClipboardItem evicted = history.removeLast();
+            kept.remove(evicted);
+            removed.add(evicted);
+        }
+        for (ClipboardItem item : removed) {
+            this.releaseItem(item, !kept.contains(item));
+        }
+        this.markChanged();
+
+        for (HistoryChangeListener listener : listeners) {
+            listener.onItemsAdded(added, removed);
+        }
+    }
+
+    /**
+     * 按项目自带的排序版本合并剪贴板项，用于恢复和同步：
+     * 版本更新的项目替换本地相同内容的项目，并插入到按版本倒序排列的对应位置
+     *
+     * @param items 已设置版本的剪贴板项
+     * @return 实际合并的项目数
+     */
+    public synchronized int mergeItems(List<ClipboardItem> items) {
+        Map<String, ClipboardItem> incoming = new HashMap<>();
+        for (ClipboardItem item : items) {
+            ClipboardItem other = incoming.get(item.getContentKey());
+            if (other == null || other.getVersion() < item.getVersion()) {
+                incoming.put(item.getContentKey(), item);
+            }
+            lastVersion = Math.max(lastVersion, item.getVersion());
+        }
+
+        // 本地版本更新的项目保留本地的
+        List<ClipboardItem> removed = new ArrayList<>();
+        List<ClipboardItem> superseded = new ArrayList<>();
+        Iterator<ClipboardItem> iterator = history.iterator();
+        while (iterator.hasNext()) {
+            ClipboardItem existingItem = iterator.next();
+            ClipboardItem item = incoming.get(existingItem.getContentKey());
+            if (item == null) {
+                continue;
+            }
+            if (existingItem.getVersion() >= item.getVersion()) {
+                incoming.remove(existingItem.getContentKey());
+            } else {
+                iterator.remove();
+                removed.add(existingItem);
+                superseded.add(existingItem);
+            }
+        }
+
+        List<ClipboardItem> added = new ArrayList<>(incoming.values());
+        added.sort(Comparator.comparingLong(ClipboardItem::getVersion));
+        for (ClipboardItem item : added) {
+            ListIterator<ClipboardItem> position = history.listIterator();
+            while (position.hasNext()) {
+                if (position.next().getVersion() < item.getVersion()) {
+                    position.previous();
+                    break;
+                }
+            }
+            this.retainItem(item);
+            position.add(item);
+        }
+        while (history.size() > maxSize) {
+            ClipboardItem evicted = history.removeLast();
+            this.releaseItem(evicted);
+            // 合并进来又被立即淘汰的项目不通知
+            if (!added.removeIf(item -> item == evicted)) {
+                removed.add(evicted);
+            }
+        }
+        // 被替换的项目在新项目增加引用之后再释放
+        for (ClipboardItem item : superseded) {
+            this.releaseItem(item);
+        }
+
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            this.markChanged();
+            for (HistoryChangeListener listener : listeners) {
+                listener.onItemsAdded(added, removed);
+            }
+        }
+        return added.size();
+    }
+
+    /**
+     * 启用或关闭相似文本的增量存储
+     * 启用后，与最近文本高度相似的长文本只保存相对它的增量，访问时再重建完整文本
+     *
+     * @param enabled 是否启用
+     */
+    public synchronized void setTextDeltaEnabled(boolean enabled) {
+        textDeltaEnabled = enabled;
+        if (enabled && textDeltaCompressor == null) {
+            textDeltaCompressor = new TextDeltaCompressor();
+        }
+    }
+
+    /**
+     * 增量存储累计节省的字符数
+     */
+    public synchronized long getTextDeltaSavedChars() {
+        return textDeltaCompressor == null ? 0 : textDeltaCompressor.getSavedChars();
+    }
+
+    /**
+     * 设置相似图片合并的阈值：新图片与已有图片的感知哈希汉明距离不超过该值时，
+     * 视为同一张图片的近似副本，移除已有的图片
+     *
+     * @param maxDistance 最大汉明距离（0~64），小于0时不启用
+     */
+    public synchronized void setNearDuplicateDistance(int maxDistance) {
+        if (maxDistance > 64) {
+            throw new IllegalArgumentException("maxDistance不能大于64");
+        }
+        boolean wasEnabled = nearDuplicateDistance >= 0;
+        nearDuplicateDistance = maxDistance;
+        if (maxDistance < 0) {
+            imageIndex.clear();
+        } else if (!wasEnabled) {
+            for (ClipboardItem item : history) {
+                this.indexImage(item);
+            }
+        }
+    }
+
+    private void removeNearDuplicates(ClipboardItem item) {
+        if (nearDuplicateDistance < 0 || item.getContentType() != ContentTypeEnum.IMAGE) {
+            return;
+        }
+        ImageHandle handle = item.getImageHandle();
+        // 没有可用感知哈希的图片（解码失败、纯色）无法判断相似，不合并
+        if (handle == null || !handle.hasPerceptualHash()) {
+            return;
+        }
+        for (ClipboardItem similar : imageIndex.search(handle.getPerceptualHash(), nearDuplicateDistance)) {
+            if (similar != item && history.removeIf(existing -> existing == similar)) {
+                this.releaseItem(similar);
+                this.fireItemRemoved(similar);
+            }
+        }
+    }
+
+    private void indexImage(ClipboardItem item) {
+        ImageHandle handle = item.getImageHandle();
+        if (handle != null && handle.hasPerceptualHash()) {
+            imageIndex.add(handle.getPerceptualHash(), item);
+        }
+    }
+
+    private void compressText(ClipboardItem item) {
+        if (!textDeltaEnabled || item.getContentType() != ContentTypeEnum.TEXT || item.isDeltaEncoded()) {
+            return;
+        }
+        TextDelta delta = textDeltaCompressor.compress((String) item.getContent());
+        if (delta != null) {
+            item.attachTextDelta(delta);
+        }
+    }
+
+    /**
+     * 获取图片存储
+     */
+    public ImageBlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /**
+     * 项目进入历史记录：增加图片引用并改用图片存储中的规范句柄，加入相似图片索引，按保留策略安排过期，加入常用排序和时间索引
+     */
+    private void retainItem(ClipboardItem item) {
+        this.scheduleExpiry(item);
+        if (item.getContentType() == ContentTypeEnum.IMAGE) {
+            ImageHandle handle = item.getImageHandle();
+            if (handle != null) {
+                item.attachImageHandle(blobStore.retain(handle));
+                if (nearDuplicateDistance >= 0) {
+                    this.indexImage(item);
+                }
+            }
         }
+        // 直接由Image创建的图片在取得句柄后才有MD5，内容键在此之后计算
+        frecency.retain(item);
+        timeTypeIndex.add(item);
+    }
+
+    /**
+     * 项目离开历史记录：释放图片引用，移出相似图片索引，取消过期，移出常用排序和时间索引，改写依赖它的文本增量
+     */
+    private void releaseItem(ClipboardItem item) {
+        this.releaseItem(item, true);
+    }
+
+    private void releaseItem(ClipboardItem item, boolean releaseText) {
+        if (releaseText && textDeltaCompressor != null && item.getContentType() == ContentTypeEnum.TEXT) {
+            textDeltaCompressor.release(item.getStoredContent());
+        }
+        frecency.release(item);
+        timeTypeIndex.remove(item);
+        TimingWheel.Entry<ClipboardItem> entry = expiryEntries.remove(item);
+        if (entry != null) {
+            expiryWheel.cancel(entry);
+        }
+        if (item.getContentType() != ContentTypeEnum.IMAGE) {
+            return;
+        }
+        ImageHandle handle = item.getImageHandle();
+        if (handle != null) {
+            blobStore.release(handle);
+            if (nearDuplicateDistance >= 0 && handle.hasPerceptualHash()) {
+                imageIndex.remove(handle.getPerceptualHash(), item);
+            }
+        }
+    }
+
+    /**
+     * 设置保留策略，已有项目按新策略重新计算到期时间
+     * 到期检查由后台线程每秒进行一次，也可以调用expire手动触发
+     *
+     * @param policy 保留策略，为null时只按数量淘汰
+     */
+    public synchronized void setRetentionPolicy(RetentionPolicy policy) {
+        retentionPolicy = policy == null || policy.isEmpty() ? null : policy;
+        expiryEntries.clear();
+        if (retentionPolicy == null) {
+            expiryWheel = null;
+            if (expiryScheduler != null) {
+                expiryScheduler.shutdown();
+                expiryScheduler = null;
+            }
+            return;
+        }
+        expiryWheel = new TimingWheel<>(EXPIRY_TICK_MILLIS, System.currentTimeMillis());
+        for (ClipboardItem item : history) {
+            this.scheduleExpiry(item);
+        }
+        if (expiryScheduler == null) {
+            expiryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "clipboard-retention");
+                thread.setDaemon(true);
+                return thread;
+            });
+            expiryScheduler.scheduleWithFixedDelay(() -> this.expire(System.currentTimeMillis()),
+                    EXPIRY_TICK_MILLIS, EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 记录项目被使用（复制回剪贴板），未使用过期从此时重新计时
+     *
+     * @param item 剪贴板项
+     */
+    public synchronized void touch(ClipboardItem item) {
+        long now = System.currentTimeMillis();
+        item.markUsed(now);
+        frecency.recordUse(item, now);
+        // 不需要调整时间轮，到期时重新计算，未真正过期的项目重新安排
+    }
+
+    /**
+     * 淘汰到指定时间为止已过期的项目，与超出数量的淘汰走同一路径
+     *
+     * @param nowMillis 当前时间
+     * @return 淘汰的项目数
+     */
+    public synchronized int expire(long nowMillis) {
+        if (expiryWheel == null) {
+            return 0;
+        }
+        Set<ClipboardItem> expired = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ClipboardItem item : expiryWheel.advance(nowMillis)) {
+            expiryEntries.remove(item);
+            long deadline = retentionPolicy.deadlineOf(item);
+            if (deadline > nowMillis) {
+                // 到期前被使用过，按新的到期时间重新安排
+                this.scheduleExpiry(item);
+            } else {
+                expired.add(item);
+            }
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        history.removeIf(expired::contains);
+        for (ClipboardItem item : expired) {
+            this.evict(item);
+        }
+        this.markChanged();
+        return expired.size();
+    }
+
+    private void scheduleExpiry(ClipboardItem item) {
+        if (retentionPolicy == null || expiryEntries.containsKey(item)) {
+            return;
+        }
+        long deadline = retentionPolicy.deadlineOf(item);
+        if (deadline != Long.MAX_VALUE) {
+            expiryEntries.put(item, expiryWheel.schedule(item, deadline));
+        }
+    }
+
+    private void markChanged() {
+        modVersion++;
+        snapshot = null;
+    }
+
+    private long nextVersion() {
+        lastVersion = Math.max(lastVersion + 1, System.currentTimeMillis());
+        return lastVersion;
+    }
+
+    private static Set<String> keysOf(List<ClipboardItem> items) {
+        Set<String> keys = new HashSet<>();
+        for (ClipboardItem item : items) {
+            keys.add(item.getContentKey());
+        }
+        return keys;
     }
 
     /**
      * 获取所有历史记录（按时间倒序）
+     * 返回的是可修改的副本，只读访问应使用snapshot()
      *
      * @return 历史记录列表
      */
     public List<ClipboardItem> getHistory() {
-        return new ArrayList<>(history);
+        return new ArrayList<>(this.snapshot().asList());
+    }
+
+    /**
+     * 获取当前历史记录的不可变快照
+     * 历史记录未变化时多次调用返回同一个快照，不产生复制
+     *
+     * @return 快照
+     */
+    public HistorySnapshot snapshot() {
+        HistorySnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new HistorySnapshot(modVersion, history.toArray(new ClipboardItem[0]));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 获取当前历史记录版本，可用于判断历史记录是否变化过
+     */
+    public synchronized long getSnapshotVersion() {
+        return modVersion;
+    }
+
+    /**
+     * 分页读取历史记录
+     *
+     * @param offset 起始位置
+     * @param limit  最大条数
+     * @return 当前快照上的分页游标
+     */
+    public HistorySnapshot.HistoryPage page(int offset, int limit) {
+        return this.snapshot().page(offset, limit);
+    }
+
+    /**
+     * 按内容类型遍历历史记录
+     *
+     * @param contentType 内容类型
+     * @return 当前快照上的迭代器
+     */
+    public Iterator<ClipboardItem> iterator(ContentTypeEnum contentType) {
+        return this.snapshot().iterator(contentType);
+    }
+
+    /**
+     * 按常用程度（使用频率和新近程度）取前k项，不对整个历史记录排序
+     *
+     * @param k 最大条数
+     * @return 按分数从高到低排列的项目
+     */
+    public synchronized List<ClipboardItem> topRanked(int k) {
+        return frecency.top(k);
+    }
+
+    /**
+     * 按常用程度搜索前limit个匹配项，从排名最高的项目开始逐批验证，找够后停止
+     *
+     * @param keyword 搜索关键字
+     * @param limit   最大条数
+     * @return 按分数从高到低排列的匹配项
+     */
+    public List<ClipboardItem> searchRanked(String keyword, int limit) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return this.topRanked(limit);
+        }
+        String lowerKeyword = keyword.toLowerCase();
+        SearchIndex index = searchIndex;
+        Set<String> candidates = index == null ? null : index.candidates(keyword);
+        List<ClipboardItem> result = new ArrayList<>();
+        Set<ClipboardItem> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+        // 只在取排名时加锁，验证内容时不阻塞剪贴板监控线程的写入
+        for (int batch = RANKED_SEARCH_BATCH; ; batch *= 2) {
+            List<ClipboardItem> ranked = this.topRanked(batch);
+            for (ClipboardItem item : ranked) {
+                if (!checked.add(item) || item.getContentType() == ContentTypeEnum.IMAGE
+                        || (candidates != null && !candidates.contains(item.getContentKey()))) {
+                    continue;
+                }
+                if (((String) item.getContent()).toLowerCase().contains(lowerKeyword)) {
+                    result.add(item);
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+            if (ranked.size() < batch) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 按内容类型、复制时间范围和关键字过滤查询，只访问满足条件的项目：
+     * 没有关键字时直接从时间索引中按范围取出；有关键字且全文索引的候选项比时间范围内的项目少时，
+     * 由候选项的内容键定位项目再检查类型和时间；否则按时间范围逐批扫描，用候选项和关键字过滤
+     *
+     * @param query 查询条件
+     * @return 按复制时间从新到旧排列的项目
+     */
+    public List<ClipboardItem> query(HistoryQuery query) {
+        Set<ContentTypeEnum> types = query.getContentTypes();
+        long fromMillis = query.getFromMillis();
+        long toMillis = query.getToMillis();
+        int limit = query.getLimit();
+        List<ClipboardItem> result = new ArrayList<>();
+        if (types.isEmpty() || limit == 0 || fromMillis > toMillis) {
+            return result;
+        }
+        if (!query.hasKeyword()) {
+            synchronized (this) {
+                return timeTypeIndex.next(types, fromMillis, new TimeTypeIndex.Cursor(toMillis), limit);
+            }
+        }
+
+        String lowerKeyword = query.getKeyword().toLowerCase();
+        SearchIndex index = searchIndex;
+        Set<String> candidates = index == null ? null : index.candidates(query.getKeyword());
+        if (candidates != null) {
+            List<ClipboardItem> located = null;
+            synchronized (this) {
+                if (candidates.size() <= timeTypeIndex.estimate(types, fromMillis, toMillis)) {
+                    located = new ArrayList<>();
+                    for (String key : candidates) {
+                        ClipboardItem item = timeTypeIndex.get(key);
+                        if (item == null || !types.contains(item.getContentType())) {
+                            continue;
+                        }
+                        long time = TimeTypeIndex.epochMillis(item);
+                        if (time >= fromMillis && time <= toMillis) {
+                            located.add(item);
+                        }
+                    }
+                }
+            }
+            if (located != null) {
+                located.sort(Comparator.comparing(ClipboardItem::getTimestamp).reversed());
+                for (ClipboardItem item : located) {
+                    if (((String) item.getContent()).toLowerCase().contains(lowerKeyword)) {
+                        result.add(item);
+                        if (result.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+                return result;
+            }
+        }
+
+        // 只在取出每批项目时加锁，验证内容时不阻塞剪贴板监控线程的写入
+        TimeTypeIndex.Cursor cursor = new TimeTypeIndex.Cursor(toMillis);
+        for (int batch = QUERY_SCAN_BATCH; !cursor.isExhausted(); batch = Math.min(batch * 2, QUERY_SCAN_BATCH_MAX)) {
+            List<ClipboardItem> items;
+            synchronized (this) {
+                items = timeTypeIndex.next(types, fromMillis, cursor, batch);
+            }
+            for (ClipboardItem item : items) {
+                if (candidates != null && !candidates.contains(item.getContentKey())) {
+                    continue;
+                }
+                if (((String) item.getContent()).toLowerCase().contains(lowerKeyword)) {
+                    result.add(item);
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 设置搜索使用的全文索引，通常由SearchIndex.attach调用
+     *
+     * @param searchIndex 全文索引，为null时搜索逐项比较
+     */
+    public void setSearchIndex(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
     }
 
     /**
@@ -62,32 +733,61 @@ public class ClipboardHistory {
      * @return 匹配的历史记录列表
      */
     public List<ClipboardItem> search(String keyword) {
-        System.out.println("搜索关键词: '" + keyword + "'");
+        LOG.debug("搜索关键词: '{}'", keyword);
 
         if (keyword == null || keyword.trim().isEmpty()) {
-            System.out.println("关键词为空，返回所有历史记录");
+            LOG.debug("关键词为空，返回所有历史记录");
             return getHistory();
         }
 
-        List<ClipboardItem> result = new ArrayList<>();
-        for (ClipboardItem item : history) {
-            if (item.getContentType() == ContentTypeEnum.TEXT ||
-                    item.getContentType() == ContentTypeEnum.URL) {
-                String content = (String) item.getContent();
-                if (content.toLowerCase().contains(keyword.toLowerCase())) {
-                    result.add(item);
-                }
-            }
+        String lowerKeyword = keyword.toLowerCase();
+        // 有索引时只验证候选项，其他项目不需要重建文本和转换大小写
+        SearchIndex index = searchIndex;
+        Set<String> candidates = index == null ? null : index.candidates(keyword);
+        // 在快照上搜索，不阻塞剪贴板监控线程的写入
+        List<ClipboardItem> result = scanner.scan(this.snapshot(), item -> isText(item)
+                && (candidates == null || candidates.contains(item.getContentKey()))
+                && ((String) item.getContent()).toLowerCase().contains(lowerKeyword), Integer.MAX_VALUE);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("找到 {} 个匹配项", result.size());
         }
-        System.out.println("找到 " + result.size() + " 个匹配项");
         return result;
     }
 
+    /**
+     * 用任意文本条件扫描文本和链接，用于正则、模糊匹配等全文索引无法处理的查询，
+     * 条件见filter.TextMatchers。历史记录较多时分块并行扫描，找够limit条后提前结束
+     *
+     * @param textMatcher 文本条件，会在多个线程中同时调用
+     * @param limit       最大条数
+     * @return 按复制时间从新到旧排列的匹配项
+     */
+    public List<ClipboardItem> scan(Predicate<String> textMatcher, int limit) {
+        return scanner.scan(this.snapshot(), item -> isText(item) && textMatcher.test((String) item.getContent()), limit);
+    }
+
     /**
      * 清空历史记录
      */
-    public void clear() {
+    public synchronized void clear() {
         history.clear();
+        blobStore.clear();
+        frecency.clear();
+        timeTypeIndex.clear();
+        imageIndex.clear();
+        if (expiryWheel != null) {
+            for (TimingWheel.Entry<ClipboardItem> entry : expiryEntries.values()) {
+                expiryWheel.cancel(entry);
+            }
+        }
+        expiryEntries.clear();
+        if (textDeltaCompressor != null) {
+            textDeltaCompressor.clear();
+        }
+        this.markChanged();
+        for (HistoryChangeListener listener : listeners) {
+            listener.onHistoryCleared();
+        }
     }
 
     /**
@@ -95,7 +795,23 @@ public class ClipboardHistory {
      *
      * @return 历史记录数量
      */
-    public int size() {
+    public synchronized int size() {
         return history.size();
     }
+
+    private static boolean isText(ClipboardItem item) {
+        return item.getContentType() == ContentTypeEnum.TEXT || item.getContentType() == ContentTypeEnum.URL;
+    }
+
+    private void fireItemAdded(ClipboardItem item) {
+        for (HistoryChangeListener listener : listeners) {
+            listener.onItemAdded(item);
+        }
+    }
+
+    private void fireItemRemoved(ClipboardItem item) {
+        for (HistoryChangeListener listener : listeners) {
+            listener.onItemRemoved(item);
+        }
+    }
 }
\ No newline at end of file
@@ -1,6 +1,12 @@
 package com.zhansc.clipboard;
 
+import com.zhansc.clipboard.enums.ClipboardSourceEnum;
 import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.store.ImageHandle;
+import com.zhansc.clipboard.store.TextDelta;
+import com.zhansc.clipboard.util.Md5Utils;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -12,26 +18,59 @@ import java.util.Objects;
  * @date 12/4/25 20:07
  */
 public class ClipboardItem {
+    private static final Logger LOG = LogManager.getLogger(ClipboardItem.class);
     // 时间戳
     private final LocalDateTime timestamp;
     // 内容类型
     private final ContentTypeEnum contentType;
-    // 实际内容
-    private final Object content;
+    // 内容来源
+    private final ClipboardSourceEnum source;
+    // 实际内容，图片类型为ImageHandle，启用增量压缩的长文本可能为TextDelta
+    private Object content;
     // 内容MD5值
     private String contentMd5;
     // 图片预览信息
     private String imagePreview;
+    // 文本预览，延迟计算
+    private String textPreview;
+    // 内容键（类型+内容摘要），延迟计算
+    private String contentKey;
+    // 排序版本，每次被添加或移到历史记录开头时由ClipboardHistory递增分配
+    private volatile long version;
+    // 最近一次被复制回剪贴板的时间（毫秒时间戳），0表示未使用过
+    private volatile long lastUsedTime;
 
     public ClipboardItem(String contentMd5, Object content, ContentTypeEnum contentType) {
+        this(contentMd5, content, contentType, LocalDateTime.now());
+    }
+
+    /**
+     * 创建指定来源的剪贴板项
+     */
+    public ClipboardItem(String contentMd5, Object content, ContentTypeEnum contentType, ClipboardSourceEnum source) {
+        this(contentMd5, content, contentType, LocalDateTime.now(), source);
+    }
+
+    /**
+     * 使用指定时间戳创建剪贴板项，用于从持久化存储中恢复历史记录
+     * 图片类型的内容可以是ImageHandle或Image，Image会被包装为未接管的句柄
+     */
+    public ClipboardItem(String contentMd5, Object content, ContentTypeEnum contentType, LocalDateTime timestamp) {
+        this(contentMd5, content, contentType, timestamp, ClipboardSourceEnum.CLIPBOARD);
+    }
+
+    private ClipboardItem(String contentMd5, Object content, ContentTypeEnum contentType, LocalDateTime timestamp,
+                          ClipboardSourceEnum source) {
         this.contentMd5 = contentMd5;
-        this.content = content;
+        this.source = source;
+        this.content = contentType == ContentTypeEnum.IMAGE && content instanceof java.awt.Image
+                ? new DetachedImage((java.awt.Image) content) : content;
         this.contentType = contentType;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = timestamp;
         
         // 如果是图片类型，生成预览信息
         if (contentType == ContentTypeEnum.IMAGE && content != null) {
-            this.imagePreview = this.generateImagePreview(content);
+            this.imagePreview = this.generateImagePreview(this.getContentForPreview());
         }
     }
     
@@ -42,22 +81,137 @@ public class ClipboardItem {
     public ContentTypeEnum getContentType() {
         return contentType;
     }
+
+    public ClipboardSourceEnum getSource() {
+        return source;
+    }
     
+    /**
+     * 获取实际内容，图片类型返回解码后的图片
+     */
     public Object getContent() {
+        if (content instanceof ImageHandle) {
+            return ((ImageHandle) content).getImage();
+        }
+        if (content instanceof DetachedImage) {
+            return ((DetachedImage) content).image;
+        }
+        if (content instanceof TextDelta) {
+            return ((TextDelta) content).materialize();
+        }
         return content;
     }
 
+    /**
+     * 获取图片句柄
+     *
+     * @return 图片句柄，非图片类型或图片尚未编码时返回null
+     */
+    public ImageHandle getImageHandle() {
+        if (content instanceof DetachedImage) {
+            // 直接由Image创建的项目在首次需要句柄时编码
+            DetachedImage detached = (DetachedImage) content;
+            try {
+                ImageHandle handle = ImageHandle.fromImage(detached.image);
+                if (contentMd5 == null || contentMd5.isEmpty()) {
+                    contentMd5 = handle.getContentMd5();
+                }
+                content = handle;
+            } catch (java.io.IOException e) {
+                LOG.warn("编码图片失败: {}", e.getMessage());
+                return null;
+            }
+        }
+        return content instanceof ImageHandle ? (ImageHandle) content : null;
+    }
+
+    /**
+     * 替换为图片存储中的规范句柄，由ClipboardHistory在添加时调用
+     */
+    void attachImageHandle(ImageHandle handle) {
+        this.content = handle;
+    }
+
+    /**
+     * 改为以增量形式保存文本，由ClipboardHistory在添加时调用
+     * 替换前先计算好内容键和预览，之后的去重和列表显示不需要重建文本
+     */
+    void attachTextDelta(TextDelta delta) {
+        this.getContentKey();
+        this.getTextPreview();
+        this.content = delta;
+    }
+
+    /**
+     * 保存的原始内容，文本为String或TextDelta，由ClipboardHistory在项目离开历史记录时释放增量基准
+     */
+    Object getStoredContent() {
+        return content;
+    }
+
+    /**
+     * 文本内容是否以增量形式保存
+     */
+    public boolean isDeltaEncoded() {
+        return content instanceof TextDelta;
+    }
+
     public String getContentMd5() {
         return contentMd5;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 设置排序版本，仅用于从持久化存储恢复或从其他实例同步的项目，
+     * 本地新增的项目由ClipboardHistory分配版本
+     *
+     * @param version 排序版本
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    /**
+     * 记录项目被使用（复制回剪贴板），由ClipboardHistory.touch调用
+     */
+    void markUsed(long time) {
+        this.lastUsedTime = time;
+    }
+
+    /**
+     * 获取内容键，相同内容的项目内容键相同，用于持久化和索引
+     * 图片直接使用MD5值，文本和URL使用文本的MD5值
+     *
+     * @return 内容键
+     */
+    public String getContentKey() {
+        if (contentKey == null) {
+            if (contentType == ContentTypeEnum.IMAGE) {
+                contentKey = contentType.name() + ":" + contentMd5;
+            } else {
+                contentKey = contentType.name() + ":" + Md5Utils.md5Hex((String) this.getContent());
+            }
+        }
+        return contentKey;
+    }
     
     public String getTextPreview() {
         switch (contentType) {
             case TEXT:
-                String text = (String) content;
-                return text.length() > 100 ? text.substring(0, 100) + "..." : text;
+                if (textPreview == null) {
+                    String text = (String) this.getContent();
+                    textPreview = text.length() > 100 ? text.substring(0, 100) + "..." : text;
+                }
+                return textPreview;
             case URL:
-                return (String) content;
+                return (String) this.getContent();
             case IMAGE:
                 return this.imagePreview != null ? this.imagePreview : "[图片]";
             default:
@@ -71,6 +225,10 @@ public class ClipboardItem {
      * @return 图片预览描述
      */
     private String generateImagePreview(Object content) {
+        if (content instanceof ImageHandle && ((ImageHandle) content).getWidth() > 0) {
+            ImageHandle handle = (ImageHandle) content;
+            return "[图片 " + handle.getWidth() + "x" + handle.getHeight() + "]";
+        }
         if (content instanceof java.awt.Image) {
             java.awt.Image image = (java.awt.Image) content;
             return "[图片 " + image.getWidth(null) + "x" + image.getHeight(null) + "]";
@@ -78,6 +236,10 @@ public class ClipboardItem {
         return "[图片]";
     }
     
+    private Object getContentForPreview() {
+        return content instanceof DetachedImage ? ((DetachedImage) content).image : content;
+    }
+
     @Override
     public boolean equals(Object object) {
         if (this == object) {
@@ -93,8 +255,9 @@ public class ClipboardItem {
             return Objects.equals(contentMd5, that.content);
         }
         
-        return Objects.equals(content, that.content) &&
-               contentType == that.contentType;
+        // 文本和URL比较内容键，无需重建增量保存的文本
+        return contentType == that.contentType &&
+               Objects.equals(this.getContentKey(), that.getContentKey());
     }
     
     @Override
@@ -103,6 +266,17 @@ public class ClipboardItem {
         if (contentType == ContentTypeEnum.IMAGE) {
             return Objects.hash(contentMd5, contentType);
         }
-        return Objects.hash(content, contentType);
+        return this.getContentKey().hashCode();
+    }
+
+    /**
+     * 直接由Image创建、尚未编码为句柄的图片内容
+     */
+    private static final class DetachedImage {
+        private final java.awt.Image image;
+
+        DetachedImage(java.awt.Image image) {
+            this.image = image;
+        }
     }
-}
\ No newline at end of file
+}
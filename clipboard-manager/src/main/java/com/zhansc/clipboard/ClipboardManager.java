@@ -3,11 +3,9 @@ package com.zhansc.clipboard;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.awt.datatransfer.DataFlavor;
-import java.awt.datatransfer.StringSelection;
-import java.awt.datatransfer.Transferable;
-import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.AWTEventListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -15,14 +13,41 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
 
 import com.github.kwhat.jnativehook.GlobalScreen;
 import com.github.kwhat.jnativehook.NativeHookException;
 import com.github.kwhat.jnativehook.dispatcher.SwingDispatchService;
 import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
 import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+import com.zhansc.clipboard.enums.ClipboardSourceEnum;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.filter.ExclusionFilter;
+import com.zhansc.clipboard.filter.ExclusionRule;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.retention.RetentionPolicy;
+import com.zhansc.clipboard.store.HistoryKeyStore;
+import com.zhansc.clipboard.store.ImageHandle;
+import com.zhansc.clipboard.store.PersistentHistoryStore;
+import com.zhansc.clipboard.sync.SyncService;
+import com.zhansc.clipboard.util.LatencyStats;
 
 /**
  * @author zhanshuchan
@@ -31,16 +56,51 @@ import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
  * @date 12/4/25 20:07
  */
 public class ClipboardManager extends JFrame implements ClipboardUpdateListener {
+    private static final Logger LOG = LogManager.getLogger(ClipboardManager.class);
     private final ClipboardHistory history;
     private final ClipboardMonitor monitor;
+    private PersistentHistoryStore store;
     private JList<ClipboardItem> itemList;
-    private DefaultListModel<ClipboardItem> listModel;
+    private HistoryListModel listModel;
+    // 列表当前显示的快照版本，历史记录未变化时跳过刷新
+    private long shownVersion = -1;
     private JTextField searchField;
     private JButton clearButton;
+    // 按常用程度排序，只显示排名靠前的项目
+    private JCheckBox rankedCheckBox;
+    // 按内容类型和复制时间过滤
+    private JComboBox<String> typeFilterBox;
+    private JComboBox<String> timeFilterBox;
     private JLabel statusLabel;
     private JLabel copyStatusLabel; // 用于显示复制状态的标签
+    private ClipboardItemRenderer itemRenderer;
+    // 从按下热键到搜索框获得焦点并绘制出列表的延迟
+    private final LatencyStats showLatency = new LatencyStats(
+            Double.parseDouble(System.getProperty("clipboard4j.showBudgetMillis", "16")), 256);
+    // 正在测量的一次唤出的开始时间，0表示没有在测量；以下四个字段只在事件调度线程访问
+    private long showStartNanos;
+    // 当前分发的全局键盘事件在钩子线程上被接收的时间
+    private long hookEventNanos;
+    private boolean shownFocused;
+    private boolean shownPainted;
+    // 隐藏时离屏绘制使用的缓冲
+    private BufferedImage prewarmBuffer;
+    // 复制回剪贴板后在后台把项目移到历史记录开头，不阻塞界面线程
+    private final ExecutorService copyBackExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "clipboard-copy-back");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     private static final String DEFAULT_PLACEHOLDER = "请输入关键词";
+    // 按常用排序时显示的最大条数
+    private static final int RANKED_LIST_LIMIT = 30;
+    // 类型过滤选项对应的内容类型，第一项"全部类型"不限制
+    // 固定行高时JList不再逐行计算尺寸，图片行的缩略图相应缩小；设置-Dclipboard4j.variableCellHeight=true按内容决定行高
+    private static final boolean FIXED_CELL_HEIGHT = !Boolean.getBoolean("clipboard4j.variableCellHeight");
+    // 隐藏时保持窗口布局和列表渲染为最新，热键唤出时只需显示；-Dclipboard4j.instantShow=false关闭预热
+    private static final boolean INSTANT_SHOW = !"false".equals(System.getProperty("clipboard4j.instantShow"));
+    private static final ContentTypeEnum[] FILTER_TYPES = {ContentTypeEnum.TEXT, ContentTypeEnum.URL, ContentTypeEnum.IMAGE};
     
     private static final int SHIFT_MASK = 1 << 6; // Shift键掩码
     private static final int META_MASK = 1 << 22; // Meta键掩码 (Command键在Mac上)
@@ -52,7 +112,20 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
     public ClipboardManager() {
         // 初始化组件
         history = new ClipboardHistory(100);
+        // 反复复制稍作修改的长文本时只保存增量
+        history.setTextDeltaEnabled(true);
+        // 只差光标、抗锯齿等细微差别的截图视为同一张
+        history.setNearDuplicateDistance(3);
         monitor = new ClipboardMonitor(history);
+        // Linux上默认同时记录选中的文本，-Dclipboard4j.selection=false关闭
+        monitor.setSelectionEnabled(!"false".equals(System.getProperty("clipboard4j.selection")));
+        // 内置规则之外追加用户自定义的排除规则
+        this.loadExclusionRules();
+        
+        // 从磁盘恢复历史记录
+        this.openHistoryStore();
+        // 按需启动与其他实例的同步
+        this.startSync();
         
         // 设置窗口属性
         this.setTitle("剪贴板管理器");
@@ -65,10 +138,15 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         
         // 创建界面
         this.createUI();
+        // 按需启用过期淘汰
+        this.configureRetention();
         
         // 启动剪贴板监控
         monitor.setUpdateListener(this);
         monitor.start();
+        if (INSTANT_SHOW) {
+            this.prewarmWindow();
+        }
         
         // 定期刷新列表以显示新增的剪贴板内容
 //        Timer refreshTimer = new Timer(500, e -> refreshList());
@@ -84,13 +162,135 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         this.registerGlobalHotkey();
     }
     
+    /**
+     * 打开历史记录持久化存储并恢复历史记录，失败时仅在内存中保存
+     */
+    private void openHistoryStore() {
+        try {
+            store = PersistentHistoryStore.open(Paths.get(System.getProperty("user.home"), ".clipboard4j", "history"),
+                    HistoryKeyStore.configuredCipher());
+            store.restore(history);
+            LOG.info("已从磁盘恢复 {} 条历史记录", history.size());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    LOG.warn("关闭历史记录存储时出错: {}", e.getMessage());
+                }
+            }));
+        } catch (IOException e) {
+            LOG.warn("打开历史记录存储失败，历史记录将不会保存: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 启动增量同步：设置了clipboard4j.sync.port时在本地回环地址上监听，
+     * 设置了clipboard4j.sync.peer（host:port）时定期与对端同步，双方使用~/.clipboard4j/sync.token中的相同令牌
+     */
+    private void startSync() {
+        String port = System.getProperty("clipboard4j.sync.port");
+        String peer = System.getProperty("clipboard4j.sync.peer");
+        if (port == null && peer == null) {
+            return;
+        }
+        SyncService syncService;
+        try {
+            syncService = new SyncService(history, SyncService.loadOrCreateToken(SyncService.tokenFile()));
+        } catch (IOException e) {
+            LOG.warn("读取同步令牌失败，不启动同步: {}", e.getMessage());
+            return;
+        }
+        syncService.setUpdateListener(this);
+        try {
+            if (port != null) {
+                syncService.startServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn("启动同步服务失败: {}", e.getMessage());
+        }
+        if (peer != null) {
+            int separator = peer.lastIndexOf(':');
+            InetSocketAddress address = new InetSocketAddress(peer.substring(0, separator),
+                    Integer.parseInt(peer.substring(separator + 1)));
+            Timer syncTimer = new Timer(30_000, e -> new Thread(() -> {
+                try {
+                    syncService.syncWith(address);
+                } catch (IOException ex) {
+                    LOG.warn("与 {} 同步失败: {}", peer, ex.getMessage());
+                }
+            }, "clipboard-sync-client").start());
+            syncTimer.setInitialDelay(0);
+            syncTimer.start();
+        }
+    }
+    
+    /**
+     * 载入~/.clipboard4j/exclusions.txt中的排除规则，与内置规则一起编译
+     */
+    private void loadExclusionRules() {
+        Path file = Paths.get(System.getProperty("user.home"), ".clipboard4j", "exclusions.txt");
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            List<ExclusionRule> rules = ExclusionRule.defaults();
+            rules.addAll(ExclusionRule.load(file));
+            monitor.setExclusionFilter(ExclusionFilter.compile(rules));
+            LOG.info("已载入 {} 条排除规则", rules.size());
+        } catch (IOException | PatternSyntaxException e) {
+            LOG.warn("载入排除规则失败，仅使用内置规则: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 配置历史记录保留策略（单位均为小时）：
+     * clipboard4j.retention.maxAge 最大保留时间，clipboard4j.retention.idle 未使用过期时间，
+     * clipboard4j.retention.ttl.<类型>（如clipboard4j.retention.ttl.IMAGE）某种内容的存活时间
+     */
+    private void configureRetention() {
+        RetentionPolicy policy = new RetentionPolicy();
+        policy.setMaxAge(Long.getLong("clipboard4j.retention.maxAge", 0L), TimeUnit.HOURS);
+        policy.setIdleExpiry(Long.getLong("clipboard4j.retention.idle", 0L), TimeUnit.HOURS);
+        for (ContentTypeEnum type : ContentTypeEnum.values()) {
+            policy.setTypeTtl(type, Long.getLong("clipboard4j.retention.ttl." + type.name(), 0L), TimeUnit.HOURS);
+        }
+        if (policy.isEmpty()) {
+            return;
+        }
+        history.setRetentionPolicy(policy);
+        // 过期淘汰在后台进行，淘汰后刷新列表
+        history.addChangeListener(new HistoryChangeListener() {
+            @Override
+            public void onItemAdded(ClipboardItem item) {
+            }
+
+            @Override
+            public void onItemRemoved(ClipboardItem item) {
+                SwingUtilities.invokeLater(ClipboardManager.this::refreshList);
+            }
+
+            @Override
+            public void onHistoryCleared() {
+            }
+        });
+    }
+
     /**
      * 注册全局热键监听器
      */
     private void registerGlobalHotkey() {
         try {
-            // 设置 Swing 事件调度
-            GlobalScreen.setEventDispatcher(new SwingDispatchService());
+            // 设置 Swing 事件调度，在钩子线程上记下接收时间，唤出延迟包含事件在调度队列中等待的时间
+            GlobalScreen.setEventDispatcher(new SwingDispatchService() {
+                @Override
+                public void execute(Runnable command) {
+                    long received = System.nanoTime();
+                    super.execute(() -> {
+                        hookEventNanos = received;
+                        command.run();
+                    });
+                }
+            });
             
             // 注册全局键盘监听器
             GlobalScreen.registerNativeHook();
@@ -110,21 +310,11 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                     
                     // 检测A/C/V键，当Shift和Command键都按下时 (Shift+Command+A/C/V)
                     if (shiftPressed && metaPressed && Arrays.asList(NativeKeyEvent.VC_A, NativeKeyEvent.VC_C, NativeKeyEvent.VC_V).contains(e.getKeyCode())) {
-                        // 在事件调度线程中执行界面操作
-                        SwingUtilities.invokeLater(() -> {
-                            toggleVisibility();
-
-                            // 等窗口可见后再执行搜索框聚焦
-                            try {
-                                Thread.sleep(100);
-                            } catch (InterruptedException ex) {
-                                throw new RuntimeException(ex);
-                            }
-                            // 确保搜索框获得焦点
-                            if (searchField != null) {
-                                searchField.requestFocusInWindow();
-                            }
-                        });
+                        // SwingDispatchService已在事件调度线程中分发，直接切换，搜索框在窗口获得焦点时得到焦点
+                        if (!isVisible()) {
+                            startShowMeasurement();
+                        }
+                        toggleVisibility();
                     }
                 }
 
@@ -155,10 +345,10 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                 }
             });
             
-            System.out.println("全局热键监听器注册成功，支持的快捷键: Shift+Command+V, Shift+Command+C, Shift+Command+A");
+            LOG.info("全局热键监听器注册成功，支持的快捷键: Shift+Command+V, Shift+Command+C, Shift+Command+A");
         } catch (NativeHookException ex) {
-            System.err.println("注册全局热键监听器失败: " + ex.getMessage());
-            System.err.println("提示: 在macOS上，您可能需要在系统偏好设置 > 安全性与隐私 > 辅助功能中授权此应用");
+            LOG.warn("注册全局热键监听器失败: {}", ex.getMessage());
+            LOG.warn("提示: 在macOS上，您可能需要在系统偏好设置 > 安全性与隐私 > 辅助功能中授权此应用");
         }
     }
     
@@ -166,13 +356,13 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
      * 注册全局键盘监听器
      */
     private void registerGlobalKeyListener() {
-        System.out.println("注册全局键盘监听器...");
+        LOG.info("注册全局键盘监听器...");
         
         // 添加窗口焦点监听器，确保窗口获得焦点时能响应键盘事件
         this.addWindowFocusListener(new WindowAdapter() {
             @Override
             public void windowGainedFocus(WindowEvent e) {
-                System.out.println("窗口获得焦点");
+                LOG.debug("窗口获得焦点");
                 searchField.requestFocusInWindow();
             }
         });
@@ -184,18 +374,20 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                 if (event instanceof KeyEvent) {
                     KeyEvent keyEvent = (KeyEvent) event;
 
-                    System.out.println("按键事件: ID=" + keyEvent.getID() +
-                            ", keyCode=" + keyEvent.getKeyCode() +
-                            ", modifiers=" + keyEvent.getModifiersEx() +
-                            ", isMetaDown=" + keyEvent.isMetaDown() +
-                            ", isShiftDown=" + keyEvent.isShiftDown() +
-                            ", isControlDown=" + keyEvent.isControlDown() +
-                            ", isAltDown=" + keyEvent.isAltDown());
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("按键事件: ID=" + keyEvent.getID() +
+                                ", keyCode=" + keyEvent.getKeyCode() +
+                                ", modifiers=" + keyEvent.getModifiersEx() +
+                                ", isMetaDown=" + keyEvent.isMetaDown() +
+                                ", isShiftDown=" + keyEvent.isShiftDown() +
+                                ", isControlDown=" + keyEvent.isControlDown() +
+                                ", isAltDown=" + keyEvent.isAltDown());
+                    }
                     if (keyEvent.getID() == KeyEvent.KEY_PRESSED) {
 
                         // 检查是否按下了 Command+Shift+V (在Mac上)
                         // 注意：在Mac上VK_V可能对应不同的键码，我们尝试多种组合
-                        System.out.println("检测到 Command+Shift+V 组合键（AWT事件监听器）");
+                        LOG.debug("检测到 Command+Shift+V 组合键（AWT事件监听器）");
                         if (keyEvent.isMetaDown() && keyEvent.isShiftDown() && keyEvent.getKeyCode() == KeyEvent.VK_V) {
                             toggleVisibility();
                             keyEvent.consume();
@@ -203,7 +395,7 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                         }
                         
                         // 也尝试监听 Ctrl+Shift+V 作为备选方案
-                        System.out.println("检测到 Ctrl+Shift+V 组合键（AWT事件监听器）");
+                        LOG.debug("检测到 Ctrl+Shift+V 组合键（AWT事件监听器）");
                         if (keyEvent.isControlDown() && keyEvent.isShiftDown() && keyEvent.getKeyCode() == KeyEvent.VK_V) {
                             toggleVisibility();
                             keyEvent.consume();
@@ -214,7 +406,7 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
             }
         }, AWTEvent.KEY_EVENT_MASK);
         
-        System.out.println("全局键盘监听器注册完成");
+        LOG.info("全局键盘监听器注册完成");
     }
     
     /**
@@ -223,10 +415,10 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
     private void registerSystemTray() {
         try {
             if (!SystemTray.isSupported()) {
-                System.out.println("系统托盘不支持");
+                LOG.info("系统托盘不支持");
                 return;
             }
-            System.out.println("系统托盘支持可用");
+            LOG.info("系统托盘支持可用");
             SystemTray tray = SystemTray.getSystemTray();
 
             // 创建一个简单的图像作为托盘图标
@@ -246,7 +438,7 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                 @Override
                 public void mouseClicked(MouseEvent e) {
                     if (e.getClickCount() == 1) { // 单击
-                        System.out.println("托盘图标被点击");
+                        LOG.debug("托盘图标被点击");
                         toggleVisibility();
                     }
                 }
@@ -265,9 +457,9 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
             trayIcon.setPopupMenu(popup);
 
             tray.add(trayIcon);
-            System.out.println("系统托盘图标注册成功");
+            LOG.info("系统托盘图标注册成功");
         } catch (Exception e) {
-            System.err.println("注册系统托盘图标失败: " + e.getMessage());
+            LOG.warn("注册系统托盘图标失败: {}", e.getMessage());
             e.printStackTrace();
         }
     }
@@ -277,6 +469,7 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
      */
     private void toggleVisibility() {
         if (this.isVisible()) {
+            showStartNanos = 0;
             this.setVisible(false);
         } else {
             this.setVisible(true);
@@ -284,16 +477,72 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
             this.setState(JFrame.NORMAL);
             // 确保窗口在最前面
             this.toFront();
-            // 确保窗口获得焦点
-            this.requestFocus();
-            // 让搜索框获得焦点
-            SwingUtilities.invokeLater(() -> {
-                if (searchField != null) {
-                    searchField.requestFocusInWindow();
-                    // 选择所有文本，方便用户直接输入
-                    searchField.selectAll();
-                }
-            });
+            // 窗口还没获得焦点时请求会被记住，窗口获得焦点后交给搜索框，不需要等窗口显示出来
+            if (searchField != null) {
+                searchField.requestFocus();
+                // 选择所有文本，方便用户直接输入
+                searchField.selectAll();
+            }
+        }
+    }
+
+    /**
+     * 获取热键唤出窗口的延迟统计：从按下热键到搜索框获得焦点并绘制出列表
+     */
+    public LatencyStats getShowLatency() {
+        return showLatency;
+    }
+
+    private void startShowMeasurement() {
+        showStartNanos = hookEventNanos;
+        shownFocused = false;
+        shownPainted = false;
+    }
+
+    /**
+     * 搜索框获得焦点且列表绘制完成后结束一次唤出延迟的测量，两者先后顺序不定
+     */
+    private void finishShowMeasurement() {
+        if (showStartNanos == 0 || !shownFocused || !shownPainted) {
+            return;
+        }
+        long elapsed = System.nanoTime() - showStartNanos;
+        showStartNanos = 0;
+        if (showLatency.record(elapsed)) {
+            LOG.warn("唤出窗口超出预算: {}", showLatency.toString());
+        }
+    }
+
+    /**
+     * 预热窗口：提前创建本地窗口资源、完成布局并离屏绘制一次，加载字体、缩略图和列表项的渲染缓存
+     */
+    private void prewarmWindow() {
+        this.addNotify();
+        this.refreshList();
+        this.paintOffscreen();
+    }
+
+    /**
+     * 窗口隐藏时离屏完成布局和绘制，列表变化后的布局计算和新项目的渲染不留到唤出时
+     */
+    private void paintOffscreen() {
+        if (this.isVisible()) {
+            return;
+        }
+        this.validate();
+        Container content = this.getContentPane();
+        if (content.getWidth() <= 0 || content.getHeight() <= 0) {
+            return;
+        }
+        if (prewarmBuffer == null || prewarmBuffer.getWidth() != content.getWidth()
+                || prewarmBuffer.getHeight() != content.getHeight()) {
+            prewarmBuffer = new BufferedImage(content.getWidth(), content.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = prewarmBuffer.createGraphics();
+        try {
+            content.paint(g);
+        } finally {
+            g.dispose();
         }
     }
     
@@ -326,6 +575,13 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         };
         searchField.setText(""); // 初始时不设置默认文本，仅作为占位符显示
         searchField.setToolTipText("输入关键字搜索剪贴板历史");
+        searchField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                shownFocused = true;
+                finishShowMeasurement();
+            }
+        });
         
         // 添加文档监听器，实现实时搜索
         searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
@@ -345,13 +601,41 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         
         topPanel.add(new JLabel("搜索:"), BorderLayout.WEST);
         topPanel.add(searchField, BorderLayout.CENTER);
-        topPanel.add(clearButton, BorderLayout.EAST);
+        rankedCheckBox = new JCheckBox("常用优先");
+        rankedCheckBox.setToolTipText("按复制次数和最近使用时间排序，显示前" + RANKED_LIST_LIMIT + "项");
+        rankedCheckBox.addActionListener(e -> this.performSearch());
+        typeFilterBox = new JComboBox<>(new String[]{"全部类型", "文本", "链接", "图片"});
+        typeFilterBox.addActionListener(e -> this.performSearch());
+        timeFilterBox = new JComboBox<>(new String[]{"全部时间", "最近1小时", "今天", "最近7天"});
+        timeFilterBox.addActionListener(e -> this.performSearch());
+        JPanel actionPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        actionPanel.add(typeFilterBox);
+        actionPanel.add(timeFilterBox);
+        actionPanel.add(rankedCheckBox);
+        actionPanel.add(clearButton);
+        topPanel.add(actionPanel, BorderLayout.EAST);
         
         // 创建中部面板（列表区域）
-        listModel = new DefaultListModel<>();
-        itemList = new JList<>(listModel);
+        listModel = new HistoryListModel();
+        itemList = new JList<ClipboardItem>(listModel) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                // 离屏预热时窗口不可见，不计入唤出延迟
+                if (showStartNanos != 0 && isShowing()) {
+                    shownPainted = true;
+                    finishShowMeasurement();
+                }
+            }
+        };
         itemList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        itemList.setCellRenderer(new ClipboardItemRenderer());
+        itemRenderer = FIXED_CELL_HEIGHT ? new ClipboardItemRenderer(64, 40) : new ClipboardItemRenderer(100, 80);
+        itemList.setCellRenderer(itemRenderer);
+        if (FIXED_CELL_HEIGHT) {
+            // 行宽设为1时列表宽度跟随视口，每行按列表宽度绘制，过长的文本以省略号结尾
+            itemList.setFixedCellHeight(itemRenderer.prototypeCellHeight());
+            itemList.setFixedCellWidth(1);
+        }
         itemList.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
@@ -473,11 +757,21 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         // 只有在搜索框为空时才刷新整个列表，避免干扰用户的搜索结果
         String searchText = searchField.getText();
         if (searchText.trim().isEmpty()) {
-            listModel.clear();
-            for (ClipboardItem item : history.getHistory()) {
-                listModel.addElement(item);
+            HistorySnapshot snapshot = history.snapshot();
+            if (snapshot.getVersion() == shownVersion) {
+                return;
+            }
+            HistoryQuery filter = this.filterQuery();
+            if (filter != null) {
+                listModel.setItems(history.query(filter));
+            } else {
+                listModel.setItems(rankedCheckBox.isSelected() ? history.topRanked(RANKED_LIST_LIMIT) : snapshot.asList());
             }
+            shownVersion = snapshot.getVersion();
             this.updateStatus();
+            if (INSTANT_SHOW) {
+                this.paintOffscreen();
+            }
         }
     }
     
@@ -487,25 +781,60 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
     private void performSearch() {
         SwingUtilities.invokeLater(() -> {
             String keyword = searchField.getText();
-            System.out.println("执行搜索: '" + keyword + "'");
-            listModel.clear();
+            LOG.debug("执行搜索: '{}'", keyword);
             
-            // 如果关键词为空，则显示所有历史记录
-            if (keyword.isEmpty()) {
-                for (ClipboardItem item : history.getHistory()) {
-                    listModel.addElement(item);
-                }
+            HistoryQuery filter = this.filterQuery();
+            if (filter != null) {
+                // 按类型或时间过滤时结果按复制时间排列，不按常用排序
+                HistorySnapshot snapshot = history.snapshot();
+                filter.setKeyword(keyword);
+                listModel.setItems(history.query(filter));
+                shownVersion = keyword.isEmpty() ? snapshot.getVersion() : -1;
+            } else if (keyword.isEmpty()) {
+                // 如果关键词为空，则显示所有历史记录
+                HistorySnapshot snapshot = history.snapshot();
+                listModel.setItems(rankedCheckBox.isSelected() ? history.topRanked(RANKED_LIST_LIMIT) : snapshot.asList());
+                shownVersion = snapshot.getVersion();
+            } else if (rankedCheckBox.isSelected()) {
+                listModel.setItems(history.searchRanked(keyword, RANKED_LIST_LIMIT));
+                shownVersion = -1;
             } else {
                 // 否则显示匹配的历史记录
-                for (ClipboardItem item : history.search(keyword)) {
-                    listModel.addElement(item);
-                }
+                listModel.setItems(history.search(keyword));
+                shownVersion = -1;
             }
 
             this.updateStatus();
         });
     }
     
+    /**
+     * 根据类型和时间过滤选项构造查询
+     *
+     * @return 查询条件，未设置过滤时返回null
+     */
+    private HistoryQuery filterQuery() {
+        HistoryQuery query = new HistoryQuery();
+        int type = typeFilterBox.getSelectedIndex();
+        if (type > 0) {
+            query.setContentTypes(FILTER_TYPES[type - 1]);
+        }
+        switch (timeFilterBox.getSelectedIndex()) {
+            case 1:
+                query.setWithin(1, TimeUnit.HOURS);
+                break;
+            case 2:
+                query.setTimeRange(LocalDate.now().atStartOfDay(), null);
+                break;
+            case 3:
+                query.setWithin(7, TimeUnit.DAYS);
+                break;
+            default:
+                break;
+        }
+        return query.isFiltered() ? query : null;
+    }
+
     /**
      * 清空历史记录
      */
@@ -535,94 +864,131 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         if (selected == null) {
             return;
         }
-        switch (selected.getContentType()) {
-            case TEXT:
-            case URL:
-                String text = (String) selected.getContent();
-                java.awt.datatransfer.Clipboard clipboard =
-                        Toolkit.getDefaultToolkit().getSystemClipboard();
-                clipboard.setContents(new StringSelection(text), null);
-                // 限制复制状态文本长度，防止遮挡左侧记录数信息
-                String previewText = selected.getTextPreview();
-                String truncatedText = this.truncateText(previewText, 30); // 限制为30个字符
-                copyStatusLabel.setText("已复制到剪贴板: " + truncatedText);
-                // 将该项添加到历史记录的最前面
-                history.addItem(selected);
-                this.refreshList();
-                // 复制完成后隐藏窗口
-//                this.setVisible(false);
-                break;
-            case IMAGE:
-                try {
-                    Image image = (Image) selected.getContent();
-                    TransferableImage transferableImage = new TransferableImage(image);
-                    java.awt.datatransfer.Clipboard clipboardImage =
-                            Toolkit.getDefaultToolkit().getSystemClipboard();
-                    clipboardImage.setContents(transferableImage, null);
-                    copyStatusLabel.setText("图片已复制到剪贴板");
-                    // 将该项添加到历史记录的最前面
-                    history.addItem(selected);
-                    this.refreshList();
-                    // 复制完成后隐藏窗口
-                    // TODO: zhanshuchan 12/5/25 功能还不全
-//                    this.setVisible(false);
-                } catch (Exception e) {
-                    copyStatusLabel.setText("复制图片失败: " + e.getMessage());
-                    e.printStackTrace();
-                }
-                break;
+        try {
+            // 只发布声明了格式的Transferable，接收方粘贴时才在后台重建文本或解码图片
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new HistoryTransferable(selected), null);
+        } catch (IllegalStateException e) {
+            copyStatusLabel.setText("复制失败，剪贴板暂时不可用");
+            return;
         }
+        if (selected.getContentType() == ContentTypeEnum.IMAGE) {
+            copyStatusLabel.setText("图片已复制到剪贴板");
+        } else {
+            // 限制复制状态文本长度，防止遮挡左侧记录数信息
+            String truncatedText = this.truncateText(selected.getTextPreview(), 30); // 限制为30个字符
+            copyStatusLabel.setText("已复制到剪贴板: " + truncatedText);
+        }
+        // 将该项添加到历史记录的最前面，未使用过期重新计时
+        copyBackExecutor.execute(() -> {
+            history.touch(selected);
+            history.addItem(selected);
+            SwingUtilities.invokeLater(this::refreshList);
+        });
+        // 复制完成后隐藏窗口
+        // TODO: zhanshuchan 12/5/25 功能还不全
+//        this.setVisible(false);
     }
     
     /**
-     * 图片传输类，用于将图片放到剪贴板中
+     * 更新状态栏信息
      */
-    private static class TransferableImage implements Transferable {
-        private final Image image;
-        
-        public TransferableImage(Image image) {
-            this.image = image;
+    private void updateStatus() {
+        statusLabel.setText("共 " + listModel.getSize() + " 条记录");
+    }
+    
+    /**
+     * 直接以历史记录快照（或搜索结果）为数据的列表模型，刷新时不逐条复制
+     */
+    private static class HistoryListModel extends AbstractListModel<ClipboardItem> {
+        private static final long serialVersionUID = 1L;
+        // 增量通知时在新列表开头查找原第一项的范围
+        private static final int MAX_INCREMENTAL_SHIFT = 64;
+        private List<ClipboardItem> items = Collections.emptyList();
+
+        void setItems(List<ClipboardItem> items) {
+            List<ClipboardItem> old = this.items;
+            int oldSize = old.size();
+            this.items = items;
+            // 最常见的变化是开头新增几项、末尾淘汰几项，只通知变化的区间，选中项和滚动位置随之平移
+            int shift = oldSize == 0 ? -1 : indexOf(items, old.get(0));
+            if (shift >= 0) {
+                int overlap = Math.min(oldSize, items.size() - shift);
+                if (sameItems(old, items, shift, overlap)) {
+                    if (shift > 0) {
+                        this.fireIntervalAdded(this, 0, shift - 1);
+                    }
+                    if (oldSize > overlap) {
+                        this.fireIntervalRemoved(this, shift + overlap, shift + oldSize - 1);
+                    } else if (items.size() > shift + overlap) {
+                        this.fireIntervalAdded(this, shift + overlap, items.size() - 1);
+                    }
+                    return;
+                }
+            }
+            if (oldSize > items.size()) {
+                this.fireIntervalRemoved(this, items.size(), oldSize - 1);
+            }
+            if (items.size() > 0) {
+                this.fireContentsChanged(this, 0, items.size() - 1);
+            }
         }
-        
-        @Override
-        public DataFlavor[] getTransferDataFlavors() {
-            return new DataFlavor[]{DataFlavor.imageFlavor};
+
+        private static int indexOf(List<ClipboardItem> items, ClipboardItem item) {
+            int end = Math.min(items.size(), MAX_INCREMENTAL_SHIFT);
+            for (int i = 0; i < end; i++) {
+                if (items.get(i) == item) {
+                    return i;
+                }
+            }
+            return -1;
         }
-        
+
+        private static boolean sameItems(List<ClipboardItem> old, List<ClipboardItem> items, int shift, int length) {
+            for (int i = 0; i < length; i++) {
+                if (old.get(i) != items.get(shift + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
-        public boolean isDataFlavorSupported(DataFlavor flavor) {
-            return flavor.equals(DataFlavor.imageFlavor);
+        public int getSize() {
+            return items.size();
         }
-        
+
         @Override
-        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
-            if (flavor.equals(DataFlavor.imageFlavor)) {
-                return image;
-            } else {
-                throw new UnsupportedFlavorException(flavor);
-            }
+        public ClipboardItem getElementAt(int index) {
+            return items.get(index);
         }
     }
-    
-    /**
-     * 更新状态栏信息
-     */
-    private void updateStatus() {
-        statusLabel.setText("共 " + listModel.getSize() + " 条记录");
-    }
-    
+
     /**
      * 自定义列表项渲染器
+     * 每个项目的图标文字、预览文本、缩略图和时间文本只在第一次绘制时计算并缓存，排序版本变化后重新计算；
+     * 绘制时只把缓存的状态设置到标签上
      */
     private static class ClipboardItemRenderer extends JPanel implements ListCellRenderer<ClipboardItem> {
+        private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         private final JLabel iconLabel;
         private final JLabel contentLabel;
         private final JLabel timeLabel;
         private Color selectionBackgroundColor;
         private Color defaultBackgroundColor;
         private boolean isSelected; // 跟踪当前项是否被选中
+        // 缩略图的最大尺寸
+        private final int thumbnailWidth;
+        private final int thumbnailHeight;
+        // 项目 -> 渲染状态，项目离开历史记录被回收后自动删除，只在事件调度线程访问
+        private final Map<ClipboardItem, RenderState> renderCache = new WeakHashMap<>();
         
-        public ClipboardItemRenderer() {
+        /**
+         * @param thumbnailWidth  缩略图最大宽度
+         * @param thumbnailHeight 缩略图最大高度
+         */
+        public ClipboardItemRenderer(int thumbnailWidth, int thumbnailHeight) {
+            this.thumbnailWidth = thumbnailWidth;
+            this.thumbnailHeight = thumbnailHeight;
             setLayout(new BorderLayout(5, 5));
             setBorder(new EmptyBorder(5, 10, 5, 10));
             
@@ -668,6 +1034,18 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
             });
         }
         
+        /**
+         * 计算固定行高：用缩略图大小的空白图标撑出最高的一行（图片行）
+         *
+         * @return 行高
+         */
+        public int prototypeCellHeight() {
+            Icon placeholder = new ImageIcon(new BufferedImage(thumbnailWidth, thumbnailHeight, BufferedImage.TYPE_INT_ARGB));
+            this.apply(new RenderState(0, null, "Image", Color.ORANGE, "图片类型", "", placeholder,
+                    TIME_FORMATTER.format(LocalDateTime.now())));
+            return getPreferredSize().height;
+        }
+        
         @Override
         public Component getListCellRendererComponent(
                 JList<? extends ClipboardItem> list,
@@ -685,18 +1063,6 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                 selectionBackgroundColor = list.getSelectionBackground();
             }
             
-            // 清除之前可能添加的组件
-            Component[] components = getComponents();
-            for (Component component : components) {
-                if (component != iconLabel && component != contentLabel.getParent() && component != timeLabel.getParent()) {
-                    remove(component);
-                }
-            }
-            
-            // 重置contentLabel的状态，防止组件复用导致的问题
-            contentLabel.setIcon(null);
-            contentLabel.setText("");
-            
             // 设置选中状态样式
             if (isSelected) {
                 setBackground(list.getSelectionBackground());
@@ -707,76 +1073,81 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
                 contentLabel.setForeground(list.getForeground());
             }
             
-            // 根据内容类型设置图标和文本
-            switch (value.getContentType()) {
-                case TEXT:
-                    iconLabel.setText("Text");
-                    iconLabel.setForeground(Color.BLUE);
-                    iconLabel.setToolTipText("文本类型");
-                    contentLabel.setText(value.getTextPreview());
-                    break;
+            RenderState state = renderCache.get(value);
+            if (state == null || !state.isFor(value)) {
+                state = this.createState(value);
+                // 内容相同的旧项目作为键时put只替换值，先删除才能以当前项目为键
+                renderCache.remove(value);
+                renderCache.put(value, state);
+            }
+            this.apply(state);
+            return this;
+        }
+        
+        private void apply(RenderState state) {
+            iconLabel.setText(state.iconText);
+            iconLabel.setForeground(state.iconColor);
+            iconLabel.setToolTipText(state.iconTooltip);
+            contentLabel.setIcon(state.icon);
+            contentLabel.setText(state.text);
+            timeLabel.setText(state.time);
+        }
+        
+        /**
+         * 根据内容类型计算图标、文本和时间显示
+         */
+        private RenderState createState(ClipboardItem item) {
+            // 来自选择区（选中文本）的项目在时间后标注
+            String time = item.getTimestamp().format(TIME_FORMATTER)
+                    + (item.getSource() == ClipboardSourceEnum.SELECTION ? "  选中" : "");
+            switch (item.getContentType()) {
                 case URL:
-                    iconLabel.setText("Link");
-                    iconLabel.setForeground(Color.GREEN);
-                    iconLabel.setToolTipText("链接类型");
-                    contentLabel.setText("<html><a href='#'>" + value.getTextPreview() + "</a></html>");
-                    break;
+                    return new RenderState(item.getVersion(), item.getTimestamp(), "Link", Color.GREEN, "链接类型",
+                            "<html><a href='#'>" + item.getTextPreview() + "</a></html>", null, time);
                 case IMAGE:
-                    iconLabel.setText("Image");
-                    iconLabel.setForeground(Color.ORANGE);
-                    iconLabel.setToolTipText("图片类型");
-                    displayImagePreview(value);
-                    break;
+                    // 缩略图由图片存储生成并缓存，不再每次绘制都缩放原图
+                    ImageHandle handle = item.getImageHandle();
+                    Image thumbnail = handle == null ? null : handle.getThumbnail(thumbnailWidth, thumbnailHeight);
+                    return new RenderState(item.getVersion(), item.getTimestamp(), "Image", Color.ORANGE, "图片类型",
+                            thumbnail == null ? item.getTextPreview() : "",
+                            thumbnail == null ? null : new ImageIcon(thumbnail), time);
+                default:
+                    return new RenderState(item.getVersion(), item.getTimestamp(), "Text", Color.BLUE, "文本类型",
+                            item.getTextPreview(), null, time);
             }
-            
-            // 设置时间显示
-            timeLabel.setText(value.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-            
-            this.revalidate();
-            this.repaint();
-            
-            return this;
         }
         
         /**
-         * 显示图片预览
-         * @param item ClipboardItem对象
+         * 一个项目的渲染状态
          */
-        private void displayImagePreview(ClipboardItem item) {
-            Object content = item.getContent();
-            if (content instanceof java.awt.Image) {
-                java.awt.Image image = (java.awt.Image) content;
-                
-                // 创建缩略图
-                int maxWidth = 100;
-                int maxHeight = 80;
-                
-                int imgWidth = image.getWidth(null);
-                int imgHeight = image.getHeight(null);
-                
-                // 处理图片尺寸获取失败的情况
-                if (imgWidth <= 0 || imgHeight <= 0) {
-                    contentLabel.setText("[图片]");
-                    return;
-                }
-                
-                // 计算缩放比例
-                double scale = Math.min((double) maxWidth / imgWidth, (double) maxHeight / imgHeight);
-                scale = Math.min(scale, 1.0); // 不放大图片
-                
-                int scaledWidth = (int) (imgWidth * scale);
-                int scaledHeight = (int) (imgHeight * scale);
-                
-                // 缩放图片
-                java.awt.Image scaledImage = image.getScaledInstance(scaledWidth, scaledHeight, java.awt.Image.SCALE_SMOOTH);
-                
-                // 创建图标并设置到标签上
-                ImageIcon imageIcon = new ImageIcon(scaledImage);
-                contentLabel.setIcon(imageIcon);
-                contentLabel.setText(""); // 清除文本
-            } else {
-                contentLabel.setIcon(null);
-                contentLabel.setText(item.getTextPreview());
+        private static final class RenderState {
+            // 计算时项目的排序版本和时间，用于判断缓存是否属于当前项目
+            private final long version;
+            private final LocalDateTime timestamp;
+            private final String iconText;
+            private final Color iconColor;
+            private final String iconTooltip;
+            private final String text;
+            private final Icon icon;
+            private final String time;
+            
+            RenderState(long version, LocalDateTime timestamp, String iconText, Color iconColor,
+                        String iconTooltip, String text, Icon icon, String time) {
+                this.version = version;
+                this.timestamp = timestamp;
+                this.iconText = iconText;
+                this.iconColor = iconColor;
+                this.iconTooltip = iconTooltip;
+                this.text = text;
+                this.icon = icon;
+                this.time = time;
+            }
+            
+            /**
+             * 缓存按内容相等查找，内容相同的不同项目（重新复制、同步替换）时间或版本不同
+             */
+            boolean isFor(ClipboardItem item) {
+                return version == item.getVersion() && timestamp == item.getTimestamp();
             }
         }
     }
@@ -810,21 +1181,21 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
     }
     
     public static void main(String[] args) {
-        System.out.println("启动剪贴板管理器...");
+        LOG.info("启动剪贴板管理器...");
         SwingUtilities.invokeLater(() -> {
             try {
                 // 修复Look and Feel设置
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
             } catch (Exception e) {
                 // 使用默认外观
-                System.err.println("设置 Look and Feel 失败: " + e.getMessage());
+                LOG.warn("设置 Look and Feel 失败: {}", e.getMessage());
             }
             
             // 创建剪贴板管理器实例但不立即显示
-            System.out.println("创建 ClipboardManager 实例...");
+            LOG.info("创建 ClipboardManager 实例...");
             ClipboardManager manager = new ClipboardManager();
             manager.setVisible(true);
-            System.out.println("ClipboardManager 实例创建完成");
+            LOG.info("ClipboardManager 实例创建完成");
             // 窗口默认隐藏，通过系统托盘或其它方式触发显示
         });
         
@@ -832,9 +1203,9 @@ public class ClipboardManager extends JFrame implements ClipboardUpdateListener
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 GlobalScreen.unregisterNativeHook();
-                System.out.println("全局热键监听器已注销");
+                LOG.info("全局热键监听器已注销");
             } catch (Exception e) {
-                System.err.println("注销全局热键监听器时出错: " + e.getMessage());
+                LOG.warn("注销全局热键监听器时出错: {}", e.getMessage());
             }
         }));
     }
@@ -1,17 +1,28 @@
 package com.zhansc.clipboard;
 
+import com.zhansc.clipboard.enums.ClipboardSourceEnum;
 import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.enums.OverflowPolicyEnum;
+import com.zhansc.clipboard.filter.ExclusionFilter;
+import com.zhansc.clipboard.filter.ExclusionRule;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.pipeline.PipelineStage;
+import com.zhansc.clipboard.pipeline.StageMetrics;
+import com.zhansc.clipboard.store.BandedImageEncoder;
+import com.zhansc.clipboard.store.ImageHandle;
+import com.zhansc.clipboard.util.TextFingerprinter;
 
 import java.awt.*;
 import java.awt.datatransfer.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -20,27 +31,101 @@ import java.util.concurrent.TimeUnit;
  * @author zhanshuchan
  * @version 1.0
  * @description 剪贴板监控器，定期检查剪贴板内容变化
+ * 捕获到的内容依次经过 指纹 -> 去重 -> 存储 -> 通知 各阶段，每个阶段有独立的有界队列和线程，
+ * 图片编码再慢也不会阻塞下一次轮询和文本捕获。
+ * 在X11上同时监控PRIMARY选择区（选中的文本），两个来源由同一个轮询线程读取并经过同一条去重路径，
+ * 选择区内容稳定一段时间后才提交，同一次拖动选择产生的连续变化合并为一条记录
  * @date 12/4/25 20:07
  */
 public class ClipboardMonitor {
+    private static final Logger LOG = LogManager.getLogger(ClipboardMonitor.class);
+    public static final String STAGE_FINGERPRINT = "fingerprint";
+    public static final String STAGE_DEDUP = "dedup";
+    public static final String STAGE_STORE = "store";
+    public static final String STAGE_NOTIFY = "notify";
+    // 默认轮询间隔
+    private static final long DEFAULT_POLL_MILLIS = 500;
+    // 默认的选择区防抖时间：内容保持不变达到该时间后才提交
+    private static final long DEFAULT_SELECTION_DEBOUNCE_MILLIS = 500;
+    // 提交后该时间内的新选择与上一次选择起点或终点相同（一个是另一个的前缀或后缀）时，
+    // 视为同一次选择的调整，替换上一条记录
+    private static final long SELECTION_COALESCE_MILLIS = 5000;
+
     private final ClipboardHistory history;
     private final Clipboard clipboard;
-    // 上次检测到的内容
-    private Object lastContent;
-    // 上次内容的类型
-    private ContentTypeEnum lastContentType;
-    // 上次内容的时间戳
-    private long lastContentTimestamp;
+    // X11 PRIMARY选择区，不支持的平台上为null
+    private final Clipboard selection;
+    // 最近提交的内容（不分来源），复制刚选中的文本时不重复添加
+    private final LastContent lastContent = new LastContent();
+    // 各来源最近提交的内容，来源内容未变化时不重复添加
+    private final LastContent lastClipboardContent = new LastContent();
+    private final LastContent lastSelectionContent = new LastContent();
+    private volatile boolean selectionEnabled;
+    private volatile long selectionDebounceMillis = DEFAULT_SELECTION_DEBOUNCE_MILLIS;
+    private long pollMillis = DEFAULT_POLL_MILLIS;
+    // 轮询时先计算文本指纹，指纹变化后才读取完整文本，只在轮询线程中访问
+    private final TextFingerprinter fingerprinter = new TextFingerprinter();
+    private boolean hasClipboardFingerprint;
+    private long clipboardFingerprint;
+    // 最近一次看到的从历史记录复制回去的内容，只在轮询线程中访问
+    private Transferable lastCopyBack;
+    // 已提交到去重阶段、只用于更新上次内容的复制回去的项目，访问时对this加锁
+    private final Set<ClipboardItem> copyBackItems = Collections.newSetFromMap(new IdentityHashMap<>());
+    // 选择区防抖状态，只在轮询线程中访问
+    private boolean hasPendingSelection;
+    private long pendingSelectionFingerprint;
+    private long pendingSelectionSince;
+    private boolean hasCommittedSelection;
+    private long committedSelectionFingerprint;
+    // 最近写入历史记录的选择区项目，只在存储线程中访问
+    private ClipboardItem lastSelectionItem;
+    // 最近交给存储阶段的选择区项目，只在去重阶段访问
+    private ClipboardItem lastForwardedSelection;
+    // 内容又从剪贴板复制过的选择区项目，它是用户明确复制的内容，不会被之后的选择替换
+    private volatile ClipboardItem copiedSelectionItem;
     
     // 剪贴板更新监听器
-    private ClipboardUpdateListener updateListener;
+    private volatile ClipboardUpdateListener updateListener;
+
+    // 图片编码并计算指纹，慢任务，队列满时丢弃最早的图片
+    private final PipelineStage<Image> fingerprintStage;
+    // 与上次内容比较去重，单线程保证顺序。轮询线程用offer提交，队列满时下次轮询重新读取，
+    // 不会被阻塞；指纹阶段用submit提交，队列满时阻塞，把背压传回指纹阶段
+    private final PipelineStage<ClipboardItem> dedupStage;
+    // 写入历史记录，单线程保证顺序，队列满时阻塞去重阶段
+    private final PipelineStage<ClipboardItem> storeStage;
+    // 通知界面刷新，已有待发送的通知时合并
+    private final PipelineStage<ClipboardItem> notifyStage;
+    // 大图片分带编码，限制编码过程中的额外内存
+    private volatile BandedImageEncoder largeImageEncoder = new BandedImageEncoder();
+    // 敏感内容排除过滤器，为null时不过滤
+    private volatile ExclusionFilter exclusionFilter = ExclusionFilter.compile(ExclusionRule.defaults());
+    // 上次检查过的文本及其结果，剪贴板内容不变时不重复检查
+    private String lastCheckedText;
+    private boolean lastCheckedExcluded;
     
     public ClipboardMonitor(ClipboardHistory history) {
+        this(history, Toolkit.getDefaultToolkit().getSystemClipboard(), Toolkit.getDefaultToolkit().getSystemSelection());
+    }
+
+    /**
+     * 监控指定的剪贴板，用于无界面环境下的测试和模拟
+     *
+     * @param history   历史记录管理器
+     * @param clipboard 剪贴板
+     * @param selection 选择区，为null时不监控
+     */
+    public ClipboardMonitor(ClipboardHistory history, Clipboard clipboard, Clipboard selection) {
         this.history = history;
-        this.clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-        this.lastContent = null;
-        this.lastContentType = null;
-        this.lastContentTimestamp = 0;
+        this.clipboard = clipboard;
+        this.selection = selection;
+        this.selectionEnabled = selection != null;
+        this.fingerprintStage = new PipelineStage<>(STAGE_FINGERPRINT, 4, 1, OverflowPolicyEnum.DROP_OLDEST,
+                this::fingerprint);
+        // 去重和存储阶段的状态（上次内容、选择区合并）只能在单线程中按顺序访问
+        this.dedupStage = new PipelineStage<>(STAGE_DEDUP, 64, 1, 1, OverflowPolicyEnum.BLOCK, this::dedup);
+        this.storeStage = new PipelineStage<>(STAGE_STORE, 64, 1, 1, OverflowPolicyEnum.BLOCK, this::store);
+        this.notifyStage = new PipelineStage<>(STAGE_NOTIFY, 1, 1, OverflowPolicyEnum.DROP_NEWEST, this::notifyUpdated);
     }
     
     /**
@@ -52,12 +137,97 @@ public class ClipboardMonitor {
     
     private ScheduledExecutorService scheduler;
     
+    /**
+     * 设置敏感内容排除过滤器，命中的文本不会进入历史记录。默认使用内置规则
+     *
+     * @param exclusionFilter 过滤器，为null时不过滤
+     */
+    public void setExclusionFilter(ExclusionFilter exclusionFilter) {
+        this.exclusionFilter = exclusionFilter;
+        this.lastCheckedText = null;
+    }
+
+    /**
+     * 启用或关闭选择区监控，平台支持选择区时默认启用
+     *
+     * @param enabled 是否启用
+     */
+    public void setSelectionEnabled(boolean enabled) {
+        this.selectionEnabled = enabled && selection != null;
+    }
+
+    /**
+     * 选择区监控是否启用
+     */
+    public boolean isSelectionEnabled() {
+        return selectionEnabled;
+    }
+
+    /**
+     * 设置选择区防抖时间，拖动选择时内容不断变化，保持不变达到该时间后才提交
+     *
+     * @param debounceMillis 防抖时间（毫秒）
+     */
+    public void setSelectionDebounceMillis(long debounceMillis) {
+        this.selectionDebounceMillis = debounceMillis;
+    }
+
+    /**
+     * 设置轮询间隔，需要在start之前调用
+     *
+     * @param pollMillis 轮询间隔（毫秒）
+     */
+    public void setPollMillis(long pollMillis) {
+        if (pollMillis <= 0) {
+            throw new IllegalArgumentException("pollMillis必须大于0");
+        }
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * 设置大图片编码时允许使用的额外内存上限，整图转换超过该上限的图片按扫描行带分段编码
+     *
+     * @param maxBufferBytes 额外内存上限（字节）
+     */
+    public void setLargeImageBufferBytes(long maxBufferBytes) {
+        this.largeImageEncoder = new BandedImageEncoder(maxBufferBytes);
+    }
+
+    /**
+     * 获取流水线各阶段，可在启动前调整队列容量、线程数和溢出策略；去重和存储阶段只能使用一个线程
+     */
+    public List<PipelineStage<?>> getStages() {
+        return Collections.unmodifiableList(Arrays.asList(fingerprintStage, dedupStage, storeStage, notifyStage));
+    }
+
+    /**
+     * 获取流水线各阶段的运行指标
+     */
+    public List<StageMetrics> getStageMetrics() {
+        List<StageMetrics> metrics = new ArrayList<>();
+        for (PipelineStage<?> stage : this.getStages()) {
+            metrics.add(stage.getMetrics());
+        }
+        return metrics;
+    }
+
     /**
      * 开始监控剪贴板
      */
     public void start() {
+        // 从下游到上游依次启动，保证提交时下游已就绪
+        notifyStage.start();
+        storeStage.start();
+        dedupStage.start();
+        fingerprintStage.start();
         scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(this::checkClipboard, 0, 500, TimeUnit.MILLISECONDS);
+        // 剪贴板和选择区在同一个轮询线程中读取
+        scheduler.scheduleAtFixedRate(() -> {
+            this.checkClipboard();
+            if (selectionEnabled) {
+                this.checkSelection();
+            }
+        }, 0, pollMillis, TimeUnit.MILLISECONDS);
     }
     
     /**
@@ -67,10 +237,14 @@ public class ClipboardMonitor {
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdown();
         }
+        fingerprintStage.stop();
+        dedupStage.stop();
+        storeStage.stop();
+        notifyStage.stop();
     }
     
     /**
-     * 检查剪贴板内容是否有变化
+     * 检查剪贴板内容是否有变化，只在轮询线程中读取剪贴板，其余处理交给流水线
      */
     private void checkClipboard() {
         try {
@@ -78,138 +252,227 @@ public class ClipboardMonitor {
             if (contents == null) {
                 return;
             }
+            // 从历史记录复制回去的内容已经由复制方移到开头，不需要读取和重新编码，
+            // 但要把它记为剪贴板的上次内容，之后再复制回原来的内容时不会被当成未变化
+            if (contents instanceof HistoryTransferable) {
+                if (contents != lastCopyBack) {
+                    lastCopyBack = contents;
+                    hasClipboardFingerprint = false;
+                    ClipboardItem item = ((HistoryTransferable) contents).getItem();
+                    synchronized (this) {
+                        copyBackItems.add(item);
+                    }
+                    // 经过去重阶段更新，与之前提交的内容保持先后顺序；队列已满时下次轮询重试
+                    if (!dedupStage.offer(item)) {
+                        synchronized (this) {
+                            copyBackItems.remove(item);
+                        }
+                        lastCopyBack = null;
+                    }
+                }
+                return;
+            }
+            lastCopyBack = null;
             
-            // 处理不同类型的内容
-            ClipboardItem item = this.processContent(contents);
-            if (item != null) {
-                // 检查是否与上次内容相同
-                if (isDuplicate(item)) {
+            // 先计算文本指纹，内容未变化时不构造剪贴板项，也不进入去重及之后的阶段；
+            // 读取剪贴板数据的开销仍然存在，只在内容变化后才处理完整文本
+            if (contents.isDataFlavorSupported(DataFlavor.stringFlavor)) {
+                long fingerprint = fingerprinter.fingerprint(contents);
+                if (hasClipboardFingerprint && fingerprint == clipboardFingerprint) {
                     return;
                 }
-                
-                System.out.println("添加新项目到历史记录: " + item.getTextPreview());
-                history.addItem(item);
-                // 更新上次内容的引用和时间戳
-                this.updateLastContent(item);
-                
-                // 通知监听器剪贴板已更新
-                if (updateListener != null) {
-                    updateListener.onClipboardUpdated();
+                String text = (String) contents.getTransferData(DataFlavor.stringFlavor);
+                hasClipboardFingerprint = true;
+                clipboardFingerprint = fingerprint;
+                ClipboardItem item = this.processText(text, ClipboardSourceEnum.CLIPBOARD);
+                if (item != null && !dedupStage.offer(item)) {
+                    // 队列已满，下次轮询重新读取
+                    hasClipboardFingerprint = false;
                 }
+                return;
+            }
+
+            // 剪贴板换成图片后，之后复制回相同的文本需要重新读取，由去重阶段判断
+            hasClipboardFingerprint = false;
+            // 上一张图片的指纹还未算完时跳过本次读取，避免同一张图片反复排队
+            if (contents.isDataFlavorSupported(DataFlavor.imageFlavor) && fingerprintStage.getBacklog() == 0) {
+                Image image = (Image) contents.getTransferData(DataFlavor.imageFlavor);
+                fingerprintStage.submit(image);
             }
         } catch (Exception e) {
-            System.err.println("监控剪贴板时发生错误: " + e.getMessage());
-            // 打印详细错误信息
-            e.printStackTrace();
+            LOG.error("监控剪贴板时发生错误", e);
             // 忽略监控过程中的异常
         }
     }
-    
+
     /**
-     * 更新上次内容记录
+     * 检查选择区内容，只处理文本。拖动选择时内容每次轮询都不同，
+     * 连续两次读取到相同指纹且保持了防抖时间后才读取完整文本，提交到去重阶段
      */
-    private void updateLastContent(ClipboardItem item) {
-        lastContent = item.getContent();
-        lastContentType = item.getContentType();
-        lastContentTimestamp = System.currentTimeMillis();
+    private void checkSelection() {
+        try {
+            Transferable contents = selection.getContents(null);
+            if (contents == null || !contents.isDataFlavorSupported(DataFlavor.stringFlavor)) {
+                hasPendingSelection = false;
+                return;
+            }
+            long fingerprint = fingerprinter.fingerprint(contents);
+            long now = System.currentTimeMillis();
+            if (!hasPendingSelection || fingerprint != pendingSelectionFingerprint) {
+                hasPendingSelection = true;
+                pendingSelectionFingerprint = fingerprint;
+                pendingSelectionSince = now;
+                return;
+            }
+            if ((hasCommittedSelection && fingerprint == committedSelectionFingerprint)
+                    || now - pendingSelectionSince < selectionDebounceMillis) {
+                return;
+            }
+            String text = (String) contents.getTransferData(DataFlavor.stringFlavor);
+            hasCommittedSelection = true;
+            committedSelectionFingerprint = fingerprint;
+            ClipboardItem item = this.processText(text, ClipboardSourceEnum.SELECTION);
+            if (item != null && !dedupStage.offer(item)) {
+                // 队列已满，防抖时间已满足，下次轮询重新提交
+                hasCommittedSelection = false;
+            }
+        } catch (Exception e) {
+            // 选择区的所有者可能在读取过程中改变，下次轮询重试
+            LOG.warn("读取选择区时发生错误: {}", e.getMessage());
+        }
     }
-    
+
     /**
-     * 判断是否为重复内容
+     * 指纹阶段：PNG编码只进行一次，同时得到图片指纹，后续由图片存储共享
+     * 大图片分带编码，不复制整张图片
      */
-    private boolean isDuplicate(ClipboardItem currentItem) {
-        // 检查内容是否为空
-        if (lastContent == null || lastContentType == null) {
-            return false;
+    private void fingerprint(Image image) throws Exception {
+        BandedImageEncoder encoder = largeImageEncoder;
+        ImageHandle handle = encoder.isLarge(image) ? encoder.encode(image) : ImageHandle.fromImage(image);
+        // 感知哈希在捕获时计算，历史记录查找相似图片时直接使用
+        handle.getPerceptualHash();
+        dedupStage.submit(new ClipboardItem(handle.getContentMd5(), handle, ContentTypeEnum.IMAGE));
+    }
+
+    /**
+     * 去重阶段：与同一来源的上次内容相同（来源未变化），或与最近提交的内容相同（如复制刚选中的文本）时丢弃。
+     * 从历史记录复制回去的项目只更新上次内容，不再写入历史记录
+     */
+    private void dedup(ClipboardItem item) {
+        LastContent sourceContent = item.getSource() == ClipboardSourceEnum.SELECTION
+                ? lastSelectionContent : lastClipboardContent;
+        synchronized (this) {
+            if (copyBackItems.remove(item)) {
+                lastClipboardContent.update(item);
+                lastContent.update(item);
+                return;
+            }
+            if (item.getSource() == ClipboardSourceEnum.CLIPBOARD && lastForwardedSelection != null
+                    && lastForwardedSelection.getContentType() == item.getContentType()
+                    && lastForwardedSelection.getContent().equals(item.getContent())) {
+                // 去重阶段按顺序处理，之后的选择到达存储阶段时已经能看到这个标记
+                copiedSelectionItem = lastForwardedSelection;
+            }
+            boolean duplicate = sourceContent.matches(item) || lastContent.matches(item);
+            // 更新上次内容的引用和时间戳
+            sourceContent.update(item);
+            if (duplicate) {
+                return;
+            }
+            lastContent.update(item);
         }
-        
-        // 检查内容类型是否相同
-        if (currentItem.getContentType() != lastContentType) {
-            return false;
+        if (item.getSource() == ClipboardSourceEnum.SELECTION) {
+            lastForwardedSelection = item;
         }
+        storeStage.submit(item);
+    }
 
-        // 对于文本和URL，精确比较内容
-        if (currentItem.getContentType() == ContentTypeEnum.TEXT ||
-                currentItem.getContentType() == ContentTypeEnum.URL) {
-            return currentItem.getContent().equals(lastContent);
+    /**
+     * 存储阶段：写入历史记录，与上一条选择区记录属于同一次选择时替换它
+     */
+    private void store(ClipboardItem item) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("添加新项目到历史记录: {}", item.getTextPreview());
         }
+        if (item.getSource() == ClipboardSourceEnum.SELECTION) {
+            if (lastSelectionItem != copiedSelectionItem && this.isSameSelection(lastSelectionItem, item)) {
+                history.remove(lastSelectionItem);
+            }
+            lastSelectionItem = item;
+        }
+        history.addItem(item);
+        notifyStage.submit(item);
+    }
 
-        // 对于图片，在短时间内认为是相同的
-        return currentItem.getContentType() == ContentTypeEnum.IMAGE;
+    /**
+     * 判断新的选择是否是对上一次选择的调整：保持起点或终点不变，扩大或缩小选择范围。
+     * 只是包含在上一次选择中间的文本（如在已选中的段落中再选一个词）是新的选择
+     */
+    private boolean isSameSelection(ClipboardItem previous, ClipboardItem item) {
+        if (previous == null || item.getTimestamp().isAfter(
+                previous.getTimestamp().plusNanos(TimeUnit.MILLISECONDS.toNanos(SELECTION_COALESCE_MILLIS)))) {
+            return false;
+        }
+        String previousText = (String) previous.getContent();
+        String text = (String) item.getContent();
+        return text.startsWith(previousText) || previousText.startsWith(text)
+                || text.endsWith(previousText) || previousText.endsWith(text);
+    }
+
+    /**
+     * 通知阶段：通知监听器剪贴板已更新
+     */
+    private void notifyUpdated(ClipboardItem item) {
+        ClipboardUpdateListener listener = updateListener;
+        if (listener != null) {
+            listener.onClipboardUpdated();
+        }
     }
     
     /**
-     * 处理剪贴板内容并创建相应的ClipboardItem
+     * 处理剪贴板或选择区中的文本并创建相应的ClipboardItem
      */
-    private ClipboardItem processContent(Transferable contents) throws Exception {
-        // 检查是否为文本
-        if (contents.isDataFlavorSupported(DataFlavor.stringFlavor)) {
-            String text = (String) contents.getTransferData(DataFlavor.stringFlavor);
-            
-            // 检查是否为空或纯空白字符
-            if (text.trim().isEmpty()) {
-                return null;
-            }
-            
-            // 检查是否为URL
-            if (isUrl(text)) {
-                return new ClipboardItem(null, text, ContentTypeEnum.URL);
-            }
-            
-            // 普通文本
-            return new ClipboardItem(null, text, ContentTypeEnum.TEXT);
+    private ClipboardItem processText(String text, ClipboardSourceEnum source) {
+        // 检查是否为空或纯空白字符
+        if (text.trim().isEmpty()) {
+            return null;
         }
-        
-        // 检查是否为图片
-        if (contents.isDataFlavorSupported(DataFlavor.imageFlavor)) {
-            Image image = (Image) contents.getTransferData(DataFlavor.imageFlavor);
-            String contentMd5 = this.calculateImageMD5(image);
-            return new ClipboardItem(contentMd5, image, ContentTypeEnum.IMAGE);
+
+        // 排除密码、令牌等敏感内容，在创建剪贴板项之前进行
+        if (this.isExcluded(text)) {
+            return null;
         }
-        
-        return null;
+
+        // 检查是否为URL
+        if (isUrl(text)) {
+            return new ClipboardItem(null, text, ContentTypeEnum.URL, source);
+        }
+
+        // 普通文本
+        return new ClipboardItem(null, text, ContentTypeEnum.TEXT, source);
     }
     
     /**
-     * 计算图片的MD5值
-     * @param image 图片对象
-     * @return 图片的MD5值
+     * 检查文本是否命中排除规则，只在轮询线程中调用
      */
-    private String calculateImageMD5(Image image) {
-        try {
-            // 将Image转换为BufferedImage
-            BufferedImage bufferedImage = new BufferedImage(
-                image.getWidth(null), 
-                image.getHeight(null), 
-                BufferedImage.TYPE_INT_RGB
-            );
-            java.awt.Graphics2D g = bufferedImage.createGraphics();
-            g.drawImage(image, 0, 0, null);
-            g.dispose();
-            
-            // 将图片写入字节数组
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(bufferedImage, "png", baos);
-            byte[] imageBytes = baos.toByteArray();
-            
-            // 计算MD5
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            md.update(imageBytes);
-            byte[] digest = md.digest();
-            
-            // 转换为十六进制字符串
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b & 0xff));
-            }
-            
-            return sb.toString();
-        } catch (NoSuchAlgorithmException | IOException e) {
-            System.err.println("计算图片MD5时出错: " + e.getMessage());
-            return "";
+    private boolean isExcluded(String text) {
+        ExclusionFilter filter = exclusionFilter;
+        if (filter == null) {
+            return false;
+        }
+        if (text.equals(lastCheckedText)) {
+            return lastCheckedExcluded;
         }
+        ExclusionRule rule = filter.match(text);
+        lastCheckedText = text;
+        lastCheckedExcluded = rule != null;
+        if (rule != null) {
+            // 不输出内容本身
+            LOG.info("剪贴板内容命中排除规则，未保存: {}", rule.getName());
+        }
+        return lastCheckedExcluded;
     }
-    
+
     /**
      * 判断字符串是否为有效的URL
      */
@@ -231,4 +494,34 @@ public class ClipboardMonitor {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 最近一次提交的内容，图片只记录指纹，避免长期持有解码后的图片
+     */
+    private static final class LastContent {
+        // 上次检测到的内容
+        private Object content;
+        // 上次内容的类型
+        private ContentTypeEnum contentType;
+        // 上次内容的时间戳
+        private long timestamp;
+
+        void update(ClipboardItem item) {
+            content = item.getContentType() == ContentTypeEnum.IMAGE ? item.getContentMd5() : item.getContent();
+            contentType = item.getContentType();
+            timestamp = System.currentTimeMillis();
+        }
+
+        boolean matches(ClipboardItem item) {
+            // 检查内容是否为空，类型是否相同
+            if (content == null || item.getContentType() != contentType) {
+                return false;
+            }
+            // 对于文本和URL，精确比较内容；对于图片，比较图片指纹
+            if (contentType == ContentTypeEnum.IMAGE) {
+                return content.equals(item.getContentMd5());
+            }
+            return content.equals(item.getContent());
+        }
+    }
+}
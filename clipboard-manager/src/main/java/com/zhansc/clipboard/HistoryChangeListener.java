@@ -0,0 +1,46 @@
+package com.zhansc.clipboard;
+
+import java.util.List;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录变更监听器接口，用于持久化、索引等需要与历史记录保持同步的组件
+ * @date 10/19/26 10:20
+ */
+public interface HistoryChangeListener {
+    /**
+     * 新项目被添加到历史记录开头时调用（包括重复内容移到开头的情况）
+     *
+     * @param item 新添加的项目
+     */
+    void onItemAdded(ClipboardItem item);
+
+    /**
+     * 项目从历史记录中移除时调用（去重、超出容量淘汰等）
+     *
+     * @param item 被移除的项目
+     */
+    void onItemRemoved(ClipboardItem item);
+
+    /**
+     * 历史记录被清空时调用
+     */
+    void onHistoryCleared();
+
+    /**
+     * 批量添加完成后调用一次，需要按批次更新的监听器（如索引）可以覆盖此方法
+     * 默认实现逐个转发给onItemRemoved和onItemAdded
+     *
+     * @param added   新添加的项目，按排序版本从旧到新的顺序
+     * @param removed 因去重或超出容量被移除的原有项目
+     */
+    default void onItemsAdded(List<ClipboardItem> added, List<ClipboardItem> removed) {
+        for (ClipboardItem item : removed) {
+            this.onItemRemoved(item);
+        }
+        for (ClipboardItem item : added) {
+            this.onItemAdded(item);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.zhansc.clipboard;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录的过滤查询条件：内容类型、复制时间范围和关键字，各条件之间为"且"的关系，
+ * 未设置的条件不限制。由ClipboardHistory.query执行，结果按复制时间从新到旧排列
+ * @date 10/21/26 16:20
+ */
+public class HistoryQuery {
+    // 内容类型，为空表示不限制
+    private final Set<ContentTypeEnum> contentTypes = EnumSet.noneOf(ContentTypeEnum.class);
+    // 复制时间范围（毫秒时间戳，含两端）
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private String keyword;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * 设置内容类型，不传参数表示不限制
+     *
+     * @param types 内容类型
+     */
+    public void setContentTypes(ContentTypeEnum... types) {
+        contentTypes.clear();
+        Collections.addAll(contentTypes, types);
+    }
+
+    /**
+     * 设置复制时间范围
+     *
+     * @param from 起始时间（含），为null表示不限制
+     * @param to   结束时间（含），为null表示不限制
+     */
+    public void setTimeRange(LocalDateTime from, LocalDateTime to) {
+        this.fromMillis = from == null ? Long.MIN_VALUE : from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.toMillis = to == null ? Long.MAX_VALUE : to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 只查询最近一段时间内复制的项目
+     *
+     * @param duration 时长
+     * @param unit     时间单位
+     */
+    public void setWithin(long duration, TimeUnit unit) {
+        this.fromMillis = System.currentTimeMillis() - unit.toMillis(duration);
+        this.toMillis = Long.MAX_VALUE;
+    }
+
+    /**
+     * 设置关键字，只匹配文本和链接，为空表示不限制
+     *
+     * @param keyword 关键字
+     */
+    public void setKeyword(String keyword) {
+        this.keyword = keyword;
+    }
+
+    /**
+     * 设置最大条数
+     *
+     * @param limit 最大条数
+     */
+    public void setLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit不能为负数");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * 查询的内容类型，关键字不为空时排除图片
+     */
+    Set<ContentTypeEnum> getContentTypes() {
+        Set<ContentTypeEnum> types = contentTypes.isEmpty() ? EnumSet.allOf(ContentTypeEnum.class) : EnumSet.copyOf(contentTypes);
+        if (this.hasKeyword()) {
+            types.remove(ContentTypeEnum.IMAGE);
+        }
+        return types;
+    }
+
+    long getFromMillis() {
+        return fromMillis;
+    }
+
+    long getToMillis() {
+        return toMillis;
+    }
+
+    String getKeyword() {
+        return keyword;
+    }
+
+    boolean hasKeyword() {
+        return keyword != null && !keyword.trim().isEmpty();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 是否设置了类型或时间条件
+     */
+    public boolean isFiltered() {
+        return !contentTypes.isEmpty() || fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+    }
+}
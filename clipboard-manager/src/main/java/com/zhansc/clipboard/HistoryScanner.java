@@ -0,0 +1,213 @@
+package com.zhansc.clipboard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史快照的并行扫描，用于正则、模糊匹配等无法借助索引、只能逐项比较的查询。
+ * 快照按固定大小分块，在独立的ForkJoinPool上分治扫描，靠前（较新）的块先执行；
+ * 当已完成的连续前缀块中的匹配项达到所需条数时，后面的块不再扫描。
+ * 结果按块的顺序合并，与顺序扫描一样按复制时间从新到旧排列。快照较小时直接顺序扫描，不承担分叉的开销
+ * @date 10/21/26 19:20
+ */
+public final class HistoryScanner {
+    // 叶子任务每扫描这么多项检查一次是否已经可以停止
+    private static final int CHECK_INTERVAL = 64;
+    private final int parallelism;
+    // 快照项目数小于该值时顺序扫描
+    private final int threshold;
+    private final int chunkSize;
+    // 第一次并行扫描时创建
+    private volatile ForkJoinPool pool;
+
+    public HistoryScanner() {
+        this(Runtime.getRuntime().availableProcessors(), 4096, 1024);
+    }
+
+    /**
+     * @param parallelism 并行度，小于等于1时总是顺序扫描
+     * @param threshold   使用并行扫描的最少项目数
+     * @param chunkSize   每个分块的项目数
+     */
+    public HistoryScanner(int parallelism, int threshold, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize必须大于0");
+        }
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 扫描快照，返回前limit个满足条件的项目
+     *
+     * @param snapshot 历史快照
+     * @param matcher  匹配条件，会在多个线程中同时调用
+     * @param limit    最大条数
+     * @return 按快照顺序（从新到旧）排列的匹配项
+     */
+    public List<ClipboardItem> scan(HistorySnapshot snapshot, Predicate<ClipboardItem> matcher, int limit) {
+        if (limit <= 0 || snapshot.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (parallelism <= 1 || snapshot.size() < threshold) {
+            return scanRange(snapshot, matcher, 0, snapshot.size(), limit);
+        }
+        Scan scan = new Scan(snapshot, matcher, limit, chunkSize);
+        this.pool().invoke(new ScanTask(scan, 0, scan.found.size()));
+        return scan.merge();
+    }
+
+    private static List<ClipboardItem> scanRange(HistorySnapshot snapshot, Predicate<ClipboardItem> matcher,
+                                                 int from, int to, int limit) {
+        List<ClipboardItem> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ClipboardItem item = snapshot.get(i);
+            if (matcher.test(item)) {
+                result.add(item);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private ForkJoinPool pool() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                if (pool == null) {
+                    // 不使用公共池：单核机器上公共池没有工作线程，也避免与其他并行流互相占用
+                    pool = new ForkJoinPool(parallelism, p -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("clipboard-scan-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+                }
+                current = pool;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 一次并行扫描的共享状态
+     */
+    private static final class Scan {
+        final HistorySnapshot snapshot;
+        final Predicate<ClipboardItem> matcher;
+        final int limit;
+        final int chunkSize;
+        // 每个分块的匹配项
+        final List<List<ClipboardItem>> found;
+        // 连续完成的前缀块数，以及这些块中的匹配项数
+        private int donePrefix;
+        private int prefixMatches;
+        // 该位置及之后的项目不需要再扫描
+        volatile int bound;
+
+        Scan(HistorySnapshot snapshot, Predicate<ClipboardItem> matcher, int limit, int chunkSize) {
+            this.snapshot = snapshot;
+            this.matcher = matcher;
+            this.limit = limit;
+            this.chunkSize = chunkSize;
+            this.found = new ArrayList<>(Collections.nCopies((snapshot.size() + chunkSize - 1) / chunkSize,
+                    (List<ClipboardItem>) null));
+            this.bound = snapshot.size();
+        }
+
+        synchronized void lowerBound(int position) {
+            if (position < bound) {
+                bound = position;
+            }
+        }
+
+        /**
+         * 记录一个分块的结果，前缀块中的匹配项已够时收紧扫描范围
+         */
+        synchronized void complete(int chunk, List<ClipboardItem> items) {
+            found.set(chunk, items);
+            while (donePrefix < found.size() && found.get(donePrefix) != null && prefixMatches < limit) {
+                prefixMatches += found.get(donePrefix).size();
+                donePrefix++;
+                if (prefixMatches >= limit) {
+                    this.lowerBound(donePrefix * chunkSize);
+                }
+            }
+        }
+
+        List<ClipboardItem> merge() {
+            List<ClipboardItem> result = new ArrayList<>();
+            for (List<ClipboardItem> items : found) {
+                if (items == null) {
+                    // 该块在前面的块找够结果之后才开始，整块被跳过
+                    break;
+                }
+                for (ClipboardItem item : items) {
+                    result.add(item);
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 扫描[fromChunk, toChunk)范围内的分块，多于一块时对半拆分
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int fromChunk;
+        private final int toChunk;
+
+        ScanTask(Scan scan, int fromChunk, int toChunk) {
+            this.scan = scan;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (fromChunk * scan.chunkSize >= scan.bound) {
+                return;
+            }
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                // invokeAll在当前线程执行前一半，较新的块优先
+                invokeAll(new ScanTask(scan, fromChunk, middle), new ScanTask(scan, middle, toChunk));
+                return;
+            }
+            int from = fromChunk * scan.chunkSize;
+            int to = Math.min(from + scan.chunkSize, scan.snapshot.size());
+            List<ClipboardItem> items = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                if ((i - from) % CHECK_INTERVAL == 0 && i >= scan.bound) {
+                    break;
+                }
+                ClipboardItem item = scan.snapshot.get(i);
+                if (scan.matcher.test(item)) {
+                    items.add(item);
+                    if (items.size() == scan.limit) {
+                        // 本块已经找够，之后的项目都不需要
+                        scan.lowerBound(i + 1);
+                        break;
+                    }
+                }
+            }
+            scan.complete(fromChunk, items.isEmpty() ? Collections.emptyList() : items);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.zhansc.clipboard;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录的不可变快照（按时间倒序），同一版本的快照在多次读取之间共享，
+ * 分页、按类型遍历都是快照上的轻量视图，不复制历史记录
+ * @date 10/20/26 09:10
+ */
+public final class HistorySnapshot {
+    private final long version;
+    private final ClipboardItem[] items;
+
+    HistorySnapshot(long version, ClipboardItem[] items) {
+        this.version = version;
+        this.items = items;
+    }
+
+    /**
+     * 快照对应的历史记录版本，历史记录每次变化版本都会增加
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    public ClipboardItem get(int index) {
+        return items[index];
+    }
+
+    /**
+     * 整个快照的只读列表视图
+     */
+    public List<ClipboardItem> asList() {
+        return new ItemView(0, items.length);
+    }
+
+    /**
+     * 获取一页数据
+     *
+     * @param offset 起始位置
+     * @param limit  最大条数
+     * @return 分页游标
+     */
+    public HistoryPage page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset和limit不能为负数");
+        }
+        return new HistoryPage(offset, limit);
+    }
+
+    /**
+     * 按内容类型遍历
+     *
+     * @param contentType 内容类型
+     * @return 只返回该类型项目的迭代器
+     */
+    public Iterator<ClipboardItem> iterator(ContentTypeEnum contentType) {
+        return new Iterator<ClipboardItem>() {
+            private int next = this.advance(0);
+
+            private int advance(int from) {
+                while (from < items.length && items[from].getContentType() != contentType) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < items.length;
+            }
+
+            @Override
+            public ClipboardItem next() {
+                if (next >= items.length) {
+                    throw new NoSuchElementException();
+                }
+                ClipboardItem item = items[next];
+                next = this.advance(next + 1);
+                return item;
+            }
+        };
+    }
+
+    /**
+     * 按内容类型遍历，可直接用于for-each
+     */
+    public Iterable<ClipboardItem> ofType(ContentTypeEnum contentType) {
+        return () -> this.iterator(contentType);
+    }
+
+    /**
+     * 快照上的分页游标
+     */
+    public final class HistoryPage {
+        private final int offset;
+        private final int limit;
+
+        private HistoryPage(int offset, int limit) {
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * 历史记录总条数
+         */
+        public int getTotal() {
+            return items.length;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * 本页的项目（只读视图）
+         */
+        public List<ClipboardItem> getItems() {
+            int from = Math.min(offset, items.length);
+            return new ItemView(from, Math.min(items.length, from + limit));
+        }
+
+        public boolean hasNext() {
+            return offset + limit < items.length;
+        }
+
+        /**
+         * 同一快照上的下一页
+         */
+        public HistoryPage next() {
+            return new HistoryPage(offset + limit, limit);
+        }
+    }
+
+    /**
+     * 数组区间上的只读列表视图
+     */
+    private final class ItemView extends AbstractList<ClipboardItem> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        ItemView(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public ClipboardItem get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return items[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.zhansc.clipboard;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.store.ImageHandle;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 把历史记录中的项目放回剪贴板的传输类，界面和后台服务共用。
+ * 创建时只声明支持的格式，接收方真正请求数据时才在后台线程中重建文本或解码图片，结果缓存供后续请求使用；
+ * 图片同时以PNG数据流的形式提供，请求该格式时直接读取已编码的数据，不需要解码
+ * @date 10/21/26 09:30
+ */
+public class HistoryTransferable implements Transferable {
+    // PNG数据流格式
+    public static final DataFlavor PNG_FLAVOR = new DataFlavor("image/png; class=java.io.InputStream", "PNG Image");
+    // 重建文本、解码图片的后台线程，所有实例共用
+    private static final ExecutorService MATERIALIZER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "clipboard-materialize");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ClipboardItem item;
+    private final DataFlavor[] flavors;
+    // 内容重建任务，第一次请求数据时提交
+    private Future<Object> content;
+
+    public HistoryTransferable(ClipboardItem item) {
+        this.item = item;
+        this.flavors = item.getContentType() == ContentTypeEnum.IMAGE
+                ? new DataFlavor[]{DataFlavor.imageFlavor, PNG_FLAVOR}
+                : new DataFlavor[]{DataFlavor.stringFlavor};
+    }
+
+    /**
+     * 获取对应的历史记录项目
+     */
+    public ClipboardItem getItem() {
+        return item;
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return flavors.clone();
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        for (DataFlavor supported : flavors) {
+            if (supported.equals(flavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        if (!this.isDataFlavorSupported(flavor)) {
+            throw new UnsupportedFlavorException(flavor);
+        }
+        if (PNG_FLAVOR.equals(flavor)) {
+            return this.openPng();
+        }
+        return this.materialize();
+    }
+
+    private InputStream openPng() throws IOException {
+        ImageHandle handle = item.getImageHandle();
+        if (handle == null) {
+            throw new IOException("图片数据不可用");
+        }
+        return new ByteArrayInputStream(handle.getEncoded());
+    }
+
+    /**
+     * 在后台线程中重建内容并等待结果，多次请求只重建一次
+     */
+    private Object materialize() throws IOException {
+        Future<Object> future;
+        synchronized (this) {
+            if (content == null) {
+                content = MATERIALIZER.submit((Callable<Object>) item::getContent);
+            }
+            future = content;
+        }
+        try {
+            Object value = future.get();
+            if (value == null) {
+                throw new IOException("内容不可用");
+            }
+            return value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待内容时被中断");
+        } catch (ExecutionException e) {
+            throw new IOException("读取内容失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.zhansc.clipboard.daemon;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.ClipboardMonitor;
+import com.zhansc.clipboard.HistoryTransferable;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.store.HistoryKeyStore;
+import com.zhansc.clipboard.store.PersistentHistoryStore;
+
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 无界面的后台服务：监控剪贴板、持久化历史记录，并通过本地查询服务提供搜索、列表、获取和复制回剪贴板。
+ * 启动方式：java -cp clipboard-manager.jar com.zhansc.clipboard.daemon.ClipboardDaemon，
+ * 端口由clipboard4j.daemon.port指定（默认自动分配），端口和令牌写入~/.clipboard4j/daemon，仅当前用户可读
+ * @date 10/20/26 20:40
+ */
+public class ClipboardDaemon {
+    private static final Logger LOG = LogManager.getLogger(ClipboardDaemon.class);
+    private final ClipboardHistory history;
+    private final ClipboardMonitor monitor;
+    private final QueryServer server;
+    private PersistentHistoryStore store;
+
+    public ClipboardDaemon(int maxSize) {
+        this.history = new ClipboardHistory(maxSize);
+        history.setTextDeltaEnabled(true);
+        history.setNearDuplicateDistance(3);
+        this.monitor = new ClipboardMonitor(history);
+        this.server = new QueryServer(history, this::copyBack);
+    }
+
+    /**
+     * 连接信息文件，第一行为端口，第二行为令牌
+     */
+    public static Path connectionFile() {
+        return Paths.get(System.getProperty("user.home"), ".clipboard4j", "daemon");
+    }
+
+    /**
+     * 恢复历史记录，启动剪贴板监控和查询服务
+     *
+     * @param port 查询服务端口，0表示自动分配
+     * @throws IOException 启动失败
+     */
+    public void start(int port) throws IOException {
+        try {
+            store = PersistentHistoryStore.open(Paths.get(System.getProperty("user.home"), ".clipboard4j", "history"),
+                    HistoryKeyStore.configuredCipher());
+            store.restore(history);
+        } catch (IOException e) {
+            LOG.warn("打开历史记录存储失败，仅在内存中保存: {}", e.getMessage());
+        }
+        monitor.start();
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.writeConnectionFile();
+        LOG.info("后台服务已启动，端口 {}，已恢复 {} 条历史记录", server.getLocalPort(), history.size());
+    }
+
+    private void writeConnectionFile() throws IOException {
+        Path file = connectionFile();
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling("daemon.tmp");
+        Files.deleteIfExists(tmp);
+        Files.createFile(tmp);
+        try {
+            // 令牌只允许当前用户读取
+            Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            tmp.toFile().setReadable(false, false);
+            tmp.toFile().setReadable(true, true);
+        }
+        Files.write(tmp, (server.getLocalPort() + "\n" + server.getToken() + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 复制回剪贴板，并把该项移到历史记录开头
+     */
+    private void copyBack(ClipboardItem item) {
+        // 接收方粘贴时才重建内容，复制请求立即返回
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new HistoryTransferable(item), null);
+        history.touch(item);
+        history.addItem(item);
+    }
+
+    /**
+     * 停止服务并删除连接信息文件
+     */
+    public void stop() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            LOG.warn("关闭查询服务时出错: {}", e.getMessage());
+        }
+        monitor.stop();
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                LOG.warn("关闭历史记录存储时出错: {}", e.getMessage());
+            }
+        }
+        try {
+            Files.deleteIfExists(connectionFile());
+        } catch (IOException e) {
+            LOG.warn("删除连接信息文件失败: {}", e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ClipboardDaemon daemon = new ClipboardDaemon(Integer.getInteger("clipboard4j.maxSize", 100));
+        daemon.start(Integer.getInteger("clipboard4j.daemon.port", 0));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            daemon.stop();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+}
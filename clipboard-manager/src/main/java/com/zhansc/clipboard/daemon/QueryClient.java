@@ -0,0 +1,218 @@
+package com.zhansc.clipboard.daemon;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 本地查询服务的阻塞式客户端，供脚本和编辑器插件使用，每次调用发送一个请求并等待响应
+ * @date 10/20/26 20:10
+ */
+public class QueryClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int nextRequestId;
+
+    private QueryClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * 连接本机运行中的后台服务，端口和令牌从服务写出的连接信息文件中读取
+     *
+     * @return 已认证的客户端
+     * @throws IOException 服务未运行或连接失败
+     */
+    public static QueryClient connectLocal() throws IOException {
+        List<String> lines = Files.readAllLines(ClipboardDaemon.connectionFile(), StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            throw new IOException("连接信息文件格式错误");
+        }
+        return connect(Integer.parseInt(lines.get(0).trim()), lines.get(1).trim());
+    }
+
+    /**
+     * 连接指定端口的后台服务并认证
+     *
+     * @param port  端口
+     * @param token 令牌
+     * @return 已认证的客户端
+     * @throws IOException 连接或认证失败
+     */
+    public static QueryClient connect(int port, String token) throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1000);
+        QueryClient client = new QueryClient(socket);
+        try {
+            client.call(new QueryProtocol.FrameBuilder(QueryProtocol.AUTH, client.nextRequestId++).writeString(token));
+        } catch (IOException e) {
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+
+    /**
+     * 分页列出历史记录
+     *
+     * @param offset      起始位置
+     * @param limit       最大条数
+     * @param contentType 内容类型，为null时列出全部
+     * @return 条目列表
+     */
+    public List<Entry> list(int offset, int limit, ContentTypeEnum contentType) throws IOException {
+        return readEntries(this.call(new QueryProtocol.FrameBuilder(QueryProtocol.LIST, nextRequestId++)
+                .writeInt(offset).writeInt(limit).writeByte(contentType == null ? 0 : contentType.ordinal() + 1)));
+    }
+
+    /**
+     * 搜索历史记录
+     *
+     * @param keyword 关键字
+     * @param limit   最大条数
+     * @return 条目列表
+     */
+    public List<Entry> search(String keyword, int limit) throws IOException {
+        return readEntries(this.call(new QueryProtocol.FrameBuilder(QueryProtocol.SEARCH, nextRequestId++)
+                .writeString(keyword).writeInt(limit)));
+    }
+
+    /**
+     * 获取完整内容
+     *
+     * @param key 内容键
+     * @return 文本返回String，图片返回PNG数据，不存在时返回null
+     */
+    public Object get(String key) throws IOException {
+        ByteBuffer body = this.call(new QueryProtocol.FrameBuilder(QueryProtocol.GET, nextRequestId++)
+                .writeString(key));
+        if (body == null) {
+            return null;
+        }
+        ContentTypeEnum type = ContentTypeEnum.values()[body.get()];
+        if (type != ContentTypeEnum.IMAGE) {
+            return QueryProtocol.readString(body);
+        }
+        byte[] png = new byte[body.getInt()];
+        body.get(png);
+        return png;
+    }
+
+    /**
+     * 把历史记录中的内容复制回剪贴板
+     *
+     * @param key 内容键
+     * @return 是否找到该内容
+     */
+    public boolean copy(String key) throws IOException {
+        return this.call(new QueryProtocol.FrameBuilder(QueryProtocol.COPY, nextRequestId++).writeString(key)) != null;
+    }
+
+    /**
+     * 发送请求并读取响应体
+     *
+     * @return 响应体，NOT_FOUND时返回null
+     */
+    private ByteBuffer call(QueryProtocol.FrameBuilder request) throws IOException {
+        ByteBuffer frame = request.toBuffer();
+        out.write(frame.array(), frame.arrayOffset(), frame.remaining());
+        out.flush();
+
+        int length = in.readInt();
+        if (length < QueryProtocol.HEADER_BYTES || length > QueryProtocol.MAX_RESPONSE_BYTES) {
+            throw new IOException("响应长度非法: " + length);
+        }
+        byte status = in.readByte();
+        in.readInt();
+        byte[] body = new byte[length - QueryProtocol.HEADER_BYTES];
+        in.readFully(body);
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        switch (status) {
+            case QueryProtocol.OK:
+                return buffer;
+            case QueryProtocol.NOT_FOUND:
+                return null;
+            case QueryProtocol.UNAUTHORIZED:
+                throw new IOException("认证失败");
+            default:
+                throw new IOException("请求失败: " + (buffer.remaining() >= 4 ? QueryProtocol.readString(buffer) : ""));
+        }
+    }
+
+    private static List<Entry> readEntries(ByteBuffer body) {
+        body.getInt();
+        int count = body.getInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(QueryProtocol.readString(body), ContentTypeEnum.values()[body.get()],
+                    body.getLong(), body.getLong(), QueryProtocol.readString(body)));
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * 历史记录条目摘要
+     */
+    public static final class Entry {
+        private final String key;
+        private final ContentTypeEnum contentType;
+        private final long version;
+        private final long timestamp;
+        private final String preview;
+
+        Entry(String key, ContentTypeEnum contentType, long version, long timestamp, String preview) {
+            this.key = key;
+            this.contentType = contentType;
+            this.version = version;
+            this.timestamp = timestamp;
+            this.preview = preview;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public ContentTypeEnum getContentType() {
+            return contentType;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * 复制时间（毫秒时间戳）
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getPreview() {
+            return preview;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.zhansc.clipboard.daemon;
+
+import com.zhansc.clipboard.ClipboardItem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 本地查询协议定义
+ * 请求帧：int 长度 | byte 操作 | int 请求ID | 请求体；响应帧：int 长度 | byte 状态 | int 请求ID | 响应体，
+ * 长度不含自身的4个字节，字符串为 int 字节数 | UTF-8 字节。
+ * 连接建立后第一个请求必须是AUTH，客户端可以连续发送多个请求而不等待响应（流水线），
+ * 除COPY外响应按请求顺序返回，COPY在复制完成后返回，用请求ID对应
+ * <ul>
+ *     <li>AUTH：string 令牌 → 空</li>
+ *     <li>LIST：int 偏移 | int 条数 | byte 类型（0为全部，否则为ContentTypeEnum序号+1） → 条目列表</li>
+ *     <li>SEARCH：string 关键字 | int 最大条数 → 条目列表</li>
+ *     <li>GET：string 内容键 → byte 类型 | 文本为string，图片为 int 字节数 | PNG数据</li>
+ *     <li>COPY：string 内容键 → 空</li>
+ * </ul>
+ * 条目列表为 int 总数 | int 条数 | 条目*，条目为 string 内容键 | byte 类型 | long 排序版本 | long 时间戳 | string 预览
+ * @date 10/20/26 19:10
+ */
+final class QueryProtocol {
+    static final byte AUTH = 1;
+    static final byte LIST = 2;
+    static final byte SEARCH = 3;
+    static final byte GET = 4;
+    static final byte COPY = 5;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+    static final byte UNAUTHORIZED = 3;
+
+    // 帧头：操作或状态 + 请求ID
+    static final int HEADER_BYTES = 5;
+    // 单个请求的最大字节数
+    static final int MAX_REQUEST_BYTES = 1024 * 1024;
+    // 单个响应的最大字节数
+    static final int MAX_RESPONSE_BYTES = 256 * 1024 * 1024;
+
+    private QueryProtocol() {
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("字符串长度非法: " + length);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * 可扩容的帧缓冲，写完后由toBuffer得到完整的帧
+     */
+    static final class FrameBuilder {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        FrameBuilder(byte code, int requestId) {
+            // 预留长度字段
+            size = 4;
+            this.writeByte(code);
+            this.writeInt(requestId);
+        }
+
+        FrameBuilder writeByte(int value) {
+            this.ensure(1);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        FrameBuilder writeInt(int value) {
+            this.ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+            return this;
+        }
+
+        FrameBuilder writeLong(long value) {
+            this.writeInt((int) (value >>> 32));
+            return this.writeInt((int) value);
+        }
+
+        FrameBuilder writeString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            this.writeInt(encoded.length);
+            this.ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+            return this;
+        }
+
+        /**
+         * 写出条目摘要
+         */
+        FrameBuilder writeItem(ClipboardItem item) {
+            this.writeString(item.getContentKey());
+            this.writeByte(item.getContentType().ordinal());
+            this.writeLong(item.getVersion());
+            this.writeLong(item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            return this.writeString(item.getTextPreview());
+        }
+
+        /**
+         * 完成帧，extraBytes为随后单独发送的数据长度（计入长度字段）
+         */
+        ByteBuffer toBuffer(int extraBytes) {
+            int length = size - 4 + extraBytes;
+            bytes[0] = (byte) (length >>> 24);
+            bytes[1] = (byte) (length >>> 16);
+            bytes[2] = (byte) (length >>> 8);
+            bytes[3] = (byte) length;
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+
+        ByteBuffer toBuffer() {
+            return this.toBuffer(0);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.zhansc.clipboard.daemon;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.HistorySnapshot;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.store.ImageHandle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 本地查询服务，单个选择器线程以非阻塞方式服务所有连接，查询直接在选择器线程上读取历史记录快照完成，
+ * 只有复制回剪贴板交给单独的线程执行。只监听回环地址，连接需先用令牌认证
+ * @date 10/20/26 19:30
+ */
+public class QueryServer implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(QueryServer.class);
+    private final ClipboardHistory history;
+    private final CopyHandler copyHandler;
+    private final String token;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    // 复制回剪贴板在单独的线程执行，避免阻塞查询
+    private final ExecutorService copyExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "clipboard-daemon-copy");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 其他线程完成的响应，由选择器线程写出
+    private final Queue<PendingResponse> completed = new ConcurrentLinkedQueue<>();
+
+    public QueryServer(ClipboardHistory history, CopyHandler copyHandler) {
+        this.history = history;
+        this.copyHandler = copyHandler;
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        this.token = hex.toString();
+    }
+
+    /**
+     * 获取客户端认证用的令牌
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * 开始监听
+     *
+     * @param address 监听地址，应为回环地址，端口为0时自动分配
+     * @throws IOException 监听失败
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (!address.getAddress().isLoopbackAddress()) {
+            throw new IOException("查询服务只能监听回环地址: " + address);
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "clipboard-daemon-query");
+        selectorThread.start();
+    }
+
+    /**
+     * 获取实际监听的端口
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                this.drainCompleted();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            this.accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        closeQuietly(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                LOG.warn("查询服务异常退出: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private void drainCompleted() {
+        PendingResponse pending;
+        while ((pending = completed.poll()) != null) {
+            if (pending.connection.key.isValid()) {
+                try {
+                    pending.connection.send(pending.buffers);
+                } catch (IOException e) {
+                    closeQuietly(pending.connection.key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一个请求，返回要写出的响应，COPY返回null并在完成后异步写出
+     */
+    private ByteBuffer[] handle(Connection connection, byte op, int requestId, ByteBuffer body) {
+        if (!connection.authenticated) {
+            if (op == QueryProtocol.AUTH && MessageDigest.isEqual(
+                    token.getBytes(StandardCharsets.UTF_8),
+                    QueryProtocol.readString(body).getBytes(StandardCharsets.UTF_8))) {
+                connection.authenticated = true;
+                return single(new QueryProtocol.FrameBuilder(QueryProtocol.OK, requestId));
+            }
+            connection.closeAfterFlush = true;
+            return single(new QueryProtocol.FrameBuilder(QueryProtocol.UNAUTHORIZED, requestId));
+        }
+        switch (op) {
+            case QueryProtocol.LIST:
+                return this.list(requestId, body.getInt(), body.getInt(), body.get());
+            case QueryProtocol.SEARCH:
+                return this.search(requestId, QueryProtocol.readString(body), body.getInt());
+            case QueryProtocol.GET:
+                return this.get(requestId, QueryProtocol.readString(body));
+            case QueryProtocol.COPY:
+                return this.copy(connection, requestId, QueryProtocol.readString(body));
+            default:
+                return single(new QueryProtocol.FrameBuilder(QueryProtocol.ERROR, requestId)
+                        .writeString("未知操作: " + op));
+        }
+    }
+
+    private ByteBuffer[] list(int requestId, int offset, int limit, byte type) {
+        HistorySnapshot snapshot = history.snapshot();
+        QueryProtocol.FrameBuilder frame = new QueryProtocol.FrameBuilder(QueryProtocol.OK, requestId);
+        if (type == 0) {
+            List<ClipboardItem> page = snapshot.page(Math.max(0, offset), Math.max(0, limit)).getItems();
+            frame.writeInt(snapshot.size()).writeInt(page.size());
+            for (ClipboardItem item : page) {
+                frame.writeItem(item);
+            }
+            return single(frame);
+        }
+        // 按类型过滤时总数未知，只返回本页
+        ContentTypeEnum contentType = ContentTypeEnum.values()[type - 1];
+        Iterator<ClipboardItem> iterator = snapshot.iterator(contentType);
+        int skipped = 0;
+        while (skipped < offset && iterator.hasNext()) {
+            iterator.next();
+            skipped++;
+        }
+        List<ClipboardItem> page = new ArrayList<>();
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        frame.writeInt(-1).writeInt(page.size());
+        for (ClipboardItem item : page) {
+            frame.writeItem(item);
+        }
+        return single(frame);
+    }
+
+    private ByteBuffer[] search(int requestId, String keyword, int limit) {
+        List<ClipboardItem> result = history.search(keyword);
+        int count = Math.min(result.size(), Math.max(0, limit));
+        QueryProtocol.FrameBuilder frame = new QueryProtocol.FrameBuilder(QueryProtocol.OK, requestId)
+                .writeInt(result.size()).writeInt(count);
+        for (int i = 0; i < count; i++) {
+            frame.writeItem(result.get(i));
+        }
+        return single(frame);
+    }
+
+    private ByteBuffer[] get(int requestId, String key) {
+        ClipboardItem item = this.find(key);
+        if (item == null) {
+            return single(new QueryProtocol.FrameBuilder(QueryProtocol.NOT_FOUND, requestId));
+        }
+        QueryProtocol.FrameBuilder frame = new QueryProtocol.FrameBuilder(QueryProtocol.OK, requestId)
+                .writeByte(item.getContentType().ordinal());
+        if (item.getContentType() != ContentTypeEnum.IMAGE) {
+            return single(frame.writeString((String) item.getContent()));
+        }
+        ImageHandle handle = item.getImageHandle();
+        if (handle == null) {
+            return single(new QueryProtocol.FrameBuilder(QueryProtocol.ERROR, requestId).writeString("图片不可用"));
+        }
+        // PNG数据直接发送，不复制
+        byte[] encoded = handle.getEncoded();
+        frame.writeInt(encoded.length);
+        return new ByteBuffer[]{frame.toBuffer(encoded.length), ByteBuffer.wrap(encoded)};
+    }
+
+    private ByteBuffer[] copy(Connection connection, int requestId, String key) {
+        ClipboardItem item = this.find(key);
+        if (item == null) {
+            return single(new QueryProtocol.FrameBuilder(QueryProtocol.NOT_FOUND, requestId));
+        }
+        copyExecutor.execute(() -> {
+            QueryProtocol.FrameBuilder frame;
+            try {
+                copyHandler.copy(item);
+                frame = new QueryProtocol.FrameBuilder(QueryProtocol.OK, requestId);
+            } catch (Exception e) {
+                frame = new QueryProtocol.FrameBuilder(QueryProtocol.ERROR, requestId).writeString(
+                        String.valueOf(e.getMessage()));
+            }
+            completed.add(new PendingResponse(connection, single(frame)));
+            selector.wakeup();
+        });
+        return null;
+    }
+
+    private ClipboardItem find(String key) {
+        for (ClipboardItem item : history.snapshot().asList()) {
+            if (item.getContentKey().equals(key)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer[] single(QueryProtocol.FrameBuilder frame) {
+        return new ByteBuffer[]{frame.toBuffer()};
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // 连接已断开
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        copyExecutor.shutdownNow();
+        if (selector != null) {
+            selector.wakeup();
+            try {
+                selectorThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            selector.close();
+        }
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * 复制回剪贴板的具体实现，由调用方提供
+     */
+    public interface CopyHandler {
+        void copy(ClipboardItem item) throws Exception;
+    }
+
+    private static final class PendingResponse {
+        private final Connection connection;
+        private final ByteBuffer[] buffers;
+
+        PendingResponse(Connection connection, ByteBuffer[] buffers) {
+            this.connection = connection;
+            this.buffers = buffers;
+        }
+    }
+
+    /**
+     * 一个客户端连接，持有未解析完的请求数据和待写出的响应
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(4096);
+        private final Deque<ByteBuffer> out = new ArrayDeque<>();
+        private boolean authenticated;
+        private boolean closeAfterFlush;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                closeQuietly(key);
+                return;
+            }
+            in.flip();
+            // 一次读取到的所有完整请求依次处理，响应合并后一次写出
+            while (in.remaining() >= 4 && !closeAfterFlush) {
+                int length = in.getInt(in.position());
+                if (length < QueryProtocol.HEADER_BYTES || length > QueryProtocol.MAX_REQUEST_BYTES) {
+                    throw new IOException("请求长度非法: " + length);
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                int end = in.position() + 4 + length;
+                in.position(in.position() + 4);
+                byte op = in.get();
+                int requestId = in.getInt();
+                ByteBuffer body = in.slice();
+                body.limit(end - in.position());
+                in.position(end);
+                ByteBuffer[] response;
+                try {
+                    response = handle(this, op, requestId, body);
+                } catch (RuntimeException e) {
+                    response = single(new QueryProtocol.FrameBuilder(QueryProtocol.ERROR, requestId)
+                            .writeString("请求格式错误: " + e.getMessage()));
+                }
+                if (response != null) {
+                    for (ByteBuffer buffer : response) {
+                        out.add(buffer);
+                    }
+                }
+            }
+            // 不完整的请求留到下次读取，空间不足时扩容
+            if (in.remaining() >= 4 && in.getInt(in.position()) + 4 > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(in.getInt(in.position()) + 4);
+                larger.put(in);
+                in = larger;
+            } else {
+                in.compact();
+            }
+            this.flush();
+        }
+
+        void send(ByteBuffer[] buffers) throws IOException {
+            for (ByteBuffer buffer : buffers) {
+                out.add(buffer);
+            }
+            this.flush();
+        }
+
+        void flush() throws IOException {
+            while (!out.isEmpty()) {
+                channel.write(out.toArray(new ByteBuffer[0]));
+                while (!out.isEmpty() && !out.peekFirst().hasRemaining()) {
+                    out.pollFirst();
+                }
+                if (!out.isEmpty()) {
+                    // 发送缓冲区已满，等待可写
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if (closeAfterFlush) {
+                closeQuietly(key);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.zhansc.clipboard.enums;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 剪贴板内容来源
+ * @date 10/20/26 23:20
+ */
+public enum ClipboardSourceEnum {
+    /**
+     * 系统剪贴板（复制操作）
+     */
+    CLIPBOARD,
+    /**
+     * X11 PRIMARY选择区（选中文本）
+     */
+    SELECTION
+}
@@ -0,0 +1,31 @@
+package com.zhansc.clipboard.enums;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录导出格式
+ * @date 10/19/26 14:10
+ */
+public enum ExportFormatEnum {
+    /**
+     * 紧凑的长度前缀二进制格式
+     */
+    BINARY("history.bin"),
+    /**
+     * 每行一个JSON对象
+     */
+    JSONL("history.jsonl");
+
+    private final String fileName;
+
+    ExportFormatEnum(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * 导出目录中记录文件的文件名
+     */
+    public String getFileName() {
+        return fileName;
+    }
+}
@@ -0,0 +1,30 @@
+package com.zhansc.clipboard.enums;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 日志级别，按严重程度从低到高排列
+ * @date 10/21/26 18:10
+ */
+public enum LogLevelEnum {
+    /**
+     * 调试信息，如每次搜索和捕获的详情
+     */
+    DEBUG,
+    /**
+     * 一般信息
+     */
+    INFO,
+    /**
+     * 可以恢复的异常情况
+     */
+    WARN,
+    /**
+     * 错误
+     */
+    ERROR,
+    /**
+     * 关闭日志，只用作阈值
+     */
+    OFF
+}
@@ -0,0 +1,22 @@
+package com.zhansc.clipboard.enums;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 流水线阶段队列已满时的处理策略
+ * @date 10/20/26 10:05
+ */
+public enum OverflowPolicyEnum {
+    /**
+     * 阻塞提交方，直到队列有空位（背压）
+     */
+    BLOCK,
+    /**
+     * 丢弃新提交的任务
+     */
+    DROP_NEWEST,
+    /**
+     * 丢弃队列中最早的任务，为新任务腾出空位
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,131 @@
+package com.zhansc.clipboard.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 不区分大小写的Aho–Corasick多模式匹配自动机，构建时展开为完整的状态转移表，
+ * 匹配时每个字符只需一次查表，与模式数量无关
+ * @date 10/20/26 16:40
+ */
+final class AhoCorasick {
+    // 字符 -> 压缩后的字母表编号，0表示不在任何模式中出现
+    private final char[] alphabet;
+    private final int alphabetSize;
+    // [状态 * 字母表大小 + 字符编号] -> 下一状态
+    private final int[] transitions;
+    // 状态 -> 在该状态结束的模式编号（含后缀链上的）
+    private final int[][] outputs;
+    // 模式编号 -> 模式长度
+    private final int[] lengths;
+
+    /**
+     * 构建自动机
+     *
+     * @param patterns 模式，编号即列表下标
+     */
+    AhoCorasick(List<String> patterns) {
+        this.alphabet = new char[Character.MAX_VALUE + 1];
+        int symbols = 1;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = fold(pattern.charAt(i));
+                if (alphabet[c] == 0) {
+                    alphabet[c] = (char) symbols++;
+                }
+            }
+        }
+        this.alphabetSize = symbols;
+        this.lengths = new int[patterns.size()];
+
+        // 构建字典树
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> terminal = new ArrayList<>();
+        trie.add(new int[symbols]);
+        terminal.add(new ArrayList<>());
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            lengths[id] = pattern.length();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = alphabet[fold(pattern.charAt(i))];
+                if (trie.get(state)[symbol] == 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(new int[symbols]);
+                    terminal.add(new ArrayList<>());
+                }
+                state = trie.get(state)[symbol];
+            }
+            terminal.get(state).add(id);
+        }
+
+        // 广度优先计算失败链接，同时把缺失的转移补全为失败状态的转移
+        int states = trie.size();
+        this.transitions = new int[states * symbols];
+        this.outputs = new int[states][];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = toArray(terminal.get(0));
+        for (int symbol = 1; symbol < symbols; symbol++) {
+            int next = trie.get(0)[symbol];
+            transitions[symbol] = next;
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] parentOutputs = outputs[fail[state]];
+            List<Integer> own = terminal.get(state);
+            int[] merged = Arrays.copyOf(toArray(own), own.size() + parentOutputs.length);
+            System.arraycopy(parentOutputs, 0, merged, own.size(), parentOutputs.length);
+            outputs[state] = merged;
+            for (int symbol = 1; symbol < symbols; symbol++) {
+                int next = trie.get(state)[symbol];
+                if (next != 0) {
+                    fail[next] = transitions[fail[state] * symbols + symbol];
+                    transitions[state * symbols + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * symbols + symbol] = transitions[fail[state] * symbols + symbol];
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 从初始状态出发读入一个字符后的状态
+     */
+    int next(int state, char c) {
+        return transitions[state * alphabetSize + alphabet[fold(c)]];
+    }
+
+    /**
+     * 在该状态结束的模式编号
+     */
+    int[] outputs(int state) {
+        return outputs[state];
+    }
+
+    int length(int patternId) {
+        return lengths[patternId];
+    }
+
+    static char fold(char c) {
+        return c < 128 ? (c >= 'A' && c <= 'Z' ? (char) (c + 32) : c) : Character.toLowerCase(c);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,216 @@
+package com.zhansc.clipboard.filter;
+
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 剪贴板内容排除过滤器。所有字面量规则和正则规则的锚点编译进同一个Aho–Corasick自动机，
+ * 一次扫描文本即可得到命中的字面量和需要执行的正则，正则只在锚点出现时才执行。
+ * 每次检查有时间上限。超时前已命中某条正则规则的锚点时按命中处理；没有命中锚点时默认放行，
+ * 可配置为一律排除。超时都以WARN级别记录
+ * @date 10/20/26 17:05
+ */
+public class ExclusionFilter {
+    private static final Logger LOG = LogManager.getLogger(ExclusionFilter.class);
+    // 默认每次检查的时间上限：20毫秒
+    private static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    // 每扫描这么多字符检查一次是否超时
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    // 超时且按命中处理时返回的规则
+    private static final ExclusionRule TIMEOUT_RULE = ExclusionRule.literal("超时", "\0", false);
+
+    private final List<ExclusionRule> rules;
+    private final AhoCorasick automaton;
+    // 自动机模式编号 -> 规则编号
+    private final int[] patternRule;
+    // 没有锚点、每次都要执行的正则规则
+    private final int[] unanchoredRegexRules;
+
+    private volatile long budgetNanos = DEFAULT_BUDGET_NANOS;
+    // 未命中任何锚点的内容超时后是否也按命中处理
+    private volatile boolean failClosed;
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private ExclusionFilter(List<ExclusionRule> rules) {
+        this.rules = new ArrayList<>(rules);
+        List<String> patterns = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        List<Integer> unanchored = new ArrayList<>();
+        for (int i = 0; i < this.rules.size(); i++) {
+            ExclusionRule rule = this.rules.get(i);
+            String key = rule.getLiteral() != null ? rule.getLiteral() : rule.getAnchor();
+            if (key != null) {
+                patterns.add(key);
+                owners.add(i);
+            } else {
+                unanchored.add(i);
+            }
+        }
+        this.automaton = new AhoCorasick(patterns);
+        this.patternRule = owners.stream().mapToInt(Integer::intValue).toArray();
+        this.unanchoredRegexRules = unanchored.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 编译排除规则
+     *
+     * @param rules 规则列表，按顺序匹配
+     * @return 过滤器
+     */
+    public static ExclusionFilter compile(List<ExclusionRule> rules) {
+        return new ExclusionFilter(rules);
+    }
+
+    /**
+     * 设置每次检查的时间上限
+     */
+    public void setTimeBudget(long budget, TimeUnit unit) {
+        this.budgetNanos = unit.toNanos(budget);
+    }
+
+    /**
+     * 设置超时后的处理方式。超时前已命中锚点的内容总是按命中处理，这里只决定没有命中锚点的内容
+     *
+     * @param failClosed true表示超时的内容一律按命中处理（不保存），false表示没有命中锚点时放行
+     */
+    public void setFailClosed(boolean failClosed) {
+        this.failClosed = failClosed;
+    }
+
+    /**
+     * 超时的检查次数
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * 检查文本是否应被排除
+     *
+     * @param text 文本
+     * @return 命中的规则，未命中时返回null；超时且按命中处理时返回名为"超时"的规则
+     */
+    public ExclusionRule match(String text) {
+        long deadline = System.nanoTime() + budgetNanos;
+        // 锚点命中的正则规则，超时时据此判断内容是否可疑
+        BitSet triggered = new BitSet(rules.size());
+        try {
+            return this.match(text, deadline, triggered);
+        } catch (BudgetExceededException e) {
+            timeouts.incrementAndGet();
+            boolean exclude = failClosed || !triggered.isEmpty();
+            // 不输出内容本身
+            LOG.warn("排除规则检查超出时间上限，长度 {} 的内容{}", text.length(),
+                    exclude ? "按命中处理，未保存" : "未检查完即放行");
+            return exclude ? TIMEOUT_RULE : null;
+        }
+    }
+
+    private ExclusionRule match(String text, long deadline, BitSet triggered) {
+        // 单次扫描：字面量规则命中即返回，正则规则只记录锚点命中
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (i % DEADLINE_CHECK_INTERVAL == 0) {
+                checkDeadline(deadline);
+            }
+            state = automaton.next(state, text.charAt(i));
+            for (int patternId : automaton.outputs(state)) {
+                int ruleId = patternRule[patternId];
+                ExclusionRule rule = rules.get(ruleId);
+                if (rule.getLiteral() == null) {
+                    triggered.set(ruleId);
+                } else if (rule.isIgnoreCase() || text.regionMatches(i + 1 - automaton.length(patternId),
+                        rule.getLiteral(), 0, rule.getLiteral().length())) {
+                    return rule;
+                }
+            }
+        }
+
+        // 没有锚点的规则单独执行，不计入锚点命中
+        BitSet toRun = (BitSet) triggered.clone();
+        for (int ruleId : unanchoredRegexRules) {
+            toRun.set(ruleId);
+        }
+        CharSequence input = new DeadlineCharSequence(text, deadline);
+        for (int ruleId = toRun.nextSetBit(0); ruleId >= 0; ruleId = toRun.nextSetBit(ruleId + 1)) {
+            ExclusionRule rule = rules.get(ruleId);
+            Matcher matcher = rule.getPattern().matcher(input);
+            while (matcher.find()) {
+                if (rule.accepts(matcher.group())) {
+                    return rule;
+                }
+            }
+            // 已确认不命中，超时时不再当作可疑
+            triggered.clear(ruleId);
+        }
+        return null;
+    }
+
+    private static void checkDeadline(long deadline) {
+        if (System.nanoTime() - deadline > 0) {
+            throw BudgetExceededException.INSTANCE;
+        }
+    }
+
+    /**
+     * 在正则匹配过程中检查时间上限的字符序列，超时后抛出异常中断匹配
+     */
+    private static final class DeadlineCharSequence implements CharSequence {
+        private final String text;
+        private final long deadline;
+        private int reads;
+
+        DeadlineCharSequence(String text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads % DEADLINE_CHECK_INTERVAL == 0) {
+                checkDeadline(deadline);
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * 超出时间上限，不记录堆栈
+     */
+    private static final class BudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+        private BudgetExceededException() {
+            super("超出检查时间上限", null, false, false);
+        }
+    }
+}
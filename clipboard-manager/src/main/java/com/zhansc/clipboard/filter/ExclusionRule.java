@@ -0,0 +1,305 @@
+package com.zhansc.clipboard.filter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 排除规则，匹配的剪贴板内容不会进入历史记录。
+ * 规则可以是字面量（不区分大小写或精确匹配）或正则表达式，正则表达式可以带一个必须出现的字面量作为预筛选锚点
+ * @date 10/20/26 16:20
+ */
+public final class ExclusionRule {
+    private final String name;
+    // 字面量规则的文本，正则规则为null
+    private final String literal;
+    private final boolean ignoreCase;
+    // 正则规则的表达式，字面量规则为null
+    private final Pattern pattern;
+    // 正则规则的预筛选锚点，文本中不含锚点时不执行正则，为null时总是执行
+    private final String anchor;
+    // 对匹配到的片段做进一步校验（如卡号的Luhn校验），为null时不校验
+    private final Predicate<String> validator;
+
+    private ExclusionRule(String name, String literal, boolean ignoreCase, Pattern pattern, String anchor,
+                          Predicate<String> validator) {
+        this.name = name;
+        this.literal = literal;
+        this.ignoreCase = ignoreCase;
+        this.pattern = pattern;
+        this.anchor = anchor;
+        this.validator = validator;
+    }
+
+    /**
+     * 创建字面量规则
+     *
+     * @param name       规则名
+     * @param literal    字面量
+     * @param ignoreCase 是否忽略大小写
+     * @return 规则
+     */
+    public static ExclusionRule literal(String name, String literal, boolean ignoreCase) {
+        if (literal == null || literal.isEmpty()) {
+            throw new IllegalArgumentException("字面量不能为空");
+        }
+        return new ExclusionRule(name, literal, ignoreCase, null, null, null);
+    }
+
+    /**
+     * 创建正则规则，自动从表达式中提取必须出现的字面量作为锚点
+     *
+     * @param name  规则名
+     * @param regex 正则表达式
+     * @return 规则
+     */
+    public static ExclusionRule regex(String name, String regex) {
+        return regex(name, regex, null);
+    }
+
+    /**
+     * 创建带校验的正则规则
+     *
+     * @param name      规则名
+     * @param regex     正则表达式
+     * @param validator 对匹配片段的校验，为null时不校验
+     * @return 规则
+     */
+    public static ExclusionRule regex(String name, String regex, Predicate<String> validator) {
+        return new ExclusionRule(name, null, false, Pattern.compile(regex), extractAnchor(regex), validator);
+    }
+
+    /**
+     * 内置规则：私钥、常见云服务和代码托管平台的访问令牌、JWT以及银行卡号
+     */
+    public static List<ExclusionRule> defaults() {
+        return new ArrayList<>(Arrays.asList(
+                literal("私钥", "PRIVATE KEY-----", false),
+                regex("AWS访问密钥", "\\b(?:AKIA|ASIA)[0-9A-Z]{16}\\b"),
+                regex("GitHub令牌", "\\bgh[pousr]_[A-Za-z0-9]{36,}\\b"),
+                regex("GitHub细粒度令牌", "\\bgithub_pat_[A-Za-z0-9_]{22,}"),
+                regex("Slack令牌", "\\bxox[abprs]-[A-Za-z0-9-]{10,}"),
+                regex("Google API密钥", "\\bAIza[0-9A-Za-z_-]{35}"),
+                regex("Stripe密钥", "\\b[rs]k_live_[0-9a-zA-Z]{24,}"),
+                regex("JWT", "\\beyJ[A-Za-z0-9_-]{10,}\\.eyJ[A-Za-z0-9_-]{10,}\\.[A-Za-z0-9_-]{10,}"),
+                regex("银行卡号", "(?<![\\w.-])(?:[0-9][ -]?){12,18}[0-9](?![\\w.-])", ExclusionRule::isCardNumber)
+        ));
+    }
+
+    /**
+     * 从文件载入规则，每行一条：literal:文本、literal-case:文本（区分大小写）或regex:表达式，#开头为注释
+     *
+     * @param file 规则文件
+     * @return 规则列表
+     * @throws IOException 读取失败
+     */
+    public static List<ExclusionRule> load(Path file) throws IOException {
+        List<ExclusionRule> rules = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+                continue;
+            }
+            String name = file.getFileName() + ":" + lineNumber;
+            if (line.startsWith("literal:")) {
+                rules.add(literal(name, line.substring("literal:".length()), true));
+            } else if (line.startsWith("literal-case:")) {
+                rules.add(literal(name, line.substring("literal-case:".length()), false));
+            } else if (line.startsWith("regex:")) {
+                rules.add(regex(name, line.substring("regex:".length())));
+            } else {
+                throw new IOException("无法识别的排除规则（" + name + "）: " + line);
+            }
+        }
+        return rules;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    String getLiteral() {
+        return literal;
+    }
+
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    String getAnchor() {
+        return anchor;
+    }
+
+    boolean accepts(String fragment) {
+        return validator == null || validator.test(fragment);
+    }
+
+    /**
+     * 从正则表达式中提取一定会出现在匹配中的最长字面量（至少3个字符），无法确定时返回null。
+     * 只分析顶层的普通字符，遇到顶层的|直接放弃
+     */
+    static String extractAnchor(String regex) {
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(++i);
+                if (depth == 0 && !inClass && !Character.isLetterOrDigit(escaped)) {
+                    run.append(escaped);
+                    continue;
+                }
+                // \d \w \b等字符类和断言中断字面量
+                best = longer(best, run, depth == 0 && !inClass);
+                continue;
+            }
+            if (inClass) {
+                inClass = c != ']';
+                continue;
+            }
+            switch (c) {
+                case '[':
+                    inClass = true;
+                    best = longer(best, run, depth == 0);
+                    break;
+                case '(':
+                    best = longer(best, run, depth == 0);
+                    depth++;
+                    break;
+                case ')':
+                    depth--;
+                    break;
+                case '|':
+                    if (depth == 0) {
+                        return null;
+                    }
+                    break;
+                case '{':
+                    // 跳过量词内容
+                    int close = regex.indexOf('}', i);
+                    i = close < 0 ? regex.length() : close;
+                    // 前一个字符的出现次数不确定，按可以不出现处理
+                    if (depth == 0 && run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                    best = longer(best, run, depth == 0);
+                    break;
+                case '*':
+                case '?':
+                    // 前一个字符可以不出现
+                    if (depth == 0 && run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                    best = longer(best, run, depth == 0);
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    best = longer(best, run, depth == 0);
+                    break;
+                default:
+                    if (depth == 0) {
+                        run.append(c);
+                    }
+                    break;
+            }
+        }
+        best = longer(best, run, true);
+        return best != null && best.length() >= 3 ? best : null;
+    }
+
+    private static String longer(String best, StringBuilder run, boolean valid) {
+        String candidate = valid ? run.toString() : null;
+        run.setLength(0);
+        if (candidate != null && (best == null || candidate.length() > best.length())) {
+            return candidate;
+        }
+        return best;
+    }
+
+    /**
+     * 判断匹配到的数字是否像银行卡号：发卡机构号段（IIN）已知、长度符合该卡组织且通过Luhn校验。
+     * 只做Luhn校验时约十分之一的随机数字（毫秒时间戳、订单号等）也能通过
+     */
+    static boolean isCardNumber(String fragment) {
+        StringBuilder digits = new StringBuilder(19);
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return hasKnownIin(digits) && passesLuhn(fragment);
+    }
+
+    /**
+     * 常见卡组织的号段和卡号长度：Visa、Mastercard、American Express、银联、Discover、JCB、Diners Club
+     */
+    private static boolean hasKnownIin(CharSequence digits) {
+        int length = digits.length();
+        int two = Integer.parseInt(digits.subSequence(0, 2).toString());
+        int three = Integer.parseInt(digits.subSequence(0, 3).toString());
+        int four = Integer.parseInt(digits.subSequence(0, 4).toString());
+        if (digits.charAt(0) == '4') {
+            return length == 13 || length == 16 || length == 19;
+        }
+        if ((two >= 51 && two <= 55) || (four >= 2221 && four <= 2720)) {
+            return length == 16;
+        }
+        if (two == 34 || two == 37) {
+            return length == 15;
+        }
+        if (two == 62 || two == 65 || four == 6011 || (three >= 644 && three <= 649)
+                || (four >= 3528 && four <= 3589)) {
+            return length >= 16;
+        }
+        if (two == 36 || two == 38 || two == 39 || (three >= 300 && three <= 305)) {
+            return length >= 14;
+        }
+        return false;
+    }
+
+    /**
+     * 银行卡号的Luhn校验
+     */
+    static boolean passesLuhn(String fragment) {
+        int sum = 0;
+        int digits = 0;
+        for (int i = fragment.length() - 1; i >= 0; i--) {
+            char c = fragment.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            int digit = c - '0';
+            if (digits++ % 2 == 1) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return digits >= 13 && sum % 10 == 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
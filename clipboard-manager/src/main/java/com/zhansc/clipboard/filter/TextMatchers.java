@@ -0,0 +1,74 @@
+package com.zhansc.clipboard.filter;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 全文索引无法处理、只能逐项扫描的文本匹配方式：正则表达式、模糊匹配和Unicode大小写折叠后的包含匹配。
+ * 返回的匹配器是无状态的，可以在多个扫描线程中同时使用
+ * @date 10/21/26 19:20
+ */
+public final class TextMatchers {
+    private TextMatchers() {
+    }
+
+    /**
+     * 正则表达式匹配，文本中任意位置匹配即可，不区分大小写（包括非ASCII字符）
+     *
+     * @param regex 正则表达式
+     * @return 匹配器
+     * @throws java.util.regex.PatternSyntaxException 表达式无效
+     */
+    public static Predicate<String> regex(String regex) {
+        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return text -> pattern.matcher(text).find();
+    }
+
+    /**
+     * 模糊匹配：查询中的字符（忽略空白）按顺序出现在文本中即可，不要求连续，不区分大小写
+     *
+     * @param query 查询
+     * @return 匹配器
+     */
+    public static Predicate<String> fuzzy(String query) {
+        int[] needle = query.codePoints()
+                .filter(codePoint -> !Character.isWhitespace(codePoint))
+                .map(TextMatchers::foldCase)
+                .toArray();
+        return text -> {
+            int matched = 0;
+            for (int i = 0; i < text.length() && matched < needle.length; ) {
+                int codePoint = text.codePointAt(i);
+                if (foldCase(codePoint) == needle[matched]) {
+                    matched++;
+                }
+                i += Character.charCount(codePoint);
+            }
+            return matched == needle.length;
+        };
+    }
+
+    /**
+     * 大小写折叠后的包含匹配：先做NFKC规范化（全角与半角、兼容字符视为相同），
+     * 再经大写和小写两次转换，使ß与SS、ς与σ这类只有折叠后才相等的写法互相匹配
+     *
+     * @param keyword 关键字
+     * @return 匹配器
+     */
+    public static Predicate<String> folded(String keyword) {
+        String needle = fold(keyword);
+        return text -> fold(text).contains(needle);
+    }
+
+    private static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private static int foldCase(int codePoint) {
+        return Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+}
@@ -0,0 +1,200 @@
+package com.zhansc.clipboard.index;
+
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 以64位哈希的汉明距离为度量的BK树，用于查找距离不超过阈值的相似项，
+ * 利用三角不等式剪枝，查询只访问树的一小部分
+ * @date 10/20/26 13:40
+ */
+public class BkTree<T> {
+    // 汉明距离的取值范围为0~64
+    private static final int MAX_DISTANCE = 64;
+
+    private Node<T> root;
+    // 有值的节点数
+    private int liveNodes;
+    // 值已全部删除、只用于路由的节点数
+    private int deadNodes;
+    private int size;
+
+    /**
+     * 添加一项
+     *
+     * @param hash  哈希值
+     * @param value 值
+     */
+    public void add(long hash, T value) {
+        size++;
+        if (root == null) {
+            root = new Node<>(hash);
+            root.values.add(value);
+            liveNodes++;
+            return;
+        }
+        Node<T> node = root;
+        while (true) {
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance == 0) {
+                if (node.values.isEmpty()) {
+                    deadNodes--;
+                    liveNodes++;
+                }
+                node.values.add(value);
+                return;
+            }
+            Node<T> child = node.child(distance);
+            if (child == null) {
+                child = new Node<>(hash);
+                child.values.add(value);
+                node.setChild(distance, child);
+                liveNodes++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * 删除一项（按引用比较）
+     *
+     * @param hash  添加时的哈希值
+     * @param value 值
+     * @return 是否删除成功
+     */
+    public boolean remove(long hash, T value) {
+        Node<T> node = root;
+        while (node != null) {
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance == 0) {
+                if (!node.removeValue(value)) {
+                    return false;
+                }
+                size--;
+                if (node.values.isEmpty()) {
+                    liveNodes--;
+                    deadNodes++;
+                    // 删除的节点过多时重建，避免查询时访问大量空节点
+                    if (deadNodes > 64 && deadNodes > liveNodes) {
+                        this.rebuild();
+                    }
+                }
+                return true;
+            }
+            node = node.child(distance);
+        }
+        return false;
+    }
+
+    /**
+     * 查找与指定哈希的汉明距离不超过maxDistance的所有项
+     *
+     * @param hash        哈希值
+     * @param maxDistance 最大汉明距离
+     * @return 匹配的值，按访问顺序排列
+     */
+    public List<T> search(long hash, int maxDistance) {
+        List<T> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance <= maxDistance) {
+                result.addAll(node.values);
+            }
+            if (node.children == null) {
+                continue;
+            }
+            // 三角不等式：只有与当前节点距离在[d-k, d+k]内的子树可能包含匹配项
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(MAX_DISTANCE, distance + maxDistance);
+            for (int i = from; i <= to; i++) {
+                Node<T> child = node.children[i];
+                if (child != null) {
+                    stack.push(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        liveNodes = 0;
+        deadNodes = 0;
+        size = 0;
+    }
+
+    private void rebuild() {
+        List<Node<T>> live = new ArrayList<>(liveNodes);
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            if (!node.values.isEmpty()) {
+                live.add(node);
+            }
+            if (node.children != null) {
+                for (Node<T> child : node.children) {
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        this.clear();
+        for (Node<T> node : live) {
+            for (T value : node.values) {
+                this.add(node.hash, value);
+            }
+        }
+    }
+
+    private static final class Node<T> {
+        private final long hash;
+        // 哈希值相同的所有值
+        private final List<T> values = new ArrayList<>(1);
+        // 按距离索引的子节点，延迟分配
+        private Node<T>[] children;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+
+        Node<T> child(int distance) {
+            return children == null ? null : children[distance];
+        }
+
+        @SuppressWarnings("unchecked")
+        void setChild(int distance, Node<T> child) {
+            if (children == null) {
+                children = (Node<T>[]) Array.newInstance(Node.class, MAX_DISTANCE + 1);
+            }
+            children[distance] = child;
+        }
+
+        boolean removeValue(T value) {
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) == value) {
+                    values.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
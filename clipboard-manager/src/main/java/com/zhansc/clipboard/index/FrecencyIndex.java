@@ -0,0 +1,235 @@
+package com.zhansc.clipboard.index;
+
+import com.zhansc.clipboard.ClipboardItem;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 按使用频率和新近程度（frecency）排序的索引
+ * 每次捕获或复制回剪贴板记一次带权重的事件，分数为所有事件按半衰期指数衰减后的和。
+ * 所有分数随时间按同一比例衰减，排序不随时间变化，因此只保存以对数表示的"衰减到时间零点"的分数，
+ * 只有发生事件时才需要调整位置。项目保存在带位置索引的最大堆中，取前k项为O(k log k)
+ * 非线程安全，由ClipboardHistory加锁访问
+ * @date 10/21/26 10:40
+ */
+public class FrecencyIndex {
+    // 捕获和复制回剪贴板的权重，主动复制回去比被动捕获更能说明常用
+    public static final double CAPTURE_WEIGHT = 1.0;
+    public static final double USE_WEIGHT = 4.0;
+
+    // 每毫秒的衰减率（自然对数）
+    private final double decayPerMilli;
+    // 内容键 -> 条目，相同内容的不同项目实例共用分数
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Entry[] heap = new Entry[16];
+    private int size;
+
+    /**
+     * @param halfLifeMillis 分数衰减一半所需的时间
+     */
+    public FrecencyIndex(long halfLifeMillis) {
+        if (halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("halfLifeMillis必须大于0");
+        }
+        this.decayPerMilli = Math.log(2) / halfLifeMillis;
+    }
+
+    /**
+     * 项目进入历史记录。新内容以捕获时间记一次捕获；
+     * 相同内容的新实例（再次捕获、同步替换）追加一次捕获；同一实例重新加入不计分，使用由recordUse记录
+     *
+     * @param item 剪贴板项
+     */
+    public void retain(ClipboardItem item) {
+        long time = epochMillis(item);
+        Entry entry = entries.get(item.getContentKey());
+        if (entry == null) {
+            entry = new Entry(item, this.logWeight(CAPTURE_WEIGHT, time));
+            entries.put(item.getContentKey(), entry);
+            this.push(entry);
+            return;
+        }
+        entry.refs++;
+        if (entry.item != item) {
+            entry.item = item;
+            this.addEvent(entry, CAPTURE_WEIGHT, time);
+        }
+    }
+
+    /**
+     * 项目离开历史记录，相同内容的所有实例都离开后删除条目
+     *
+     * @param item 剪贴板项
+     */
+    public void release(ClipboardItem item) {
+        Entry entry = entries.get(item.getContentKey());
+        if (entry == null || --entry.refs > 0) {
+            return;
+        }
+        entries.remove(item.getContentKey());
+        this.removeAt(entry.heapIndex);
+    }
+
+    /**
+     * 记录一次复制回剪贴板
+     *
+     * @param item       剪贴板项
+     * @param timeMillis 使用时间
+     */
+    public void recordUse(ClipboardItem item, long timeMillis) {
+        Entry entry = entries.get(item.getContentKey());
+        if (entry != null) {
+            this.addEvent(entry, USE_WEIGHT, timeMillis);
+        }
+    }
+
+    /**
+     * 获取项目在指定时间的分数，相当于该时间点的加权事件数
+     *
+     * @return 分数，不在索引中时返回0
+     */
+    public double score(ClipboardItem item, long nowMillis) {
+        Entry entry = entries.get(item.getContentKey());
+        return entry == null ? 0 : Math.exp(entry.logScore - decayPerMilli * nowMillis);
+    }
+
+    /**
+     * 按分数从高到低取前k项，从堆顶开始按最优优先遍历，只访问O(k)个节点
+     *
+     * @param k 最大条数
+     * @return 项目列表
+     */
+    public List<ClipboardItem> top(int k) {
+        int limit = Math.min(k, size);
+        List<ClipboardItem> result = new ArrayList<>(Math.max(0, limit));
+        if (limit <= 0) {
+            return result;
+        }
+        PriorityQueue<Entry> frontier = new PriorityQueue<>((a, b) -> Double.compare(b.logScore, a.logScore));
+        frontier.add(heap[0]);
+        while (result.size() < limit) {
+            Entry entry = frontier.poll();
+            result.add(entry.item);
+            int child = entry.heapIndex * 2 + 1;
+            if (child < size) {
+                frontier.add(heap[child]);
+            }
+            if (child + 1 < size) {
+                frontier.add(heap[child + 1]);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        entries.clear();
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+    }
+
+    private double logWeight(double weight, long timeMillis) {
+        return Math.log(weight) + decayPerMilli * timeMillis;
+    }
+
+    /**
+     * 追加一次事件，分数只增不减，只需要上浮
+     */
+    private void addEvent(Entry entry, double weight, long timeMillis) {
+        double event = this.logWeight(weight, timeMillis);
+        double high = Math.max(entry.logScore, event);
+        double low = Math.min(entry.logScore, event);
+        // log(e^a + e^b)，避免直接求指数溢出
+        entry.logScore = high + Math.log1p(Math.exp(low - high));
+        this.siftUp(entry.heapIndex);
+    }
+
+    private static long epochMillis(ClipboardItem item) {
+        return item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void push(Entry entry) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = entry;
+        entry.heapIndex = size;
+        size++;
+        this.siftUp(entry.heapIndex);
+    }
+
+    private void removeAt(int index) {
+        size--;
+        Entry last = heap[size];
+        heap[size] = null;
+        if (index == size) {
+            return;
+        }
+        heap[index] = last;
+        last.heapIndex = index;
+        this.siftDown(index);
+        this.siftUp(last.heapIndex);
+    }
+
+    private void siftUp(int index) {
+        Entry entry = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].logScore >= entry.logScore) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].heapIndex = index;
+            index = parent;
+        }
+        heap[index] = entry;
+        entry.heapIndex = index;
+    }
+
+    private void siftDown(int index) {
+        Entry entry = heap[index];
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].logScore > heap[child].logScore) {
+                child++;
+            }
+            if (heap[child].logScore <= entry.logScore) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = entry;
+        entry.heapIndex = index;
+    }
+
+    private static final class Entry {
+        // 最近加入历史记录的实例
+        private ClipboardItem item;
+        // 衰减到时间零点的分数的自然对数
+        private double logScore;
+        // 历史记录中引用该内容的实例数，同一内容重新加入时会短暂为2
+        private int refs = 1;
+        private int heapIndex;
+
+        Entry(ClipboardItem item, double logScore) {
+            this.item = item;
+            this.logScore = logScore;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.zhansc.clipboard.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 全文索引的不可变段文件，以只读内存映射方式访问，查询时不需要把索引读入堆内存。
+ * 文件格式：头部（32字节）| 文档表 | 倒排表 | 词典。
+ * 头部依次为魔数、格式版本、覆盖的最小代号、文档数、词项数、文档表偏移、词典偏移；
+ * 文档表为每个文档的内容键（2字节长度+UTF-8）；倒排表为每个词项按文档号差值编码的变长整数；
+ * 词典按词项升序排列，每项16字节：词项、倒排表偏移、文档数，查询时二分查找
+ * @date 10/20/26 21:30
+ */
+final class IndexSegment {
+    private static final int MAGIC = 0x43494458;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int TERM_ENTRY_BYTES = 16;
+
+    private final Path path;
+    private final long generation;
+    private final long baseGeneration;
+    private final MappedByteBuffer buffer;
+    private final String[] keys;
+    private final int termCount;
+    private final int termDictOffset;
+
+    private IndexSegment(Path path, long generation, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.generation = generation;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("索引段格式错误: " + path);
+        }
+        this.baseGeneration = buffer.getLong(8);
+        int docCount = buffer.getInt(16);
+        this.termCount = buffer.getInt(20);
+        int docTableOffset = buffer.getInt(24);
+        this.termDictOffset = buffer.getInt(28);
+        if ((long) termDictOffset + (long) termCount * TERM_ENTRY_BYTES != buffer.capacity()) {
+            throw new IOException("索引段不完整: " + path);
+        }
+        // 文档表只在打开时读取一次，内容键用于判断哪些项目已经建立索引
+        this.keys = new String[docCount];
+        ByteBuffer docs = buffer.duplicate();
+        docs.position(docTableOffset);
+        for (int i = 0; i < docCount; i++) {
+            byte[] bytes = new byte[docs.getShort() & 0xffff];
+            docs.get(bytes);
+            keys[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 映射段文件
+     *
+     * @param path       段文件
+     * @param generation 段代号
+     * @return 段
+     * @throws IOException 读取失败或格式错误
+     */
+    static IndexSegment open(Path path, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new IndexSegment(path, generation, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 该段覆盖的最小代号，合并产生的段覆盖[baseGeneration, generation]范围内的所有段
+     */
+    long getBaseGeneration() {
+        return baseGeneration;
+    }
+
+    int getDocCount() {
+        return keys.length;
+    }
+
+    String getKey(int doc) {
+        return keys[doc];
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+
+    long getTerm(int index) {
+        return buffer.getLong(termDictOffset + index * TERM_ENTRY_BYTES);
+    }
+
+    /**
+     * 包含该词项的文档数
+     */
+    int getPostingCount(int index) {
+        return buffer.getInt(termDictOffset + index * TERM_ENTRY_BYTES + 12);
+    }
+
+    /**
+     * 二分查找词项
+     *
+     * @return 词项下标，不存在时返回-1
+     */
+    int find(long term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = this.getTerm(mid);
+            if (value < term) {
+                low = mid + 1;
+            } else if (value > term) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解码词项的倒排表，只使用绝对位置读取，可以被多个线程同时调用
+     *
+     * @param index 词项下标
+     * @param docs  输出的文档号，长度至少为getPostingCount(index)
+     */
+    void readPostings(int index, int[] docs) {
+        int position = buffer.getInt(termDictOffset + index * TERM_ENTRY_BYTES + 8);
+        int count = this.getPostingCount(index);
+        int doc = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            docs[i] = doc;
+        }
+    }
+
+    /**
+     * 把词项的倒排表解码为位图
+     */
+    BitSet postings(int index) {
+        int[] docs = new int[this.getPostingCount(index)];
+        this.readPostings(index, docs);
+        BitSet bits = new BitSet(keys.length);
+        for (int doc : docs) {
+            bits.set(doc);
+        }
+        return bits;
+    }
+
+    /**
+     * 段文件写入器，词项必须按升序添加，写完后通过原子重命名生效
+     */
+    static final class Writer {
+        private final Path path;
+        private final Path tmp;
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        private long position;
+        private long[] terms = new long[1024];
+        private int[] offsets = new int[1024];
+        private int[] counts = new int[1024];
+        private int termCount;
+
+        Writer(Path path, long baseGeneration, String[] keys) throws IOException {
+            this.path = path;
+            this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(baseGeneration).putInt(keys.length);
+            // 词项数和两个偏移在完成时回填
+            out.putInt(0).putInt(HEADER_BYTES).putInt(0);
+            for (String key : keys) {
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                this.ensure(2 + bytes.length);
+                out.putShort((short) bytes.length).put(bytes);
+            }
+        }
+
+        /**
+         * 添加一个词项
+         *
+         * @param term  词项，必须大于上一次添加的词项
+         * @param docs  升序排列的文档号
+         * @param count 文档数
+         */
+        void addTerm(long term, int[] docs, int count) throws IOException {
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                offsets = Arrays.copyOf(offsets, termCount * 2);
+                counts = Arrays.copyOf(counts, termCount * 2);
+            }
+            terms[termCount] = term;
+            offsets[termCount] = (int) (position + out.position());
+            counts[termCount] = count;
+            termCount++;
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                this.ensure(5);
+                int delta = docs[i] - previous;
+                previous = docs[i];
+                while ((delta & ~0x7f) != 0) {
+                    out.put((byte) ((delta & 0x7f) | 0x80));
+                    delta >>>= 7;
+                }
+                out.put((byte) delta);
+            }
+        }
+
+        /**
+         * 写出词典并提交段文件
+         */
+        void finish() throws IOException {
+            try {
+                int termDictOffset = (int) (position + out.position());
+                for (int i = 0; i < termCount; i++) {
+                    this.ensure(TERM_ENTRY_BYTES);
+                    out.putLong(terms[i]).putInt(offsets[i]).putInt(counts[i]);
+                }
+                this.drain();
+                ByteBuffer header = ByteBuffer.allocate(12);
+                header.putInt(termCount).putInt(HEADER_BYTES).putInt(termDictOffset).flip();
+                channel.write(header, 20);
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /**
+         * 放弃写入，删除临时文件
+         */
+        void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // 下次打开索引时会清理残留的临时文件
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (out.remaining() < bytes) {
+                this.drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                position += channel.write(out);
+            }
+            out.clear();
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("索引段过大");
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.zhansc.clipboard.index;
+
+import com.zhansc.clipboard.util.Md5Utils;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 加密存储时索引文件中的词项和内容键都替换为带密钥的哈希：三元组经AES加密后取48位，
+ * 内容键取HMAC-SHA256的前128位。没有密钥时无法从索引文件还原文本中的字符，也无法用猜测的文本确认某项内容在历史记录中。
+ * 哈希冲突只会多出候选项，调用方本来就需要逐项验证
+ * @date 10/21/26 21:05
+ */
+final class KeyedTerms {
+    // 每次加密的三元组数，限制临时数组的大小
+    private static final int BATCH = 4096;
+    private static final int BLOCK_BYTES = 16;
+    private static final int DOC_KEY_BYTES = 16;
+
+    private final SecretKeySpec termKey;
+    private final SecretKeySpec docKey;
+    // 查询线程和索引线程都会调用，每个线程使用自己的实例
+    private final ThreadLocal<Cipher> ciphers;
+    private final ThreadLocal<Mac> macs;
+    // 标识当前密钥，密钥变化后旧的索引段不再可用
+    private final String fingerprint;
+
+    KeyedTerms(SecretKey key) {
+        byte[] material = key.getEncoded();
+        this.termKey = new SecretKeySpec(hmac(material, "terms"), "AES");
+        this.docKey = new SecretKeySpec(hmac(material, "docs"), "HmacSHA256");
+        this.ciphers = ThreadLocal.withInitial(this::newCipher);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.fingerprint = Md5Utils.toHex(Arrays.copyOf(hmac(material, "fingerprint"), DOC_KEY_BYTES));
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 把三元组映射为带密钥的词项，返回升序且不重复的结果
+     *
+     * @param trigrams 三元组，每个为48位非负数
+     * @return 词项，每个为48位非负数
+     */
+    long[] terms(long[] trigrams) {
+        long[] result = new long[trigrams.length];
+        byte[] blocks = new byte[Math.min(trigrams.length, BATCH) * BLOCK_BYTES];
+        Cipher cipher = ciphers.get();
+        for (int start = 0; start < trigrams.length; start += BATCH) {
+            int count = Math.min(BATCH, trigrams.length - start);
+            ByteBuffer in = ByteBuffer.wrap(blocks);
+            for (int i = 0; i < count; i++) {
+                in.putLong(0L).putLong(trigrams[start + i]);
+            }
+            byte[] encrypted;
+            try {
+                encrypted = cipher.doFinal(blocks, 0, count * BLOCK_BYTES);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("加密索引词项失败", e);
+            }
+            ByteBuffer out = ByteBuffer.wrap(encrypted);
+            for (int i = 0; i < count; i++) {
+                result[start + i] = out.getLong(i * BLOCK_BYTES) >>> 16;
+            }
+        }
+        Arrays.sort(result);
+        int n = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (n == 0 || result[n - 1] != result[i]) {
+                result[n++] = result[i];
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 索引文件中保存的内容键
+     */
+    String docKey(String contentKey) {
+        byte[] digest = macs.get().doFinal(contentKey.getBytes(StandardCharsets.UTF_8));
+        return Md5Utils.toHex(Arrays.copyOf(digest, DOC_KEY_BYTES));
+    }
+
+    private Cipher newCipher() {
+        try {
+            // 每个三元组单独加密一个块，相当于以AES为带密钥的置换
+            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, termKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("当前JVM不支持AES", e);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(docKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("当前JVM不支持HmacSHA256", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String label) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(label.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("当前JVM不支持HmacSHA256", e);
+        }
+    }
+}
@@ -0,0 +1,622 @@
+package com.zhansc.clipboard.index;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.HistoryChangeListener;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import javax.crypto.SecretKey;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 持久化的全文索引，用于加速历史记录的关键字搜索
+ * 索引词项为小写文本中的三元组（连续3个字符），关键字的所有三元组都出现的文档才可能包含关键字，
+ * 搜索时只需验证这些候选项。新增的文本先在后台线程提取词项放入内存缓冲，缓冲满或定期写出为不可变段文件，
+ * 段数过多时在后台合并并丢弃已不在历史记录中的文档。启动时只映射已有段文件，只为段中缺失的项目提取词项。
+ * 历史存储加密时，索引文件中的词项和内容键都是带密钥的哈希（见KeyedTerms）
+ * @date 10/20/26 21:50
+ */
+public class SearchIndex implements HistoryChangeListener, Closeable {
+    private static final Logger LOG = LogManager.getLogger(SearchIndex.class);
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final String TMP_SUFFIX = ".tmp";
+    // 记录段文件使用的词项形式：明文三元组或某个密钥的哈希，与当前不一致时丢弃所有段
+    private static final String TERMS_FILE = "terms";
+    private static final String PLAIN_TERMS = "plain";
+    // 三元组长度
+    private static final int GRAM = 3;
+    // 内存缓冲中的文档数达到该值时写出为段
+    private static final int FLUSH_DOCS = 64;
+    // 内存缓冲中的词项总数达到该值时写出为段
+    private static final long FLUSH_TERMS = 4L * 1024 * 1024;
+    // 内存缓冲的定期写出间隔（秒）
+    private static final long FLUSH_INTERVAL_SECONDS = 10;
+    // 段数超过该值时在后台合并为一个段
+    private static final int MAX_SEGMENTS = 8;
+    // 提取词项时每次排序的字符数，避免为很长的文本分配与长度成正比的临时数组
+    private static final int CHUNK_CHARS = 256 * 1024;
+
+    private final Path dir;
+    // 带密钥的词项和内容键，不加密时为null
+    private final KeyedTerms keyed;
+    // 加密时索引中的内容键到历史记录内容键的映射，由索引线程写入，查询时读取
+    private final Map<String, String> contentKeys = new ConcurrentHashMap<>();
+    // 单线程执行所有写操作：提取词项、写出段、合并、清空
+    private final ScheduledExecutorService executor;
+    // 已写入段或内存缓冲的文档（索引文件中的内容键），只在索引线程中访问
+    private final Set<String> indexedKeys = new HashSet<>();
+    private long nextGeneration;
+    private ClipboardHistory history;
+    // 以下字段由this保护，查询时在同一把锁下读取，保证每个文档都能在段、缓冲或待处理集合之一中找到
+    private List<IndexSegment> segments;
+    private MemoryBuffer buffer = new MemoryBuffer();
+    // 正在写出的缓冲，写出完成前仍然参与查询
+    private MemoryBuffer flushing;
+    // 已加入历史记录但还未提取词项的内容键，查询时总是作为候选项
+    private final Set<String> pendingKeys = new HashSet<>();
+    // 写出失败后不再使用索引，搜索退回到逐项比较
+    private volatile boolean failed;
+
+    private SearchIndex(Path dir, KeyedTerms keyed, List<IndexSegment> segments, long nextGeneration) {
+        this.dir = dir;
+        this.keyed = keyed;
+        this.segments = Collections.unmodifiableList(segments);
+        this.nextGeneration = nextGeneration;
+        for (IndexSegment segment : segments) {
+            for (int doc = 0; doc < segment.getDocCount(); doc++) {
+                indexedKeys.add(segment.getKey(doc));
+            }
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "clipboard-search-index");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * 打开指定目录下的索引，映射已有的段文件
+     * 合并过程中崩溃留下的、已被合并段覆盖的旧段和临时文件在这里清理
+     *
+     * @param dir 索引目录
+     * @return 索引
+     * @throws IOException 打开失败
+     */
+    public static SearchIndex open(Path dir) throws IOException {
+        return open(dir, null);
+    }
+
+    /**
+     * 打开指定目录下的索引，key不为null时索引文件中只保存带密钥的哈希。
+     * 已有段文件的词项形式与当前不一致（开启或关闭加密、更换密钥）时丢弃这些段，在attach时重新建立索引
+     *
+     * @param dir 索引目录
+     * @param key 索引密钥，为null时保存明文三元组
+     * @return 索引
+     * @throws IOException 打开失败
+     */
+    public static SearchIndex open(Path dir, SecretKey key) throws IOException {
+        Files.createDirectories(dir);
+        KeyedTerms keyed = key == null ? null : new KeyedTerms(key);
+        checkTerms(dir, keyed == null ? PLAIN_TERMS : keyed.getFingerprint());
+        List<IndexSegment> opened = new ArrayList<>();
+        long maxGeneration = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    long generation = Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    maxGeneration = Math.max(maxGeneration, generation);
+                    try {
+                        opened.add(IndexSegment.open(path, generation));
+                    } catch (IOException e) {
+                        // 损坏的段直接丢弃，其中的项目会在attach时重新建立索引
+                        LOG.warn("丢弃损坏的索引段: {}", e.getMessage());
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        }
+
+        // 从新到旧检查，被较新的合并段覆盖的段已经失效
+        opened.sort(Comparator.comparingLong(IndexSegment::getGeneration).reversed());
+        List<IndexSegment> live = new ArrayList<>();
+        long coveredFrom = Long.MAX_VALUE;
+        for (IndexSegment segment : opened) {
+            if (segment.getGeneration() >= coveredFrom) {
+                deleteQuietly(segment.getPath());
+                continue;
+            }
+            live.add(segment);
+            coveredFrom = segment.getBaseGeneration();
+        }
+        Collections.reverse(live);
+        return new SearchIndex(dir, keyed, live, maxGeneration + 1);
+    }
+
+    /**
+     * 比较段文件的词项形式，不一致时先删除所有段再记录新的形式。
+     * 没有记录的目录是之前版本生成的明文索引
+     */
+    private static void checkTerms(Path dir, String expected) throws IOException {
+        Path file = dir.resolve(TERMS_FILE);
+        String actual = Files.exists(file)
+                ? new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim() : PLAIN_TERMS;
+        if (expected.equals(actual) && Files.exists(file)) {
+            return;
+        }
+        if (!expected.equals(actual)) {
+            LOG.info("搜索索引的词项形式已改变，重新建立索引");
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*")) {
+                for (Path path : stream) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        Path tmp = dir.resolve(TERMS_FILE + TMP_SUFFIX);
+        Files.write(tmp, expected.getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 开始为历史记录维护索引并让历史记录的搜索使用索引
+     * 只为还不在索引中的项目（上次退出前未写出的缓冲等）提取词项
+     *
+     * @param history 历史记录管理器
+     */
+    public void attach(ClipboardHistory history) {
+        this.history = history;
+        history.addChangeListener(this);
+        for (ClipboardItem item : history.snapshot().asList()) {
+            this.onItemAdded(item);
+        }
+        history.setSearchIndex(this);
+    }
+
+    /**
+     * 查找可能包含关键字的项目（不区分大小写）
+     * 返回的内容键是候选集合，可能包含不匹配或已不在历史记录中的项目，调用方需要逐项验证
+     *
+     * @param keyword 关键字
+     * @return 候选项的内容键，关键字太短或索引不可用时返回null，表示需要逐项比较
+     */
+    public Set<String> candidates(String keyword) {
+        String lower = keyword.toLowerCase();
+        if (failed || lower.length() < GRAM) {
+            return null;
+        }
+        long[] terms = this.terms(lower);
+        Set<String> docs = new HashSet<>();
+        Set<String> result = new HashSet<>();
+        List<IndexSegment> current;
+        synchronized (this) {
+            current = segments;
+            result.addAll(pendingKeys);
+            buffer.match(terms, docs);
+            if (flushing != null) {
+                flushing.match(terms, docs);
+            }
+        }
+        for (IndexSegment segment : current) {
+            match(segment, terms, docs);
+        }
+        if (keyed == null) {
+            result.addAll(docs);
+        } else {
+            for (String doc : docs) {
+                String key = contentKeys.get(doc);
+                // 没有映射的文档已不在历史记录中
+                if (key != null) {
+                    result.add(key);
+                }
+            }
+        }
+        return result;
+    }
+
+    private long[] terms(String lower) {
+        long[] trigrams = trigrams(lower);
+        return keyed == null ? trigrams : keyed.terms(trigrams);
+    }
+
+    /**
+     * 索引文件中保存的内容键
+     */
+    private String docKey(String contentKey) {
+        return keyed == null ? contentKey : keyed.docKey(contentKey);
+    }
+
+    /**
+     * 在段中查找包含全部词项的文档，从最短的倒排表开始求交集
+     */
+    private static void match(IndexSegment segment, long[] terms, Set<String> result) {
+        Integer[] found = new Integer[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            int index = segment.find(terms[i]);
+            if (index < 0) {
+                return;
+            }
+            found[i] = index;
+        }
+        Arrays.sort(found, Comparator.comparingInt(segment::getPostingCount));
+        BitSet docs = segment.postings(found[0]);
+        for (int i = 1; i < found.length && !docs.isEmpty(); i++) {
+            docs.and(segment.postings(found[i]));
+        }
+        for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1)) {
+            result.add(segment.getKey(doc));
+        }
+    }
+
+    /**
+     * 获取当前段数
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void onItemAdded(ClipboardItem item) {
+        if (item.getContentType() == ContentTypeEnum.IMAGE) {
+            return;
+        }
+        String key = item.getContentKey();
+        synchronized (this) {
+            pendingKeys.add(key);
+        }
+        executor.execute(() -> this.index(item, key));
+    }
+
+    @Override
+    public void onItemRemoved(ClipboardItem item) {
+        // 已删除文档的倒排项保留到下次合并，搜索时由调用方按当前历史记录过滤
+    }
+
+    @Override
+    public void onHistoryCleared() {
+        executor.execute(this::clearSegments);
+    }
+
+    private void index(ClipboardItem item, String key) {
+        try {
+            String doc = this.docKey(key);
+            if (keyed != null) {
+                contentKeys.put(doc, key);
+            }
+            if (!indexedKeys.add(doc)) {
+                return;
+            }
+            long[] terms = this.terms(((String) item.getContent()).toLowerCase());
+            synchronized (this) {
+                buffer.add(doc, terms);
+            }
+        } finally {
+            synchronized (this) {
+                pendingKeys.remove(key);
+            }
+        }
+        if (buffer.docCount() >= FLUSH_DOCS || buffer.termTotal >= FLUSH_TERMS) {
+            this.flushQuietly();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+            if (segments.size() > MAX_SEGMENTS) {
+                this.merge();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("写入搜索索引失败，搜索将不再使用索引: {}", e.getMessage());
+            failed = true;
+        }
+    }
+
+    /**
+     * 把内存缓冲写出为新段，只在索引线程中调用
+     */
+    private void flush() throws IOException {
+        MemoryBuffer frozen;
+        synchronized (this) {
+            if (buffer.docCount() == 0) {
+                return;
+            }
+            frozen = buffer;
+            flushing = frozen;
+            buffer = new MemoryBuffer();
+        }
+        long generation = nextGeneration++;
+        IndexSegment segment = frozen.write(this.segmentPath(generation), generation);
+        synchronized (this) {
+            List<IndexSegment> updated = new ArrayList<>(segments);
+            updated.add(segment);
+            segments = Collections.unmodifiableList(updated);
+            flushing = null;
+        }
+    }
+
+    /**
+     * 把所有段合并为一个段，丢弃已不在历史记录中的文档，只在索引线程中调用
+     * 合并直接归并各段的有序词典和倒排表，不需要重新提取词项
+     */
+    private void merge() throws IOException {
+        List<IndexSegment> inputs = segments;
+        Set<String> live = null;
+        if (history != null) {
+            live = new HashSet<>();
+            for (ClipboardItem item : history.snapshot().asList()) {
+                live.add(this.docKey(item.getContentKey()));
+            }
+        }
+
+        // 按段的顺序重新编号保留的文档，归并后每个词项的文档号仍然有序
+        List<String> keys = new ArrayList<>();
+        Set<String> kept = new HashSet<>();
+        Set<String> dropped = new HashSet<>();
+        int[][] remap = new int[inputs.size()][];
+        for (int s = 0; s < inputs.size(); s++) {
+            IndexSegment segment = inputs.get(s);
+            remap[s] = new int[segment.getDocCount()];
+            for (int doc = 0; doc < segment.getDocCount(); doc++) {
+                String key = segment.getKey(doc);
+                if ((live == null || live.contains(key)) && kept.add(key)) {
+                    remap[s][doc] = keys.size();
+                    keys.add(key);
+                } else {
+                    remap[s][doc] = -1;
+                    dropped.add(key);
+                }
+            }
+        }
+        dropped.removeAll(kept);
+
+        long generation = nextGeneration++;
+        IndexSegment.Writer writer = new IndexSegment.Writer(this.segmentPath(generation),
+                inputs.get(0).getBaseGeneration(), keys.toArray(new String[0]));
+        try {
+            int[] cursors = new int[inputs.size()];
+            int[] postings = new int[Math.max(1, keys.size())];
+            int[] scratch = new int[0];
+            while (true) {
+                long term = Long.MAX_VALUE;
+                for (int s = 0; s < inputs.size(); s++) {
+                    if (cursors[s] < inputs.get(s).getTermCount()) {
+                        term = Math.min(term, inputs.get(s).getTerm(cursors[s]));
+                    }
+                }
+                if (term == Long.MAX_VALUE) {
+                    break;
+                }
+                int count = 0;
+                for (int s = 0; s < inputs.size(); s++) {
+                    IndexSegment segment = inputs.get(s);
+                    if (cursors[s] < segment.getTermCount() && segment.getTerm(cursors[s]) == term) {
+                        int n = segment.getPostingCount(cursors[s]);
+                        if (scratch.length < n) {
+                            scratch = new int[Math.max(n, scratch.length * 2)];
+                        }
+                        segment.readPostings(cursors[s], scratch);
+                        for (int i = 0; i < n; i++) {
+                            int doc = remap[s][scratch[i]];
+                            if (doc >= 0) {
+                                postings[count++] = doc;
+                            }
+                        }
+                        cursors[s]++;
+                    }
+                }
+                if (count > 0) {
+                    writer.addTerm(term, postings, count);
+                }
+            }
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        IndexSegment merged = IndexSegment.open(this.segmentPath(generation), generation);
+        synchronized (this) {
+            List<IndexSegment> updated = new ArrayList<>();
+            updated.add(merged);
+            updated.addAll(segments.subList(inputs.size(), segments.size()));
+            segments = Collections.unmodifiableList(updated);
+        }
+        for (IndexSegment segment : inputs) {
+            deleteQuietly(segment.getPath());
+        }
+        // 合并后重新加入历史记录的项目会在其添加事件中重新建立索引
+        indexedKeys.removeAll(dropped);
+        contentKeys.keySet().removeAll(dropped);
+    }
+
+    private void clearSegments() {
+        List<IndexSegment> removed;
+        synchronized (this) {
+            removed = segments;
+            segments = Collections.emptyList();
+            buffer = new MemoryBuffer();
+        }
+        indexedKeys.clear();
+        contentKeys.clear();
+        for (IndexSegment segment : removed) {
+            deleteQuietly(segment.getPath());
+        }
+    }
+
+    private Path segmentPath(long generation) {
+        return dir.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, generation, SEGMENT_SUFFIX));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // 仍被映射的文件在部分平台上无法删除，下次打开时按代号范围清理
+            LOG.warn("删除索引段失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 提取文本中所有不重复的三元组，按升序返回
+     * 每个三元组把3个UTF-16字符编码为一个48位的非负long
+     *
+     * @param text 已转换为小写的文本
+     * @return 词项
+     */
+    static long[] trigrams(String text) {
+        long[] result = new long[0];
+        int last = text.length() - GRAM;
+        for (int start = 0; start <= last; start += CHUNK_CHARS) {
+            int end = Math.min(last + 1, start + CHUNK_CHARS);
+            long[] chunk = new long[end - start];
+            for (int i = start; i < end; i++) {
+                chunk[i - start] = (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+            }
+            Arrays.sort(chunk);
+            result = mergeUnique(result, chunk);
+        }
+        return result;
+    }
+
+    /**
+     * 合并有序数组a（无重复）和有序数组b（可能重复），结果无重复
+     */
+    private static long[] mergeUnique(long[] a, long[] b) {
+        long[] merged = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            long value = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (n == 0 || merged[n - 1] != value) {
+                merged[n++] = value;
+            }
+        }
+        return n == merged.length ? merged : Arrays.copyOf(merged, n);
+    }
+
+    /**
+     * 停止后台线程并写出内存缓冲，下次启动时不需要为这些项目重新提取词项
+     */
+    @Override
+    public void close() throws IOException {
+        if (history != null) {
+            history.setSearchIndex(null);
+            history.removeChangeListener(this);
+        }
+        executor.execute(this::flushQuietly);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 尚未写出的文档，每个文档保存有序的词项数组，查询时二分查找
+     */
+    private static final class MemoryBuffer {
+        private final List<String> keys = new ArrayList<>();
+        private final List<long[]> terms = new ArrayList<>();
+        private long termTotal;
+
+        void add(String key, long[] docTerms) {
+            keys.add(key);
+            terms.add(docTerms);
+            termTotal += docTerms.length;
+        }
+
+        int docCount() {
+            return keys.size();
+        }
+
+        void match(long[] query, Set<String> result) {
+            for (int doc = 0; doc < keys.size(); doc++) {
+                long[] docTerms = terms.get(doc);
+                boolean all = true;
+                for (long term : query) {
+                    if (Arrays.binarySearch(docTerms, term) < 0) {
+                        all = false;
+                        break;
+                    }
+                }
+                if (all) {
+                    result.add(keys.get(doc));
+                }
+            }
+        }
+
+        /**
+         * 写出为段文件：把（词项，文档号）打包为一个long排序，得到按词项分组、组内文档号有序的倒排表
+         */
+        IndexSegment write(Path path, long generation) throws IOException {
+            long[] pairs = new long[(int) termTotal];
+            int n = 0;
+            for (int doc = 0; doc < keys.size(); doc++) {
+                for (long term : terms.get(doc)) {
+                    pairs[n++] = term << 16 | doc;
+                }
+            }
+            // 词项占用高48位，翻转符号位后按有符号数排序等价于按无符号数排序
+            for (int i = 0; i < n; i++) {
+                pairs[i] ^= Long.MIN_VALUE;
+            }
+            Arrays.sort(pairs);
+
+            IndexSegment.Writer writer = new IndexSegment.Writer(path, generation, keys.toArray(new String[0]));
+            try {
+                int[] docs = new int[keys.size()];
+                int i = 0;
+                while (i < n) {
+                    long term = (pairs[i] ^ Long.MIN_VALUE) >>> 16;
+                    int count = 0;
+                    while (i < n && ((pairs[i] ^ Long.MIN_VALUE) >>> 16) == term) {
+                        docs[count++] = (int) (pairs[i] & 0xffff);
+                        i++;
+                    }
+                    writer.addTerm(term, docs, count);
+                }
+                writer.finish();
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+            return IndexSegment.open(path, generation);
+        }
+    }
+}
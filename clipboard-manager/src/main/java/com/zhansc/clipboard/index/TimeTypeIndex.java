@@ -0,0 +1,228 @@
+package com.zhansc.clipboard.index;
+
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 按内容类型分组、按复制时间排序的二级索引，"最近一小时的图片"这类按类型和时间范围过滤的查询
+ * 只访问范围内的项目，不需要扫描整个历史记录。另按内容键索引，供全文索引的候选项直接定位项目。
+ * 同一项目实例可能在重新添加到开头时被重复加入，按引用计数维护
+ * 非线程安全，由ClipboardHistory加锁访问
+ * @date 10/21/26 16:20
+ */
+public class TimeTypeIndex {
+    // 内容类型 -> 按（复制时间，加入顺序）排列的条目
+    private final Map<ContentTypeEnum, NavigableSet<Entry>> byType = new EnumMap<>(ContentTypeEnum.class);
+    // 项目实例 -> 条目
+    private final Map<ClipboardItem, Entry> entries = new IdentityHashMap<>();
+    // 内容键 -> 最近加入的条目
+    private final Map<String, Entry> byKey = new HashMap<>();
+    // 复制时间相同的项目按加入顺序区分
+    private long nextSequence;
+
+    public TimeTypeIndex() {
+        for (ContentTypeEnum type : ContentTypeEnum.values()) {
+            byType.put(type, new TreeSet<>());
+        }
+    }
+
+    /**
+     * 项目进入历史记录
+     *
+     * @param item 剪贴板项
+     */
+    public void add(ClipboardItem item) {
+        Entry entry = entries.get(item);
+        if (entry != null) {
+            entry.refs++;
+            return;
+        }
+        entry = new Entry(epochMillis(item), nextSequence++, item);
+        entries.put(item, entry);
+        byType.get(item.getContentType()).add(entry);
+        // 相同内容的新实例先加入、旧实例后移除，内容键总是指向新实例
+        byKey.put(item.getContentKey(), entry);
+    }
+
+    /**
+     * 项目离开历史记录，同一实例的所有引用都释放后删除
+     *
+     * @param item 剪贴板项
+     */
+    public void remove(ClipboardItem item) {
+        Entry entry = entries.get(item);
+        if (entry == null || --entry.refs > 0) {
+            return;
+        }
+        entries.remove(item);
+        byType.get(item.getContentType()).remove(entry);
+        byKey.remove(item.getContentKey(), entry);
+    }
+
+    public void clear() {
+        for (NavigableSet<Entry> set : byType.values()) {
+            set.clear();
+        }
+        entries.clear();
+        byKey.clear();
+    }
+
+    /**
+     * 按内容键查找项目
+     *
+     * @param contentKey 内容键
+     * @return 项目，不在历史记录中时返回null
+     */
+    public ClipboardItem get(String contentKey) {
+        Entry entry = byKey.get(contentKey);
+        return entry == null ? null : entry.item;
+    }
+
+    /**
+     * 估算时间范围内的项目数，假设每种类型的复制时间在最早和最晚之间均匀分布，不遍历范围
+     *
+     * @param types      内容类型
+     * @param fromMillis 起始时间（含）
+     * @param toMillis   结束时间（含）
+     * @return 估算的项目数
+     */
+    public long estimate(Collection<ContentTypeEnum> types, long fromMillis, long toMillis) {
+        long total = 0;
+        for (ContentTypeEnum type : types) {
+            NavigableSet<Entry> set = byType.get(type);
+            if (set.isEmpty()) {
+                continue;
+            }
+            long first = set.first().time;
+            long last = set.last().time;
+            long from = Math.max(first, fromMillis);
+            long to = Math.min(last, toMillis);
+            if (from > to) {
+                continue;
+            }
+            if (first == last) {
+                total += set.size();
+            } else {
+                total += (long) Math.ceil(set.size() * ((double) (to - from) / (last - first)));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 从游标位置开始，按复制时间从新到旧取出时间范围内的下一批项目，多种类型归并后输出，
+     * 游标前移到本批最后一项之后。历史记录在两批之间变化时，游标仍按时间位置继续
+     *
+     * @param types      内容类型
+     * @param fromMillis 起始时间（含）
+     * @param cursor     游标，首次使用时的位置即结束时间（含）
+     * @param max        最大条数
+     * @return 按复制时间从新到旧排列的项目
+     */
+    public List<ClipboardItem> next(Collection<ContentTypeEnum> types, long fromMillis, Cursor cursor, int max) {
+        List<ClipboardItem> result = new ArrayList<>();
+        Entry upper = new Entry(cursor.time, cursor.sequence, null);
+        Entry lower = new Entry(fromMillis, Long.MIN_VALUE, null);
+        if (cursor.exhausted || upper.compareTo(lower) <= 0) {
+            cursor.exhausted = true;
+            return result;
+        }
+        List<Iterator<Entry>> iterators = new ArrayList<>();
+        List<Entry> heads = new ArrayList<>();
+        for (ContentTypeEnum type : types) {
+            NavigableSet<Entry> set = byType.get(type);
+            if (set.isEmpty()) {
+                continue;
+            }
+            Iterator<Entry> iterator = set.subSet(lower, true, upper, false).descendingIterator();
+            if (iterator.hasNext()) {
+                iterators.add(iterator);
+                heads.add(iterator.next());
+            }
+        }
+        // 类型最多只有几种，逐个比较各类型的当前项即可
+        while (result.size() < max && !heads.isEmpty()) {
+            int newest = 0;
+            for (int i = 1; i < heads.size(); i++) {
+                if (heads.get(i).compareTo(heads.get(newest)) > 0) {
+                    newest = i;
+                }
+            }
+            Entry entry = heads.get(newest);
+            result.add(entry.item);
+            cursor.time = entry.time;
+            cursor.sequence = entry.sequence;
+            if (iterators.get(newest).hasNext()) {
+                heads.set(newest, iterators.get(newest).next());
+            } else {
+                iterators.remove(newest);
+                heads.remove(newest);
+            }
+        }
+        cursor.exhausted = heads.isEmpty();
+        return result;
+    }
+
+    /**
+     * 项目的复制时间（毫秒时间戳）
+     */
+    public static long epochMillis(ClipboardItem item) {
+        return item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 分批读取时间范围时的位置
+     */
+    public static final class Cursor {
+        private long time;
+        private long sequence = Long.MAX_VALUE;
+        private boolean exhausted;
+
+        /**
+         * @param toMillis 结束时间（含）
+         */
+        public Cursor(long toMillis) {
+            this.time = toMillis;
+        }
+
+        /**
+         * 范围内的项目是否已全部取出
+         */
+        public boolean isExhausted() {
+            return exhausted;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final long time;
+        private final long sequence;
+        private final ClipboardItem item;
+        private int refs = 1;
+
+        Entry(long time, long sequence, ClipboardItem item) {
+            this.time = time;
+            this.sequence = sequence;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.zhansc.clipboard.log;
+
+import com.zhansc.clipboard.enums.LogLevelEnum;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 异步日志：调用线程只做级别判断、申请环形缓冲区槽位并填入参数，
+ * 由后台线程格式化后写到控制台（WARN及以上写到标准错误）和按大小滚动的日志文件。
+ * 缓冲区满时丢弃新日志并计数，不阻塞调用线程。通过系统属性配置：
+ * clipboard4j.log.level（默认INFO）、clipboard4j.log.console（默认true）、
+ * clipboard4j.log.dir（设置后写入该目录下的clipboard4j.log）、clipboard4j.log.maxFileMb（默认5）、
+ * clipboard4j.log.maxFiles（保留的旧文件个数，默认5）、clipboard4j.log.bufferSize（默认8192）
+ * @date 10/21/26 18:10
+ */
+public final class LogManager {
+    // 写出线程空闲时的最长休眠时间，正常情况下由新日志唤醒
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final LogManager INSTANCE = new LogManager();
+
+    // 启用的最低级别的序号，Logger直接读取
+    volatile int threshold;
+    private final LogRingBuffer ring;
+    private final boolean console;
+    private RollingFileWriter file;
+    private final AtomicLong dropped = new AtomicLong();
+    // 已报告过的丢弃数，只由写出线程访问
+    private long reportedDropped;
+    private final Thread writer;
+    // 写出线程是否准备休眠，生产者发布后看到为true时唤醒它
+    private volatile boolean writerParked;
+    private volatile boolean stopping;
+    // 写出线程退出后改为在调用线程中同步写出
+    private volatile boolean writerDone;
+    // 已写出的事件数，flush用来等待
+    private final AtomicLong written = new AtomicLong();
+    // 格式化使用的缓冲区，只由写出线程（退出后由持有锁的调用线程）访问
+    private final StringBuilder line = new StringBuilder(256);
+
+    private LogManager() {
+        this.threshold = parseLevel(System.getProperty("clipboard4j.log.level")).ordinal();
+        this.console = !"false".equals(System.getProperty("clipboard4j.log.console"));
+        this.ring = new LogRingBuffer(Integer.getInteger("clipboard4j.log.bufferSize", 8192));
+        String dir = System.getProperty("clipboard4j.log.dir");
+        if (dir != null) {
+            try {
+                this.file = new RollingFileWriter(Paths.get(dir, "clipboard4j.log"),
+                        Long.getLong("clipboard4j.log.maxFileMb", 5L) * 1024 * 1024,
+                        Integer.getInteger("clipboard4j.log.maxFiles", 5));
+            } catch (IOException e) {
+                System.err.println("打开日志文件失败，只输出到控制台: " + e.getMessage());
+            }
+        }
+        this.writer = new Thread(this::drainLoop, "clipboard-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // 退出时写完缓冲区中的日志
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "clipboard-log-shutdown"));
+    }
+
+    /**
+     * 获取以类名命名的日志记录器
+     *
+     * @param type 类
+     * @return 日志记录器
+     */
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName(), INSTANCE);
+    }
+
+    /**
+     * 修改启用的最低级别，立即对所有日志记录器生效
+     *
+     * @param level 级别，OFF关闭所有日志
+     */
+    public static void setLevel(LogLevelEnum level) {
+        INSTANCE.threshold = level.ordinal();
+    }
+
+    public static LogLevelEnum getLevel() {
+        return LogLevelEnum.values()[INSTANCE.threshold];
+    }
+
+    /**
+     * 因缓冲区已满被丢弃的日志数
+     */
+    public static long getDroppedCount() {
+        return INSTANCE.dropped.get();
+    }
+
+    /**
+     * 等待此前发布的日志全部写出
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 是否在超时前写完
+     */
+    public static boolean flush(long timeout, TimeUnit unit) {
+        return INSTANCE.awaitWritten(INSTANCE.ring.claimed(), unit.toNanos(timeout));
+    }
+
+    void log(LogLevelEnum level, String loggerName, String pattern, Object arg1, Object arg2, Throwable thrown) {
+        if (writerDone) {
+            this.writeDirect(level, loggerName, pattern, arg1, arg2, thrown);
+            return;
+        }
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        ring.get(sequence).set(System.currentTimeMillis(), level, loggerName, Thread.currentThread().getName(),
+                pattern, arg1, arg2, thrown);
+        ring.publish(sequence);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean finishing = stopping;
+            if (this.drain() > 0) {
+                this.flushOutputs();
+                continue;
+            }
+            if (finishing) {
+                break;
+            }
+            writerParked = true;
+            if (ring.isEmpty() && !stopping) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerParked = false;
+        }
+        synchronized (this) {
+            writerDone = true;
+        }
+    }
+
+    /**
+     * 写出缓冲区中已发布的全部日志
+     *
+     * @return 写出的条数
+     */
+    private int drain() {
+        int count = 0;
+        LogRingBuffer.LogEvent event;
+        while ((event = ring.peek()) != null) {
+            this.format(event.timeMillis, event.level, event.loggerName, event.threadName);
+            event.appendMessage(line);
+            this.write(event.level);
+            ring.release();
+            count++;
+        }
+        long droppedNow = dropped.get();
+        if (droppedNow != reportedDropped) {
+            this.format(System.currentTimeMillis(), LogLevelEnum.WARN, "LogManager", writer.getName());
+            line.append("日志缓冲区已满，丢弃了 ").append(droppedNow - reportedDropped).append(" 条日志");
+            this.write(LogLevelEnum.WARN);
+            reportedDropped = droppedNow;
+        }
+        written.addAndGet(count);
+        return count;
+    }
+
+    private void format(long timeMillis, LogLevelEnum level, String loggerName, String threadName) {
+        line.setLength(0);
+        TIME_FORMATTER.formatTo(Instant.ofEpochMilli(timeMillis), line);
+        line.append(' ').append(level.name()).append(" [").append(threadName).append("] ")
+                .append(loggerName).append(" - ");
+    }
+
+    private void write(LogLevelEnum level) {
+        line.append(System.lineSeparator());
+        if (console) {
+            // 每次读取System.out，调用方重定向标准输出后同样生效
+            PrintStream stream = level.compareTo(LogLevelEnum.WARN) >= 0 ? System.err : System.out;
+            stream.print(line);
+        }
+        if (file != null) {
+            try {
+                file.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("写入日志文件失败，只输出到控制台: " + e.getMessage());
+                this.closeFile();
+            }
+        }
+    }
+
+    private void flushOutputs() {
+        if (file != null) {
+            try {
+                file.flush();
+            } catch (IOException e) {
+                System.err.println("写入日志文件失败，只输出到控制台: " + e.getMessage());
+                this.closeFile();
+            }
+        }
+    }
+
+    private void closeFile() {
+        try {
+            file.close();
+        } catch (IOException ignored) {
+            // 已经在报告写入失败
+        }
+        file = null;
+    }
+
+    /**
+     * 写出线程退出后（进程关闭期间）直接在调用线程中写出
+     */
+    private synchronized void writeDirect(LogLevelEnum level, String loggerName, String pattern,
+                                          Object arg1, Object arg2, Throwable thrown) {
+        LogRingBuffer.LogEvent event = new LogRingBuffer.LogEvent();
+        event.set(System.currentTimeMillis(), level, loggerName, Thread.currentThread().getName(),
+                pattern, arg1, arg2, thrown);
+        this.format(event.timeMillis, level, loggerName, event.threadName);
+        event.appendMessage(line);
+        this.write(level);
+        this.flushOutputs();
+    }
+
+    private boolean awaitWritten(long target, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (written.get() < target) {
+            if (writerDone || System.nanoTime() - deadline > 0) {
+                return written.get() >= target;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    private void shutdown() {
+        stopping = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static LogLevelEnum parseLevel(String value) {
+        if (value == null) {
+            return LogLevelEnum.INFO;
+        }
+        try {
+            return LogLevelEnum.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("无效的日志级别 " + value + "，使用INFO");
+            return LogLevelEnum.INFO;
+        }
+    }
+}
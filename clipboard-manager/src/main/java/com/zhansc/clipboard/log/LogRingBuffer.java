@@ -0,0 +1,156 @@
+package com.zhansc.clipboard.log;
+
+import com.zhansc.clipboard.enums.LogLevelEnum;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 多生产者、单消费者的无锁环形缓冲区，槽位中的日志事件预先分配并反复使用。
+ * 每个槽位带一个序号：等于写入位置时可以申请，等于写入位置+1时已发布可以读取，
+ * 读取后加上容量留给下一轮。生产者之间只竞争一次CAS，缓冲区满时申请失败而不是等待
+ * @date 10/21/26 18:10
+ */
+final class LogRingBuffer {
+    private final LogEvent[] events;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 读取位置，只由写出线程访问
+    private long head;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.events = new LogEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new LogEvent();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 申请一个槽位，申请成功后必须写入事件并调用publish
+     *
+     * @return 槽位的序号，缓冲区已满时返回-1
+     */
+    long claim() {
+        while (true) {
+            long position = tail.get();
+            long sequence = sequences.get((int) position & mask);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                return -1;
+            }
+            // 槽位已被其他生产者申请，重新读取写入位置
+        }
+    }
+
+    /**
+     * 已申请的槽位总数，即全部发布后读取位置将到达的位置
+     */
+    long claimed() {
+        return tail.get();
+    }
+
+    LogEvent get(long sequence) {
+        return events[(int) sequence & mask];
+    }
+
+    /**
+     * 发布已写入的事件。使用volatile写，与写出线程的休眠标记构成先写后读的配对，不会漏掉唤醒
+     */
+    void publish(long sequence) {
+        sequences.set((int) sequence & mask, sequence + 1);
+    }
+
+    /**
+     * 下一条已发布的事件，处理完后调用release
+     *
+     * @return 事件，没有时返回null
+     */
+    LogEvent peek() {
+        int index = (int) head & mask;
+        return sequences.get(index) == head + 1 ? events[index] : null;
+    }
+
+    /**
+     * 释放peek返回的事件，槽位留给下一轮写入
+     */
+    void release() {
+        int index = (int) head & mask;
+        events[index].clear();
+        sequences.set(index, head + capacity);
+        head++;
+    }
+
+    boolean isEmpty() {
+        return this.peek() == null;
+    }
+
+    /**
+     * 一条日志事件，消息在写出线程中才格式化
+     */
+    static final class LogEvent {
+        long timeMillis;
+        LogLevelEnum level;
+        String loggerName;
+        String threadName;
+        String pattern;
+        Object arg1;
+        Object arg2;
+        Throwable thrown;
+
+        void set(long timeMillis, LogLevelEnum level, String loggerName, String threadName, String pattern,
+                 Object arg1, Object arg2, Throwable thrown) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.loggerName = loggerName;
+            this.threadName = threadName;
+            this.pattern = pattern;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.thrown = thrown;
+        }
+
+        /**
+         * 清除引用，避免缓冲区长期持有参数对象
+         */
+        void clear() {
+            this.set(0, null, null, null, null, null, null, null);
+        }
+
+        /**
+         * 把消息中的{}依次替换为参数后追加到out
+         */
+        void appendMessage(StringBuilder out) {
+            int argIndex = 0;
+            int from = 0;
+            int placeholder;
+            while (argIndex < 2 && (placeholder = pattern.indexOf("{}", from)) >= 0) {
+                out.append(pattern, from, placeholder).append(argIndex == 0 ? arg1 : arg2);
+                from = placeholder + 2;
+                argIndex++;
+            }
+            out.append(pattern, from, pattern.length());
+            if (thrown != null) {
+                StringWriter trace = new StringWriter();
+                thrown.printStackTrace(new PrintWriter(trace));
+                out.append(System.lineSeparator()).append(trace.toString().trim());
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.zhansc.clipboard.log;
+
+import com.zhansc.clipboard.enums.LogLevelEnum;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 日志记录器，通过LogManager.getLogger获取。
+ * 消息中的{}按顺序替换为参数，格式化在后台写出线程中进行；级别未启用时在读取参数之前返回，不分配任何对象。
+ * 参数会被后台线程稍后读取，应传入不可变对象（字符串、数字等）；需要装箱或拼接的参数应先用isXxxEnabled判断
+ * @date 10/21/26 18:10
+ */
+public final class Logger {
+    private final String name;
+    private final LogManager manager;
+
+    Logger(String name, LogManager manager) {
+        this.name = name;
+        this.manager = manager;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled(LogLevelEnum level) {
+        return level.ordinal() >= manager.threshold;
+    }
+
+    public boolean isDebugEnabled() {
+        return LogLevelEnum.DEBUG.ordinal() >= manager.threshold;
+    }
+
+    public boolean isInfoEnabled() {
+        return LogLevelEnum.INFO.ordinal() >= manager.threshold;
+    }
+
+    public void debug(String message) {
+        if (this.isDebugEnabled()) {
+            manager.log(LogLevelEnum.DEBUG, name, message, null, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object arg) {
+        if (this.isDebugEnabled()) {
+            manager.log(LogLevelEnum.DEBUG, name, pattern, arg, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (this.isDebugEnabled()) {
+            manager.log(LogLevelEnum.DEBUG, name, pattern, arg1, arg2, null);
+        }
+    }
+
+    public void info(String message) {
+        if (this.isInfoEnabled()) {
+            manager.log(LogLevelEnum.INFO, name, message, null, null, null);
+        }
+    }
+
+    public void info(String pattern, Object arg) {
+        if (this.isInfoEnabled()) {
+            manager.log(LogLevelEnum.INFO, name, pattern, arg, null, null);
+        }
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (this.isInfoEnabled()) {
+            manager.log(LogLevelEnum.INFO, name, pattern, arg1, arg2, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (this.isEnabled(LogLevelEnum.WARN)) {
+            manager.log(LogLevelEnum.WARN, name, message, null, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object arg) {
+        if (this.isEnabled(LogLevelEnum.WARN)) {
+            manager.log(LogLevelEnum.WARN, name, pattern, arg, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2) {
+        if (this.isEnabled(LogLevelEnum.WARN)) {
+            manager.log(LogLevelEnum.WARN, name, pattern, arg1, arg2, null);
+        }
+    }
+
+    public void warn(String message, Throwable thrown) {
+        if (this.isEnabled(LogLevelEnum.WARN)) {
+            manager.log(LogLevelEnum.WARN, name, message, null, null, thrown);
+        }
+    }
+
+    public void warn(String pattern, Object arg, Throwable thrown) {
+        if (this.isEnabled(LogLevelEnum.WARN)) {
+            manager.log(LogLevelEnum.WARN, name, pattern, arg, null, thrown);
+        }
+    }
+
+    public void error(String message) {
+        if (this.isEnabled(LogLevelEnum.ERROR)) {
+            manager.log(LogLevelEnum.ERROR, name, message, null, null, null);
+        }
+    }
+
+    public void error(String pattern, Object arg) {
+        if (this.isEnabled(LogLevelEnum.ERROR)) {
+            manager.log(LogLevelEnum.ERROR, name, pattern, arg, null, null);
+        }
+    }
+
+    public void error(String pattern, Object arg1, Object arg2) {
+        if (this.isEnabled(LogLevelEnum.ERROR)) {
+            manager.log(LogLevelEnum.ERROR, name, pattern, arg1, arg2, null);
+        }
+    }
+
+    public void error(String message, Throwable thrown) {
+        if (this.isEnabled(LogLevelEnum.ERROR)) {
+            manager.log(LogLevelEnum.ERROR, name, message, null, null, thrown);
+        }
+    }
+
+    public void error(String pattern, Object arg, Throwable thrown) {
+        if (this.isEnabled(LogLevelEnum.ERROR)) {
+            manager.log(LogLevelEnum.ERROR, name, pattern, arg, null, thrown);
+        }
+    }
+}
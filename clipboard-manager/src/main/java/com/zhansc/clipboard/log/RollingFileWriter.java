@@ -0,0 +1,82 @@
+package com.zhansc.clipboard.log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 按大小滚动的日志文件：当前文件超过上限后依次改名为name.1、name.2……，
+ * 最多保留指定个数的旧文件。只由写出线程访问
+ * @date 10/21/26 18:10
+ */
+final class RollingFileWriter implements Closeable {
+    private final Path file;
+    private final long maxBytes;
+    private final int maxBackups;
+    private OutputStream out;
+    private long size;
+
+    /**
+     * @param file       当前日志文件
+     * @param maxBytes   单个文件的大小上限
+     * @param maxBackups 保留的旧文件个数
+     * @throws IOException 创建目录或打开文件失败
+     */
+    RollingFileWriter(Path file, long maxBytes, int maxBackups) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxBackups = maxBackups;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.open();
+    }
+
+    void write(byte[] bytes) throws IOException {
+        if (size > 0 && size + bytes.length > maxBytes) {
+            this.rotate();
+        }
+        out.write(bytes);
+        size += bytes.length;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                64 * 1024);
+        size = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        if (maxBackups <= 0) {
+            Files.delete(file);
+        } else {
+            for (int i = maxBackups - 1; i >= 1; i--) {
+                Path older = this.backup(i);
+                if (Files.exists(older)) {
+                    Files.move(older, this.backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, this.backup(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.open();
+    }
+
+    private Path backup(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
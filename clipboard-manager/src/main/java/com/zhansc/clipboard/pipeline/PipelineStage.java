@@ -0,0 +1,261 @@
+package com.zhansc.clipboard.pipeline;
+
+import com.zhansc.clipboard.enums.OverflowPolicyEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 流水线中的一个处理阶段，拥有独立的有界队列和工作线程，
+ * 队列已满时按溢出策略阻塞提交方或丢弃任务
+ * @date 10/20/26 10:20
+ */
+public class PipelineStage<T> {
+    private static final Logger LOG = LogManager.getLogger(PipelineStage.class);
+    private final String name;
+    private final StageHandler<T> handler;
+    // 允许的最大工作线程数，处理逻辑依赖任务顺序或单线程状态的阶段为1
+    private final int maxThreads;
+    private int capacity;
+    private int threads;
+    private OverflowPolicyEnum overflowPolicy;
+
+    private volatile BlockingQueue<T> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    // 正在处理的任务数
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public PipelineStage(String name, int capacity, int threads, OverflowPolicyEnum overflowPolicy,
+                         StageHandler<T> handler) {
+        this(name, capacity, threads, Integer.MAX_VALUE, overflowPolicy, handler);
+    }
+
+    /**
+     * @param maxThreads 允许的最大工作线程数，之后通过setThreads也不能超过
+     */
+    public PipelineStage(String name, int capacity, int threads, int maxThreads, OverflowPolicyEnum overflowPolicy,
+                         StageHandler<T> handler) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("maxThreads必须大于0");
+        }
+        this.name = name;
+        this.handler = handler;
+        this.maxThreads = maxThreads;
+        this.setCapacity(capacity);
+        this.setThreads(threads);
+        this.setOverflowPolicy(overflowPolicy);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 设置队列容量，需在启动前设置
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0");
+        }
+        this.checkNotRunning();
+        this.capacity = capacity;
+    }
+
+    /**
+     * 设置工作线程数，需在启动前设置，不能超过阶段允许的最大线程数
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads必须大于0");
+        }
+        if (threads > maxThreads) {
+            throw new IllegalArgumentException("阶段 " + name + " 最多使用 " + maxThreads + " 个线程");
+        }
+        this.checkNotRunning();
+        this.threads = threads;
+    }
+
+    /**
+     * 设置队列已满时的处理策略
+     */
+    public void setOverflowPolicy(OverflowPolicyEnum overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy不能为空");
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    private void checkNotRunning() {
+        if (running) {
+            throw new IllegalStateException("阶段 " + name + " 已启动，无法修改配置");
+        }
+    }
+
+    /**
+     * 启动工作线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "clipboard-" + name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * 停止工作线程，队列中未处理的任务被丢弃
+     */
+    public synchronized void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        workers.clear();
+        BlockingQueue<T> current = queue;
+        if (current != null) {
+            dropped.addAndGet(current.size());
+            current.clear();
+        }
+    }
+
+    /**
+     * 提交任务，队列已满时按溢出策略处理
+     *
+     * @param task 任务
+     * @return 任务是否进入队列
+     */
+    public boolean submit(T task) {
+        BlockingQueue<T> current = queue;
+        if (!running || current == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        submitted.incrementAndGet();
+        boolean accepted;
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    current.put(task);
+                    accepted = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    accepted = false;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!(accepted = current.offer(task))) {
+                    if (current.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            default:
+                accepted = current.offer(task);
+                break;
+        }
+        if (!accepted) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        this.recordDepth(current);
+        return true;
+    }
+
+    /**
+     * 尝试提交任务，不受溢出策略影响：队列已满时既不阻塞也不丢弃队列中的任务，直接返回false，
+     * 由调用方稍后重试。用于不能被下游拖慢的提交方
+     *
+     * @param task 任务
+     * @return 任务是否进入队列
+     */
+    public boolean offer(T task) {
+        BlockingQueue<T> current = queue;
+        if (!running || current == null || !current.offer(task)) {
+            return false;
+        }
+        submitted.incrementAndGet();
+        this.recordDepth(current);
+        return true;
+    }
+
+    private void recordDepth(BlockingQueue<T> current) {
+        int depth = current.size();
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            // 重试直到记录到最大深度
+        }
+    }
+
+    /**
+     * 队列中等待的任务数加上正在处理的任务数
+     */
+    public int getBacklog() {
+        BlockingQueue<T> current = queue;
+        return (current == null ? 0 : current.size()) + active.get();
+    }
+
+    /**
+     * 获取当前运行指标
+     */
+    public StageMetrics getMetrics() {
+        BlockingQueue<T> current = queue;
+        return new StageMetrics(name, current == null ? 0 : current.size(), maxQueueDepth.get(), capacity,
+                submitted.get(), processed.get(), dropped.get(), failed.get(), busyNanos.get());
+    }
+
+    private void work() {
+        BlockingQueue<T> current = queue;
+        while (running) {
+            T task;
+            try {
+                task = current.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            active.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                handler.handle(task);
+                processed.incrementAndGet();
+            } catch (InterruptedException e) {
+                failed.incrementAndGet();
+                return;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                LOG.error("流水线阶段 {} 处理失败", name, e);
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 阶段的处理逻辑
+     */
+    public interface StageHandler<T> {
+        void handle(T task) throws Exception;
+    }
+}
@@ -0,0 +1,91 @@
+package com.zhansc.clipboard.pipeline;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 流水线阶段的运行指标快照
+ * @date 10/20/26 10:10
+ */
+public final class StageMetrics {
+    private final String name;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final int capacity;
+    private final long submitted;
+    private final long processed;
+    private final long dropped;
+    private final long failed;
+    private final long busyNanos;
+
+    StageMetrics(String name, int queueDepth, int maxQueueDepth, int capacity, long submitted, long processed,
+                 long dropped, long failed, long busyNanos) {
+        this.name = name;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.capacity = capacity;
+        this.submitted = submitted;
+        this.processed = processed;
+        this.dropped = dropped;
+        this.failed = failed;
+        this.busyNanos = busyNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前队列中等待处理的任务数
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * 启动以来队列深度的最大值
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * 因队列已满被丢弃的任务数
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * 处理时抛出异常的任务数
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * 每个任务的平均处理耗时（毫秒）
+     */
+    public double getAverageMillis() {
+        long count = processed + failed;
+        return count == 0 ? 0 : busyNanos / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[depth=%d/%d, max=%d, submitted=%d, processed=%d, dropped=%d, failed=%d, avg=%.2fms]",
+                name, queueDepth, capacity, maxQueueDepth, submitted, processed, dropped, failed,
+                this.getAverageMillis());
+    }
+}
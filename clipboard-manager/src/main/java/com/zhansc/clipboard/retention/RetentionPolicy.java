@@ -0,0 +1,89 @@
+package com.zhansc.clipboard.retention;
+
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录保留策略：按内容类型的存活时间、统一的最大保留时间，以及一段时间未使用即过期，
+ * 取三者中最早的到期时间。修改后需要重新调用ClipboardHistory.setRetentionPolicy才会生效
+ * @date 10/20/26 15:30
+ */
+public class RetentionPolicy {
+    // 内容类型 -> 存活时间（毫秒）
+    private final Map<ContentTypeEnum, Long> typeTtlMillis = new EnumMap<>(ContentTypeEnum.class);
+    // 最大保留时间（毫秒），0表示不限制
+    private long maxAgeMillis;
+    // 未使用的过期时间（毫秒），每次使用后重新计时，0表示不限制
+    private long idleMillis;
+
+    /**
+     * 设置某种内容类型的存活时间，从复制时开始计算
+     *
+     * @param contentType 内容类型
+     * @param ttl         存活时间，0表示不限制
+     * @param unit        时间单位
+     */
+    public void setTypeTtl(ContentTypeEnum contentType, long ttl, TimeUnit unit) {
+        if (ttl > 0) {
+            typeTtlMillis.put(contentType, unit.toMillis(ttl));
+        } else {
+            typeTtlMillis.remove(contentType);
+        }
+    }
+
+    /**
+     * 设置所有内容的最大保留时间，从复制时开始计算
+     *
+     * @param maxAge 最大保留时间，0表示不限制
+     * @param unit   时间单位
+     */
+    public void setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAgeMillis = Math.max(0, unit.toMillis(maxAge));
+    }
+
+    /**
+     * 设置未使用的过期时间，项目被复制回剪贴板时重新计时
+     *
+     * @param idle 过期时间，0表示不限制
+     * @param unit 时间单位
+     */
+    public void setIdleExpiry(long idle, TimeUnit unit) {
+        this.idleMillis = Math.max(0, unit.toMillis(idle));
+    }
+
+    /**
+     * 是否设置了任何限制
+     */
+    public boolean isEmpty() {
+        return typeTtlMillis.isEmpty() && maxAgeMillis == 0 && idleMillis == 0;
+    }
+
+    /**
+     * 计算项目的到期时间
+     *
+     * @param item 剪贴板项
+     * @return 到期时间（毫秒时间戳），不会过期时返回Long.MAX_VALUE
+     */
+    public long deadlineOf(ClipboardItem item) {
+        long created = item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long deadline = Long.MAX_VALUE;
+        Long ttl = typeTtlMillis.get(item.getContentType());
+        if (ttl != null) {
+            deadline = Math.min(deadline, created + ttl);
+        }
+        if (maxAgeMillis > 0) {
+            deadline = Math.min(deadline, created + maxAgeMillis);
+        }
+        if (idleMillis > 0) {
+            deadline = Math.min(deadline, Math.max(created, item.getLastUsedTime()) + idleMillis);
+        }
+        return deadline;
+    }
+}
@@ -0,0 +1,168 @@
+package com.zhansc.clipboard.retention;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 分层时间轮，每层64个槽，上层的一个槽覆盖下层一整圈，
+ * 添加、取消定时项都是O(1)，时间推进到上层槽位时把其中的定时项下放到下层
+ * @date 10/20/26 15:10
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // 5层共30位，以秒为刻度可覆盖三十多年
+    private static final int LEVELS = 5;
+
+    // 每个刻度的毫秒数
+    private final long tickMillis;
+    // [层][槽] -> 双向链表头（哨兵）
+    private final Entry<T>[][] wheels;
+    // 当前刻度
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis必须大于0");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.wheels = (Entry<T>[][]) Array.newInstance(Entry.class, LEVELS, SLOTS);
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Entry<T> head = new Entry<>(null, 0);
+                head.prev = head;
+                head.next = head;
+                wheels[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * 添加定时项
+     *
+     * @param value          值
+     * @param deadlineMillis 到期时间，已过期的在下一个刻度到期
+     * @return 定时项，可用于取消
+     */
+    public Entry<T> schedule(T value, long deadlineMillis) {
+        // 向上取整，保证不会提前到期
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        Entry<T> entry = new Entry<>(value, Math.max(deadlineTick, currentTick + 1));
+        this.insert(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * 取消定时项，已到期或已取消的忽略
+     *
+     * @param entry 定时项
+     */
+    public void cancel(Entry<T> entry) {
+        if (entry.prev != null) {
+            this.unlink(entry);
+            size--;
+        }
+    }
+
+    /**
+     * 推进时间，返回期间到期的所有值
+     *
+     * @param nowMillis 当前时间
+     * @return 到期的值
+     */
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // 到达上层槽位边界时下放，从高层到低层依次处理
+            for (int level = this.cascadeLevel(currentTick); level > 0; level--) {
+                this.cascade(level, (int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK));
+            }
+            Entry<T> head = wheels[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Entry<T> entry = head.next;
+                this.unlink(entry);
+                size--;
+                expired.add(entry.value);
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 当前刻度需要下放的最高层
+     */
+    private int cascadeLevel(long tick) {
+        int level = 0;
+        while (level < LEVELS - 1 && (tick & ((1L << ((level + 1) * SLOT_BITS)) - 1)) == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private void cascade(int level, int slot) {
+        Entry<T> head = wheels[level][slot];
+        while (head.next != head) {
+            Entry<T> entry = head.next;
+            this.unlink(entry);
+            this.insert(entry);
+        }
+    }
+
+    private void insert(Entry<T> entry) {
+        long delta = entry.deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        long tick = entry.deadlineTick;
+        if (level == LEVELS - 1 && delta >= 1L << (LEVELS * SLOT_BITS)) {
+            // 超出时间轮范围的放到最高层最远的槽，下放时重新计算
+            tick = currentTick + (1L << (LEVELS * SLOT_BITS)) - 1;
+        }
+        Entry<T> head = wheels[level][(int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK)];
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private void unlink(Entry<T> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    /**
+     * 时间轮中的定时项
+     */
+    public static final class Entry<T> {
+        private final T value;
+        private final long deadlineTick;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
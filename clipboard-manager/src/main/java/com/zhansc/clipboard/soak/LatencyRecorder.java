@@ -0,0 +1,65 @@
+package com.zhansc.clipboard.soak;
+
+import java.util.Arrays;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 按采样窗口收集延迟，每次采样取出当前窗口的全部数据计算分位数后清空
+ * @date 10/21/26 11:30
+ */
+final class LatencyRecorder {
+    private long[] values = new long[1024];
+    private int count;
+
+    synchronized void record(long nanos) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = nanos;
+    }
+
+    /**
+     * 取出当前窗口并开始新窗口
+     *
+     * @return 当前窗口的统计
+     */
+    Window drain() {
+        long[] window;
+        synchronized (this) {
+            window = Arrays.copyOf(values, count);
+            count = 0;
+        }
+        Arrays.sort(window);
+        return new Window(window);
+    }
+
+    /**
+     * 一个采样窗口内的延迟统计
+     */
+    static final class Window {
+        private final long[] sorted;
+
+        private Window(long[] sorted) {
+            this.sorted = sorted;
+        }
+
+        int getCount() {
+            return sorted.length;
+        }
+
+        /**
+         * 按最近秩法取分位数
+         *
+         * @param percentile 0到100之间的分位
+         * @return 延迟（毫秒），窗口为空时返回NaN
+         */
+        double percentileMillis(double percentile) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package com.zhansc.clipboard.soak;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.ClipboardMonitor;
+import com.zhansc.clipboard.HistoryChangeListener;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.pipeline.StageMetrics;
+import com.zhansc.clipboard.store.PersistentHistoryStore;
+import com.zhansc.clipboard.util.Md5Utils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 长时间运行的浸泡测试，用于复现长时间运行后内存增长和延迟变差的问题。
+ * 在无界面环境下通过模拟剪贴板驱动ClipboardMonitor和ClipboardHistory，混合产生文本、链接和大图片，
+ * 定期在GC后采样堆内存、线程数以及捕获和搜索延迟的分位数，结束时按阈值判断是否失败（退出码1）。
+ * 参数通过系统属性设置，例如：
+ * java -Djava.awt.headless=true -Dsoak.minutes=240 -Dsoak.report=soak.csv com.zhansc.clipboard.soak.SoakHarness
+ * @date 10/21/26 11:30
+ */
+public class SoakHarness {
+    // 剪贴板内容被捕获的最长等待时间，超过后记为丢失
+    private static final long CAPTURE_TIMEOUT_MILLIS = 10_000;
+    private static final Transferable EMPTY = new ImageSelection(null);
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+            "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo", "sierra", "tango",
+            "剪贴板", "历史", "搜索", "图片", "链接", "测试"
+    };
+
+    private final Config config;
+    private final PrintStream out;
+    private final Random random = new Random(42);
+    private final Clipboard clipboard = new Clipboard("soak");
+    private final ClipboardHistory history;
+    private final ClipboardMonitor monitor;
+    // 大图片的编码耗时比文本高几个数量级，分开统计，否则p99取决于窗口内是否恰好有大图片
+    private final LatencyRecorder textCaptureLatency = new LatencyRecorder();
+    private final LatencyRecorder imageCaptureLatency = new LatencyRecorder();
+    private final LatencyRecorder searchLatency = new LatencyRecorder();
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final List<Sample> samples = new ArrayList<>();
+    // 驱动线程生成和写入一项期间持有，采样时获取，保证采样时没有正在处理的大图片
+    private final ReentrantLock driveLock = new ReentrantLock();
+    // 最近发送过的文本，用于模拟重复复制
+    private final String[] recentTexts = new String[64];
+    private Path storeDir;
+    private PersistentHistoryStore store;
+    private volatile Pending pending;
+    private volatile boolean running = true;
+    private long sequence;
+
+    public SoakHarness(Config config, PrintStream out) {
+        this.config = config;
+        this.out = out;
+        this.history = new ClipboardHistory(config.historySize);
+        history.setTextDeltaEnabled(true);
+        history.setNearDuplicateDistance(3);
+        this.monitor = new ClipboardMonitor(history, clipboard, null);
+        monitor.setPollMillis(config.pollMillis);
+    }
+
+    /**
+     * 运行浸泡测试
+     *
+     * @return 是否通过
+     */
+    public boolean run() throws IOException, InterruptedException {
+        if (config.persist) {
+            storeDir = Files.createTempDirectory("clipboard4j-soak");
+            store = PersistentHistoryStore.open(storeDir);
+            store.restore(history);
+        }
+        history.addChangeListener(new CaptureListener());
+        monitor.start();
+        Thread driver = new Thread(this::drive, "soak-driver");
+        Thread searcher = new Thread(this::search, "soak-searcher");
+        driver.start();
+        searcher.start();
+
+        long start = System.nanoTime();
+        long end = start + (long) (config.minutes * TimeUnit.MINUTES.toNanos(1));
+        out.println("elapsedSec,heapMb,threads,historySize,captured,missed,searches,"
+                + "textP50Ms,textP99Ms,imageP99Ms,searchP50Ms,searchP99Ms,dropped");
+        try {
+            while (System.nanoTime() < end) {
+                long next = Math.min(end, System.nanoTime() + TimeUnit.SECONDS.toNanos(config.sampleSeconds));
+                while (System.nanoTime() < next) {
+                    TimeUnit.NANOSECONDS.sleep(Math.min(next - System.nanoTime(), TimeUnit.SECONDS.toNanos(1)));
+                }
+                this.sample(start);
+            }
+        } finally {
+            running = false;
+            driver.join();
+            searcher.join();
+            monitor.stop();
+            if (store != null) {
+                store.close();
+                if (!config.keepStore) {
+                    deleteRecursively(storeDir);
+                }
+            }
+        }
+        return this.evaluate();
+    }
+
+    /**
+     * 按配置的频率向模拟剪贴板写入内容，每次写入后等待被捕获，模拟用户逐次复制
+     */
+    private void drive() {
+        double textInterval = 1000.0 / config.textPerSecond;
+        double imageProbability = config.imagePerMinute / 60.0 / config.textPerSecond;
+        long imageCount = 0;
+        try {
+            while (running) {
+                long begin = System.nanoTime();
+                driveLock.lockInterruptibly();
+                try {
+                    if (random.nextDouble() < imageProbability) {
+                        imageCount++;
+                        boolean large = config.largeImageEvery > 0 && imageCount % config.largeImageEvery == 0;
+                        this.offer(new ImageSelection(this.nextImage(large)), null);
+                        // 模拟剪贴板会一直持有最后一张图片，捕获后换成没有可读格式的内容，避免计入采样的堆内存
+                        clipboard.setContents(EMPTY, null);
+                    } else {
+                        String text = this.nextText();
+                        String type = text.startsWith("https://") ? ContentTypeEnum.URL.name() : ContentTypeEnum.TEXT.name();
+                        this.offer(new StringSelection(text), type + ":" + Md5Utils.md5Hex(text));
+                    }
+                } finally {
+                    driveLock.unlock();
+                }
+                long remaining = (long) textInterval - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                if (remaining > 0) {
+                    Thread.sleep(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写入剪贴板并等待捕获
+     *
+     * @param contents 内容
+     * @param key      期望的内容键，图片为null
+     */
+    private void offer(Transferable contents, String key) throws InterruptedException {
+        Pending current = new Pending(key);
+        pending = current;
+        current.startNanos = System.nanoTime();
+        clipboard.setContents(contents, null);
+        if (current.latch.await(CAPTURE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            captured.incrementAndGet();
+        } else {
+            missed.incrementAndGet();
+        }
+        pending = null;
+    }
+
+    private String nextText() {
+        int slot = (int) (sequence % recentTexts.length);
+        // 十分之一重复复制较早的内容，使去重和移到开头的路径也被覆盖；跳过上一条，否则会被监控直接去重
+        if (sequence > 2 && random.nextInt(10) == 0) {
+            int back = 2 + random.nextInt((int) Math.min(sequence, recentTexts.length) - 1);
+            String repeated = recentTexts[(int) ((sequence - back + recentTexts.length) % recentTexts.length)];
+            String previous = recentTexts[(int) ((sequence - 1) % recentTexts.length)];
+            if (repeated != null && !repeated.equals(previous)) {
+                sequence++;
+                recentTexts[slot] = repeated;
+                return repeated;
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        if (random.nextInt(4) == 0) {
+            text.append("https://example.com/").append(WORDS[random.nextInt(WORDS.length)]).append('/').append(sequence)
+                    .append("?q=").append(WORDS[random.nextInt(WORDS.length)]);
+        } else {
+            int words = 3 + random.nextInt(random.nextInt(8) == 0 ? 400 : 30);
+            for (int i = 0; i < words; i++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            text.append('#').append(sequence);
+        }
+        sequence++;
+        recentTexts[slot] = text.toString();
+        return recentTexts[slot];
+    }
+
+    /**
+     * 生成随机色块图片，每张图片的色块不同，不会被当作近似重复
+     */
+    private BufferedImage nextImage(boolean large) {
+        int width = large ? config.largeImageWidth : 200 + random.nextInt(600);
+        int height = large ? config.largeImageHeight : 150 + random.nextInt(450);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            int cells = 8;
+            for (int y = 0; y < cells; y++) {
+                for (int x = 0; x < cells; x++) {
+                    g.setColor(new Color(random.nextInt(0xffffff)));
+                    g.fillRect(x * width / cells, y * height / cells, width / cells + 1, height / cells + 1);
+                }
+            }
+            // 叠加噪点，使PNG编码的开销接近真实截图
+            for (int i = 0; i < width * height / 64; i++) {
+                image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xffffff));
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 按配置的频率在历史记录中搜索，交替使用普通搜索和按常用程度排序的搜索
+     */
+    private void search() {
+        Random searchRandom = new Random(7);
+        long interval = Math.max(1, (long) (1000.0 / config.searchPerSecond));
+        try {
+            while (running) {
+                String keyword = WORDS[searchRandom.nextInt(WORDS.length)];
+                if (searchRandom.nextBoolean()) {
+                    keyword = keyword + " " + WORDS[searchRandom.nextInt(WORDS.length)];
+                }
+                long begin = System.nanoTime();
+                if (searchRandom.nextBoolean()) {
+                    history.search(keyword);
+                } else {
+                    history.searchRanked(keyword, 30);
+                }
+                searchLatency.record(System.nanoTime() - begin);
+                searches.incrementAndGet();
+                Thread.sleep(interval);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * GC后采样一次
+     */
+    private void sample(long startNanos) throws InterruptedException {
+        Sample sample = new Sample();
+        driveLock.lockInterruptibly();
+        try {
+            sample.elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            // 多次GC使软引用和终结对象尽量被回收，采样值更接近存活数据
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            sample.heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0);
+            sample.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        } finally {
+            driveLock.unlock();
+        }
+        LatencyRecorder.Window text = textCaptureLatency.drain();
+        LatencyRecorder.Window image = imageCaptureLatency.drain();
+        LatencyRecorder.Window search = searchLatency.drain();
+        sample.textP50 = text.percentileMillis(50);
+        sample.textP99 = text.percentileMillis(99);
+        sample.imageP99 = image.percentileMillis(99);
+        sample.searchP50 = search.percentileMillis(50);
+        sample.searchP99 = search.percentileMillis(99);
+        long dropped = 0;
+        for (StageMetrics metrics : monitor.getStageMetrics()) {
+            dropped += metrics.getDropped();
+        }
+        samples.add(sample);
+        out.printf("%.0f,%.1f,%d,%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%d%n", sample.elapsedSeconds, sample.heapMb,
+                sample.threads, history.size(), captured.get(), missed.get(), searches.get(), sample.textP50,
+                sample.textP99, sample.imageP99, sample.searchP50, sample.searchP99, dropped);
+    }
+
+    /**
+     * 按阈值判断结果。预热阶段之后的样本才参与判断：
+     * 堆内存用最小二乘拟合的增长量，避免单次采样的波动；线程数看是否持续增加；
+     * p99取前三分之一和后三分之一窗口的中位数比较，同时要求绝对增加量超过下限，避免微秒级延迟的噪声
+     */
+    private boolean evaluate() {
+        List<Sample> steady = new ArrayList<>();
+        for (Sample sample : samples) {
+            if (sample.elapsedSeconds >= config.warmupMinutes * 60.0) {
+                steady.add(sample);
+            }
+        }
+        out.println();
+        if (steady.size() < 3) {
+            out.println("预热后的样本不足3个，无法判断，请延长运行时间或缩短采样间隔");
+            return false;
+        }
+        boolean passed = true;
+
+        double[] times = new double[steady.size()];
+        double[] heap = new double[steady.size()];
+        for (int i = 0; i < steady.size(); i++) {
+            times[i] = steady.get(i).elapsedSeconds;
+            heap[i] = steady.get(i).heapMb;
+        }
+        double slope = slope(times, heap);
+        double growth = slope * (times[times.length - 1] - times[0]);
+        passed &= this.check("堆内存增长", growth, config.maxHeapGrowthMb, "MB",
+                String.format("（%.2f MB/小时）", slope * 3600));
+
+        int baseThreads = steady.get(0).threads;
+        int maxThreads = baseThreads;
+        for (Sample sample : steady) {
+            maxThreads = Math.max(maxThreads, sample.threads);
+        }
+        passed &= this.check("线程数增长", maxThreads - baseThreads, config.maxThreadGrowth, "", "");
+
+        int third = Math.max(1, steady.size() / 3);
+        List<Sample> first = steady.subList(0, third);
+        List<Sample> last = steady.subList(steady.size() - third, steady.size());
+        passed &= this.checkDrift("文本捕获p99", median(first, Metric.TEXT_P99), median(last, Metric.TEXT_P99));
+        passed &= this.checkDrift("图片捕获p99", median(first, Metric.IMAGE_P99), median(last, Metric.IMAGE_P99));
+        passed &= this.checkDrift("搜索p99", median(first, Metric.SEARCH_P99), median(last, Metric.SEARCH_P99));
+
+        long total = captured.get() + missed.get();
+        out.printf("捕获 %d 次，丢失 %d 次，搜索 %d 次%n", captured.get(), missed.get(), searches.get());
+        if (total > 0 && missed.get() * 100 > total) {
+            out.println("失败: 超过1%的剪贴板内容未被捕获");
+            passed = false;
+        }
+        out.println(passed ? "浸泡测试通过" : "浸泡测试失败");
+        return passed;
+    }
+
+    private boolean check(String name, double value, double limit, String unit, String detail) {
+        boolean ok = value <= limit;
+        out.printf("%s %s: %.2f%s%s，阈值 %.2f%s%n", ok ? "通过" : "失败", name, value, unit, detail, limit, unit);
+        return ok;
+    }
+
+    private boolean checkDrift(String name, double baseline, double recent) {
+        if (Double.isNaN(baseline) || Double.isNaN(recent)) {
+            out.println("跳过 " + name + ": 没有数据");
+            return true;
+        }
+        double ratio = baseline > 0 ? recent / baseline : 1;
+        boolean ok = ratio <= config.maxP99Drift || recent - baseline <= config.p99FloorMillis;
+        out.printf("%s %s: %.2fms -> %.2fms（%.2f倍），阈值 %.2f倍且增加超过 %.2fms%n", ok ? "通过" : "失败", name,
+                baseline, recent, ratio, config.maxP99Drift, config.p99FloorMillis);
+        return ok;
+    }
+
+    private static double median(List<Sample> samples, Metric metric) {
+        double[] values = new double[samples.size()];
+        int count = 0;
+        for (Sample sample : samples) {
+            double value = metric == Metric.TEXT_P99 ? sample.textP99
+                    : metric == Metric.IMAGE_P99 ? sample.imageP99 : sample.searchP99;
+            if (!Double.isNaN(value)) {
+                values[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(values, 0, count);
+        return values[count / 2];
+    }
+
+    /**
+     * 最小二乘拟合的斜率
+     */
+    private static double slope(double[] x, double[] y) {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= x.length;
+        meanY /= y.length;
+        double numerator = 0;
+        double denominator = 0;
+        for (int i = 0; i < x.length; i++) {
+            numerator += (x[i] - meanX) * (y[i] - meanY);
+            denominator += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return denominator == 0 ? 0 : numerator / denominator;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Config config = Config.fromSystemProperties();
+        PrintStream report = System.out;
+        String reportPath = System.getProperty("soak.report");
+        if (reportPath != null) {
+            report = new PrintStream(new TeeOutputStream(System.out, Files.newOutputStream(Paths.get(reportPath))),
+                    true, "UTF-8");
+        }
+        // 监控和搜索的调试输出会淹没报告，运行期间丢弃
+        PrintStream quiet = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        System.setOut(quiet);
+        boolean passed;
+        try {
+            passed = new SoakHarness(config, report).run();
+        } finally {
+            report.flush();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * 运行参数
+     */
+    public static final class Config {
+        double minutes = 120;
+        long sampleSeconds = 30;
+        double warmupMinutes = 5;
+        long pollMillis = 20;
+        int historySize = 200;
+        boolean persist = true;
+        boolean keepStore;
+        double textPerSecond = 10;
+        double imagePerMinute = 6;
+        int largeImageEvery = 10;
+        int largeImageWidth = 3840;
+        int largeImageHeight = 2160;
+        double searchPerSecond = 5;
+        double maxHeapGrowthMb = 32;
+        int maxThreadGrowth = 4;
+        double maxP99Drift = 2.0;
+        double p99FloorMillis = 5;
+
+        static Config fromSystemProperties() {
+            Config config = new Config();
+            config.minutes = doubleProperty("soak.minutes", config.minutes);
+            config.sampleSeconds = Long.getLong("soak.sampleSeconds", config.sampleSeconds);
+            config.warmupMinutes = doubleProperty("soak.warmupMinutes", config.warmupMinutes);
+            config.pollMillis = Long.getLong("soak.pollMillis", config.pollMillis);
+            config.historySize = Integer.getInteger("soak.historySize", config.historySize);
+            config.persist = Boolean.parseBoolean(System.getProperty("soak.persist", String.valueOf(config.persist)));
+            config.keepStore = Boolean.getBoolean("soak.keepStore");
+            config.textPerSecond = doubleProperty("soak.textPerSecond", config.textPerSecond);
+            config.imagePerMinute = doubleProperty("soak.imagePerMinute", config.imagePerMinute);
+            config.largeImageEvery = Integer.getInteger("soak.largeImageEvery", config.largeImageEvery);
+            config.largeImageWidth = Integer.getInteger("soak.largeImageWidth", config.largeImageWidth);
+            config.largeImageHeight = Integer.getInteger("soak.largeImageHeight", config.largeImageHeight);
+            config.searchPerSecond = doubleProperty("soak.searchPerSecond", config.searchPerSecond);
+            config.maxHeapGrowthMb = doubleProperty("soak.maxHeapGrowthMb", config.maxHeapGrowthMb);
+            config.maxThreadGrowth = Integer.getInteger("soak.maxThreadGrowth", config.maxThreadGrowth);
+            config.maxP99Drift = doubleProperty("soak.maxP99Drift", config.maxP99Drift);
+            config.p99FloorMillis = doubleProperty("soak.p99FloorMillis", config.p99FloorMillis);
+            if (config.textPerSecond <= 0 || config.searchPerSecond <= 0 || config.sampleSeconds <= 0) {
+                throw new IllegalArgumentException("频率和采样间隔必须大于0");
+            }
+            return config;
+        }
+
+        private static double doubleProperty(String name, double defaultValue) {
+            String value = System.getProperty(name);
+            return value == null ? defaultValue : Double.parseDouble(value);
+        }
+    }
+
+    /**
+     * 监听历史记录，期望的内容被加入时记录捕获延迟
+     */
+    private final class CaptureListener implements HistoryChangeListener {
+        @Override
+        public void onItemAdded(ClipboardItem item) {
+            Pending current = pending;
+            if (current != null && current.matches(item) && current.latch.getCount() > 0) {
+                (current.key == null ? imageCaptureLatency : textCaptureLatency).record(System.nanoTime() - current.startNanos);
+                current.latch.countDown();
+            }
+        }
+
+        @Override
+        public void onItemRemoved(ClipboardItem item) {
+        }
+
+        @Override
+        public void onHistoryCleared() {
+        }
+    }
+
+    /**
+     * 等待捕获的剪贴板内容
+     */
+    private static final class Pending {
+        // 文本和链接的内容键，图片为null，驱动线程每次只写入一项，等待期间加入的图片就是写入的图片
+        private final String key;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile long startNanos;
+
+        Pending(String key) {
+            this.key = key;
+        }
+
+        boolean matches(ClipboardItem item) {
+            if (key == null) {
+                return item.getContentType() == ContentTypeEnum.IMAGE;
+            }
+            return item.getContentType() != ContentTypeEnum.IMAGE && key.equals(item.getContentKey());
+        }
+    }
+
+    private enum Metric {
+        TEXT_P99, IMAGE_P99, SEARCH_P99
+    }
+
+    /**
+     * 一次采样
+     */
+    private static final class Sample {
+        private double elapsedSeconds;
+        private double heapMb;
+        private int threads;
+        private double textP50;
+        private double textP99;
+        private double imageP99;
+        private double searchP50;
+        private double searchP99;
+    }
+
+    /**
+     * 图片剪贴板内容，图片为null时不提供任何格式
+     */
+    private static final class ImageSelection implements Transferable {
+        private final BufferedImage image;
+
+        ImageSelection(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return image == null ? new DataFlavor[0] : new DataFlavor[]{DataFlavor.imageFlavor};
+        }
+
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return image != null && DataFlavor.imageFlavor.equals(flavor);
+        }
+
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (!this.isDataFlavorSupported(flavor)) {
+                throw new UnsupportedFlavorException(flavor);
+            }
+            return image;
+        }
+    }
+
+    /**
+     * 同时写入两个输出流，报告既输出到控制台也保存到文件
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                first.flush();
+            } finally {
+                second.close();
+            }
+        }
+    }
+}
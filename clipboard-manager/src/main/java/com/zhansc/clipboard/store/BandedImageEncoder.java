@@ -0,0 +1,337 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.util.Md5Utils;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 大图片的分带编码器，按扫描行带逐段读取像素，边读边PNG编码、计算MD5并生成缩略图，
+ * 不创建整张图片的副本，编码过程中的额外内存（不含编码结果本身）不超过配置的上限
+ * @date 10/20/26 11:20
+ */
+public class BandedImageEncoder {
+    // 默认额外内存上限：8MB
+    public static final long DEFAULT_MAX_BUFFER_BYTES = 8L * 1024 * 1024;
+    // 编码时生成的缩略图最大边长，界面和预览直接使用，无需解码原图
+    static final int PREVIEW_SIZE = 256;
+    // 单个IDAT块的大小
+    private static final int IDAT_BYTES = 64 * 1024;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private final long maxBufferBytes;
+
+    public BandedImageEncoder() {
+        this(DEFAULT_MAX_BUFFER_BYTES);
+    }
+
+    public BandedImageEncoder(long maxBufferBytes) {
+        if (maxBufferBytes <= 0) {
+            throw new IllegalArgumentException("maxBufferBytes必须大于0");
+        }
+        this.maxBufferBytes = maxBufferBytes;
+    }
+
+    public long getMaxBufferBytes() {
+        return maxBufferBytes;
+    }
+
+    /**
+     * 整图转换需要的内存超过上限时应使用分带编码
+     *
+     * @param image 图片
+     * @return 是否为大图片
+     */
+    public boolean isLarge(Image image) {
+        return (long) image.getWidth(null) * image.getHeight(null) * 4 > maxBufferBytes;
+    }
+
+    /**
+     * 分带编码图片，返回的句柄不持有原图，原图可以立即被回收
+     *
+     * @param image 图片
+     * @return 未被存储接管的句柄
+     * @throws IOException 编码失败
+     */
+    public ImageHandle encode(Image image) throws IOException {
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
+        if (width <= 0 || height <= 0) {
+            throw new IOException("图片尺寸无效: " + width + "x" + height);
+        }
+
+        double scale = Math.min(1.0, Math.min((double) PREVIEW_SIZE / width, (double) PREVIEW_SIZE / height));
+        int previewWidth = Math.max(1, (int) (width * scale));
+        int previewHeight = Math.max(1, (int) (height * scale));
+        // 固定开销：扫描行和上一行、缩略图累加器和缩略图、列映射表、压缩缓冲和IDAT缓冲
+        long fixedBytes = 2L * (width * 3 + 1) + (long) previewWidth * previewHeight * 20 + width * 4L
+                + 2L * IDAT_BYTES;
+        // 每个像素占用一个int的带缓冲，至少读取一行
+        int bandRows = (int) Math.max(1, Math.min(height, (maxBufferBytes - fixedBytes) / ((long) width * 4)));
+
+        MessageDigest md = Md5Utils.newDigest();
+        BlockSink sink = new BlockSink(md);
+        sink.write(PNG_SIGNATURE);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        // 8位深度，RGB真彩色，标准压缩和过滤，不隔行
+        ihdr[8] = 8;
+        ihdr[9] = 2;
+        writeChunk(sink, "IHDR", ihdr, 13);
+
+        PreviewAccumulator preview = new PreviewAccumulator(width, height, previewWidth, previewHeight);
+        // BufferedImage直接读取像素到带缓冲，其他Image绘制到带缓冲图片中
+        BufferedImage bandImage = null;
+        int[] pixels;
+        if (image instanceof BufferedImage) {
+            pixels = new int[width * bandRows];
+        } else {
+            bandImage = new BufferedImage(width, bandRows, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) bandImage.getRaster().getDataBuffer()).getData();
+        }
+
+        byte[] scanline = new byte[width * 3 + 1];
+        byte[] previous = new byte[width * 3 + 1];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream idat = new DeflaterOutputStream(new IdatStream(sink), deflater, IDAT_BYTES)) {
+            for (int y = 0; y < height; y += bandRows) {
+                int rows = Math.min(bandRows, height - y);
+                int[] band = this.readBand(image, y, width, rows, pixels, bandImage);
+                for (int row = 0; row < rows; row++) {
+                    int offset = row * width;
+                    preview.addRow(y + row, band, offset);
+                    this.filterRow(band, offset, width, scanline, previous);
+                    idat.write(scanline);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(sink, "IEND", new byte[0], 0);
+
+        String contentMd5 = Md5Utils.toHex(md.digest());
+        return ImageHandle.fromBanded(contentMd5, sink.toByteArray(), width, height, preview.toImage());
+    }
+
+    /**
+     * 读取一个扫描行带的像素（0xRRGGBB）
+     */
+    private int[] readBand(Image image, int y, int width, int rows, int[] pixels, BufferedImage bandImage) {
+        if (image instanceof BufferedImage) {
+            return ((BufferedImage) image).getRGB(0, y, width, rows, pixels, 0, width);
+        }
+        // 其他Image只能绘制，把目标行平移到带缓冲的原点
+        Graphics2D g = bandImage.createGraphics();
+        try {
+            g.drawImage(image, 0, -y, null);
+        } finally {
+            g.dispose();
+        }
+        return pixels;
+    }
+
+    /**
+     * 使用Up过滤器生成一行PNG扫描行，截图中上下相同的区域压缩效果好
+     */
+    private void filterRow(int[] band, int offset, int width, byte[] scanline, byte[] previous) {
+        scanline[0] = 2;
+        for (int x = 0, i = 1; x < width; x++, i += 3) {
+            int rgb = band[offset + x];
+            byte r = (byte) (rgb >> 16);
+            byte g = (byte) (rgb >> 8);
+            byte b = (byte) rgb;
+            scanline[i] = (byte) (r - previous[i]);
+            scanline[i + 1] = (byte) (g - previous[i + 1]);
+            scanline[i + 2] = (byte) (b - previous[i + 2]);
+            // 过滤前的原始值作为下一行的参照
+            previous[i] = r;
+            previous[i + 1] = g;
+            previous[i + 2] = b;
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(header);
+        out.write(data, 0, length);
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 把压缩后的数据切分为IDAT块写出
+     */
+    private static final class IdatStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[IDAT_BYTES];
+        private int count;
+
+        IdatStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                this.flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    this.flushChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.flushChunk();
+        }
+    }
+
+    /**
+     * 按固定大小分块保存编码结果，同时更新MD5，避免ByteArrayOutputStream扩容时反复复制
+     */
+    private static final class BlockSink extends OutputStream {
+        private static final int BLOCK_BYTES = 256 * 1024;
+        private final MessageDigest md;
+        private final List<byte[]> blocks = new ArrayList<>();
+        private byte[] current;
+        private int count;
+        private long total;
+
+        BlockSink(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public void write(int b) {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            md.update(b, off, len);
+            total += len;
+            while (len > 0) {
+                if (current == null || count == current.length) {
+                    current = new byte[BLOCK_BYTES];
+                    blocks.add(current);
+                    count = 0;
+                }
+                int n = Math.min(len, current.length - count);
+                System.arraycopy(b, off, current, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[(int) total];
+            int position = 0;
+            for (byte[] block : blocks) {
+                int n = (int) Math.min(block.length, total - position);
+                System.arraycopy(block, 0, result, position, n);
+                position += n;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 逐行累加像素生成区域平均缩略图
+     */
+    private static final class PreviewAccumulator {
+        private final int previewWidth;
+        private final int previewHeight;
+        private final int height;
+        // 原图列 -> 缩略图列
+        private final int[] columnCell;
+        private final int[] red;
+        private final int[] green;
+        private final int[] blue;
+        private final int[] count;
+
+        PreviewAccumulator(int width, int height, int previewWidth, int previewHeight) {
+            this.previewWidth = previewWidth;
+            this.previewHeight = previewHeight;
+            this.height = height;
+            this.columnCell = new int[width];
+            for (int x = 0; x < width; x++) {
+                columnCell[x] = (int) ((long) x * previewWidth / width);
+            }
+            int cells = previewWidth * previewHeight;
+            this.red = new int[cells];
+            this.green = new int[cells];
+            this.blue = new int[cells];
+            this.count = new int[cells];
+        }
+
+        void addRow(int y, int[] pixels, int offset) {
+            int base = (int) ((long) y * previewHeight / height) * previewWidth;
+            for (int x = 0; x < columnCell.length; x++) {
+                int rgb = pixels[offset + x];
+                int cell = base + columnCell[x];
+                red[cell] += (rgb >> 16) & 0xff;
+                green[cell] += (rgb >> 8) & 0xff;
+                blue[cell] += rgb & 0xff;
+                count[cell]++;
+            }
+        }
+
+        BufferedImage toImage() {
+            BufferedImage preview = new BufferedImage(previewWidth, previewHeight, BufferedImage.TYPE_INT_RGB);
+            int[] data = ((DataBufferInt) preview.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < data.length; i++) {
+                int n = Math.max(1, count[i]);
+                data[i] = (red[i] / n) << 16 | (green[i] / n) << 8 | blue[i] / n;
+            }
+            return preview;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史日志后台压缩引擎
+ * 把已封存的段（总是段列表的前缀）重写为新段：丢弃被覆盖、被删除、被清空的记录，合并小段，
+ * 并清理不再被引用的图片blob。输出先写临时文件并落盘，再通过原子替换MANIFEST提交，
+ * 任意时刻崩溃后重新打开日志都能得到一致的状态
+ * @date 10/19/26 11:40
+ */
+public class CompactionEngine implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(CompactionEngine.class);
+    // 默认检查间隔（秒）
+    private static final long DEFAULT_INTERVAL_SECONDS = 60;
+    // 默认压缩I/O速率：每秒2MB
+    private static final long DEFAULT_BYTES_PER_SECOND = 2L * 1024 * 1024;
+    // 无效数据占比超过该值时触发压缩
+    private static final double DEAD_RATIO_THRESHOLD = 0.5;
+    // 无效数据至少达到该字节数才值得压缩
+    private static final long MIN_DEAD_BYTES = 64 * 1024;
+    // 小段（小于最大段大小1/4）数量达到该值时触发合并
+    private static final int SMALL_SEGMENT_THRESHOLD = 4;
+
+    private final HistoryLog log;
+    private final IoRateLimiter rateLimiter;
+    private final long intervalSeconds;
+    private ScheduledExecutorService scheduler;
+
+    public CompactionEngine(HistoryLog log) {
+        this(log, new IoRateLimiter(DEFAULT_BYTES_PER_SECOND), DEFAULT_INTERVAL_SECONDS);
+    }
+
+    public CompactionEngine(HistoryLog log, IoRateLimiter rateLimiter, long intervalSeconds) {
+        this.log = log;
+        this.rateLimiter = rateLimiter;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * 启动后台压缩线程（低优先级守护线程），已启动时不重复启动
+     */
+    public void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "history-compaction");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止后台压缩，正在进行的压缩会被中断，未提交的输出在下次打开时清理
+     */
+    @Override
+    public void close() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            this.compact();
+        } catch (IOException e) {
+            LOG.warn("压缩历史日志时出错: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 如果满足条件则执行一次压缩
+     *
+     * @return 是否执行了压缩
+     * @throws IOException 读写失败
+     */
+    public synchronized boolean compact() throws IOException {
+        List<HistoryLog.Segment> inputs = log.sealedSegments();
+        if (!this.shouldCompact(inputs)) {
+            return false;
+        }
+
+        List<HistoryLog.Segment> outputs = new ArrayList<>();
+        List<HistoryLog.MovedRecord> moved = new ArrayList<>();
+        SegmentWriter writer = null;
+        try {
+            for (HistoryLog.Segment input : inputs) {
+                rateLimiter.acquire(input.size);
+                // 使用数组包装以便在lambda中替换当前输出段
+                SegmentWriter[] current = {writer};
+                log.scan(input.path, (record, raw) -> {
+                    if (!log.isLive(record)) {
+                        return;
+                    }
+                    // 开启加密前写入的明文记录在这里加密
+                    byte[] body = log.sealBody(raw);
+                    int frameBytes = HistoryLog.HEADER_BYTES + body.length;
+                    if (current[0] != null && current[0].size > 0
+                            && current[0].size + frameBytes > log.getMaxSegmentBytes()) {
+                        outputs.add(current[0].seal());
+                        current[0] = null;
+                    }
+                    if (current[0] == null) {
+                        current[0] = new SegmentWriter(log.newCompactionSegment());
+                    }
+                    this.acquireQuietly(frameBytes);
+                    current[0].write(body);
+                    moved.add(new HistoryLog.MovedRecord(record.getKey(), record.getSeq(), current[0].segment, frameBytes));
+                });
+                writer = current[0];
+            }
+            if (writer != null) {
+                outputs.add(writer.seal());
+                writer = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("压缩被中断");
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+
+        try {
+            log.commitCompaction(inputs, outputs, moved);
+        } catch (IOException e) {
+            for (HistoryLog.Segment output : outputs) {
+                Files.deleteIfExists(output.path);
+            }
+            throw e;
+        }
+        int removedBlobs = log.collectGarbageBlobs(rateLimiter);
+        LOG.info("历史日志压缩完成: {} 个段合并为 {} 个段", inputs.size(), outputs.size());
+        if (removedBlobs > 0) {
+            LOG.info("已清理 {} 个不再引用的图片", removedBlobs);
+        }
+        return true;
+    }
+
+    private boolean shouldCompact(List<HistoryLog.Segment> sealed) {
+        if (sealed.isEmpty()) {
+            return false;
+        }
+        if (log.hasPlainRecords()) {
+            return true;
+        }
+        long total = 0;
+        long live = 0;
+        int small = 0;
+        for (HistoryLog.Segment segment : sealed) {
+            total += segment.size;
+            live += segment.liveBytes;
+            if (segment.size < log.getMaxSegmentBytes() / 4) {
+                small++;
+            }
+        }
+        long dead = total - live;
+        return (dead >= MIN_DEAD_BYTES && dead >= total * DEAD_RATIO_THRESHOLD)
+                || small >= SMALL_SEGMENT_THRESHOLD;
+    }
+
+    private void acquireQuietly(long bytes) throws InterruptedIOException {
+        try {
+            rateLimiter.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("压缩被中断");
+        }
+    }
+
+    /**
+     * 压缩输出段写入器，先写临时文件，封存时落盘并重命名为正式段文件
+     */
+    private static final class SegmentWriter {
+        private final HistoryLog.Segment segment;
+        private final Path tmp;
+        private final FileOutputStream fos;
+        private final DataOutputStream out;
+        private long size;
+
+        SegmentWriter(HistoryLog.Segment segment) throws IOException {
+            this.segment = segment;
+            this.tmp = HistoryLog.tmpPath(segment);
+            this.fos = new FileOutputStream(tmp.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+        }
+
+        void write(byte[] body) throws IOException {
+            out.writeInt(body.length);
+            out.writeInt(HistoryLog.crc(body));
+            out.write(body);
+            size += HistoryLog.HEADER_BYTES + body.length;
+        }
+
+        HistoryLog.Segment seal() throws IOException {
+            out.flush();
+            fos.getChannel().force(true);
+            out.close();
+            Files.move(tmp, segment.path, StandardCopyOption.ATOMIC_MOVE);
+            segment.size = size;
+            return segment;
+        }
+
+        void abort() throws IOException {
+            out.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
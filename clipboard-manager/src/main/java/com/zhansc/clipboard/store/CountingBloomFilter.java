@@ -0,0 +1,158 @@
+package com.zhansc.clipboard.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 支持删除的计数布隆过滤器，用于在访问磁盘前判断内容指纹是否一定不存在。
+ * 每个位置是一个字节的计数器，达到255后不再增减，避免删除造成漏报；
+ * 元素数超过容量时由调用方按新容量重建，误报率保持在约1%以内
+ * @date 10/20/26 22:40
+ */
+final class CountingBloomFilter {
+    private static final int MAGIC = 0x43424631;
+    // 每个元素占用的计数器数和哈希函数个数，对应约1%的误报率
+    private static final int COUNTERS_PER_KEY = 10;
+    private static final int HASHES = 7;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final int capacity;
+    private final byte[] counters;
+    private int size;
+
+    CountingBloomFilter(int capacity) {
+        this.capacity = Math.max(MIN_CAPACITY, capacity);
+        this.counters = new byte[this.capacity * COUNTERS_PER_KEY];
+    }
+
+    private CountingBloomFilter(int capacity, byte[] counters, int size) {
+        this.capacity = capacity;
+        this.counters = counters;
+        this.size = size;
+    }
+
+    synchronized void add(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < HASHES; i++) {
+            int index = this.index(hash, i);
+            if (counters[index] != (byte) 0xff) {
+                counters[index]++;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * 删除元素，只能删除之前添加过的元素
+     */
+    synchronized void remove(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < HASHES; i++) {
+            int index = this.index(hash, i);
+            // 饱和的计数器无法知道真实计数，保持不变
+            if (counters[index] != 0 && counters[index] != (byte) 0xff) {
+                counters[index]--;
+            }
+        }
+        size = Math.max(0, size - 1);
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @return false表示一定不存在，true表示可能存在
+     */
+    synchronized boolean mightContain(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < HASHES; i++) {
+            if (counters[this.index(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 元素数是否已超过容量，超过后误报率会明显上升，应该按更大的容量重建
+     */
+    synchronized boolean isOverloaded() {
+        return size > capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 双重哈希：第i个位置为h1 + i * h2
+     */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return ((h1 + i * h2) & Integer.MAX_VALUE) % counters.length;
+    }
+
+    /**
+     * 64位FNV-1a哈希，再混合一次使高低32位都分布均匀
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * 写入文件，先写临时文件再原子替换
+     */
+    synchronized void writeTo(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + HistoryLog.TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(capacity);
+            out.writeInt(size);
+            out.write(counters);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 从文件读取
+     *
+     * @param path 文件
+     * @return 过滤器，文件格式错误时返回null
+     * @throws IOException 读取失败
+     */
+    static CountingBloomFilter readFrom(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int capacity = in.readInt();
+            int size = in.readInt();
+            if (capacity < MIN_CAPACITY || capacity > Integer.MAX_VALUE / COUNTERS_PER_KEY || size < 0) {
+                return null;
+            }
+            byte[] counters = new byte[capacity * COUNTERS_PER_KEY];
+            in.readFully(counters);
+            return new CountingBloomFilter(capacity, counters, size);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.util.Md5Utils;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史存储加密的吞吐量基准测试。
+ * 分别以明文和加密方式执行相同的写入和读取负载（文本记录、大图片blob、恢复时读取全部记录），
+ * 每种负载预热后交替运行多轮取最好成绩，加密后吞吐量下降超过阈值时以退出码1结束。
+ * 写入在捕获路径上，阈值较严，默认20%；读取只在启动恢复和载入图片时发生，明文基准是页缓存的内存复制，
+ * 解密本身就要占用相当比例，默认50%。阈值通过系统属性设置：
+ * java -Dbench.maxWriteOverheadPercent=20 -Dbench.maxReadOverheadPercent=50 com.zhansc.clipboard.store.EncryptionBenchmark
+ * @date 10/21/26 16:30
+ */
+public class EncryptionBenchmark {
+    // 解密路径只在读取时执行，预热几轮使其被JIT编译后再计时
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 9;
+    private static final long SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private final HistoryCipher cipher;
+    private final Random random = new Random(1);
+
+    public EncryptionBenchmark(HistoryCipher cipher) {
+        this.cipher = cipher;
+    }
+
+    public static void main(String[] args) throws Exception {
+        double maxWrite = Double.parseDouble(System.getProperty("bench.maxWriteOverheadPercent", "20"));
+        double maxRead = Double.parseDouble(System.getProperty("bench.maxReadOverheadPercent", "50"));
+        EncryptionBenchmark benchmark = new EncryptionBenchmark(new HistoryCipher(newKey()));
+        boolean passed = true;
+        passed &= benchmark.report("文本记录 1KB x 20000", maxWrite, c -> benchmark.appendTexts(c, 1024, 20000));
+        passed &= benchmark.report("文本记录 256KB x 200", maxWrite, c -> benchmark.appendTexts(c, 256 * 1024, 200));
+        passed &= benchmark.report("图片写入 8MB x 8", maxWrite, c -> benchmark.writeBlobs(c, 8 * 1024 * 1024, 8));
+        passed &= benchmark.report("图片读取 8MB x 8", maxRead, c -> benchmark.readBlobs(c, 8 * 1024 * 1024, 8));
+        passed &= benchmark.report("恢复 4KB x 5000", maxRead, c -> benchmark.restore(c, 4096, 5000));
+        System.out.println(passed ? "加密开销在阈值以内" : "加密开销超过阈值");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * 交替运行明文和加密负载，打印最好成绩的吞吐量和开销
+     *
+     * @return 开销是否在阈值以内
+     */
+    private boolean report(String name, double maxOverhead, Workload workload) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            workload.run(null);
+            workload.run(cipher);
+        }
+        double plain = 0;
+        double encrypted = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            plain = Math.max(plain, workload.run(null));
+            encrypted = Math.max(encrypted, workload.run(cipher));
+        }
+        double overhead = (1 - encrypted / plain) * 100;
+        boolean ok = overhead <= maxOverhead;
+        System.out.printf("%-22s 明文 %8.1f MB/s  加密 %8.1f MB/s  开销 %5.1f%%  %s%n", name, plain, encrypted, overhead,
+                ok ? "通过" : "超过阈值 " + maxOverhead + "%");
+        return ok;
+    }
+
+    /**
+     * 追加文本记录，与PersistentHistoryStore写入文本的路径相同
+     *
+     * @return 吞吐量（MB/s）
+     */
+    private double appendTexts(HistoryCipher cipher, int size, int count) throws IOException {
+        byte[][] payloads = this.payloads(size, count);
+        Path dir = Files.createTempDirectory("clipboard4j-bench");
+        try (HistoryLog log = HistoryLog.open(dir, SEGMENT_BYTES, cipher)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                log.appendAdd("TEXT:" + i, ContentTypeEnum.TEXT, null, i, payloads[i], null, i);
+            }
+            return throughput((long) size * count, System.nanoTime() - start);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * 写入图片blob，每张都会落盘
+     */
+    private double writeBlobs(HistoryCipher cipher, int size, int count) throws IOException {
+        byte[][] blobs = this.payloads(size, count);
+        Path dir = Files.createTempDirectory("clipboard4j-bench");
+        try (HistoryLog log = HistoryLog.open(dir, SEGMENT_BYTES, cipher)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                String md5 = Md5Utils.md5Hex(blobs[i]);
+                log.appendAdd("IMAGE:" + md5, ContentTypeEnum.IMAGE, md5, i, null, blobs[i], i);
+            }
+            return throughput((long) size * count, System.nanoTime() - start);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * 读取图片blob，与恢复图片和按需载入的路径相同
+     */
+    private double readBlobs(HistoryCipher cipher, int size, int count) throws IOException {
+        byte[][] blobs = this.payloads(size, count);
+        String[] md5s = new String[count];
+        Path dir = Files.createTempDirectory("clipboard4j-bench");
+        try (HistoryLog log = HistoryLog.open(dir, SEGMENT_BYTES, cipher)) {
+            for (int i = 0; i < count; i++) {
+                md5s[i] = Md5Utils.md5Hex(blobs[i]);
+                log.appendAdd("IMAGE:" + md5s[i], ContentTypeEnum.IMAGE, md5s[i], i, null, blobs[i], i);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                if (log.readBlob(md5s[i]).length != size) {
+                    throw new IOException("读取的图片大小不正确");
+                }
+            }
+            return throughput((long) size * count, System.nanoTime() - start);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * 重新打开日志并读取全部有效记录，与启动恢复的路径相同
+     */
+    private double restore(HistoryCipher cipher, int size, int count) throws IOException {
+        byte[][] payloads = this.payloads(size, count);
+        Path dir = Files.createTempDirectory("clipboard4j-bench");
+        try {
+            try (HistoryLog log = HistoryLog.open(dir, SEGMENT_BYTES, cipher)) {
+                for (int i = 0; i < count; i++) {
+                    log.appendAdd("TEXT:" + i, ContentTypeEnum.TEXT, null, i, payloads[i], null, i);
+                }
+            }
+            long start = System.nanoTime();
+            try (HistoryLog log = HistoryLog.open(dir, SEGMENT_BYTES, cipher)) {
+                if (log.readLiveRecords().size() != count) {
+                    throw new IOException("恢复的记录数不正确");
+                }
+            }
+            return throughput((long) size * count, System.nanoTime() - start);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * 生成随机内容，不可压缩，接近PNG数据，以PNG文件头开头
+     */
+    private byte[][] payloads(int size, int count) {
+        byte[][] payloads = new byte[count][size];
+        for (byte[] payload : payloads) {
+            random.nextBytes(payload);
+            System.arraycopy(PNG_SIGNATURE, 0, payload, 0, Math.min(size, PNG_SIGNATURE.length));
+        }
+        return payloads;
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    private static SecretKey newKey() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        return generator.generateKey();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 一种负载，cipher为null时以明文运行
+     */
+    private interface Workload {
+        double run(HistoryCipher cipher) throws IOException;
+    }
+}
@@ -0,0 +1,403 @@
+package com.zhansc.clipboard.store;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史存储的分块认证加密（AES-GCM），用于日志记录和图片blob。
+ * 密文格式：格式字节 | 7字节随机前缀 | 若干块，每块为最多64KB明文的密文加16字节认证标签。
+ * 第i块的IV为前缀 + 4字节块号 + 1字节末块标志，截断、重排和拼接都会导致认证失败；
+ * 分块使大图片可以流式加解密，不需要同时持有完整的明文和密文。
+ * 使用JCE默认实现，支持的CPU上由JVM内建的AES-NI和CLMUL指令加速
+ * @date 10/21/26 15:20
+ */
+public final class HistoryCipher {
+    // 格式字节，与日志记录的操作码（1~3）和PNG文件头（0x89）都不同，用于区分加密前写入的明文数据
+    static final byte FORMAT = (byte) 0xE1;
+    static final int CHUNK_BYTES = 64 * 1024;
+    private static final int PREFIX_BYTES = 7;
+    private static final int HEADER_BYTES = 1 + PREFIX_BYTES;
+    private static final int TAG_BYTES = 16;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final SecretKey key;
+    // 每次加密使用的前缀由随机起点递增得到，同一进程内不会重复，也不需要每次访问SecureRandom
+    private final AtomicLong nextPrefix;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(HistoryCipher::newCipher);
+
+    public HistoryCipher(SecretKey key) {
+        this.key = key;
+        this.nextPrefix = new AtomicLong(new SecureRandom().nextLong());
+    }
+
+    /**
+     * 由历史存储密钥派生用于其他用途的密钥（HMAC-SHA256(密钥, 用途)），不同用途的密钥互不相关
+     *
+     * @param purpose 用途标签
+     * @return 256位密钥
+     */
+    public SecretKey deriveKey(String purpose) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getEncoded(), "HmacSHA256"));
+            return new SecretKeySpec(mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8)), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("当前JVM不支持HmacSHA256", e);
+        }
+    }
+
+    /**
+     * 判断数据是否是本类加密的格式
+     */
+    static boolean isSealed(byte[] data) {
+        return data.length > 0 && data[0] == FORMAT;
+    }
+
+    /**
+     * 加密较小的数据，一次分配输出数组
+     *
+     * @param plaintext 明文
+     * @param aad       附加认证数据，解密时必须相同，可以为null
+     * @return 密文
+     * @throws IOException 加密失败
+     */
+    public byte[] encrypt(byte[] plaintext, byte[] aad) throws IOException {
+        byte[] sealed = new byte[sealedLength(plaintext.length)];
+        this.encrypt(plaintext, aad, sealed, 0);
+        return sealed;
+    }
+
+    /**
+     * 加密到指定数组中，调用方可以直接加密到带有其他头部的缓冲区中，避免再复制一次
+     *
+     * @param plaintext 明文
+     * @param aad       附加认证数据，可以为null
+     * @param output    输出数组，从outputOffset开始至少有sealedLength(plaintext.length)字节
+     * @param outputOffset 输出起始位置
+     * @throws IOException 加密失败
+     */
+    public void encrypt(byte[] plaintext, byte[] aad, byte[] output, int outputOffset) throws IOException {
+        int chunks = chunkCount(plaintext.length);
+        byte[] iv = this.newIv();
+        output[outputOffset] = FORMAT;
+        System.arraycopy(iv, 0, output, outputOffset + 1, PREFIX_BYTES);
+        Cipher cipher = ciphers.get();
+        int out = outputOffset + HEADER_BYTES;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int offset = chunk * CHUNK_BYTES;
+            int length = Math.min(CHUNK_BYTES, plaintext.length - offset);
+            out += this.crypt(cipher, Cipher.ENCRYPT_MODE, iv, chunk, chunk == chunks - 1, aad,
+                    plaintext, offset, length, output, out);
+        }
+    }
+
+    /**
+     * 明文加密后的长度
+     */
+    public static int sealedLength(int plainLength) {
+        return HEADER_BYTES + plainLength + chunkCount(plainLength) * TAG_BYTES;
+    }
+
+    /**
+     * 由密文长度计算明文长度
+     *
+     * @return 明文长度，密文长度不合法时返回-1
+     */
+    public static long plainLength(long sealedLength) {
+        long body = sealedLength - HEADER_BYTES;
+        if (body < TAG_BYTES) {
+            return -1;
+        }
+        long chunks = (body + CHUNK_BYTES + TAG_BYTES - 1) / (CHUNK_BYTES + TAG_BYTES);
+        long plain = body - chunks * TAG_BYTES;
+        // 末块不足一个认证标签的长度时，反算出的密文长度与实际不符
+        if (plain < 0 || plain > Integer.MAX_VALUE - HEADER_BYTES - chunks * TAG_BYTES) {
+            return -1;
+        }
+        return sealedLength((int) plain) == sealedLength ? plain : -1;
+    }
+
+    private static int chunkCount(int plainLength) {
+        return Math.max(1, (plainLength + CHUNK_BYTES - 1) / CHUNK_BYTES);
+    }
+
+    /**
+     * 解密encrypt生成的密文
+     *
+     * @param sealed 密文
+     * @param aad    附加认证数据
+     * @return 明文
+     * @throws IOException 格式错误、密钥不匹配或数据被篡改
+     */
+    public byte[] decrypt(byte[] sealed, byte[] aad) throws IOException {
+        long plainLength = plainLength(sealed.length);
+        if (plainLength < 0 || sealed[0] != FORMAT) {
+            throw new IOException("密文格式错误");
+        }
+        int chunks = chunkCount((int) plainLength);
+        byte[] plaintext = new byte[(int) plainLength];
+        byte[] iv = new byte[12];
+        System.arraycopy(sealed, 1, iv, 0, PREFIX_BYTES);
+        Cipher cipher = ciphers.get();
+        int out = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int offset = HEADER_BYTES + chunk * (CHUNK_BYTES + TAG_BYTES);
+            int length = Math.min(CHUNK_BYTES + TAG_BYTES, sealed.length - offset);
+            out += this.crypt(cipher, Cipher.DECRYPT_MODE, iv, chunk, chunk == chunks - 1, aad,
+                    sealed, offset, length, plaintext, out);
+        }
+        return plaintext;
+    }
+
+    /**
+     * 创建加密输出流，写入的数据按块加密，finish或close时写出末块
+     *
+     * @param out 密文输出流
+     * @param aad 附加认证数据，可以为null
+     * @return 加密输出流
+     * @throws IOException 写入失败
+     */
+    public EncryptingOutputStream encryptingStream(OutputStream out, byte[] aad) throws IOException {
+        return new EncryptingOutputStream(out, aad);
+    }
+
+    /**
+     * 创建解密输入流，每读完一块校验一次，读到末块后返回EOF
+     *
+     * @param in  密文输入流
+     * @param aad 附加认证数据
+     * @return 明文输入流
+     * @throws IOException 读取失败或格式错误
+     */
+    public InputStream decryptingStream(InputStream in, byte[] aad) throws IOException {
+        return new DecryptingInputStream(in, aad);
+    }
+
+    private byte[] newIv() {
+        long prefix = nextPrefix.getAndIncrement();
+        byte[] iv = new byte[12];
+        for (int i = 0; i < PREFIX_BYTES; i++) {
+            iv[i] = (byte) (prefix >>> (8 * i));
+        }
+        return iv;
+    }
+
+    /**
+     * 加密或解密一块
+     *
+     * @return 写入output的字节数
+     */
+    private int crypt(Cipher cipher, int mode, byte[] iv, int chunk, boolean last, byte[] aad,
+                      byte[] input, int offset, int length, byte[] output, int outputOffset) throws IOException {
+        iv[7] = (byte) (chunk >>> 24);
+        iv[8] = (byte) (chunk >>> 16);
+        iv[9] = (byte) (chunk >>> 8);
+        iv[10] = (byte) chunk;
+        iv[11] = (byte) (last ? 1 : 0);
+        try {
+            cipher.init(mode, key, new GCMParameterSpec(TAG_BYTES * 8, iv));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            return cipher.doFinal(input, offset, length, output, outputOffset);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("解密失败，密钥不匹配或数据已损坏", e);
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("当前JVM不支持" + TRANSFORMATION, e);
+        }
+    }
+
+    /**
+     * 加密输出流。写满一块后要等到有后续数据时才加密写出，保证最后一块带有末块标志
+     */
+    public final class EncryptingOutputStream extends FilterOutputStream {
+        private final byte[] aad;
+        private final byte[] iv;
+        private final byte[] buffer = new byte[CHUNK_BYTES];
+        private final byte[] sealed = new byte[CHUNK_BYTES + TAG_BYTES];
+        private int buffered;
+        private int chunk;
+        private boolean finished;
+
+        private EncryptingOutputStream(OutputStream out, byte[] aad) throws IOException {
+            super(out);
+            this.aad = aad;
+            this.iv = newIv();
+            out.write(FORMAT);
+            out.write(iv, 0, PREFIX_BYTES);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("加密输出流已结束");
+            }
+            while (len > 0) {
+                if (buffered == CHUNK_BYTES) {
+                    this.emit(buffer, 0, false);
+                }
+                // 缓冲区为空且之后还有数据时，整块直接从调用方的数组加密，不经过缓冲区
+                if (buffered == 0 && len > CHUNK_BYTES) {
+                    this.emit(b, off, false);
+                    off += CHUNK_BYTES;
+                    len -= CHUNK_BYTES;
+                    continue;
+                }
+                int n = Math.min(len, CHUNK_BYTES - buffered);
+                System.arraycopy(b, off, buffer, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * 写出末块但不关闭底层输出流，调用方可以随后落盘
+         */
+        public void finish() throws IOException {
+            if (!finished) {
+                this.emit(buffer, 0, true);
+                finished = true;
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        /**
+         * 加密写出一块，数据来自缓冲区时长度为buffered，否则为整块
+         */
+        private void emit(byte[] data, int offset, boolean last) throws IOException {
+            int length = data == buffer ? buffered : CHUNK_BYTES;
+            int n = crypt(ciphers.get(), Cipher.ENCRYPT_MODE, iv, chunk++, last, aad, data, offset, length, sealed, 0);
+            out.write(sealed, 0, n);
+            buffered = 0;
+        }
+    }
+
+    /**
+     * 解密输入流。读满一块后预读一个字节判断是否为末块，密文在末块之前结束时视为被截断
+     */
+    private final class DecryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final byte[] aad;
+        private final byte[] iv = new byte[12];
+        private final byte[] sealed = new byte[CHUNK_BYTES + TAG_BYTES];
+        private final byte[] plain = new byte[CHUNK_BYTES];
+        // 预读的下一块的第一个字节，没有时为-1
+        private int lookahead = -1;
+        private int position;
+        private int limit;
+        private int chunk;
+        private boolean last;
+
+        DecryptingInputStream(InputStream in, byte[] aad) throws IOException {
+            this.in = in;
+            this.aad = aad;
+            int format = in.read();
+            if (format != (FORMAT & 0xff) || readFully(in, iv, 0, PREFIX_BYTES) < PREFIX_BYTES) {
+                throw new IOException("密文格式错误");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == limit) {
+                if (last) {
+                    return -1;
+                }
+                // 调用方的数组能放下整块时直接解密到其中，不经过明文缓冲区
+                if (len >= CHUNK_BYTES) {
+                    int n = this.nextChunk(b, off);
+                    if (n > 0 || last) {
+                        return n == 0 ? -1 : n;
+                    }
+                    continue;
+                }
+                limit = this.nextChunk(plain, 0);
+                position = 0;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(plain, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        /**
+         * 读取并解密下一块
+         *
+         * @return 明文字节数
+         */
+        private int nextChunk(byte[] output, int offset) throws IOException {
+            int length = 0;
+            if (lookahead >= 0) {
+                sealed[length++] = (byte) lookahead;
+            }
+            length += readFully(in, sealed, length, CHUNK_BYTES + TAG_BYTES - length);
+            if (length < TAG_BYTES) {
+                throw new EOFException("密文被截断");
+            }
+            lookahead = length == CHUNK_BYTES + TAG_BYTES ? in.read() : -1;
+            last = lookahead < 0;
+            return crypt(ciphers.get(), Cipher.DECRYPT_MODE, iv, chunk++, last, aad, sealed, 0, length, output, offset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private int readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+            int total = 0;
+            while (total < len) {
+                int n = in.read(b, off + total, len - total);
+                if (n < 0) {
+                    break;
+                }
+                total += n;
+            }
+            return total;
+        }
+    }
+}
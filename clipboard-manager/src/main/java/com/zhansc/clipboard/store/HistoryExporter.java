@@ -0,0 +1,199 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.enums.ExportFormatEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.util.JsonUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录流式导出器
+ * 导出结果是一个目录：记录文件（二进制或JSONL）按从旧到新的顺序逐条写入，
+ * 图片按MD5单独保存在blobs目录中，同一图片只写一次
+ * @date 10/19/26 14:30
+ */
+public class HistoryExporter {
+    private static final Logger LOG = LogManager.getLogger(HistoryExporter.class);
+    // 二进制格式文件头："CB4J"
+    static final int BINARY_MAGIC = 0x4342344A;
+    static final byte BINARY_VERSION = 1;
+    // 单条二进制记录的最大长度，导入时超过此长度视为文件损坏
+    static final int MAX_BINARY_RECORD_BYTES = 256 * 1024 * 1024;
+    static final String BLOB_DIR = "blobs";
+    static final String BLOB_SUFFIX = ".png";
+
+    private final ExportFormatEnum format;
+    // 复用的写缓冲区，按需扩容
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    public HistoryExporter(ExportFormatEnum format) {
+        this.format = format;
+    }
+
+    /**
+     * 导出历史记录到指定目录
+     *
+     * @param history 历史记录管理器
+     * @param dir     导出目录
+     * @return 导出的记录数
+     * @throws IOException 写入失败
+     */
+    public int export(ClipboardHistory history, Path dir) throws IOException {
+        // 快照不复制历史记录，内容在写出时逐条编码
+        List<ClipboardItem> snapshot = history.snapshot().asList();
+        ListIterator<ClipboardItem> reverse = snapshot.listIterator(snapshot.size());
+        return this.export(new Iterator<ClipboardItem>() {
+            @Override
+            public boolean hasNext() {
+                return reverse.hasPrevious();
+            }
+
+            @Override
+            public ClipboardItem next() {
+                return reverse.previous();
+            }
+        }, dir);
+    }
+
+    /**
+     * 逐条导出剪贴板项到指定目录
+     *
+     * @param items 剪贴板项，按从旧到新的顺序
+     * @param dir   导出目录
+     * @return 导出的记录数
+     * @throws IOException 写入失败
+     */
+    public int export(Iterator<ClipboardItem> items, Path dir) throws IOException {
+        Path blobDir = dir.resolve(BLOB_DIR);
+        Files.createDirectories(blobDir);
+        Set<String> writtenBlobs = new HashSet<>();
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(dir.resolve(format.getFileName()), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (format == ExportFormatEnum.BINARY) {
+                ByteBuffer header = ByteBuffer.allocate(5);
+                header.putInt(BINARY_MAGIC).put(BINARY_VERSION);
+                header.flip();
+                writeFully(channel, header);
+            }
+            while (items.hasNext()) {
+                ClipboardItem item = items.next();
+                // 同一图片只写一次blob，后续记录直接引用
+                if (item.getContentType() == ContentTypeEnum.IMAGE && !writtenBlobs.contains(item.getContentMd5())) {
+                    if (!this.writeBlob(blobDir, item)) {
+                        continue;
+                    }
+                    writtenBlobs.add(item.getContentMd5());
+                }
+                if (format == ExportFormatEnum.BINARY) {
+                    this.writeBinary(channel, item);
+                } else {
+                    this.writeJsonLine(channel, item);
+                }
+                count++;
+            }
+            channel.force(false);
+        }
+        return count;
+    }
+
+    private boolean writeBlob(Path blobDir, ClipboardItem item) throws IOException {
+        Path target = blobDir.resolve(item.getContentMd5() + BLOB_SUFFIX);
+        if (Files.exists(target)) {
+            return true;
+        }
+        ImageHandle handle = item.getImageHandle();
+        if (handle == null) {
+            LOG.warn("图片内容不可用，跳过导出: {}", item.getContentMd5());
+            return false;
+        }
+        Path tmp = blobDir.resolve(item.getContentMd5() + BLOB_SUFFIX + HistoryLog.TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(handle.getEncoded()));
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * 二进制记录：int 长度 | byte 类型 | long 时间戳 | short MD5长度 | MD5 | int 内容长度 | 内容
+     */
+    private void writeBinary(FileChannel channel, ClipboardItem item) throws IOException {
+        byte[] md5 = item.getContentMd5() == null
+                ? new byte[0] : item.getContentMd5().getBytes(StandardCharsets.US_ASCII);
+        byte[] payload = item.getContentType() == ContentTypeEnum.IMAGE
+                ? new byte[0] : ((String) item.getContent()).getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 8 + 2 + md5.length + 4 + payload.length;
+        if (bodyLength > MAX_BINARY_RECORD_BYTES) {
+            throw new IOException("记录过大，无法导出: " + bodyLength + " 字节");
+        }
+        ByteBuffer out = this.ensureCapacity(4 + bodyLength);
+        out.putInt(bodyLength)
+                .put((byte) item.getContentType().ordinal())
+                .putLong(toEpochMillis(item))
+                .putShort((short) md5.length).put(md5)
+                .putInt(payload.length).put(payload);
+        out.flip();
+        writeFully(channel, out);
+    }
+
+    private void writeJsonLine(FileChannel channel, ClipboardItem item) throws IOException {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"type\":");
+        JsonUtils.appendQuoted(sb, item.getContentType().name());
+        sb.append(",\"timestamp\":").append(toEpochMillis(item));
+        if (item.getContentType() == ContentTypeEnum.IMAGE) {
+            sb.append(",\"md5\":");
+            JsonUtils.appendQuoted(sb, item.getContentMd5());
+            sb.append(",\"blob\":");
+            JsonUtils.appendQuoted(sb, BLOB_DIR + "/" + item.getContentMd5() + BLOB_SUFFIX);
+        } else {
+            sb.append(",\"content\":");
+            JsonUtils.appendQuoted(sb, (String) item.getContent());
+        }
+        sb.append("}\n");
+        byte[] line = sb.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = this.ensureCapacity(line.length);
+        out.put(line);
+        out.flip();
+        writeFully(channel, out);
+    }
+
+    private ByteBuffer ensureCapacity(int size) {
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static long toEpochMillis(ClipboardItem item) {
+        return item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.enums.ExportFormatEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.util.JsonUtils;
+import com.zhansc.clipboard.util.Md5Utils;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史记录流式导入器，逐条读取导出目录中的记录，按批次写入历史记录
+ * @date 10/19/26 14:55
+ */
+public class HistoryImporter {
+    private static final Logger LOG = LogManager.getLogger(HistoryImporter.class);
+    // 每批导入的记录数
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    // 二进制记录体的最小长度：类型、时间戳、MD5长度和内容长度
+    private static final int MIN_BINARY_BODY_BYTES = 1 + 8 + 2 + 4;
+
+    private final int batchSize;
+
+    public HistoryImporter() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public HistoryImporter(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 从导出目录导入历史记录，根据目录中的记录文件自动识别格式
+     *
+     * @param history 历史记录管理器
+     * @param dir     导出目录
+     * @return 导入的记录数
+     * @throws IOException 读取失败或目录中没有记录文件
+     */
+    public int importFrom(ClipboardHistory history, Path dir) throws IOException {
+        for (ExportFormatEnum format : ExportFormatEnum.values()) {
+            if (Files.exists(dir.resolve(format.getFileName()))) {
+                return this.importFrom(history, dir, format);
+            }
+        }
+        throw new IOException("目录中没有可导入的历史记录文件: " + dir);
+    }
+
+    /**
+     * 按指定格式从导出目录导入历史记录
+     *
+     * @param history 历史记录管理器
+     * @param dir     导出目录
+     * @param format  导出格式
+     * @return 导入的记录数
+     * @throws IOException 读取失败
+     */
+    public int importFrom(ClipboardHistory history, Path dir, ExportFormatEnum format) throws IOException {
+        List<ClipboardItem> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(dir.resolve(format.getFileName()), StandardOpenOption.READ)) {
+            if (format == ExportFormatEnum.BINARY) {
+                count = this.readBinary(channel, dir, history, batch);
+            } else {
+                count = this.readJsonLines(channel, dir, history, batch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            history.addItems(batch);
+        }
+        return count;
+    }
+
+    private int readBinary(FileChannel channel, Path dir, ClipboardHistory history,
+                           List<ClipboardItem> batch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(5);
+        if (!readFully(channel, header) || header.getInt() != HistoryExporter.BINARY_MAGIC) {
+            throw new IOException("不是有效的历史记录导出文件");
+        }
+        byte version = header.get();
+        if (version != HistoryExporter.BINARY_VERSION) {
+            throw new IOException("不支持的导出文件版本: " + version);
+        }
+
+        int count = 0;
+        int record = 0;
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        ByteBuffer body = ByteBuffer.allocate(64 * 1024);
+        while (true) {
+            lengthBuffer.clear();
+            if (!readFully(channel, lengthBuffer)) {
+                break;
+            }
+            record++;
+            String position = "第 " + record + " 条记录";
+            int length = lengthBuffer.getInt();
+            if (length < MIN_BINARY_BODY_BYTES || length > HistoryExporter.MAX_BINARY_RECORD_BYTES) {
+                throw new IOException(position + "长度非法: " + length);
+            }
+            if (body.capacity() < length) {
+                body = ByteBuffer.allocate((int) Math.min(Math.max(length, body.capacity() * 2L),
+                        HistoryExporter.MAX_BINARY_RECORD_BYTES));
+            }
+            body.clear().limit(length);
+            if (!readFully(channel, body)) {
+                throw new EOFException("导出文件被截断");
+            }
+            ContentTypeEnum contentType = contentType(body.get(), position);
+            long timestamp = body.getLong();
+            int md5Length = body.getShort();
+            if (md5Length < 0 || md5Length > body.remaining() - 4) {
+                throw new IOException(position + "的MD5长度非法: " + md5Length);
+            }
+            byte[] md5 = new byte[md5Length];
+            body.get(md5);
+            int payloadLength = body.getInt();
+            if (payloadLength != body.remaining()) {
+                throw new IOException(position + "的内容长度与记录长度不符: " + payloadLength);
+            }
+            byte[] payload = new byte[payloadLength];
+            body.get(payload);
+
+            ClipboardItem item = this.toItem(dir, contentType, timestamp,
+                    new String(md5, StandardCharsets.US_ASCII), new String(payload, StandardCharsets.UTF_8), position);
+            count += this.offer(history, batch, item);
+        }
+        return count;
+    }
+
+    private int readJsonLines(FileChannel channel, Path dir, ClipboardHistory history,
+                              List<ClipboardItem> batch) throws IOException {
+        int count = 0;
+        int lineNumber = 0;
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String position = "第 " + lineNumber + " 行";
+            Map<String, String> fields;
+            ContentTypeEnum contentType;
+            long timestamp;
+            try {
+                fields = JsonUtils.parseFlatObject(line);
+                contentType = ContentTypeEnum.valueOf(requireField(fields, "type"));
+                timestamp = Long.parseLong(requireField(fields, "timestamp"));
+            } catch (IllegalArgumentException e) {
+                // 也包括未知类型和时间戳不是数字（NumberFormatException）
+                throw new IOException("JSONL格式错误，" + position + ": " + e.getMessage(), e);
+            }
+            String content = fields.get("content");
+            if (contentType != ContentTypeEnum.IMAGE && content == null) {
+                throw new IOException("JSONL格式错误，" + position + "缺少content字段");
+            }
+            ClipboardItem item = this.toItem(dir, contentType, timestamp, fields.get("md5"), content, position);
+            count += this.offer(history, batch, item);
+        }
+        return count;
+    }
+
+    private int offer(ClipboardHistory history, List<ClipboardItem> batch, ClipboardItem item) {
+        if (item == null) {
+            return 0;
+        }
+        batch.add(item);
+        if (batch.size() >= batchSize) {
+            history.addItems(batch);
+            batch.clear();
+        }
+        return 1;
+    }
+
+    private ClipboardItem toItem(Path dir, ContentTypeEnum contentType, long timestamp,
+                                 String md5, String text, String position) throws IOException {
+        LocalDateTime time;
+        try {
+            time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        } catch (DateTimeException e) {
+            throw new IOException(position + "的时间戳超出范围: " + timestamp, e);
+        }
+        if (contentType != ContentTypeEnum.IMAGE) {
+            return new ClipboardItem(null, text, contentType, time);
+        }
+        // MD5会拼接成图片文件名，格式不对时可能指向导出目录之外
+        if (!Md5Utils.isMd5Hex(md5)) {
+            throw new IOException(position + "的图片MD5格式非法");
+        }
+        Path blob = dir.resolve(HistoryExporter.BLOB_DIR).resolve(md5 + HistoryExporter.BLOB_SUFFIX);
+        if (!Files.exists(blob)) {
+            LOG.warn("图片数据丢失，跳过导入: {}", md5);
+            return null;
+        }
+        return new ClipboardItem(md5, ImageHandle.fromEncoded(md5, Files.readAllBytes(blob)),
+                ContentTypeEnum.IMAGE, time);
+    }
+
+    private static ContentTypeEnum contentType(int ordinal, String position) throws IOException {
+        ContentTypeEnum[] types = ContentTypeEnum.values();
+        if (ordinal < 0 || ordinal >= types.length) {
+            throw new IOException(position + "的内容类型非法: " + ordinal);
+        }
+        return types[ordinal];
+    }
+
+    private static String requireField(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("缺少" + name + "字段");
+        }
+        return value;
+    }
+
+    /**
+     * 读满缓冲区，读到文件末尾时返回false
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("导出文件被截断");
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+}
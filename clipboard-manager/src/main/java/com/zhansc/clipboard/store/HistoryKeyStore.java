@@ -0,0 +1,225 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史存储加密密钥的本地密钥库（PKCS12文件），第一次使用时生成256位AES密钥。
+ * 密钥库文件只允许当前用户读写，口令通过系统属性clipboard4j.keystore.password
+ * 或环境变量CLIPBOARD4J_KEYSTORE_PASSWORD设置，未设置时随机生成并保存在操作系统的凭据存储中；
+ * 凭据存储不可用时不使用固定口令，而是拒绝打开持久化存储
+ * @date 10/21/26 15:40
+ */
+public final class HistoryKeyStore {
+    private static final Logger LOG = LogManager.getLogger(HistoryKeyStore.class);
+    private static final String KEYSTORE_TYPE = "PKCS12";
+    private static final String ALIAS = "clipboard4j-history";
+    // 旧版本未设置口令时使用的固定口令，只用于把旧密钥库迁移到新口令
+    private static final String LEGACY_PASSWORD = "clipboard4j";
+    private static final int KEY_BITS = 256;
+    // 自动生成的口令字节数，以十六进制保存
+    private static final int GENERATED_PASSWORD_BYTES = 32;
+
+    private HistoryKeyStore() {
+    }
+
+    /**
+     * 历史存储默认加密，只有系统属性clipboard4j.encrypt显式设为false时才以明文保存
+     *
+     * @return 加密器，不加密时返回null
+     * @throws IOException 读取或生成密钥失败，或者没有设置口令且凭据存储不可用
+     */
+    public static HistoryCipher configuredCipher() throws IOException {
+        if ("false".equalsIgnoreCase(System.getProperty("clipboard4j.encrypt"))) {
+            LOG.warn("已通过clipboard4j.encrypt=false关闭加密，历史记录将以明文保存在磁盘上");
+            return null;
+        }
+        Path file = Paths.get(System.getProperty("user.home"), ".clipboard4j", "history.p12");
+        char[] password = configuredPassword();
+        if (password == null) {
+            password = keychainPassword(file);
+        }
+        if (Files.exists(file)) {
+            SecretKey key = loadLegacy(file, password);
+            if (key != null) {
+                return new HistoryCipher(key);
+            }
+        }
+        return new HistoryCipher(loadOrCreate(file, password));
+    }
+
+    /**
+     * 尝试用旧版本的固定口令读取密钥库，成功时改用新口令重新保存
+     *
+     * @return 密钥，密钥库不是用固定口令保存的时返回null
+     */
+    private static SecretKey loadLegacy(Path file, char[] password) throws IOException {
+        if (LEGACY_PASSWORD.equals(new String(password))) {
+            return null;
+        }
+        try {
+            KeyStore keyStore = openLegacy(file);
+            if (keyStore == null) {
+                return null;
+            }
+            KeyStore.Entry entry = keyStore.getEntry(ALIAS, new KeyStore.PasswordProtection(LEGACY_PASSWORD.toCharArray()));
+            if (!(entry instanceof KeyStore.SecretKeyEntry)) {
+                throw new IOException("密钥库中没有历史存储密钥: " + file);
+            }
+            SecretKey key = ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+            KeyStore rekeyed = KeyStore.getInstance(KEYSTORE_TYPE);
+            rekeyed.load(null, password);
+            rekeyed.setEntry(ALIAS, new KeyStore.SecretKeyEntry(key), new KeyStore.PasswordProtection(password));
+            store(rekeyed, file, password);
+            LOG.info("密钥库已从默认口令迁移到新口令: {}", file);
+            return key;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("迁移密钥库失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 用旧版本的固定口令打开密钥库
+     *
+     * @return 密钥库，口令不对（已经使用新口令）时返回null
+     */
+    private static KeyStore openLegacy(Path file) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE_TYPE);
+        try (InputStream in = Files.newInputStream(file)) {
+            keyStore.load(in, LEGACY_PASSWORD.toCharArray());
+        } catch (IOException e) {
+            return null;
+        }
+        return keyStore;
+    }
+
+    /**
+     * 读取密钥库中的密钥，文件不存在时生成新密钥并保存
+     *
+     * @param file     密钥库文件
+     * @param password 口令
+     * @return 密钥
+     * @throws IOException 读写失败、口令错误或密钥库中没有密钥
+     */
+    public static SecretKey loadOrCreate(Path file, char[] password) throws IOException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE_TYPE);
+            KeyStore.PasswordProtection protection = new KeyStore.PasswordProtection(password);
+            if (Files.exists(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    keyStore.load(in, password);
+                }
+                KeyStore.Entry entry = keyStore.getEntry(ALIAS, protection);
+                if (!(entry instanceof KeyStore.SecretKeyEntry)) {
+                    throw new IOException("密钥库中没有历史存储密钥: " + file);
+                }
+                return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+            }
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(KEY_BITS);
+            SecretKey key = generator.generateKey();
+            keyStore.load(null, password);
+            keyStore.setEntry(ALIAS, new KeyStore.SecretKeyEntry(key), protection);
+            store(keyStore, file, password);
+            return key;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("读取密钥库失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 先以仅当前用户可读写的权限写入临时文件，再原子替换
+     */
+    private static void store(KeyStore keyStore, Path file, char[] password) throws IOException, GeneralSecurityException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + HistoryLog.TMP_SUFFIX);
+        Files.deleteIfExists(tmp);
+        Files.createFile(tmp);
+        try {
+            Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            tmp.toFile().setReadable(false, false);
+            tmp.toFile().setReadable(true, true);
+        }
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            keyStore.store(out, password);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 系统属性或环境变量中设置的口令
+     *
+     * @return 口令，都没有设置时返回null
+     */
+    private static char[] configuredPassword() {
+        String password = System.getProperty("clipboard4j.keystore.password");
+        if (password == null) {
+            password = System.getenv("CLIPBOARD4J_KEYSTORE_PASSWORD");
+        }
+        return password == null ? null : password.toCharArray();
+    }
+
+    /**
+     * 读取凭据存储中的口令。没有保存过口令时，只有密钥库还不存在或仍使用旧版本固定口令，
+     * 才生成随机口令存入凭据存储；否则新口令会让已有的密钥库永远无法打开，直接失败
+     *
+     * @param file 密钥库文件
+     * @throws IOException 凭据存储不可用，或者密钥库已存在但凭据存储中没有口令
+     */
+    private static char[] keychainPassword(Path file) throws IOException {
+        String password;
+        try {
+            password = OsKeychain.load();
+        } catch (IOException e) {
+            throw new IOException("无法从系统凭据存储读取密钥库口令（" + e.getMessage()
+                    + "），请设置clipboard4j.keystore.password或CLIPBOARD4J_KEYSTORE_PASSWORD", e);
+        }
+        if (password != null) {
+            return password.toCharArray();
+        }
+        if (Files.exists(file) && !opensWithLegacyPassword(file)) {
+            throw new IOException("系统凭据存储中没有密钥库口令，但密钥库已存在: " + file
+                    + "，请设置clipboard4j.keystore.password或CLIPBOARD4J_KEYSTORE_PASSWORD，不会生成新口令覆盖");
+        }
+        byte[] random = new byte[GENERATED_PASSWORD_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder(random.length * 2);
+        for (byte b : random) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        password = hex.toString();
+        try {
+            OsKeychain.store(password);
+        } catch (IOException e) {
+            throw new IOException("无法把密钥库口令保存到系统凭据存储（" + e.getMessage()
+                    + "），请设置clipboard4j.keystore.password或CLIPBOARD4J_KEYSTORE_PASSWORD", e);
+        }
+        LOG.info("已生成历史存储密钥库口令并保存到系统凭据存储");
+        return password.toCharArray();
+    }
+
+    private static boolean opensWithLegacyPassword(Path file) throws IOException {
+        try {
+            return openLegacy(file) != null;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("读取密钥库失败: " + e.getMessage(), e);
+        }
+    }
+}
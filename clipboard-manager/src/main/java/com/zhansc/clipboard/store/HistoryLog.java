@@ -0,0 +1,835 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 追加写入的历史记录日志
+ * 日志由多个段文件组成，MANIFEST文件按顺序列出当前有效的段，最后一个为活动段；
+ * 图片内容按MD5存放在blobs目录中，同一图片只保存一份。
+ * 设置加密器后，记录体和图片blob都以HistoryCipher格式写入；加密前写入的明文记录仍可读取，压缩时重新加密
+ * @date 10/19/26 10:50
+ */
+public class HistoryLog implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(HistoryLog.class);
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String TMP_SUFFIX = ".tmp";
+    private static final String MANIFEST = "MANIFEST";
+    private static final String BLOB_DIR = "blobs";
+    private static final String BLOB_SUFFIX = ".png";
+    // 重新加密图片时的临时文件后缀，与新写入图片的临时文件区分
+    private static final String SEAL_SUFFIX = ".seal";
+    // 删除一个blob按该字节数计入I/O额度（目录项和元数据的更新）
+    private static final long BLOB_DELETE_COST = 4096;
+    // 正常关闭时保存的图片指纹过滤器，打开时读取后删除，异常退出后重新扫描blobs目录生成
+    private static final String BLOB_FILTER = "blobs.filter";
+    // 每条记录的头部：长度 + CRC32
+    static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final Path blobDir;
+    private final long maxSegmentBytes;
+    // 加密器，为null时以明文写入
+    private final HistoryCipher cipher;
+    // 按顺序排列的有效段，最后一个为活动段
+    private final List<Segment> segments = new ArrayList<>();
+    // 内容键 -> 当前有效的ADD记录
+    private final Map<String, LiveRef> liveIndex = new HashMap<>();
+    // 图片MD5 -> 引用它的有效记录数，清理blob时在锁内逐个确认
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    // 已保存图片的MD5过滤器，判断为不存在时不需要访问磁盘
+    private volatile CountingBloomFilter blobFilter;
+    // 设置了加密器但日志中还有明文记录，需要压缩一次重新加密
+    private volatile boolean plainRecords;
+    // 正在锁外读取段文件的读者数，大于0时压缩提交后暂不删除输入段
+    private int readers;
+    // 等待读者结束后删除的段文件
+    private final List<Path> deferredDeletes = new ArrayList<>();
+    private FileChannel activeChannel;
+    private long nextSeq = 1;
+    private long nextSegmentId = 1;
+    private boolean closed;
+
+    private HistoryLog(Path dir, long maxSegmentBytes, HistoryCipher cipher) {
+        this.dir = dir;
+        this.blobDir = dir.resolve(BLOB_DIR);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.cipher = cipher;
+    }
+
+    /**
+     * 打开（或创建）日志目录，清理中断的压缩残留并重建有效记录索引
+     *
+     * @param dir             日志目录
+     * @param maxSegmentBytes 单个段文件的最大字节数
+     * @return 日志实例
+     * @throws IOException 读写失败
+     */
+    public static HistoryLog open(Path dir, long maxSegmentBytes) throws IOException {
+        return open(dir, maxSegmentBytes, null);
+    }
+
+    /**
+     * 打开（或创建）加密的日志目录
+     *
+     * @param dir             日志目录
+     * @param maxSegmentBytes 单个段文件的最大字节数
+     * @param cipher          加密器，为null时不加密
+     * @return 日志实例
+     * @throws IOException 读写失败，或密钥与已加密的数据不匹配
+     */
+    public static HistoryLog open(Path dir, long maxSegmentBytes, HistoryCipher cipher) throws IOException {
+        HistoryLog log = new HistoryLog(dir, maxSegmentBytes, cipher);
+        log.recover();
+        return log;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        Files.createDirectories(blobDir);
+
+        List<String> names = new ArrayList<>();
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    names.add(line.trim());
+                }
+            }
+        }
+        Set<String> listed = new HashSet<>(names);
+
+        // 删除临时文件以及不在MANIFEST中的段（压缩过程中崩溃的残留）
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    nextSegmentId = Math.max(nextSegmentId, parseSegmentId(name) + 1);
+                    if (!listed.contains(name)) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(blobDir, "*" + TMP_SUFFIX)) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        }
+        this.loadBlobFilter();
+
+        for (String name : names) {
+            Path path = dir.resolve(name);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            Segment segment = new Segment(parseSegmentId(name), path);
+            long validBytes = this.scan(path, (record, body) -> {
+                if (cipher != null && !HistoryCipher.isSealed(body)) {
+                    plainRecords = true;
+                }
+                this.apply(record, segment, HEADER_BYTES + body.length);
+            });
+            segment.size = validBytes;
+            segments.add(segment);
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(this.newSegment());
+        }
+        Segment active = this.activeSegment();
+        activeChannel = FileChannel.open(active.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // 截断活动段末尾写了一半的记录
+        if (activeChannel.size() > active.size) {
+            activeChannel.truncate(active.size);
+        }
+        activeChannel.position(active.size);
+        // 封存含有明文记录的活动段，使其可以被压缩
+        if (plainRecords && active.size > 0) {
+            this.rollSegment();
+        }
+        this.writeManifest();
+    }
+
+    /**
+     * 追加一条文本/URL/图片的ADD记录
+     *
+     * @param key         内容键
+     * @param contentType 内容类型
+     * @param contentMd5  内容MD5（图片）
+     * @param version     排序版本
+     * @param payload     文本内容的UTF-8字节，图片为null
+     * @param blobBytes   图片的PNG字节，blob已存在时不再写入，非图片时为null
+     * @param timestamp   时间戳（毫秒）
+     * @throws IOException 写入失败
+     */
+    public synchronized void appendAdd(String key, ContentTypeEnum contentType, String contentMd5, long version,
+                                       byte[] payload, byte[] blobBytes, long timestamp) throws IOException {
+        if (blobBytes != null && !this.hasBlob(contentMd5)) {
+            this.writeBlob(contentMd5, blobBytes);
+        }
+        this.append(new LogRecord(LogRecord.OP_ADD, nextSeq++, timestamp, key, contentType, contentMd5, version, payload));
+    }
+
+    /**
+     * 追加一条删除记录
+     */
+    public synchronized void appendRemove(String key) throws IOException {
+        this.append(new LogRecord(LogRecord.OP_REMOVE, nextSeq++, System.currentTimeMillis(), key, null, null, 0, null));
+    }
+
+    /**
+     * 追加一条清空记录
+     */
+    public synchronized void appendClear() throws IOException {
+        this.append(new LogRecord(LogRecord.OP_CLEAR, nextSeq++, System.currentTimeMillis(), null, null, null, 0, null));
+    }
+
+    private void append(LogRecord record) throws IOException {
+        this.ensureOpen();
+        byte[] body = record.encode();
+        int bodyBytes = cipher == null ? body.length : HistoryCipher.sealedLength(body.length);
+        int frameBytes = HEADER_BYTES + bodyBytes;
+        Segment active = this.activeSegment();
+        if (active.size > 0 && active.size + frameBytes > maxSegmentBytes) {
+            active = this.rollSegment();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(frameBytes);
+        if (cipher == null) {
+            buffer.putInt(body.length).putInt(crc(body)).put(body);
+        } else {
+            // 直接加密到帧缓冲区中
+            cipher.encrypt(body, null, buffer.array(), HEADER_BYTES);
+            buffer.putInt(bodyBytes).putInt(crc(buffer.array(), HEADER_BYTES, bodyBytes)).position(frameBytes);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer);
+        }
+        active.size += frameBytes;
+        this.apply(record, active, frameBytes);
+    }
+
+    /**
+     * 将记录应用到有效记录索引，并维护各段的有效字节数
+     */
+    private void apply(LogRecord record, Segment segment, int frameBytes) {
+        switch (record.getOp()) {
+            case LogRecord.OP_ADD:
+                LiveRef added = new LiveRef(record.getSeq(), segment, frameBytes,
+                        record.getContentType(), record.getContentMd5());
+                this.release(liveIndex.put(record.getKey(), added));
+                segment.liveBytes += frameBytes;
+                if (added.isImage()) {
+                    blobRefs.merge(added.contentMd5, 1, Integer::sum);
+                }
+                break;
+            case LogRecord.OP_REMOVE:
+                this.release(liveIndex.remove(record.getKey()));
+                break;
+            case LogRecord.OP_CLEAR:
+                for (LiveRef ref : liveIndex.values()) {
+                    this.release(ref);
+                }
+                liveIndex.clear();
+                blobRefs.clear();
+                break;
+            default:
+                break;
+        }
+        nextSeq = Math.max(nextSeq, record.getSeq() + 1);
+    }
+
+    private void release(LiveRef ref) {
+        if (ref != null) {
+            ref.segment.liveBytes -= ref.bytes;
+            if (ref.isImage()) {
+                blobRefs.computeIfPresent(ref.contentMd5, (md5, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    private Segment rollSegment() throws IOException {
+        activeChannel.force(true);
+        activeChannel.close();
+        Segment segment = this.newSegment();
+        segments.add(segment);
+        activeChannel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.writeManifest();
+        return segment;
+    }
+
+    private Segment newSegment() {
+        long id = nextSegmentId++;
+        return new Segment(id, dir.resolve(segmentName(id)));
+    }
+
+    /**
+     * 读取所有有效的ADD记录，按写入顺序（从旧到新）排列
+     *
+     * @return 有效记录列表
+     * @throws IOException 读取失败
+     */
+    public List<LogRecord> readLiveRecords() throws IOException {
+        List<Segment> snapshot;
+        synchronized (this) {
+            this.ensureOpen();
+            activeChannel.force(false);
+            snapshot = new ArrayList<>(segments);
+            // 读取期间压缩可能提交，登记为读者，快照中的段在读完之前不会被删除
+            readers++;
+        }
+        List<LogRecord> result = new ArrayList<>();
+        try {
+            for (Segment segment : snapshot) {
+                this.scan(segment.path, (record, body) -> {
+                    if (this.isLive(record)) {
+                        result.add(record);
+                    }
+                });
+            }
+        } finally {
+            this.releaseReader();
+        }
+        result.sort(Comparator.comparingLong(LogRecord::getSeq));
+        return result;
+    }
+
+    private synchronized void releaseReader() throws IOException {
+        if (--readers > 0) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>(deferredDeletes);
+        deferredDeletes.clear();
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * 判断记录是否仍然有效（是该内容键最新的ADD且未被删除或清空）
+     */
+    synchronized boolean isLive(LogRecord record) {
+        if (record.getOp() != LogRecord.OP_ADD) {
+            return false;
+        }
+        LiveRef ref = liveIndex.get(record.getKey());
+        return ref != null && ref.seq == record.getSeq();
+    }
+
+    /**
+     * 判断图片blob是否已存在，只在持有日志锁时调用，否则结果可能已被垃圾回收改变
+     */
+    private boolean hasBlob(String contentMd5) {
+        // 大多数新图片从未保存过，过滤器可以直接排除，不需要访问文件系统
+        if (!blobFilter.mightContain(contentMd5)) {
+            return false;
+        }
+        return Files.exists(this.blobPath(contentMd5));
+    }
+
+    /**
+     * 读取图片blob
+     *
+     * @param contentMd5 图片MD5
+     * @return PNG字节，不存在时返回null
+     * @throws IOException 读取失败
+     */
+    public byte[] readBlob(String contentMd5) throws IOException {
+        Path path = this.blobPath(contentMd5);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        if (cipher == null) {
+            return Files.readAllBytes(path);
+        }
+        long size = Files.size(path);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            // PNG以0x89开头，不会与密文的格式字节混淆，开启加密前保存的明文图片直接读取
+            in.mark(1);
+            boolean sealed = in.read() == (HistoryCipher.FORMAT & 0xff);
+            in.reset();
+            if (!sealed) {
+                return readAll(in, size);
+            }
+            long plainLength = HistoryCipher.plainLength(size);
+            if (plainLength < 0 || plainLength > Integer.MAX_VALUE - 8) {
+                throw new IOException("图片数据已损坏: " + contentMd5);
+            }
+            // 流式解密到按明文长度分配的数组中，不需要同时持有完整的密文
+            byte[] bytes = new byte[(int) plainLength];
+            try (InputStream plain = cipher.decryptingStream(in, blobAad(contentMd5))) {
+                int read = 0;
+                int n;
+                while (read < bytes.length && (n = plain.read(bytes, read, bytes.length - read)) != -1) {
+                    read += n;
+                }
+                if (read != bytes.length || plain.read() != -1) {
+                    throw new IOException("图片数据已损坏: " + contentMd5);
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private void writeBlob(String contentMd5, byte[] bytes) throws IOException {
+        Path tmp = blobDir.resolve(contentMd5 + BLOB_SUFFIX + TMP_SUFFIX);
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            if (cipher == null) {
+                fos.write(bytes);
+            } else {
+                // 分块加密后直接写入文件，不生成完整的密文数组
+                HistoryCipher.EncryptingOutputStream out = cipher.encryptingStream(
+                        new BufferedOutputStream(fos, 64 * 1024), blobAad(contentMd5));
+                out.write(bytes);
+                out.finish();
+            }
+            fos.getChannel().force(true);
+        }
+        Path path = this.blobPath(contentMd5);
+        boolean replaced = Files.exists(path);
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (replaced) {
+            return;
+        }
+        blobFilter.add(contentMd5);
+        if (blobFilter.isOverloaded()) {
+            this.rebuildBlobFilter(blobFilter.getCapacity() * 2);
+        }
+    }
+
+    /**
+     * 读取上次正常关闭时保存的过滤器，读取后删除文件，异常退出时不会使用过期的过滤器
+     */
+    private void loadBlobFilter() throws IOException {
+        Path path = dir.resolve(BLOB_FILTER);
+        if (Files.exists(path)) {
+            try {
+                blobFilter = CountingBloomFilter.readFrom(path);
+            } catch (IOException e) {
+                LOG.warn("读取图片指纹过滤器失败，重新生成: {}", e.getMessage());
+            }
+            Files.deleteIfExists(path);
+        }
+        if (blobFilter == null) {
+            this.rebuildBlobFilter(0);
+        }
+    }
+
+    /**
+     * 扫描blobs目录重新生成过滤器，容量至少为已有图片数的两倍
+     */
+    private void rebuildBlobFilter(int minCapacity) throws IOException {
+        List<String> md5s = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(blobDir, "*" + BLOB_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                md5s.add(name.substring(0, name.length() - BLOB_SUFFIX.length()));
+            }
+        }
+        CountingBloomFilter filter = new CountingBloomFilter(Math.max(minCapacity, md5s.size() * 2));
+        for (String md5 : md5s) {
+            filter.add(md5);
+        }
+        blobFilter = filter;
+    }
+
+    private Path blobPath(String contentMd5) {
+        return blobDir.resolve(contentMd5 + BLOB_SUFFIX);
+    }
+
+    /**
+     * 图片blob以MD5作为附加认证数据，文件被替换成其他图片的密文时认证失败
+     */
+    private static byte[] blobAad(String contentMd5) {
+        return contentMd5.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in, long sizeHint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(sizeHint, Integer.MAX_VALUE - 8));
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 设置了加密器时，把仍被引用的明文图片重新加密。读取和加密在锁外进行并限速，
+     * 只在替换文件时加锁，并确认图片仍被引用、未被删除
+     */
+    private void sealPlainBlob(String contentMd5, IoRateLimiter rateLimiter) throws IOException {
+        Path path = this.blobPath(contentMd5);
+        byte[] bytes;
+        try (InputStream in = Files.newInputStream(path)) {
+            int first = in.read();
+            if (first == -1 || first == (HistoryCipher.FORMAT & 0xff)) {
+                return;
+            }
+            long size = Files.size(path);
+            // 读一遍、写一遍
+            acquire(rateLimiter, 2 * size);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE - 8));
+            out.write(first);
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            bytes = out.toByteArray();
+        } catch (NoSuchFileException e) {
+            // 已被删除
+            return;
+        }
+        Path tmp = blobDir.resolve(contentMd5 + BLOB_SUFFIX + SEAL_SUFFIX + TMP_SUFFIX);
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            HistoryCipher.EncryptingOutputStream out = cipher.encryptingStream(
+                    new BufferedOutputStream(fos, 64 * 1024), blobAad(contentMd5));
+            out.write(bytes);
+            out.finish();
+            fos.getChannel().force(true);
+        }
+        synchronized (this) {
+            if (!closed && blobRefs.containsKey(contentMd5) && Files.exists(path)) {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+        }
+        Files.deleteIfExists(tmp);
+    }
+
+    /**
+     * 删除不再被任何有效记录引用的图片blob，设置了加密器时顺带重新加密仍被引用的明文图片。
+     * 列目录和重新加密在锁外进行并限速，只在删除或替换单个文件时短暂加锁并重新确认引用，
+     * 不阻塞剪贴板捕获线程的追加写入
+     *
+     * @param rateLimiter I/O限速器
+     * @return 删除的blob数量
+     * @throws IOException 读写失败
+     */
+    int collectGarbageBlobs(IoRateLimiter rateLimiter) throws IOException {
+        List<String> garbage = new ArrayList<>();
+        List<String> live = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(blobDir, "*" + BLOB_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String md5 = name.substring(0, name.length() - BLOB_SUFFIX.length());
+                synchronized (this) {
+                    this.ensureOpen();
+                    (blobRefs.containsKey(md5) ? live : garbage).add(md5);
+                }
+            }
+        }
+        int removed = 0;
+        for (String md5 : garbage) {
+            acquire(rateLimiter, BLOB_DELETE_COST);
+            synchronized (this) {
+                this.ensureOpen();
+                // 列目录之后可能又被新的记录引用
+                if (!blobRefs.containsKey(md5) && Files.deleteIfExists(this.blobPath(md5))) {
+                    blobFilter.remove(md5);
+                    removed++;
+                }
+            }
+        }
+        if (cipher != null) {
+            for (String md5 : live) {
+                this.sealPlainBlob(md5, rateLimiter);
+            }
+        }
+        return removed;
+    }
+
+    private static void acquire(IoRateLimiter rateLimiter, long bytes) throws InterruptedIOException {
+        try {
+            rateLimiter.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("清理图片被中断");
+        }
+    }
+
+    /**
+     * 获取所有已封存（非活动）段的快照，压缩只处理这些段
+     */
+    synchronized List<Segment> sealedSegments() {
+        return new ArrayList<>(segments.subList(0, segments.size() - 1));
+    }
+
+    long getMaxSegmentBytes() {
+        return maxSegmentBytes;
+    }
+
+    /**
+     * 为压缩输出分配一个新的段编号，返回其临时文件路径
+     */
+    synchronized Segment newCompactionSegment() {
+        return this.newSegment();
+    }
+
+    static Path tmpPath(Segment segment) {
+        return segment.path.resolveSibling(segment.path.getFileName() + TMP_SUFFIX);
+    }
+
+    /**
+     * 提交压缩结果：用输出段替换输入段（必须是段列表的前缀），更新MANIFEST后删除输入段，
+     * 有读者正在读取段文件时等它们结束后再删除
+     *
+     * @param inputs  被压缩的段
+     * @param outputs 压缩输出的段（已落盘并重命名）
+     * @param moved   被复制到输出段的记录
+     * @throws IOException 读写失败
+     */
+    synchronized void commitCompaction(List<Segment> inputs, List<Segment> outputs,
+                                       List<MovedRecord> moved) throws IOException {
+        this.ensureOpen();
+        if (inputs.size() >= segments.size() || !segments.subList(0, inputs.size()).equals(inputs)) {
+            throw new IOException("压缩输入段已发生变化，放弃本次压缩");
+        }
+        for (MovedRecord record : moved) {
+            LiveRef ref = liveIndex.get(record.key);
+            if (ref != null && ref.seq == record.seq) {
+                ref.segment = record.segment;
+                // 压缩时重新加密的记录大小会变化
+                ref.bytes = record.bytes;
+                record.segment.liveBytes += ref.bytes;
+            }
+        }
+        segments.subList(0, inputs.size()).clear();
+        segments.addAll(0, outputs);
+        this.writeManifest();
+        // 恢复时已封存含有明文的活动段，压缩全部封存段后不再有明文记录
+        plainRecords = false;
+        for (Segment input : inputs) {
+            if (readers > 0) {
+                // 已不在MANIFEST中，读者结束前进程退出时由下次打开清理
+                deferredDeletes.add(input.path);
+            } else {
+                Files.deleteIfExists(input.path);
+            }
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : segments) {
+            sb.append(segment.path.getFileName()).append('\n');
+        }
+        Path tmp = dir.resolve(MANIFEST + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Segment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("历史日志已关闭");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (activeChannel != null) {
+            activeChannel.force(true);
+            activeChannel.close();
+        }
+        if (blobFilter != null) {
+            blobFilter.writeTo(dir.resolve(BLOB_FILTER));
+        }
+    }
+
+    /**
+     * 顺序读取段文件中的记录，遇到截断或校验失败的记录时停止。
+     * 加密的记录解密后交给访问器，body仍为写入文件的原始字节
+     *
+     * @param path    段文件
+     * @param visitor 记录访问器
+     * @return 有效数据的字节数
+     * @throws IOException 读取失败，或加密记录无法解密
+     */
+    long scan(Path path, RecordVisitor visitor) throws IOException {
+        long valid = 0;
+        long fileSize = Files.size(path);
+        try (InputStream is = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is, 64 * 1024))) {
+            while (true) {
+                int length;
+                int crc;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    crc = in.readInt();
+                    if (length < 0 || valid + HEADER_BYTES + length > fileSize) {
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc(body) != crc) {
+                    break;
+                }
+                visitor.visit(LogRecord.decode(this.openBody(body)), body);
+                valid += HEADER_BYTES + length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * 解密记录体。校验和正确但解密失败说明密钥不匹配或数据被篡改，此时不能当作写了一半的记录截断
+     */
+    private byte[] openBody(byte[] body) throws IOException {
+        if (!HistoryCipher.isSealed(body)) {
+            return body;
+        }
+        if (cipher == null) {
+            throw new IOException("历史日志已加密，需要密钥才能读取");
+        }
+        return cipher.decrypt(body, null);
+    }
+
+    /**
+     * 是否有开启加密前写入的明文记录，有时压缩引擎应立即压缩
+     */
+    boolean hasPlainRecords() {
+        return plainRecords;
+    }
+
+    /**
+     * 设置了加密器时，把加密前写入的明文记录体加密，压缩时调用
+     */
+    byte[] sealBody(byte[] body) throws IOException {
+        return cipher == null || HistoryCipher.isSealed(body) ? body : cipher.encrypt(body, null);
+    }
+
+    static int crc(byte[] body) {
+        return crc(body, 0, body.length);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, offset, length);
+        return (int) crc32.getValue();
+    }
+
+    private static String segmentName(long id) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private static long parseSegmentId(String name) {
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * 记录访问器
+     */
+    interface RecordVisitor {
+        void visit(LogRecord record, byte[] body) throws IOException;
+    }
+
+    /**
+     * 日志段
+     */
+    static final class Segment {
+        final long id;
+        final Path path;
+        volatile long size;
+        volatile long liveBytes;
+
+        Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    /**
+     * 压缩时被复制到新段的记录
+     */
+    static final class MovedRecord {
+        final String key;
+        final long seq;
+        final Segment segment;
+        final int bytes;
+
+        MovedRecord(String key, long seq, Segment segment, int bytes) {
+            this.key = key;
+            this.seq = seq;
+            this.segment = segment;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * 有效ADD记录的位置信息
+     */
+    private static final class LiveRef {
+        final long seq;
+        int bytes;
+        final ContentTypeEnum contentType;
+        final String contentMd5;
+        Segment segment;
+
+        LiveRef(long seq, Segment segment, int bytes, ContentTypeEnum contentType, String contentMd5) {
+            this.seq = seq;
+            this.segment = segment;
+            this.bytes = bytes;
+            this.contentType = contentType;
+            this.contentMd5 = contentMd5;
+        }
+
+        boolean isImage() {
+            return contentType == ContentTypeEnum.IMAGE && contentMd5 != null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.zhansc.clipboard.store;
+
+import java.awt.Image;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 按图片指纹（MD5）寻址的图片存储，在历史记录之间引用计数，
+ * 同一图片无论复制多少次，内存中只保留一份PNG数据，解码后的图片放在有容量上限的LRU缓存中
+ * @date 10/19/26 17:30
+ */
+public class ImageBlobStore {
+    // 默认解码缓存上限：128MB像素数据
+    private static final long DEFAULT_DECODED_CACHE_BYTES = 128L * 1024 * 1024;
+
+    private final long decodedCacheBytes;
+    // 图片MD5 -> 句柄
+    private final Map<String, ImageHandle> handles = new HashMap<>();
+    // 解码缓存，按访问顺序排列
+    private final LinkedHashMap<String, Image> decodedCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public ImageBlobStore() {
+        this(DEFAULT_DECODED_CACHE_BYTES);
+    }
+
+    public ImageBlobStore(long decodedCacheBytes) {
+        this.decodedCacheBytes = decodedCacheBytes;
+    }
+
+    /**
+     * 增加图片的引用。如果已存在相同指纹的图片，返回已有句柄（调用方应改用该句柄），
+     * 否则接管传入的句柄
+     *
+     * @param handle 图片句柄
+     * @return 规范句柄
+     */
+    public synchronized ImageHandle retain(ImageHandle handle) {
+        ImageHandle canonical = handles.get(handle.getContentMd5());
+        if (canonical == null) {
+            canonical = handle;
+            handles.put(handle.getContentMd5(), handle);
+            Image image = handle.attach(this);
+            if (image != null) {
+                this.cache(handle, image);
+            }
+        }
+        canonical.refCount++;
+        return canonical;
+    }
+
+    /**
+     * 减少图片的引用，引用归零时释放PNG数据和解码缓存
+     *
+     * @param handle 图片句柄
+     */
+    public synchronized void release(ImageHandle handle) {
+        ImageHandle canonical = handles.get(handle.getContentMd5());
+        if (canonical == null || --canonical.refCount > 0) {
+            return;
+        }
+        handles.remove(handle.getContentMd5());
+        Image image = decodedCache.remove(handle.getContentMd5());
+        if (image != null) {
+            cachedBytes -= canonical.decodedBytes();
+        }
+        canonical.detach();
+    }
+
+    /**
+     * 释放所有图片
+     */
+    public synchronized void clear() {
+        for (ImageHandle handle : handles.values()) {
+            handle.refCount = 0;
+            handle.detach();
+        }
+        handles.clear();
+        decodedCache.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * 获取解码后的图片，缓存未命中时在锁外解码
+     */
+    Image decode(ImageHandle handle) {
+        synchronized (this) {
+            Image image = decodedCache.get(handle.getContentMd5());
+            if (image != null) {
+                return image;
+            }
+        }
+        Image image = handle.decode();
+        if (image != null) {
+            synchronized (this) {
+                if (handles.get(handle.getContentMd5()) == handle && !decodedCache.containsKey(handle.getContentMd5())) {
+                    this.cache(handle, image);
+                }
+            }
+        }
+        return image;
+    }
+
+    private void cache(ImageHandle handle, Image image) {
+        decodedCache.put(handle.getContentMd5(), image);
+        cachedBytes += handle.decodedBytes();
+        // 超出容量时淘汰最久未使用的解码图片，PNG数据仍然保留
+        Iterator<Map.Entry<String, Image>> iterator = decodedCache.entrySet().iterator();
+        while (cachedBytes > decodedCacheBytes && decodedCache.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Image> eldest = iterator.next();
+            iterator.remove();
+            ImageHandle evicted = handles.get(eldest.getKey());
+            cachedBytes -= evicted != null ? evicted.decodedBytes() : 0;
+        }
+    }
+
+    /**
+     * 获取存储中的图片数量
+     */
+    public synchronized int size() {
+        return handles.size();
+    }
+
+    /**
+     * 获取所有图片PNG数据的总字节数
+     */
+    public synchronized long encodedBytes() {
+        long total = 0;
+        for (ImageHandle handle : handles.values()) {
+            total += handle.getEncoded().length;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,226 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.util.ImageUtils;
+import com.zhansc.clipboard.util.Md5Utils;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 图片句柄，剪贴板项只持有句柄，PNG数据、解码后的图片和缩略图由ImageBlobStore统一管理
+ * @date 10/19/26 17:10
+ */
+public final class ImageHandle {
+    private static final Logger LOG = LogManager.getLogger(ImageHandle.class);
+    // 计算感知哈希时抽样解码的目标尺寸
+    private static final int PERCEPTUAL_HASH_SOURCE_SIZE = 64;
+    // 相邻区域亮度差达到该值才算有效的梯度（亮度范围0~255）
+    private static final double MIN_GRADIENT_DELTA = 2.0;
+    // 有效梯度少于该数量的图片（纯色、近乎空白）不参与相似图片合并
+    private static final int MIN_SIGNIFICANT_GRADIENTS = 8;
+    // PNG数据的MD5值，即图片指纹
+    private final String contentMd5;
+    private final int width;
+    private final int height;
+    // PNG编码后的数据，是图片在内存中的唯一持久形式
+    private final byte[] encoded;
+    // 尚未被存储接管时持有的原始图片，接管后移入存储的解码缓存
+    private volatile Image detachedImage;
+    // 接管该句柄的存储
+    private volatile ImageBlobStore store;
+    // 被历史记录引用的次数，由存储维护
+    int refCount;
+    // 分带编码时生成的缩略图，不超过该尺寸的缩略图直接由它缩放，无需解码原图
+    private final Image preview;
+    // 感知哈希，延迟计算
+    private long perceptualHash;
+    private boolean perceptualHashComputed;
+    // 是否得到了可用于比较的感知哈希，解码失败或图片过于平坦时为false
+    private boolean perceptualHashUsable;
+    // 缩略图缓存
+    private Image thumbnail;
+    private int thumbnailMaxWidth;
+    private int thumbnailMaxHeight;
+
+    private ImageHandle(String contentMd5, byte[] encoded, int width, int height, Image detachedImage,
+                        Image preview) {
+        this.contentMd5 = contentMd5;
+        this.encoded = encoded;
+        this.width = width;
+        this.height = height;
+        this.detachedImage = detachedImage;
+        this.preview = preview;
+    }
+
+    /**
+     * 从剪贴板中的图片创建句柄，PNG编码只进行一次，同时得到MD5指纹
+     *
+     * @param image 图片
+     * @return 未被存储接管的句柄
+     * @throws IOException 编码失败
+     */
+    public static ImageHandle fromImage(Image image) throws IOException {
+        byte[] encoded = ImageUtils.toPngBytes(image);
+        return new ImageHandle(Md5Utils.md5Hex(encoded), encoded, image.getWidth(null), image.getHeight(null), image,
+                null);
+    }
+
+    /**
+     * 从已编码的PNG数据创建句柄，图片在首次使用时才解码
+     *
+     * @param contentMd5 图片MD5
+     * @param encoded    PNG数据
+     * @return 未被存储接管的句柄
+     */
+    public static ImageHandle fromEncoded(String contentMd5, byte[] encoded) {
+        int[] size = ImageUtils.readPngSize(encoded);
+        return new ImageHandle(contentMd5, encoded, size == null ? -1 : size[0], size == null ? -1 : size[1], null,
+                null);
+    }
+
+    /**
+     * 由分带编码器创建句柄，不持有原图，只保留编码时生成的缩略图
+     */
+    static ImageHandle fromBanded(String contentMd5, byte[] encoded, int width, int height, Image preview) {
+        return new ImageHandle(contentMd5, encoded, width, height, null, preview);
+    }
+
+    public String getContentMd5() {
+        return contentMd5;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取PNG编码数据，持久化、导出和同步直接使用，无需重新编码
+     */
+    public byte[] getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * 获取解码后的图片，优先使用存储的解码缓存
+     *
+     * @return 图片，解码失败时返回null
+     */
+    public Image getImage() {
+        Image image = detachedImage;
+        if (image != null) {
+            return image;
+        }
+        ImageBlobStore owner = store;
+        if (owner != null) {
+            return owner.decode(this);
+        }
+        return this.decode();
+    }
+
+    /**
+     * 获取缩略图，相同尺寸限制下只生成一次
+     *
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度
+     * @return 缩略图，图片不可用时返回null
+     */
+    public synchronized Image getThumbnail(int maxWidth, int maxHeight) {
+        if (thumbnail == null || thumbnailMaxWidth != maxWidth || thumbnailMaxHeight != maxHeight) {
+            boolean previewLargeEnough = preview != null
+                    && preview.getWidth(null) >= Math.min(width, maxWidth)
+                    && preview.getHeight(null) >= Math.min(height, maxHeight);
+            Image image = previewLargeEnough ? preview : this.getImage();
+            thumbnail = image == null ? null : ImageUtils.scaleToFit(image, maxWidth, maxHeight);
+            thumbnailMaxWidth = maxWidth;
+            thumbnailMaxHeight = maxHeight;
+        }
+        return thumbnail;
+    }
+
+    /**
+     * 获取感知哈希（dHash），用于查找相似图片
+     * 优先使用缩略图或原图计算，都不可用时抽样解码PNG数据，不解码整张图片。
+     * 只有hasPerceptualHash为true时返回值才有意义
+     *
+     * @return 64位感知哈希，没有可用的哈希时返回0
+     */
+    public synchronized long getPerceptualHash() {
+        this.computePerceptualHash();
+        return perceptualHash;
+    }
+
+    /**
+     * 是否有可用于相似比较的感知哈希。图片解码失败时没有哈希；
+     * 纯色、近乎空白的图片有效梯度太少，哈希接近全0，任意两张都会被当成相似，同样视为没有
+     */
+    public synchronized boolean hasPerceptualHash() {
+        this.computePerceptualHash();
+        return perceptualHashUsable;
+    }
+
+    private void computePerceptualHash() {
+        if (perceptualHashComputed) {
+            return;
+        }
+        perceptualHashComputed = true;
+        BufferedImage source = null;
+        Image image = preview != null ? preview : detachedImage;
+        if (image != null) {
+            source = image instanceof BufferedImage ? (BufferedImage) image : ImageUtils.toBufferedImage(image);
+        } else {
+            try {
+                source = ImageUtils.fromPngBytesSubsampled(encoded, PERCEPTUAL_HASH_SOURCE_SIZE);
+            } catch (IOException e) {
+                LOG.warn("解码图片失败: {}", e.getMessage());
+            }
+        }
+        if (source == null) {
+            return;
+        }
+        double[] cells = ImageUtils.differenceHashCells(source);
+        perceptualHash = ImageUtils.differenceHash(cells);
+        perceptualHashUsable = ImageUtils.significantGradients(cells, MIN_GRADIENT_DELTA) >= MIN_SIGNIFICANT_GRADIENTS;
+    }
+
+    Image decode() {
+        try {
+            return ImageUtils.fromPngBytes(encoded);
+        } catch (IOException e) {
+            LOG.warn("解码图片失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 被存储接管，返回原先持有的图片以放入解码缓存
+     */
+    Image attach(ImageBlobStore owner) {
+        this.store = owner;
+        Image image = detachedImage;
+        detachedImage = null;
+        return image;
+    }
+
+    /**
+     * 引用归零后脱离存储
+     */
+    void detach() {
+        this.store = null;
+    }
+
+    /**
+     * 估算解码后图片占用的内存字节数
+     */
+    long decodedBytes() {
+        return width > 0 && height > 0 ? (long) width * height * 4 : encoded.length;
+    }
+}
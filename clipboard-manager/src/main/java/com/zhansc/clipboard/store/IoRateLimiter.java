@@ -0,0 +1,43 @@
+package com.zhansc.clipboard.store;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 基于令牌桶的I/O限速器，避免后台任务与剪贴板捕获、界面争抢磁盘带宽
+ * @date 10/19/26 11:30
+ */
+public class IoRateLimiter {
+    // 每秒允许的字节数
+    private final long bytesPerSecond;
+    // 当前可用的字节额度，可以为负数（表示需要等待）
+    private double available;
+    private long lastRefillNanos;
+
+    public IoRateLimiter(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("bytesPerSecond必须大于0");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.available = bytesPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 申请指定字节数的I/O额度，额度不足时阻塞等待
+     *
+     * @param bytes 字节数
+     * @throws InterruptedException 等待时被中断
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        long now = System.nanoTime();
+        // 最多积累一秒的额度，防止长时间空闲后突发大量I/O
+        available = Math.min(bytesPerSecond, available + (now - lastRefillNanos) * bytesPerSecond / 1e9);
+        lastRefillNanos = now;
+        available -= bytes;
+        if (available < 0) {
+            TimeUnit.NANOSECONDS.sleep((long) (-available * 1e9 / bytesPerSecond));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 历史日志记录，追加写入到日志段文件中
+ * @date 10/19/26 10:42
+ */
+public final class LogRecord {
+    /**
+     * 添加（或移到开头）记录
+     */
+    public static final byte OP_ADD = 1;
+    /**
+     * 删除记录
+     */
+    public static final byte OP_REMOVE = 2;
+    /**
+     * 清空记录
+     */
+    public static final byte OP_CLEAR = 3;
+
+    private final byte op;
+    private final long seq;
+    private final long timestamp;
+    private final String key;
+    private final ContentTypeEnum contentType;
+    private final String contentMd5;
+    // 排序版本
+    private final long version;
+    // 文本/URL为UTF-8字节，图片内容单独存放在blob中，此处为空
+    private final byte[] payload;
+
+    LogRecord(byte op, long seq, long timestamp, String key,
+              ContentTypeEnum contentType, String contentMd5, long version, byte[] payload) {
+        this.op = op;
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.key = key;
+        this.contentType = contentType;
+        this.contentMd5 = contentMd5;
+        this.version = version;
+        this.payload = payload;
+    }
+
+    public byte getOp() {
+        return op;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public ContentTypeEnum getContentType() {
+        return contentType;
+    }
+
+    public String getContentMd5() {
+        return contentMd5;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * 序列化记录体（不含长度和校验头）
+     */
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(64 + (payload == null ? 0 : payload.length));
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(op);
+        out.writeLong(seq);
+        out.writeLong(timestamp);
+        out.writeUTF(key == null ? "" : key);
+        if (op == OP_ADD) {
+            out.writeByte(contentType.ordinal());
+            out.writeUTF(contentMd5 == null ? "" : contentMd5);
+            out.writeLong(version);
+            if (payload == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+        }
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * 反序列化记录体
+     */
+    static LogRecord decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = in.readByte();
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        String key = in.readUTF();
+        if (op != OP_ADD) {
+            return new LogRecord(op, seq, timestamp, key, null, null, 0, null);
+        }
+        ContentTypeEnum contentType = ContentTypeEnum.values()[in.readByte()];
+        String contentMd5 = in.readUTF();
+        long version = in.readLong();
+        int length = in.readInt();
+        byte[] payload = null;
+        if (length >= 0) {
+            payload = new byte[length];
+            in.readFully(payload);
+        }
+        return new LogRecord(op, seq, timestamp, key, contentType,
+                contentMd5.isEmpty() ? null : contentMd5, version, payload);
+    }
+}
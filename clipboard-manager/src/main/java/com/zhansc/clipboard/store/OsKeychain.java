@@ -0,0 +1,202 @@
+package com.zhansc.clipboard.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 通过操作系统的凭据存储保存一个口令：macOS使用登录钥匙串（security命令），
+ * Linux使用Secret Service（secret-tool命令，需要桌面密钥环），Windows使用DPAPI加密后保存在用户目录下。
+ * 口令只通过标准输入输出传给这些命令，不出现在命令行参数中
+ * @date 10/21/26 20:10
+ */
+final class OsKeychain {
+    private static final String SERVICE = "clipboard4j";
+    private static final String ACCOUNT = "history-keystore";
+    // 等待外部命令的最长时间
+    private static final long COMMAND_TIMEOUT_SECONDS = 15;
+    // macOS security命令找不到条目时的退出码
+    private static final int MAC_ITEM_NOT_FOUND = 44;
+
+    private OsKeychain() {
+    }
+
+    /**
+     * 读取保存的口令
+     *
+     * @return 口令，确定没有保存过时返回null
+     * @throws IOException 当前平台不支持或命令执行失败，此时不能确定是否保存过
+     */
+    static String load() throws IOException {
+        switch (platform()) {
+            case "mac": {
+                // 查找时命令行中没有口令
+                Result result = run(Arrays.asList("security", "find-generic-password",
+                        "-s", SERVICE, "-a", ACCOUNT, "-w"), "");
+                if (result.exitCode == MAC_ITEM_NOT_FOUND) {
+                    return null;
+                }
+                check(result, "读取钥匙串");
+                return result.output.trim();
+            }
+            case "linux": {
+                Result result = run(Arrays.asList("secret-tool", "lookup", "service", SERVICE, "account", ACCOUNT), "");
+                // 没有条目时退出码为1且没有输出；密钥环被锁定、D-Bus不可用等其他失败不能当作没有保存过
+                if (result.exitCode == 1 && result.output.isEmpty()) {
+                    return null;
+                }
+                check(result, "读取Secret Service");
+                if (result.output.trim().isEmpty()) {
+                    throw new IOException("Secret Service中保存的口令为空");
+                }
+                return result.output.trim();
+            }
+            case "windows": {
+                Path blob = windowsBlobFile();
+                if (!Files.exists(blob)) {
+                    return null;
+                }
+                Result result = run(powershell("[Text.Encoding]::UTF8.GetString([Security.Cryptography.ProtectedData]::"
+                                + "Unprotect([Convert]::FromBase64String([Console]::In.ReadToEnd().Trim()), $null, 'CurrentUser'))"),
+                        new String(Files.readAllBytes(blob), StandardCharsets.US_ASCII));
+                check(result, "DPAPI解密");
+                return result.output.trim();
+            }
+            default:
+                throw new IOException("当前系统没有可用的凭据存储");
+        }
+    }
+
+    /**
+     * 保存口令，已存在时覆盖
+     *
+     * @param secret 口令，只能包含字母和数字
+     * @throws IOException 当前平台不支持或命令执行失败
+     */
+    static void store(String secret) throws IOException {
+        switch (platform()) {
+            case "mac":
+                // 交互模式从标准输入读取命令，口令不会出现在其他用户可见的进程参数中
+                check(run(Arrays.asList("security", "-i"), "add-generic-password -U -s " + SERVICE + " -a " + ACCOUNT
+                        + " -l " + SERVICE + " -w " + secret + "\n"), "写入钥匙串");
+                // 交互模式下单条命令失败时退出码仍为0，读回确认
+                if (!secret.equals(load())) {
+                    throw new IOException("写入钥匙串失败");
+                }
+                break;
+            case "linux":
+                check(run(Arrays.asList("secret-tool", "store", "--label=clipboard4j history keystore",
+                        "service", SERVICE, "account", ACCOUNT), secret), "写入Secret Service");
+                break;
+            case "windows": {
+                Result result = run(powershell("[Convert]::ToBase64String([Security.Cryptography.ProtectedData]::"
+                        + "Protect([Text.Encoding]::UTF8.GetBytes([Console]::In.ReadToEnd()), $null, 'CurrentUser'))"), secret);
+                check(result, "DPAPI加密");
+                Path blob = windowsBlobFile();
+                Files.createDirectories(blob.getParent());
+                Path tmp = blob.resolveSibling(blob.getFileName() + HistoryLog.TMP_SUFFIX);
+                Files.write(tmp, result.output.trim().getBytes(StandardCharsets.US_ASCII));
+                Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                break;
+            }
+            default:
+                throw new IOException("当前系统没有可用的凭据存储");
+        }
+    }
+
+    private static Path windowsBlobFile() {
+        return Paths.get(System.getProperty("user.home"), ".clipboard4j", "history.p12.dpapi");
+    }
+
+    private static List<String> powershell(String script) {
+        return Arrays.asList("powershell", "-NoProfile", "-NonInteractive", "-Command",
+                "Add-Type -AssemblyName System.Security; " + script);
+    }
+
+    /**
+     * 当前平台：mac、linux、windows或other
+     */
+    private static String platform() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        if (os.contains("mac")) {
+            return "mac";
+        }
+        if (os.contains("windows")) {
+            return "windows";
+        }
+        return os.contains("linux") ? "linux" : "other";
+    }
+
+    private static void check(Result result, String action) throws IOException {
+        if (result.exitCode != 0) {
+            throw new IOException(action + "失败，退出码 " + result.exitCode);
+        }
+    }
+
+    /**
+     * 执行命令，把input写入标准输入，返回退出码和标准输出
+     */
+    private static Result run(List<String> command, String input) throws IOException {
+        final Process process;
+        try {
+            // 丢弃错误输出，避免输出缓冲区写满后阻塞
+            File nullDevice = new File("windows".equals(platform()) ? "NUL" : "/dev/null");
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.to(nullDevice)).start();
+        } catch (IOException e) {
+            throw new IOException("无法执行" + command.get(0) + "，凭据存储不可用: " + e.getMessage(), e);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // 在单独的线程读取输出，命令挂起（例如等待解锁密钥环）时超时仍然有效
+        Thread reader = new Thread(() -> {
+            try (InputStream stdout = process.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = stdout.read(buffer)) != -1) {
+                    output.write(buffer, 0, n);
+                }
+            } catch (IOException ignored) {
+                // 进程被终止时输出流关闭
+            }
+        }, "clipboard-keychain-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(input.getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException(command.get(0) + "执行超时");
+            }
+            reader.join(TimeUnit.SECONDS.toMillis(COMMAND_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("等待" + command.get(0) + "时被中断", e);
+        }
+        return new Result(process.exitValue(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Result {
+        final int exitCode;
+        final String output;
+
+        Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+}
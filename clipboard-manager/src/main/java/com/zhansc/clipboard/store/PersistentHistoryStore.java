@@ -0,0 +1,259 @@
+package com.zhansc.clipboard.store;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.HistoryChangeListener;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.index.SearchIndex;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 剪贴板历史持久化存储，监听历史记录变更并追加写入日志，启动时从日志恢复历史记录。
+ * 监听器在历史记录的锁内被调用，只在锁内取出需要写入的字段，加密和磁盘写入由单独的写入线程按顺序进行
+ * @date 10/19/26 12:05
+ */
+public class PersistentHistoryStore implements HistoryChangeListener, Closeable {
+    private static final Logger LOG = LogManager.getLogger(PersistentHistoryStore.class);
+    // 单个段文件最大4MB
+    private static final long MAX_SEGMENT_BYTES = 4L * 1024 * 1024;
+    // 全文索引目录，位于存储目录下
+    private static final String INDEX_DIR = "index";
+    // 由历史存储密钥派生索引密钥时使用的用途标签
+    private static final String INDEX_KEY_PURPOSE = "clipboard4j-search-index";
+    // 等待写入的变更数上限，磁盘跟不上时让变更方等待，而不是无限占用内存
+    private static final int WRITE_QUEUE_CAPACITY = 1024;
+    // 关闭时等待写入线程写完队列的最长时间（秒）
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final HistoryLog log;
+    private final CompactionEngine compactionEngine;
+    // 全文索引，打开失败时为null
+    private final SearchIndex searchIndex;
+    // 单线程按变更顺序写入日志
+    private final ThreadPoolExecutor writer;
+    // restore之后监听的历史记录
+    private ClipboardHistory history;
+
+    private PersistentHistoryStore(HistoryLog log, SearchIndex searchIndex) {
+        this.log = log;
+        this.compactionEngine = new CompactionEngine(log);
+        this.searchIndex = searchIndex;
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY), r -> {
+                    Thread thread = new Thread(r, "clipboard-history-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, PersistentHistoryStore::awaitQueueSpace);
+    }
+
+    /**
+     * 队列已满时等待空位，放入队尾保持写入顺序；已关闭时丢弃
+     */
+    private static void awaitQueueSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            LOG.warn("历史存储已关闭，变更未写入日志");
+            return;
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("等待写入历史日志时被中断，变更未写入");
+        }
+    }
+
+    /**
+     * 打开指定目录下的历史存储，后台压缩在restore之后启动
+     *
+     * @param dir 存储目录
+     * @return 存储实例
+     * @throws IOException 打开失败
+     */
+    public static PersistentHistoryStore open(Path dir) throws IOException {
+        return open(dir, null);
+    }
+
+    /**
+     * 打开指定目录下的历史存储，日志记录和图片加密保存。
+     * 加密时全文索引只保存由同一密钥派生的带密钥哈希，开启加密前生成的明文索引在打开时丢弃并重建
+     *
+     * @param dir    存储目录
+     * @param cipher 加密器，为null时不加密
+     * @return 存储实例
+     * @throws IOException 打开失败，或密钥与已加密的数据不匹配
+     */
+    public static PersistentHistoryStore open(Path dir, HistoryCipher cipher) throws IOException {
+        HistoryLog log = HistoryLog.open(dir, MAX_SEGMENT_BYTES, cipher);
+        SearchIndex searchIndex = null;
+        try {
+            searchIndex = SearchIndex.open(dir.resolve(INDEX_DIR),
+                    cipher == null ? null : cipher.deriveKey(INDEX_KEY_PURPOSE));
+        } catch (IOException e) {
+            LOG.warn("打开搜索索引失败，搜索将逐项比较: {}", e.getMessage());
+        }
+        return new PersistentHistoryStore(log, searchIndex);
+    }
+
+    /**
+     * 从日志恢复历史记录，并开始监听后续变更，搜索索引只为其中缺失的项目提取词项。
+     * 恢复完成后才启动后台压缩，启动时的读取不与压缩（包括开启加密后立即进行的重新加密）争抢磁盘
+     *
+     * @param history 历史记录管理器
+     * @throws IOException 读取失败
+     */
+    public void restore(ClipboardHistory history) throws IOException {
+        List<LogRecord> records = log.readLiveRecords();
+        // 按记录中的排序版本合并，保持原有顺序
+        List<ClipboardItem> items = new ArrayList<>(records.size());
+        for (LogRecord record : records) {
+            ClipboardItem item = this.toItem(record);
+            if (item != null) {
+                item.setVersion(record.getVersion());
+                items.add(item);
+            }
+        }
+        history.mergeItems(items);
+
+        // 超出容量被淘汰或无法恢复的记录从日志中删除，保持日志与内存一致
+        Set<String> restoredKeys = new HashSet<>();
+        for (ClipboardItem item : history.snapshot().asList()) {
+            restoredKeys.add(item.getContentKey());
+        }
+        for (LogRecord record : records) {
+            if (!restoredKeys.contains(record.getKey())) {
+                log.appendRemove(record.getKey());
+            }
+        }
+        this.history = history;
+        history.addChangeListener(this);
+        if (searchIndex != null) {
+            searchIndex.attach(history);
+        }
+        compactionEngine.start();
+    }
+
+    private ClipboardItem toItem(LogRecord record) throws IOException {
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getTimestamp()),
+                ZoneId.systemDefault());
+        if (record.getContentType() == ContentTypeEnum.IMAGE) {
+            byte[] bytes = log.readBlob(record.getContentMd5());
+            if (bytes == null) {
+                LOG.warn("图片数据丢失，跳过恢复: {}", record.getContentMd5());
+                return null;
+            }
+            // 只载入PNG数据，图片在首次显示时才解码
+            return new ClipboardItem(record.getContentMd5(), ImageHandle.fromEncoded(record.getContentMd5(), bytes),
+                    ContentTypeEnum.IMAGE, timestamp);
+        }
+        return new ClipboardItem(null, new String(record.getPayload(), StandardCharsets.UTF_8),
+                record.getContentType(), timestamp);
+    }
+
+    @Override
+    public void onItemAdded(ClipboardItem item) {
+        // 版本在项目重新加入时会改变，与其他字段一起在锁内取出
+        String key = item.getContentKey();
+        ContentTypeEnum contentType = item.getContentType();
+        long version = item.getVersion();
+        long timestamp = item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (contentType == ContentTypeEnum.IMAGE) {
+            // 直接使用图片存储中已编码的数据；blob是否已存在由appendAdd在日志锁内判断，
+            // 在锁外判断时，同一图片重新加入期间引用数短暂为0，垃圾回收可能恰好删除blob
+            ImageHandle handle = item.getImageHandle();
+            byte[] blobBytes = handle == null ? null : handle.getEncoded();
+            String contentMd5 = item.getContentMd5();
+            this.write(() -> log.appendAdd(key, contentType, contentMd5, version, null, blobBytes, timestamp));
+        } else {
+            String text = (String) item.getContent();
+            this.write(() -> log.appendAdd(key, contentType, null, version,
+                    text.getBytes(StandardCharsets.UTF_8), null, timestamp));
+        }
+    }
+
+    @Override
+    public void onItemRemoved(ClipboardItem item) {
+        String key = item.getContentKey();
+        this.write(() -> log.appendRemove(key));
+    }
+
+    @Override
+    public void onHistoryCleared() {
+        this.write(log::appendClear);
+    }
+
+    private void write(LogWrite write) {
+        writer.execute(() -> {
+            try {
+                write.run();
+            } catch (IOException e) {
+                LOG.warn("写入历史日志失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 获取后台压缩引擎，可用于手动触发压缩
+     */
+    public CompactionEngine getCompactionEngine() {
+        return compactionEngine;
+    }
+
+    /**
+     * 获取全文索引
+     *
+     * @return 全文索引，打开失败时返回null
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * 停止监听并写完队列中的变更后关闭日志
+     */
+    @Override
+    public void close() throws IOException {
+        if (history != null) {
+            history.removeChangeListener(this);
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("等待历史日志写入超时，{} 条变更未写入", writer.getQueue().size());
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (searchIndex != null) {
+            searchIndex.close();
+        }
+        compactionEngine.close();
+        log.close();
+    }
+
+    /**
+     * 在写入线程中执行的一次日志写入
+     */
+    private interface LogWrite {
+        void run() throws IOException;
+    }
+}
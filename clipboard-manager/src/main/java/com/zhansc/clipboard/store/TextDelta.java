@@ -0,0 +1,219 @@
+package com.zhansc.clipboard.store;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 以增量形式保存的文本：由对基准文本的复制片段和新增文本片段组成，访问时重建完整字符串。
+ * 基准离开历史记录时由TextDeltaCompressor改写为基于基准的基准，或转为完整文本，文本内容不变
+ * @date 10/19/26 19:05
+ */
+public final class TextDelta {
+    // 当前编码，改写时整体替换，其他线程重建时读到的总是完整的一份
+    private volatile Encoding encoding;
+    // 重建后的文本长度
+    private final int length;
+    // 重建结果的软引用缓存，内存紧张时可被回收
+    private volatile SoftReference<String> cache;
+
+    TextDelta(Object base, int[] ops, String literals, int length) {
+        this.encoding = new Encoding(base, ops, literals);
+        this.length = length;
+    }
+
+    /**
+     * 重建完整文本
+     *
+     * @return 完整文本
+     */
+    public String materialize() {
+        SoftReference<String> ref = cache;
+        String text = ref == null ? null : ref.get();
+        if (text != null) {
+            return text;
+        }
+        Encoding current = encoding;
+        String baseText = current.base instanceof TextDelta
+                ? ((TextDelta) current.base).materialize() : (String) current.base;
+        StringBuilder sb = new StringBuilder(length);
+        int[] ops = current.ops;
+        for (int i = 0; i < ops.length; i += 2) {
+            int offset = ops[i];
+            int len = ops[i + 1];
+            if (offset >= 0) {
+                sb.append(baseText, offset, offset + len);
+            } else {
+                int start = -offset - 1;
+                sb.append(current.literals, start, start + len);
+            }
+        }
+        text = sb.toString();
+        cache = new SoftReference<>(text);
+        return text;
+    }
+
+    /**
+     * 重建后的文本长度
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 当前的基准，String或另一个TextDelta，已转为完整文本时为null
+     */
+    Object getBase() {
+        return encoding.base;
+    }
+
+    /**
+     * 增量链深度，直接基于完整字符串时为1，已转为完整文本时为0
+     */
+    int getDepth() {
+        Object base = encoding.base;
+        if (base == null) {
+            return 0;
+        }
+        return base instanceof TextDelta ? ((TextDelta) base).getDepth() + 1 : 1;
+    }
+
+    /**
+     * 估算增量本身占用的字符数（不含基准文本）
+     */
+    long storedChars() {
+        Encoding current = encoding;
+        return current.literals.length() + current.ops.length * 2L;
+    }
+
+    /**
+     * 丢弃重建缓存，使增量只保留自身数据
+     */
+    void dropCache() {
+        cache = null;
+    }
+
+    /**
+     * 当前基准即将被释放，把对它的复制片段展开为对它的基准的复制片段，
+     * 基准是完整字符串时展开为新增文本，本增量转为完整文本
+     */
+    void rebase() {
+        Encoding current = encoding;
+        Encoding base = encodingOf(current.base);
+        int[] ops = new int[current.ops.length + 16];
+        int opCount = 0;
+        StringBuilder literals = new StringBuilder(current.literals.length());
+        // 基准各片段在基准文本中的起始位置
+        int[] starts = new int[base.ops.length / 2 + 1];
+        for (int i = 0; i < base.ops.length; i += 2) {
+            starts[i / 2 + 1] = starts[i / 2] + base.ops[i + 1];
+        }
+        for (int i = 0; i < current.ops.length; i += 2) {
+            int offset = current.ops[i];
+            int len = current.ops[i + 1];
+            if (offset < 0) {
+                int start = -offset - 1;
+                int literalOffset = -literals.length() - 1;
+                literals.append(current.literals, start, start + len);
+                ops = ensureCapacity(ops, opCount);
+                opCount = merge(ops, opCount, literalOffset, len);
+                continue;
+            }
+            // 复制的范围可能跨越基准的多个片段，逐段展开
+            int segment = segmentAt(starts, offset);
+            int end = offset + len;
+            while (offset < end) {
+                int segmentStart = starts[segment];
+                int n = Math.min(end, starts[segment + 1]) - offset;
+                int baseOffset = base.ops[segment * 2];
+                int expanded;
+                if (baseOffset >= 0) {
+                    expanded = baseOffset + offset - segmentStart;
+                } else {
+                    int start = -baseOffset - 1 + offset - segmentStart;
+                    expanded = -literals.length() - 1;
+                    literals.append(base.literals, start, start + n);
+                }
+                ops = ensureCapacity(ops, opCount);
+                opCount = merge(ops, opCount, expanded, n);
+                offset += n;
+                segment++;
+            }
+        }
+        int[] trimmed = new int[opCount];
+        System.arraycopy(ops, 0, trimmed, 0, opCount);
+        encoding = new Encoding(base.base, trimmed, literals.toString());
+    }
+
+    private static Encoding encodingOf(Object content) {
+        if (content instanceof TextDelta) {
+            return ((TextDelta) content).encoding;
+        }
+        String text = (String) content;
+        return new Encoding(null, new int[]{-1, text.length()}, text);
+    }
+
+    /**
+     * 找到包含指定位置的片段
+     */
+    private static int segmentAt(int[] starts, int offset) {
+        int low = 0;
+        int high = starts.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int[] ensureCapacity(int[] ops, int opCount) {
+        if (opCount + 2 <= ops.length) {
+            return ops;
+        }
+        int[] grown = new int[ops.length * 2];
+        System.arraycopy(ops, 0, grown, 0, opCount);
+        return grown;
+    }
+
+    /**
+     * 追加一个操作，与上一个操作连续时直接合并，返回新的操作数
+     */
+    private static int merge(int[] ops, int opCount, int offset, int len) {
+        if (opCount > 0) {
+            int lastOffset = ops[opCount - 2];
+            int lastLen = ops[opCount - 1];
+            boolean contiguous = offset >= 0
+                    ? lastOffset >= 0 && lastOffset + lastLen == offset
+                    : lastOffset < 0 && -lastOffset - 1 + lastLen == -offset - 1;
+            if (contiguous) {
+                ops[opCount - 1] += len;
+                return opCount;
+            }
+        }
+        ops[opCount] = offset;
+        ops[opCount + 1] = len;
+        return opCount + 2;
+    }
+
+    /**
+     * 一份增量编码
+     */
+    private static final class Encoding {
+        // 基准文本，String或另一个TextDelta，为null时所有内容都在literals中
+        final Object base;
+        // 成对存放的操作：(偏移, 长度)，偏移>=0表示从基准复制，偏移<0表示从literals的(-偏移-1)处复制
+        final int[] ops;
+        // 所有新增文本片段拼接后的字符串
+        final String literals;
+
+        Encoding(Object base, int[] ops, String literals) {
+            this.base = base;
+            this.ops = ops;
+            this.literals = literals;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.zhansc.clipboard.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 相似文本增量压缩器
+ * 用滚动哈希（Gear哈希）按内容切块并计算块指纹，在最近保存的若干条长文本中寻找相似度最高的一条，
+ * 把新文本编码为对它的增量：相同的块直接引用基准文本，只保存变化的部分。
+ * 内容离开历史记录时需要调用release，依赖它的增量改为引用它的基准，不会让已淘汰的文本一直留在内存中
+ * @date 10/19/26 19:20
+ */
+public class TextDeltaCompressor {
+    // 低于该长度的文本不做增量，节省不了多少内存
+    private static final int MIN_TEXT_LENGTH = 1024;
+    // 候选基准的数量
+    private static final int WINDOW_SIZE = 8;
+    // 增量链最大深度，超过后保存完整文本，避免重建过慢
+    private static final int MAX_DEPTH = 16;
+    // 至少有这个比例的内容能从基准复制才使用增量
+    private static final double MIN_SIMILARITY = 0.5;
+    // 块大小限制，平均块大小约为256个字符
+    private static final int MIN_CHUNK = 64;
+    private static final int MAX_CHUNK = 4096;
+    private static final long CHUNK_MASK = 0xFF;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // 固定种子的伪随机表，保证切块结果稳定
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            GEAR[i] = seed;
+        }
+    }
+
+    // 最近保存的长文本及其块指纹，最新的在前
+    private final LinkedList<Candidate> window = new LinkedList<>();
+    // 基准内容（String或TextDelta） -> 直接以它为基准的增量
+    private final Map<Object, List<TextDelta>> dependents = new IdentityHashMap<>();
+    // 累计节省的字符数
+    private long savedChars;
+
+    /**
+     * 尝试把文本编码为对最近相似文本的增量
+     *
+     * @param text 新文本
+     * @return 增量，没有足够相似的基准时返回null
+     */
+    public TextDelta compress(String text) {
+        if (text.length() < MIN_TEXT_LENGTH) {
+            return null;
+        }
+        List<long[]> chunks = chunk(text);
+
+        // 按可复制的字符数挑选最相似的基准
+        Candidate best = null;
+        long bestMatched = 0;
+        for (Candidate candidate : window) {
+            long matched = 0;
+            for (long[] chunk : chunks) {
+                if (candidate.chunks.containsKey(chunk[0])) {
+                    matched += chunk[2];
+                }
+            }
+            if (matched > bestMatched) {
+                best = candidate;
+                bestMatched = matched;
+            }
+        }
+
+        TextDelta delta = null;
+        if (best != null && bestMatched >= text.length() * MIN_SIMILARITY && this.depthOf(best.content) < MAX_DEPTH) {
+            delta = encode(best, text, chunks);
+            savedChars += text.length() - delta.storedChars();
+            dependents.computeIfAbsent(best.content, content -> new ArrayList<>()).add(delta);
+            // 重建缓存只保留给最新的文本，旧版本只保存增量
+            if (best.content instanceof TextDelta) {
+                ((TextDelta) best.content).dropCache();
+            }
+        }
+        this.remember(delta != null ? delta : text, chunks);
+        return delta;
+    }
+
+    /**
+     * 累计节省的字符数
+     */
+    public long getSavedChars() {
+        return savedChars;
+    }
+
+    /**
+     * 内容离开历史记录：不再作为候选基准，直接依赖它的增量改写为引用它的基准，
+     * 它本身是完整字符串时，这些增量转为完整文本
+     *
+     * @param content 项目保存的文本内容，String或TextDelta
+     */
+    public void release(Object content) {
+        window.removeIf(candidate -> candidate.content == content);
+        if (content instanceof TextDelta) {
+            this.unregister((TextDelta) content);
+        }
+        List<TextDelta> deltas = dependents.remove(content);
+        if (deltas == null) {
+            return;
+        }
+        for (TextDelta delta : deltas) {
+            long before = delta.storedChars();
+            delta.rebase();
+            savedChars -= delta.storedChars() - before;
+            Object base = delta.getBase();
+            if (base != null) {
+                dependents.computeIfAbsent(base, key -> new ArrayList<>()).add(delta);
+            }
+        }
+    }
+
+    /**
+     * 清空候选基准
+     */
+    public void clear() {
+        window.clear();
+        dependents.clear();
+    }
+
+    private void unregister(TextDelta delta) {
+        Object base = delta.getBase();
+        List<TextDelta> siblings = dependents.get(base);
+        if (siblings != null) {
+            siblings.removeIf(sibling -> sibling == delta);
+            if (siblings.isEmpty()) {
+                dependents.remove(base);
+            }
+        }
+    }
+
+    private int depthOf(Object content) {
+        return content instanceof TextDelta ? ((TextDelta) content).getDepth() : 0;
+    }
+
+    private void remember(Object content, List<long[]> chunks) {
+        Map<Long, Integer> offsets = new HashMap<>(chunks.size() * 2);
+        for (long[] chunk : chunks) {
+            offsets.putIfAbsent(chunk[0], (int) chunk[1]);
+        }
+        window.addFirst(new Candidate(content, offsets));
+        if (window.size() > WINDOW_SIZE) {
+            window.removeLast();
+        }
+    }
+
+    private static TextDelta encode(Candidate base, String text, List<long[]> chunks) {
+        String baseText = base.content instanceof TextDelta
+                ? ((TextDelta) base.content).materialize() : (String) base.content;
+        int[] ops = new int[16];
+        int opCount = 0;
+        StringBuilder literals = new StringBuilder();
+        for (long[] chunk : chunks) {
+            int start = (int) chunk[1];
+            int len = (int) chunk[2];
+            Integer baseOffset = base.chunks.get(chunk[0]);
+            // 哈希命中后再比较一次内容，防止哈希冲突
+            boolean copy = baseOffset != null && baseOffset + len <= baseText.length()
+                    && baseText.regionMatches(baseOffset, text, start, len);
+            int offset;
+            if (copy) {
+                offset = baseOffset;
+            } else {
+                offset = -literals.length() - 1;
+                literals.append(text, start, start + len);
+            }
+            // 与上一个操作连续时直接合并
+            if (opCount > 0) {
+                int lastOffset = ops[opCount - 2];
+                int lastLen = ops[opCount - 1];
+                boolean contiguous = copy
+                        ? lastOffset >= 0 && lastOffset + lastLen == offset
+                        : lastOffset < 0;
+                if (contiguous) {
+                    ops[opCount - 1] += len;
+                    continue;
+                }
+            }
+            if (opCount + 2 > ops.length) {
+                int[] grown = new int[ops.length * 2];
+                System.arraycopy(ops, 0, grown, 0, opCount);
+                ops = grown;
+            }
+            ops[opCount++] = offset;
+            ops[opCount++] = len;
+        }
+        int[] trimmed = new int[opCount];
+        System.arraycopy(ops, 0, trimmed, 0, opCount);
+        return new TextDelta(base.content, trimmed, literals.toString(), text.length());
+    }
+
+    /**
+     * 按内容切块，返回每块的 [指纹, 起始位置, 长度]
+     */
+    static List<long[]> chunk(String text) {
+        List<long[]> chunks = new ArrayList<>(text.length() / 256 + 1);
+        int start = 0;
+        long rolling = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            rolling = (rolling << 1) + GEAR[(c ^ (c >>> 8)) & 0xFF];
+            int size = i - start + 1;
+            if ((size >= MIN_CHUNK && (rolling & CHUNK_MASK) == 0) || size >= MAX_CHUNK || i == length - 1) {
+                chunks.add(new long[]{fingerprint(text, start, i + 1), start, size});
+                start = i + 1;
+                rolling = 0;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 64位FNV-1a指纹
+     */
+    private static long fingerprint(String text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash ^ (end - start);
+    }
+
+    /**
+     * 候选基准
+     */
+    private static final class Candidate {
+        // String或TextDelta
+        final Object content;
+        // 块指纹 -> 在文本中的偏移
+        final Map<Long, Integer> chunks;
+
+        Candidate(Object content, Map<Long, Integer> chunks) {
+            this.content = content;
+            this.chunks = chunks;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.zhansc.clipboard.sync;
+
+import com.zhansc.clipboard.util.Md5Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 同步协议定义
+ * 每个帧为：int 长度 | byte 类型 | 帧体。连接建立后双方交换HELLO（含随机数）和AUTH（用共享令牌对双方随机数计算的HMAC），
+ * 认证通过后才开始拉取。一次拉取的流程为：
+ * PULL(起始版本) → SUMMARY*、SUMMARY_END → REQUEST*、REQUEST_END → ENTRIES*、ENTRIES_END，
+ * 请求和条目都按批次连续发送，整个增量只需要一次往返
+ * @date 10/19/26 15:40
+ */
+final class SyncProtocol {
+    static final int MAGIC = 0x43425359;
+    static final byte VERSION = 2;
+
+    static final byte HELLO = 1;
+    static final byte PULL = 2;
+    static final byte SUMMARY = 3;
+    static final byte SUMMARY_END = 4;
+    static final byte REQUEST = 5;
+    static final byte REQUEST_END = 6;
+    static final byte ENTRIES = 7;
+    static final byte ENTRIES_END = 8;
+    static final byte AUTH = 9;
+
+    // 握手随机数的字节数
+    static final int NONCE_BYTES = 16;
+
+    // 单帧最大字节数，防止异常数据导致分配过大的内存
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private SyncProtocol() {
+    }
+
+    /**
+     * 写出一个帧
+     */
+    static void writeFrame(DataOutputStream out, byte type, ByteArrayOutputStream body) throws IOException {
+        out.writeInt(body.size() + 1);
+        out.writeByte(type);
+        body.writeTo(out);
+    }
+
+    /**
+     * 写出一个空帧
+     */
+    static void writeFrame(DataOutputStream out, byte type) throws IOException {
+        out.writeInt(1);
+        out.writeByte(type);
+    }
+
+    /**
+     * 读取一个帧并校验类型
+     *
+     * @return 帧体输入流
+     */
+    static DataInputStream readFrame(DataInputStream in, byte expectedType) throws IOException {
+        Frame frame = readFrame(in);
+        if (frame.type != expectedType) {
+            throw new IOException("同步协议错误: 期望帧类型 " + expectedType + "，实际为 " + frame.type);
+        }
+        return frame.body;
+    }
+
+    /**
+     * 读取一个帧
+     */
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("同步协议错误: 帧长度非法 " + length);
+        }
+        byte type = in.readByte();
+        byte[] body = new byte[length - 1];
+        in.readFully(body);
+        return new Frame(type, new DataInputStream(new ByteArrayInputStream(body)));
+    }
+
+    /**
+     * 由内容键计算64位摘要，用于摘要和请求中代替完整的内容键
+     */
+    static long keyHash(String key) {
+        byte[] digest = Md5Utils.newDigest().digest(key.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    static final class Frame {
+        final byte type;
+        final DataInputStream body;
+
+        Frame(byte type, DataInputStream body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.zhansc.clipboard.sync;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardUpdateListener;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 两个剪贴板管理器实例之间的增量同步服务
+ * 一次同步由发起方先从对方拉取，再由对方从发起方拉取，双方历史记录最终收敛一致。
+ * 每个实例记住从每个对端拉取到的最大版本，下次只交换之后变化的条目摘要。
+ * 双方必须持有相同的令牌（默认保存在~/.clipboard4j/sync.token，仅当前用户可读，与对端同步时需复制过去），
+ * 握手时用令牌对双方的随机数计算HMAC互相认证，令牌本身不在连接上传输；认证失败的连接不会收到任何历史数据
+ * @date 10/19/26 16:30
+ */
+public class SyncService implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(SyncService.class);
+    // 连接超时时间（毫秒）
+    private static final int SOCKET_TIMEOUT_MILLIS = 30_000;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    // 新生成的令牌的随机字节数
+    private static final int TOKEN_BYTES = 32;
+
+    private final ClipboardHistory history;
+    // 本实例的节点标识
+    private final String nodeId;
+    // 共享令牌，用作握手HMAC的密钥
+    private final SecretKeySpec authKey;
+    private final SecureRandom random = new SecureRandom();
+    // 对端节点标识 -> 已从该对端拉取到的最大版本
+    private final Map<String, Long> peerVersions = new ConcurrentHashMap<>();
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    // 同步合并了新条目时的更新监听器
+    private ClipboardUpdateListener updateListener;
+
+    /**
+     * @param history 历史记录管理器
+     * @param token   与对端共享的令牌，见loadOrCreateToken
+     */
+    public SyncService(ClipboardHistory history, String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("同步令牌不能为空");
+        }
+        this.history = history;
+        this.nodeId = UUID.randomUUID().toString();
+        this.authKey = new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+    }
+
+    /**
+     * 默认的令牌文件
+     */
+    public static Path tokenFile() {
+        return Paths.get(System.getProperty("user.home"), ".clipboard4j", "sync.token");
+    }
+
+    /**
+     * 读取令牌文件的第一行，文件不存在时生成随机令牌并以仅当前用户可读写的权限创建
+     *
+     * @param file 令牌文件
+     * @return 令牌
+     * @throws IOException 读写失败或文件为空
+     */
+    public static String loadOrCreateToken(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            byte[] random = new byte[TOKEN_BYTES];
+            new SecureRandom().nextBytes(random);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : random) {
+                hex.append(String.format("%02x", b));
+            }
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.deleteIfExists(tmp);
+            Files.createFile(tmp);
+            try {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                tmp.toFile().setReadable(false, false);
+                tmp.toFile().setReadable(true, true);
+            }
+            Files.write(tmp, (hex + "\n").getBytes(StandardCharsets.UTF_8));
+            try {
+                // 不覆盖其他实例同时创建的令牌
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                if (!Files.exists(file)) {
+                    throw e;
+                }
+            }
+            LOG.info("已生成同步令牌 {}，与其他设备同步时需复制该文件", file);
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String token = lines.isEmpty() ? "" : lines.get(0).trim();
+        if (token.isEmpty()) {
+            throw new IOException("同步令牌文件为空: " + file);
+        }
+        return token;
+    }
+
+    /**
+     * 设置更新监听器，同步合并了新条目时通知
+     */
+    public void setUpdateListener(ClipboardUpdateListener updateListener) {
+        this.updateListener = updateListener;
+    }
+
+    /**
+     * 在指定地址上启动同步服务端，默认应只绑定本地回环地址
+     *
+     * @param address 监听地址
+     * @throws IOException 监听失败
+     */
+    public synchronized void startServer(InetSocketAddress address) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "clipboard-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::acceptLoop);
+        LOG.info("同步服务已启动: {}", serverSocket.getLocalSocketAddress());
+    }
+
+    /**
+     * 获取服务端实际监听的端口
+     */
+    public int getLocalPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> this.handle(socket));
+            } catch (SocketException e) {
+                // 服务端已关闭
+                return;
+            } catch (IOException e) {
+                LOG.warn("接受同步连接时出错: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+            String peerId;
+            try {
+                peerId = this.handshake(in, out, false);
+            } catch (AuthenticationException e) {
+                LOG.warn("拒绝未通过认证的同步连接: {}", s.getRemoteSocketAddress());
+                return;
+            }
+            SyncSession session = new SyncSession(history, in, out);
+            // 先响应对方的拉取，再从对方拉取
+            int sent = session.serve();
+            SyncSession.PullResult result = session.pull(peerVersions.getOrDefault(peerId, 0L));
+            peerVersions.put(peerId, result.maxVersion);
+            LOG.info("同步完成: 发送 {} 条，接收 {} 条", sent, result.merged);
+            this.notifyUpdated(result.merged);
+        } catch (IOException e) {
+            LOG.warn("处理同步连接时出错: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 与指定地址的实例进行一次双向同步
+     *
+     * @param address 对端地址
+     * @return 本地合并的条目数
+     * @throws IOException 同步失败
+     */
+    public int syncWith(InetSocketAddress address) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, SOCKET_TIMEOUT_MILLIS);
+            socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            String peerId = this.handshake(in, out, true);
+            SyncSession session = new SyncSession(history, in, out);
+            SyncSession.PullResult result = session.pull(peerVersions.getOrDefault(peerId, 0L));
+            peerVersions.put(peerId, result.maxVersion);
+            int sent = session.serve();
+            LOG.info("同步完成: 接收 {} 条，发送 {} 条", result.merged, sent);
+            this.notifyUpdated(result.merged);
+            return result.merged;
+        }
+    }
+
+    private void notifyUpdated(int merged) {
+        if (merged > 0 && updateListener != null) {
+            updateListener.onClipboardUpdated();
+        }
+    }
+
+    /**
+     * 交换协议版本、节点标识和随机数，再用共享令牌互相认证。
+     * 发起方先发送自己的认证码；响应方先验证发起方，通过后才发送自己的认证码，
+     * 未持有令牌的连接除HELLO外得不到任何数据
+     *
+     * @param initiator 是否为发起方
+     * @return 对端节点标识
+     * @throws AuthenticationException 对端认证码不正确
+     */
+    private String handshake(DataInputStream in, DataOutputStream out, boolean initiator) throws IOException {
+        byte[] nonce = new byte[SyncProtocol.NONCE_BYTES];
+        random.nextBytes(nonce);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream hello = new DataOutputStream(body);
+        hello.writeInt(SyncProtocol.MAGIC);
+        hello.writeByte(SyncProtocol.VERSION);
+        hello.writeUTF(nodeId);
+        hello.write(nonce);
+        SyncProtocol.writeFrame(out, SyncProtocol.HELLO, body);
+        out.flush();
+
+        DataInputStream peerHello = SyncProtocol.readFrame(in, SyncProtocol.HELLO);
+        if (peerHello.readInt() != SyncProtocol.MAGIC) {
+            throw new IOException("对端不是剪贴板同步服务");
+        }
+        byte version = peerHello.readByte();
+        if (version != SyncProtocol.VERSION) {
+            throw new IOException("不支持的同步协议版本: " + version);
+        }
+        String peerId = peerHello.readUTF();
+        byte[] peerNonce = new byte[SyncProtocol.NONCE_BYTES];
+        peerHello.readFully(peerNonce);
+
+        // 认证码按"发送方随机数 | 接收方随机数"计算，把对方的认证码原样发回无法通过验证
+        if (initiator) {
+            this.sendAuth(out, nonce, peerNonce);
+            this.verifyAuth(in, peerNonce, nonce);
+        } else {
+            this.verifyAuth(in, peerNonce, nonce);
+            this.sendAuth(out, nonce, peerNonce);
+        }
+        return peerId;
+    }
+
+    private void sendAuth(DataOutputStream out, byte[] senderNonce, byte[] receiverNonce) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(this.mac(senderNonce, receiverNonce));
+        SyncProtocol.writeFrame(out, SyncProtocol.AUTH, body);
+        out.flush();
+    }
+
+    private void verifyAuth(DataInputStream in, byte[] senderNonce, byte[] receiverNonce) throws IOException {
+        byte[] expected = this.mac(senderNonce, receiverNonce);
+        DataInputStream auth;
+        try {
+            auth = SyncProtocol.readFrame(in, SyncProtocol.AUTH);
+        } catch (EOFException e) {
+            // 响应方验证失败时直接关闭连接
+            throw new AuthenticationException();
+        }
+        byte[] received = new byte[expected.length];
+        if (auth.read(received) != expected.length || auth.read() != -1
+                || !MessageDigest.isEqual(expected, received)) {
+            throw new AuthenticationException();
+        }
+    }
+
+    private byte[] mac(byte[] first, byte[] second) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(authKey);
+            mac.update(first);
+            mac.update(second);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("计算同步认证码失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 对端未通过令牌认证
+     */
+    static final class AuthenticationException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AuthenticationException() {
+            super("同步认证失败，双方的令牌不一致");
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.zhansc.clipboard.sync;
+
+import com.zhansc.clipboard.ClipboardHistory;
+import com.zhansc.clipboard.ClipboardItem;
+import com.zhansc.clipboard.enums.ContentTypeEnum;
+import com.zhansc.clipboard.log.LogManager;
+import com.zhansc.clipboard.log.Logger;
+import com.zhansc.clipboard.store.ImageHandle;
+import com.zhansc.clipboard.util.Md5Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 一次同步会话中单向的拉取/提供逻辑
+ * @date 10/19/26 16:00
+ */
+class SyncSession {
+    private static final Logger LOG = LogManager.getLogger(SyncSession.class);
+    // 每个摘要帧最多包含的条目数
+    private static final int SUMMARY_BATCH = 4096;
+    // 每个条目帧最多包含的条目数和字节数
+    private static final int ENTRY_BATCH = 64;
+    private static final int ENTRY_BATCH_BYTES = 1024 * 1024;
+    // 单个条目内容的最大字节数：批次未满时最多再加入一个条目，加上条目头仍不超过单帧上限
+    static final int MAX_ENTRY_PAYLOAD_BYTES = SyncProtocol.MAX_FRAME_BYTES - ENTRY_BATCH_BYTES - 64 * 1024;
+
+    private final ClipboardHistory history;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    SyncSession(ClipboardHistory history, DataInputStream in, DataOutputStream out) {
+        this.history = history;
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * 作为拉取方：请求对方版本大于sinceVersion的摘要，只拉取本地缺失或更旧的条目
+     *
+     * @param sinceVersion 上次从对方拉取到的最大版本
+     * @return 拉取结果
+     */
+    PullResult pull(long sinceVersion) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        new DataOutputStream(body).writeLong(sinceVersion);
+        SyncProtocol.writeFrame(out, SyncProtocol.PULL, body);
+        out.flush();
+
+        // 本地内容摘要 -> 版本
+        Map<Long, ClipboardItem> local = new HashMap<>();
+        for (ClipboardItem item : history.snapshot().asList()) {
+            local.put(SyncProtocol.keyHash(item.getContentKey()), item);
+        }
+
+        // 读取摘要，计算需要拉取的条目
+        List<Long> wanted = new ArrayList<>();
+        List<Boolean> needPayload = new ArrayList<>();
+        long maxVersion;
+        while (true) {
+            SyncProtocol.Frame frame = SyncProtocol.readFrame(in);
+            if (frame.type == SyncProtocol.SUMMARY_END) {
+                maxVersion = frame.body.readLong();
+                break;
+            }
+            if (frame.type != SyncProtocol.SUMMARY) {
+                throw new IOException("同步协议错误: 期望摘要帧，实际为 " + frame.type);
+            }
+            int count = frame.body.readInt();
+            for (int i = 0; i < count; i++) {
+                long hash = frame.body.readLong();
+                long version = frame.body.readLong();
+                ClipboardItem existing = local.get(hash);
+                if (existing == null || existing.getVersion() < version) {
+                    wanted.add(hash);
+                    // 本地已有相同内容时只需要更新版本，不需要传输内容
+                    needPayload.add(existing == null);
+                }
+            }
+        }
+
+        // 连续发送所有请求帧，对方读完全部请求后再开始回传，避免双方互相阻塞
+        for (int start = 0; start < wanted.size(); start += SUMMARY_BATCH) {
+            int end = Math.min(start + SUMMARY_BATCH, wanted.size());
+            body = new ByteArrayOutputStream((end - start) * 9 + 4);
+            DataOutputStream request = new DataOutputStream(body);
+            request.writeInt(end - start);
+            for (int i = start; i < end; i++) {
+                request.writeLong(wanted.get(i));
+                request.writeBoolean(needPayload.get(i));
+            }
+            SyncProtocol.writeFrame(out, SyncProtocol.REQUEST, body);
+        }
+        SyncProtocol.writeFrame(out, SyncProtocol.REQUEST_END);
+        out.flush();
+
+        // 逐批接收条目并合并
+        int received = 0;
+        while (true) {
+            SyncProtocol.Frame frame = SyncProtocol.readFrame(in);
+            if (frame.type == SyncProtocol.ENTRIES_END) {
+                break;
+            }
+            if (frame.type != SyncProtocol.ENTRIES) {
+                throw new IOException("同步协议错误: 期望条目帧，实际为 " + frame.type);
+            }
+            int count = frame.body.readInt();
+            // 每个条目至少占一个字节
+            if (count < 0 || count > frame.body.available()) {
+                throw new IOException("同步协议错误: 条目数非法 " + count);
+            }
+            List<ClipboardItem> batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ClipboardItem item = this.readEntry(frame.body, local);
+                if (item != null) {
+                    batch.add(item);
+                }
+            }
+            received += history.mergeItems(batch);
+        }
+        return new PullResult(wanted.size(), received, maxVersion);
+    }
+
+    /**
+     * 作为提供方：响应对方的一次拉取
+     *
+     * @return 发送的条目数
+     */
+    int serve() throws IOException {
+        long sinceVersion = SyncProtocol.readFrame(in, SyncProtocol.PULL).readLong();
+
+        // 快照只包含引用，之后历史记录的变化不影响本次会话
+        Map<Long, ClipboardItem> snapshot = new HashMap<>();
+        long maxVersion = sinceVersion;
+        List<ClipboardItem> changed = new ArrayList<>();
+        for (ClipboardItem item : history.snapshot().asList()) {
+            if (item.getVersion() > sinceVersion) {
+                changed.add(item);
+                snapshot.put(SyncProtocol.keyHash(item.getContentKey()), item);
+                maxVersion = Math.max(maxVersion, item.getVersion());
+            }
+        }
+
+        for (int start = 0; start < changed.size(); start += SUMMARY_BATCH) {
+            int end = Math.min(start + SUMMARY_BATCH, changed.size());
+            ByteArrayOutputStream body = new ByteArrayOutputStream((end - start) * 16 + 4);
+            DataOutputStream summary = new DataOutputStream(body);
+            summary.writeInt(end - start);
+            for (ClipboardItem item : changed.subList(start, end)) {
+                summary.writeLong(SyncProtocol.keyHash(item.getContentKey()));
+                summary.writeLong(item.getVersion());
+            }
+            SyncProtocol.writeFrame(out, SyncProtocol.SUMMARY, body);
+        }
+        ByteArrayOutputStream endBody = new ByteArrayOutputStream();
+        new DataOutputStream(endBody).writeLong(maxVersion);
+        SyncProtocol.writeFrame(out, SyncProtocol.SUMMARY_END, endBody);
+        out.flush();
+
+        // 先读完全部请求
+        List<Long> requested = new ArrayList<>();
+        List<Boolean> needPayload = new ArrayList<>();
+        while (true) {
+            SyncProtocol.Frame frame = SyncProtocol.readFrame(in);
+            if (frame.type == SyncProtocol.REQUEST_END) {
+                break;
+            }
+            if (frame.type != SyncProtocol.REQUEST) {
+                throw new IOException("同步协议错误: 期望请求帧，实际为 " + frame.type);
+            }
+            int count = frame.body.readInt();
+            for (int i = 0; i < count; i++) {
+                requested.add(frame.body.readLong());
+                needPayload.add(frame.body.readBoolean());
+            }
+        }
+
+        // 按批次流式回传
+        int sent = 0;
+        int oversized = 0;
+        int batchCount = 0;
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(batch);
+        for (int i = 0; i < requested.size(); i++) {
+            ClipboardItem item = snapshot.get(requested.get(i));
+            if (item == null) {
+                continue;
+            }
+            byte[] payload = needPayload.get(i) ? this.payloadOf(item) : null;
+            if (needPayload.get(i) && payload == null) {
+                continue;
+            }
+            if (payload != null && payload.length > MAX_ENTRY_PAYLOAD_BYTES) {
+                // 放不进一个帧，跳过该条目，不影响其他条目和之后的同步
+                oversized++;
+                continue;
+            }
+            this.writeEntry(entries, item, payload);
+            sent++;
+            batchCount++;
+            if (batchCount >= ENTRY_BATCH || batch.size() >= ENTRY_BATCH_BYTES) {
+                this.flushEntries(batch, batchCount);
+                batch = new ByteArrayOutputStream();
+                entries = new DataOutputStream(batch);
+                batchCount = 0;
+            }
+        }
+        if (batchCount > 0) {
+            this.flushEntries(batch, batchCount);
+        }
+        SyncProtocol.writeFrame(out, SyncProtocol.ENTRIES_END);
+        out.flush();
+        if (oversized > 0) {
+            LOG.warn("跳过了 {} 个超过 {} 字节的条目", oversized, MAX_ENTRY_PAYLOAD_BYTES);
+        }
+        return sent;
+    }
+
+    private void flushEntries(ByteArrayOutputStream batch, int count) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(batch.size() + 4);
+        new DataOutputStream(body).writeInt(count);
+        batch.writeTo(body);
+        SyncProtocol.writeFrame(out, SyncProtocol.ENTRIES, body);
+    }
+
+    /**
+     * 需要传输的内容：图片为已编码的PNG，文本为UTF-8字节，图片数据不可用时返回null
+     */
+    private byte[] payloadOf(ClipboardItem item) {
+        if (item.getContentType() == ContentTypeEnum.IMAGE) {
+            ImageHandle handle = item.getImageHandle();
+            return handle == null ? null : handle.getEncoded();
+        }
+        return ((String) item.getContent()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 条目：long 内容摘要 | byte 类型 | long 版本 | long 时间戳 | UTF MD5 | boolean 是否含内容 | int 长度 | 内容
+     */
+    private void writeEntry(DataOutputStream entries, ClipboardItem item, byte[] payload) throws IOException {
+        entries.writeLong(SyncProtocol.keyHash(item.getContentKey()));
+        entries.writeByte(item.getContentType().ordinal());
+        entries.writeLong(item.getVersion());
+        entries.writeLong(item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        entries.writeUTF(item.getContentMd5() == null ? "" : item.getContentMd5());
+        entries.writeBoolean(payload != null);
+        if (payload != null) {
+            entries.writeInt(payload.length);
+            entries.write(payload);
+        }
+    }
+
+    private ClipboardItem readEntry(DataInputStream entry, Map<Long, ClipboardItem> local) throws IOException {
+        long hash = entry.readLong();
+        int ordinal = entry.readByte();
+        ContentTypeEnum[] types = ContentTypeEnum.values();
+        if (ordinal < 0 || ordinal >= types.length) {
+            throw new IOException("同步协议错误: 内容类型非法 " + ordinal);
+        }
+        ContentTypeEnum contentType = types[ordinal];
+        long version = entry.readLong();
+        long millis = entry.readLong();
+        LocalDateTime timestamp;
+        try {
+            timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        } catch (DateTimeException e) {
+            throw new IOException("同步协议错误: 时间戳超出范围 " + millis, e);
+        }
+        String md5 = entry.readUTF();
+        // 图片的MD5会用作本地文件名
+        if (contentType == ContentTypeEnum.IMAGE && !Md5Utils.isMd5Hex(md5)) {
+            throw new IOException("同步协议错误: 图片MD5格式非法");
+        }
+        byte[] payload = null;
+        if (entry.readBoolean()) {
+            int length = entry.readInt();
+            if (length < 0 || length > entry.available()) {
+                throw new IOException("同步协议错误: 条目长度非法 " + length);
+            }
+            payload = new byte[length];
+            entry.readFully(payload);
+        }
+
+        Object content;
+        if (payload == null) {
+            // 只有版本更新：复用本地已有的内容，图片直接共享句柄
+            ClipboardItem existing = local.get(hash);
+            if (existing == null) {
+                content = null;
+            } else if (contentType == ContentTypeEnum.IMAGE) {
+                content = existing.getImageHandle();
+            } else {
+                content = existing.getContent();
+            }
+        } else if (contentType == ContentTypeEnum.IMAGE) {
+            content = ImageHandle.fromEncoded(md5, payload);
+        } else {
+            content = new String(payload, StandardCharsets.UTF_8);
+        }
+        if (content == null) {
+            return null;
+        }
+        ClipboardItem item = new ClipboardItem(md5.isEmpty() ? null : md5, content, contentType, timestamp);
+        item.setVersion(version);
+        return item;
+    }
+
+    /**
+     * 一次拉取的结果
+     */
+    static final class PullResult {
+        final int requested;
+        final int merged;
+        final long maxVersion;
+
+        PullResult(int requested, int merged, long maxVersion) {
+            this.requested = requested;
+            this.merged = merged;
+            this.maxVersion = maxVersion;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.zhansc.clipboard.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 图片转换工具类
+ * @date 10/19/26 10:35
+ */
+public final class ImageUtils {
+
+    private ImageUtils() {
+    }
+
+    /**
+     * 将Image转换为RGB格式的BufferedImage
+     *
+     * @param image 图片对象
+     * @return BufferedImage
+     */
+    public static BufferedImage toBufferedImage(Image image) {
+        BufferedImage bufferedImage = new BufferedImage(
+                image.getWidth(null),
+                image.getHeight(null),
+                BufferedImage.TYPE_INT_RGB
+        );
+        Graphics2D g = bufferedImage.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return bufferedImage;
+    }
+
+    /**
+     * 将图片编码为PNG字节数组
+     *
+     * @param image 图片对象
+     * @return PNG字节数组
+     * @throws IOException 编码失败
+     */
+    public static byte[] toPngBytes(Image image) throws IOException {
+        BufferedImage bufferedImage = image instanceof BufferedImage
+                && ((BufferedImage) image).getType() == BufferedImage.TYPE_INT_RGB
+                ? (BufferedImage) image : toBufferedImage(image);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "png", baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * 从PNG文件头（IHDR块）读取图片尺寸，无需解码整张图片
+     *
+     * @param bytes PNG字节数组
+     * @return [宽, 高]，不是有效的PNG时返回null
+     */
+    public static int[] readPngSize(byte[] bytes) {
+        // 8字节签名 + 4字节长度 + "IHDR" + 4字节宽 + 4字节高
+        if (bytes == null || bytes.length < 24 || bytes[12] != 'I' || bytes[13] != 'H'
+                || bytes[14] != 'D' || bytes[15] != 'R') {
+            return null;
+        }
+        return new int[]{readInt(bytes, 16), readInt(bytes, 20)};
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    /**
+     * 生成不超过指定尺寸的缩略图（不放大）
+     *
+     * @param image     原图
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度
+     * @return 缩略图，原图尺寸无效时返回null
+     */
+    public static BufferedImage scaleToFit(Image image, int maxWidth, int maxHeight) {
+        int imgWidth = image.getWidth(null);
+        int imgHeight = image.getHeight(null);
+        if (imgWidth <= 0 || imgHeight <= 0) {
+            return null;
+        }
+        double scale = Math.min(1.0, Math.min((double) maxWidth / imgWidth, (double) maxHeight / imgHeight));
+        int width = Math.max(1, (int) (imgWidth * scale));
+        int height = Math.max(1, (int) (imgHeight * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return thumbnail;
+    }
+
+    /**
+     * 从PNG字节数组解码图片
+     *
+     * @param bytes PNG字节数组
+     * @return 图片对象，无法解码时返回null
+     * @throws IOException 解码失败
+     */
+    public static BufferedImage fromPngBytes(byte[] bytes) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * 隔行隔列抽样解码PNG，解码结果的长边不小于minSize，用于只需要低分辨率图片的场景
+     *
+     * @param bytes   PNG字节数组
+     * @param minSize 解码结果长边的最小尺寸
+     * @return 图片对象，无法解码时返回null
+     * @throws IOException 解码失败
+     */
+    public static BufferedImage fromPngBytesSubsampled(byte[] bytes, int minSize) throws IOException {
+        int[] size = readPngSize(bytes);
+        int step = size == null ? 1 : Math.max(1, Math.max(size[0], size[1]) / minSize);
+        if (step == 1) {
+            return fromPngBytes(bytes);
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 计算图片的差值感知哈希（dHash）：把图片按区域平均缩小为9x8的灰度图，
+     * 每行相邻像素比较亮度得到64位哈希，内容相近的图片哈希的汉明距离很小
+     *
+     * @param image 图片
+     * @return 64位感知哈希
+     */
+    public static long differenceHash(BufferedImage image) {
+        return differenceHash(differenceHashCells(image));
+    }
+
+    /**
+     * 按区域平均把图片缩小为9x8的灰度图，是dHash的输入
+     *
+     * @param image 图片
+     * @return 按行排列的72个亮度值（0~255）
+     */
+    public static double[] differenceHashCells(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] luminance = new double[9 * 8];
+        int[] count = new int[9 * 8];
+        int[] cellX = new int[width];
+        for (int x = 0; x < width; x++) {
+            cellX[x] = (int) ((long) x * 9 / width);
+        }
+        // 逐行读取像素，只需要一行的缓冲
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int base = (int) ((long) y * 8 / height) * 9;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                luminance[base + cellX[x]] += 0.299 * ((rgb >> 16) & 0xff) + 0.587 * ((rgb >> 8) & 0xff)
+                        + 0.114 * (rgb & 0xff);
+                count[base + cellX[x]]++;
+            }
+        }
+        for (int i = 0; i < luminance.length; i++) {
+            luminance[i] = count[i] == 0 ? 0 : luminance[i] / count[i];
+        }
+        return luminance;
+    }
+
+    /**
+     * 由9x8灰度图计算dHash
+     *
+     * @param cells differenceHashCells的结果
+     * @return 64位感知哈希
+     */
+    public static long differenceHash(double[] cells) {
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = y * 9 + x;
+                hash = hash << 1 | (cells[left] < cells[left + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 统计9x8灰度图中亮度差不小于minDelta的相邻像素对数。纯色或近乎平坦的图片该值接近0，
+     * 它们的dHash几乎全为0，彼此之间的距离不能说明内容相似
+     *
+     * @param cells    differenceHashCells的结果
+     * @param minDelta 最小亮度差
+     * @return 0~64
+     */
+    public static int significantGradients(double[] cells, double minDelta) {
+        int significant = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = y * 9 + x;
+                if (Math.abs(cells[left] - cells[left + 1]) >= minDelta) {
+                    significant++;
+                }
+            }
+        }
+        return significant;
+    }
+}
@@ -0,0 +1,97 @@
+package com.zhansc.clipboard.util;
+
+import java.util.Arrays;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 延迟统计：累计次数、最大值和超出预算的次数，分位数按最近若干次计算。线程安全
+ * @date 10/21/26 17:30
+ */
+public final class LatencyStats {
+    private final long budgetNanos;
+    // 最近的延迟，环形覆盖
+    private final long[] recent;
+    private int next;
+    private long count;
+    private long overBudget;
+    private long lastNanos;
+    private long maxNanos;
+
+    /**
+     * @param budgetMillis 延迟预算（毫秒）
+     * @param window       计算分位数时使用的最近次数
+     */
+    public LatencyStats(double budgetMillis, int window) {
+        this.budgetNanos = (long) (budgetMillis * 1e6);
+        this.recent = new long[window];
+    }
+
+    /**
+     * 记录一次延迟
+     *
+     * @param nanos 延迟（纳秒）
+     * @return 是否超出预算
+     */
+    public synchronized boolean record(long nanos) {
+        recent[next] = nanos;
+        next = (next + 1) % recent.length;
+        count++;
+        lastNanos = nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        if (nanos > budgetNanos) {
+            overBudget++;
+            return true;
+        }
+        return false;
+    }
+
+    public double getBudgetMillis() {
+        return budgetNanos / 1e6;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * 超出预算的次数
+     */
+    public synchronized long getOverBudgetCount() {
+        return overBudget;
+    }
+
+    public synchronized double getLastMillis() {
+        return lastNanos / 1e6;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * 按最近秩法取最近若干次的分位数
+     *
+     * @param percentile 0到100之间的分位
+     * @return 延迟（毫秒），没有记录时返回NaN
+     */
+    public double percentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(recent, (int) Math.min(count, recent.length));
+        }
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("次数=%d 最近=%.1fms p50=%.1fms p99=%.1fms 最大=%.1fms 超出%.0fms预算=%d",
+                this.getCount(), this.getLastMillis(), this.percentileMillis(50), this.percentileMillis(99),
+                this.getMaxMillis(), this.getBudgetMillis(), this.getOverBudgetCount());
+    }
+}
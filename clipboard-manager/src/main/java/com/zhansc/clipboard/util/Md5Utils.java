@@ -0,0 +1,88 @@
+package com.zhansc.clipboard.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description MD5摘要工具类
+ * @date 10/19/26 10:12
+ */
+public final class Md5Utils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Md5Utils() {
+    }
+
+    /**
+     * 创建MD5摘要器
+     *
+     * @return MessageDigest实例
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            // 所有JRE都必须支持MD5，这里不会发生
+            throw new IllegalStateException("当前JRE不支持MD5", e);
+        }
+    }
+
+    /**
+     * 计算字节数组的MD5值
+     *
+     * @param bytes 字节数组
+     * @return 十六进制MD5字符串
+     */
+    public static String md5Hex(byte[] bytes) {
+        MessageDigest md = newDigest();
+        md.update(bytes);
+        return toHex(md.digest());
+    }
+
+    /**
+     * 计算文本（UTF-8编码）的MD5值
+     *
+     * @param text 文本
+     * @return 十六进制MD5字符串
+     */
+    public static String md5Hex(String text) {
+        return md5Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 字节数组转换为十六进制字符串
+     *
+     * @param bytes 字节数组
+     * @return 十六进制字符串
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 是否为md5Hex生成的格式（32位小写十六进制），用于校验来自文件或网络的MD5后再拼接文件名
+     *
+     * @param md5 待校验的字符串
+     * @return 格式正确时返回true
+     */
+    public static boolean isMd5Hex(String md5) {
+        if (md5 == null || md5.length() != 32) {
+            return false;
+        }
+        for (int i = 0; i < md5.length(); i++) {
+            char c = md5.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
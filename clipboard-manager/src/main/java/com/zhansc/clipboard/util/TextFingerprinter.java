@@ -0,0 +1,99 @@
+package com.zhansc.clipboard.util;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.io.Reader;
+import java.security.SecureRandom;
+
+/**
+ * @author zhanshuchan
+ * @version 1.0
+ * @description 剪贴板文本指纹，用于在内容未变化时跳过剪贴板项的构造、去重和后续流水线处理。
+ * 读取本身并不省去分配：系统剪贴板在getContents时已复制了各格式的原始数据，退回字符串格式时也会构造完整字符串。
+ * 以流的方式读取文本，计算模2^61-1的多项式滚动哈希（每3个字符作为一位），基数在进程启动时随机选取，
+ * 无法针对性构造冲突；两段不同文本指纹相同的概率约为长度/2^61。
+ * 复用读取缓冲区，非线程安全，每个轮询线程使用一个实例
+ * @date 10/21/26 14:10
+ */
+public final class TextFingerprinter {
+    private static final long MOD = (1L << 61) - 1;
+    private static final long BASE = 256 + Math.floorMod(new SecureRandom().nextLong(), MOD - 512);
+
+    private final char[] buffer = new char[8192];
+
+    /**
+     * 计算剪贴板内容中文本的指纹，优先使用纯文本格式的流，不支持时退回字符串格式（会构造完整字符串）
+     *
+     * @param contents 剪贴板内容，必须支持DataFlavor.stringFlavor
+     * @return 指纹
+     * @throws UnsupportedFlavorException 内容在读取过程中被替换
+     * @throws IOException                读取失败
+     */
+    public long fingerprint(Transferable contents) throws UnsupportedFlavorException, IOException {
+        DataFlavor flavor = DataFlavor.selectBestTextFlavor(contents.getTransferDataFlavors());
+        // 最佳格式可能是HTML等富文本，与保存的纯文本不一定同时变化
+        if (flavor == null || !flavor.isMimeTypeEqual("text/plain")) {
+            flavor = DataFlavor.stringFlavor;
+        }
+        try (Reader reader = flavor.getReaderForText(contents)) {
+            return this.fingerprint(reader);
+        }
+    }
+
+    /**
+     * 计算流中文本的指纹
+     *
+     * @param reader 文本流
+     * @return 指纹
+     * @throws IOException 读取失败
+     */
+    public long fingerprint(Reader reader) throws IOException {
+        long hash = 0;
+        long length = 0;
+        // 每3个字符拼成一个48位的数字再参与运算，依赖链上的模乘次数减为三分之一；跨缓冲区的部分数字保留到下次读取
+        long digit = 0;
+        int packed = 0;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                digit = digit << 16 | buffer[i];
+                if (++packed == 3) {
+                    // 数字加1，避免前导的\0不影响哈希
+                    hash = add(mulMod(hash, BASE), digit + 1);
+                    digit = 0;
+                    packed = 0;
+                }
+            }
+            length += read;
+        }
+        if (packed > 0) {
+            hash = add(mulMod(hash, BASE), digit + 1);
+        }
+        // 混入长度，末尾不足3个字符的部分数字不会与补零后的内容冲突
+        return hash ^ length * 0x9e3779b97f4a7c15L;
+    }
+
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum >= MOD ? sum - MOD : sum;
+    }
+
+    /**
+     * 计算a*b mod 2^61-1，a和b都小于2^61。拆成32位的部分积，利用2^61≡1折叠，不需要128位乘法
+     */
+    private static long mulMod(long a, long b) {
+        long aLow = a & 0xffffffffL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xffffffffL;
+        long bHigh = b >>> 32;
+        long low = aLow * bLow;
+        long mid = aLow * bHigh + aHigh * bLow;
+        long high = aHigh * bHigh;
+        long result = (low & MOD) + (low >>> 61) + (high << 3) + (mid >>> 29) + (mid << 35 >>> 3) + 1;
+        result = (result & MOD) + (result >>> 61);
+        result = (result & MOD) + (result >>> 61);
+        return result - 1;
+    }
+}